@@ -1,8 +1,15 @@
 package com.hackathon.codeguard.cli;
 
+import com.hackathon.codeguard.service.ChangeSet;
 import com.hackathon.codeguard.service.CodeAnalysisService;
+import com.hackathon.codeguard.service.GitChangeSetService;
 import com.hackathon.codeguard.service.ReportGenerationService;
+import com.hackathon.codeguard.service.batch.BatchPendingException;
+import com.hackathon.codeguard.service.openai.AnalysisDimension;
+import com.hackathon.codeguard.service.openai.OpenAIAnalysisService;
+import com.hackathon.codeguard.model.AnalysisOptions;
 import com.hackathon.codeguard.model.AnalysisResult;
+import com.hackathon.codeguard.model.InputSlice;
 import com.hackathon.codeguard.model.ReportType;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
@@ -11,8 +18,11 @@ import picocli.CommandLine.Parameters;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Command Line Interface for Code Guard tool
@@ -73,18 +83,240 @@ public class CodeGuardCLI implements Callable<Integer> {
     )
     private boolean generateKT = false;
 
+    @Option(
+        names = {"--llm-base-url"},
+        description = "Base URL of the OpenAI-compatible API, e.g. a proxy or the local stand-in (default: https://api.openai.com/v1/)"
+    )
+    private String llmBaseUrl = "https://api.openai.com/v1/";
+
+    @Option(
+        names = {"--connect-timeout"},
+        description = "HTTP connect timeout in seconds for API calls (default: 10)"
+    )
+    private long connectTimeoutSeconds = 10;
+
+    @Option(
+        names = {"--read-timeout"},
+        description = "HTTP read timeout in seconds for API calls (default: 60)"
+    )
+    private long readTimeoutSeconds = 60;
+
+    @Option(
+        names = {"-p", "--parallelism"},
+        description = "Number of files analyzed concurrently (default: 4)"
+    )
+    private int parallelism = 4;
+
+    @Option(
+        names = {"--file-timeout"},
+        description = "Deadline in seconds for all analysis calls of a single file (default: 300)"
+    )
+    private long fileTimeoutSeconds = 300;
+
+    @Option(
+        names = {"--fused"},
+        description = "Request all analysis dimensions of a file in a single prompt"
+    )
+    private boolean fused = false;
+
+    @Option(
+        names = {"--pack-small-files"},
+        description = "Analyze small files several to a prompt instead of one request per dimension and file"
+    )
+    private boolean packSmallFiles;
+
+    @Option(
+        names = {"--pack-tokens"},
+        description = "Tokens of code per packed prompt; files up to a quarter of this count as small (default: 2000)"
+    )
+    private int packTokens = 2000;
+
+    @Option(
+        names = {"--no-cache"},
+        description = "Bypass the LLM response cache"
+    )
+    private boolean noCache = false;
+
+    @Option(
+        names = {"--cache-dir"},
+        description = "Directory of the LLM response cache (default: .codeguard-cache)"
+    )
+    private String cacheDirectory = ".codeguard-cache";
+
+    @Option(
+        names = {"--cache-ttl"},
+        description = "Hours a cached LLM response stays valid (default: 168)"
+    )
+    private long cacheTtlHours = 168;
+
+    @Option(
+        names = {"--cache-max-mb"},
+        description = "Maximum on-disk size of the LLM response cache in MB (default: 256)"
+    )
+    private long cacheMaxSizeMb = 256;
+
+    @Option(
+        names = {"--rpm"},
+        description = "OpenAI requests-per-minute limit until the API reports its own (default: 500)"
+    )
+    private int requestsPerMinute = 500;
+
+    @Option(
+        names = {"--tpm"},
+        description = "OpenAI tokens-per-minute limit until the API reports its own (default: 30000)"
+    )
+    private int tokensPerMinute = 30_000;
+
+    @Option(
+        names = {"--max-chunk-tokens"},
+        description = "Files estimated above this many tokens are split into chunks along class/method boundaries (default: 3500)"
+    )
+    private long maxChunkTokens = 3_500;
+
+    @Option(
+        names = {"--incremental"},
+        description = "Reuse previous results for files whose content, prompts and settings are unchanged"
+    )
+    private boolean incremental;
+
+    @Option(
+        names = {"--manifest"},
+        description = "Manifest file used by --incremental (default: .codeguard-manifest.json)"
+    )
+    private String manifestPath = ".codeguard-manifest.json";
+
+    @Option(
+        names = {"--since"},
+        description = "Only analyze files changed since this git reference (e.g. origin/main), including uncommitted changes"
+    )
+    private String sinceRef;
+
+    @Option(
+        names = {"--changed-lines-only"},
+        description = "With --since, only report issues on changed lines"
+    )
+    private boolean changedLinesOnly;
+
+    @Option(
+        names = {"--diff-hunks"},
+        description = "With --since and --incremental, send only the changed hunks of files whose base version is in the manifest"
+    )
+    private boolean diffHunks;
+
+    @Option(
+        names = {"--stream"},
+        description = "Stream OpenAI responses and stop generation as soon as the required JSON fields are complete"
+    )
+    private boolean streaming;
+
+    @Option(
+        names = {"--structured-output"},
+        description = "Ask for JSON matching a strict schema per dimension via response_format; needs a model with structured-output support"
+    )
+    private boolean structuredOutput;
+
+    @Option(
+        names = {"--batch"},
+        description = "Submit all requests as an offline batch at reduced cost; rerun the same command to resume a pending batch"
+    )
+    private boolean batch;
+
+    @Option(
+        names = {"--batch-state"},
+        description = "State file recording the pending batch (default: .codeguard-batch.json)"
+    )
+    private String batchStatePath = ".codeguard-batch.json";
+
+    @Option(
+        names = {"--batch-wait"},
+        description = "Minutes to poll a batch before exiting with code 2 to resume later (default: 60)"
+    )
+    private long batchWaitMinutes = 60;
+
+    @Option(
+        names = {"--no-minimize"},
+        description = "Send source code to OpenAI verbatim, without removing licence banners, blank lines and indentation"
+    )
+    private boolean noMinimize;
+
+    @Option(
+        names = {"--elide-imports"},
+        description = "Replace import blocks with a one-line marker in prompts"
+    )
+    private boolean elideImports;
+
+    @Option(
+        names = {"--dimension-input"},
+        description = "Source given to a score or KT dimension, as dimension=${COMPLETION-CANDIDATES}, e.g. security=SIGNATURES " +
+            "(default: singleResponsibility=SIGNATURES and ktModules=SIGNATURES, FULL for the rest)"
+    )
+    private Map<String, InputSlice> dimensionInputs = new LinkedHashMap<>();
+
+    @Option(
+        names = {"--no-dedup"},
+        description = "Analyze every file, even copies of another file in the run"
+    )
+    private boolean noDedup;
+
+    @Option(
+        names = {"--near-duplicate-distance"},
+        description = "Files whose SimHash fingerprints differ in at most this many of 64 bits reuse the first file's analysis, without being analyzed themselves; ignored in qa-automation and devops-testing mode (default: 0, exact copies only)"
+    )
+    private int nearDuplicateDistance = 0;
+
+    @Option(
+        names = {"--prompt-price"},
+        description = "Price of prompt tokens in USD per million, for the cost estimate (default: 30)"
+    )
+    private double promptPrice = 30.0;
+
+    @Option(
+        names = {"--completion-price"},
+        description = "Price of completion tokens in USD per million, for the cost estimate (default: 60)"
+    )
+    private double completionPrice = 60.0;
+
+    @Option(
+        names = {"--risk-first"},
+        description = "Analyze files with the highest local risk score first: size, recent git churn, security patterns and previous scores. Always on in qa-automation and devops-testing mode"
+    )
+    private boolean riskFirst;
+
+    @Option(
+        names = {"--token-budget"},
+        description = "Stop sending files to the LLM once the run would exceed this many tokens; remaining files get local-only results (default: no limit)"
+    )
+    private long tokenBudget;
+
+    @Option(
+        names = {"--cost-budget"},
+        description = "Stop sending files to the LLM once the run's estimated cost would exceed this many USD (default: no limit)"
+    )
+    private double costBudget;
+
+    @Option(
+        names = {"--finish-in-background"},
+        description = "In qa-automation and devops-testing mode, keep analyzing after the quality gate is decided so the reports cover every file; by default the remaining files are skipped"
+    )
+    private boolean finishInBackground;
+
     public enum AnalysisMode {
         STANDARD,
         QA_AUTOMATION,
         DEVOPS_TESTING,
-        DEVELOPER_REVIEW
+        DEVELOPER_REVIEW;
+
+        /**
+         * Modes whose exit code fails the build when the score is below the threshold
+         */
+        public boolean isQualityGate() {
+            return this == QA_AUTOMATION || this == DEVOPS_TESTING;
+        }
     }
 
-    private final CodeAnalysisService analysisService;
     private final ReportGenerationService reportService;
 
     public CodeGuardCLI() {
-        this.analysisService = new CodeAnalysisService();
         this.reportService = new ReportGenerationService();
     }
 
@@ -92,6 +324,8 @@ public class CodeGuardCLI implements Callable<Integer> {
     public Integer call() throws Exception {
         try {
             System.out.println("Starting Code Guard analysis...");
+            AnalysisOptions options = buildAnalysisOptions();
+            OpenAIAnalysisService.prewarmConnection(options);
             
             // Determine files to analyze
             List<Path> filesToAnalyze = determineFilesToAnalyze();
@@ -101,17 +335,37 @@ public class CodeGuardCLI implements Callable<Integer> {
                 return 1;
             }
 
+            ChangeSet changeSet = sinceRef != null ? determineChangeSet() : null;
+            if (changeSet != null) {
+                filesToAnalyze.removeIf(file -> !changeSet.contains(file));
+                if (filesToAnalyze.isEmpty()) {
+                    System.out.println("No code files changed since " + sinceRef + ", nothing to analyze");
+                    return 0;
+                }
+            }
+
             System.out.println("Analyzing " + filesToAnalyze.size() + " files...");
             
             // Perform analysis
-            AnalysisResult result = analysisService.analyzeFiles(filesToAnalyze, mode, generateKT);
+            CodeAnalysisService analysisService = new CodeAnalysisService(options);
+            if (mode.isQualityGate()) {
+                analysisService.addCompletionListener(
+                    new GateProgressReporter(filesToAnalyze.size(), threshold, reportService, outputDir));
+            }
+            AnalysisResult result = analysisService.analyzeFiles(filesToAnalyze, mode, generateKT, changeSet);
+            if (result.getGate() != null && !result.getGate().getSkippedFiles().isEmpty()) {
+                System.out.println("Stopped early: " + result.getGate().getSkippedFiles().size()
+                    + " files were not analyzed because the quality gate was already decided");
+            }
 
             // Check threshold
-            if (result.getOverallScore() < threshold) {
+            boolean gateFailed = result.getOverallScore() < threshold;
+            if (gateFailed) {
                 System.err.println("Quality gate failed. Score: " + result.getOverallScore() + 
                                  " < threshold: " + threshold);
                 
-                if (mode == AnalysisMode.QA_AUTOMATION || mode == AnalysisMode.DEVOPS_TESTING) {
+                // When finishing in the background the full reports are the point of running on
+                if (mode.isQualityGate() && !finishInBackground) {
                     return 1; // Fail for automation modes
                 }
             }
@@ -119,12 +373,17 @@ public class CodeGuardCLI implements Callable<Integer> {
             // Generate all reports
             reportService.generateReports(result, outputDir, reportType, format);
             if (generateKT) {
-                reportService.generateKTDocumentation(result, outputDir);
+                reportService.generateKTDocumentation(result, outputDir, analysisService.getOpenAIService());
                 System.out.println("KT documentation generated in: " + outputDir + "/kt");
             }
+            // Written last so the KT summary calls are included
+            reportService.generateUsageReport(analysisService.getOpenAIService().getUsageTracker().report(), outputDir);
             System.out.println("Analysis complete. Reports generated in: " + outputDir);
             System.out.println("Overall Score: " + result.getOverallScore());
-            return 0;
+            return gateFailed && mode.isQualityGate() ? 1 : 0;
+        } catch (BatchPendingException e) {
+            System.out.println(e.getMessage() + ". Rerun the same command to resume it.");
+            return 2;
         } catch (Exception e) {
             System.err.println("Error during analysis: " + e.getMessage());
             e.printStackTrace();
@@ -132,6 +391,113 @@ public class CodeGuardCLI implements Callable<Integer> {
         }
     }
 
+    /**
+     * Issues and metrics report line numbers and counts, so they always see the whole code
+     */
+    private static boolean isSliceableDimension(String jsonKey) {
+        for (AnalysisDimension dimension : AnalysisDimension.values()) {
+            if (dimension.getJsonKey().equals(jsonKey)) {
+                return dimension.isScore() || dimension.isKnowledgeTransfer();
+            }
+        }
+        return false;
+    }
+
+    private AnalysisOptions buildAnalysisOptions() {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("--parallelism must be at least 1");
+        }
+        if (fileTimeoutSeconds < 1) {
+            throw new IllegalArgumentException("--file-timeout must be at least 1 second");
+        }
+        if (requestsPerMinute < 1 || tokensPerMinute < 1) {
+            throw new IllegalArgumentException("--rpm and --tpm must be positive");
+        }
+        if (changedLinesOnly && sinceRef == null) {
+            throw new IllegalArgumentException("--changed-lines-only requires --since");
+        }
+        if (diffHunks && (sinceRef == null || !incremental)) {
+            throw new IllegalArgumentException("--diff-hunks requires --since and --incremental");
+        }
+        if (elideImports && noMinimize) {
+            throw new IllegalArgumentException("--elide-imports cannot be combined with --no-minimize");
+        }
+        for (String key : dimensionInputs.keySet()) {
+            if (!isSliceableDimension(key)) {
+                throw new IllegalArgumentException("--dimension-input applies to score and KT dimensions only, not " + key);
+            }
+        }
+        if (nearDuplicateDistance < 0 || nearDuplicateDistance > 15) {
+            throw new IllegalArgumentException("--near-duplicate-distance must be between 0 and 15");
+        }
+        if (promptPrice < 0 || completionPrice < 0) {
+            throw new IllegalArgumentException("--prompt-price and --completion-price cannot be negative");
+        }
+        if (tokenBudget < 0 || costBudget < 0) {
+            throw new IllegalArgumentException("--token-budget and --cost-budget cannot be negative");
+        }
+        if (packTokens < 1) {
+            throw new IllegalArgumentException("--pack-tokens must be at least 1");
+        }
+        if (batch && streaming) {
+            throw new IllegalArgumentException("--batch and --stream cannot be combined");
+        }
+        if (batchWaitMinutes < 0) {
+            throw new IllegalArgumentException("--batch-wait must not be negative");
+        }
+        if (connectTimeoutSeconds < 1 || readTimeoutSeconds < 1) {
+            throw new IllegalArgumentException("--connect-timeout and --read-timeout must be at least 1 second");
+        }
+        if (maxChunkTokens < 100) {
+            throw new IllegalArgumentException("--max-chunk-tokens must be at least 100");
+        }
+        AnalysisOptions options = new AnalysisOptions();
+        options.setParallelism(parallelism);
+        options.setFileTimeoutMillis(TimeUnit.SECONDS.toMillis(fileTimeoutSeconds));
+        options.setLlmBaseUrl(llmBaseUrl);
+        options.setConnectTimeoutSeconds(connectTimeoutSeconds);
+        options.setReadTimeoutSeconds(readTimeoutSeconds);
+        options.setFused(fused);
+        options.setPackSmallFiles(packSmallFiles);
+        options.setPackTokens(packTokens);
+        options.setCacheEnabled(!noCache);
+        options.setCacheDirectory(cacheDirectory);
+        options.setCacheTtlHours(cacheTtlHours);
+        options.setCacheMaxSizeMb(cacheMaxSizeMb);
+        options.setRequestsPerMinute(requestsPerMinute);
+        options.setTokensPerMinute(tokensPerMinute);
+        options.setMaxChunkTokens(maxChunkTokens);
+        options.setIncremental(incremental);
+        options.setManifestPath(manifestPath);
+        options.setChangedLinesOnly(changedLinesOnly);
+        options.setDiffHunks(diffHunks);
+        options.setStreaming(streaming);
+        options.setStructuredOutput(structuredOutput);
+        options.setBatch(batch);
+        options.setBatchStatePath(batchStatePath);
+        options.setBatchMaxWaitMinutes(batchWaitMinutes);
+        options.setMinimizeInput(!noMinimize);
+        options.setElideImports(elideImports);
+        options.getDimensionInputs().putAll(dimensionInputs);
+        options.setDeduplicate(!noDedup);
+        options.setNearDuplicateDistance(nearDuplicateDistance);
+        options.setPromptPricePerMillion(promptPrice);
+        options.setCompletionPricePerMillion(completionPrice);
+        options.setRiskFirst(riskFirst);
+        options.setTokenBudget(tokenBudget);
+        options.setCostBudgetUsd(costBudget);
+        if (mode.isQualityGate()) {
+            options.setGateThreshold((double) threshold);
+        }
+        options.setFinishInBackground(finishInBackground);
+        return options;
+    }
+
+    private ChangeSet determineChangeSet() throws java.io.IOException {
+        Path repositoryDir = new File(scanDirectory != null && !scanDirectory.isEmpty() ? scanDirectory : ".").toPath();
+        return new GitChangeSetService().changesSince(repositoryDir, sinceRef);
+    }
+
     private static final List<String> SUPPORTED_CONFIG_FILES = List.of(
         "pom.xml", "build.gradle", "build.gradle.kts", "build.xml", "ivy.xml",
         "package.json", "package-lock.json", "yarn.lock",
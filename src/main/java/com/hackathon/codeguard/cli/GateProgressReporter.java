@@ -0,0 +1,69 @@
+package com.hackathon.codeguard.cli;
+
+import com.hackathon.codeguard.model.FileAnalysisResult;
+import com.hackathon.codeguard.model.GateDecision;
+import com.hackathon.codeguard.service.FileCompletionListener;
+import com.hackathon.codeguard.service.ReportGenerationService;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Prints each file's score and the running mean against the threshold as files finish, so a build
+ * log shows a failing quality gate long before the run ends. The gate decision is printed and written
+ * to quality-gate.json the moment it is made.
+ */
+class GateProgressReporter implements FileCompletionListener {
+
+    private final int totalFiles;
+    private final double threshold;
+    private int finished;
+    private int scored;
+    private double scoreSum;
+    private final ReportGenerationService reportService;
+    private final String outputDir;
+    private boolean warned;
+
+    GateProgressReporter(int totalFiles, double threshold, ReportGenerationService reportService, String outputDir) {
+        this.totalFiles = totalFiles;
+        this.threshold = threshold;
+        this.reportService = reportService;
+        this.outputDir = outputDir;
+    }
+
+    @Override
+    public synchronized void onFileCompleted(FileAnalysisResult result) {
+        finished++;
+        if (result.isBudgetSkipped()) {
+            System.out.printf("[%d/%d] %s skipped, run budget spent%n", finished, totalFiles, result.getFilepath());
+            return;
+        }
+        scored++;
+        scoreSum += result.getFinalScore();
+        double runningScore = scoreSum / scored;
+        System.out.printf("[%d/%d] %s scored %.1f, running score %.1f (threshold %.0f)%n",
+            finished, totalFiles, result.getFilepath(), result.getFinalScore(), runningScore, threshold);
+        if (runningScore < threshold && !warned) {
+            warned = true;
+            System.out.println("Quality gate at risk: the riskiest files so far average below the threshold");
+        }
+    }
+
+    @Override
+    public synchronized void onFileFailed(Path file, Throwable cause) {
+        finished++;
+        System.out.printf("[%d/%d] %s failed: %s%n", finished, totalFiles, file, cause.getMessage());
+    }
+
+    @Override
+    public void onGateDecided(GateDecision decision) {
+        System.out.printf("Quality gate %s after %d of %d files: the final score will be between %.1f and %.1f (threshold %.0f)%n",
+            decision.isPassed() ? "PASSED" : "FAILED", decision.getFilesCompleted(), decision.getTotalFiles(),
+            decision.getLowestPossibleScore(), decision.getHighestPossibleScore(), decision.getThreshold());
+        try {
+            reportService.generateGateReport(decision, outputDir);
+        } catch (IOException e) {
+            System.err.println("Could not write the quality gate decision: " + e.getMessage());
+        }
+    }
+}
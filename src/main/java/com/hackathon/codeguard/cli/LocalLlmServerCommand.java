@@ -0,0 +1,111 @@
+package com.hackathon.codeguard.cli;
+
+import com.hackathon.codeguard.service.llm.LatencyDistribution;
+import com.hackathon.codeguard.service.llm.LocalLlmServer;
+import com.hackathon.codeguard.service.llm.StandInSettings;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs the local OpenAI-compatible stand-in server until interrupted
+ */
+@Command(
+    name = "code-guard-llm-stand-in",
+    description = "Local OpenAI-compatible server for offline benchmarking and load tests of Code Guard",
+    mixinStandardHelpOptions = true,
+    version = "1.0.0"
+)
+public class LocalLlmServerCommand implements Callable<Integer> {
+
+    @Option(
+        names = {"--port"},
+        description = "Port to listen on, 0 for any free port (default: 8089)"
+    )
+    private int port = 8089;
+
+    @Option(
+        names = {"--base-path"},
+        description = "Path of the API root, e.g. /api/v1 to stand in for a server behind a path prefix (default: /v1)"
+    )
+    private String basePath = "/v1";
+
+    @Option(
+        names = {"--latency"},
+        description = "Response latency in ms: fixed:200, uniform:100-400, normal:300,50 or lognormal:300,0.5 (default: fixed:0)"
+    )
+    private String latency = "fixed:0";
+
+    @Option(
+        names = {"--rate-limit-error-rate"},
+        description = "Share of completions answered with HTTP 429 (default: 0)"
+    )
+    private double rateLimitErrorRate = 0.0;
+
+    @Option(
+        names = {"--server-error-rate"},
+        description = "Share of completions answered with HTTP 500/503 (default: 0)"
+    )
+    private double serverErrorRate = 0.0;
+
+    @Option(
+        names = {"--retry-after"},
+        description = "Retry-After seconds sent with injected 429s (default: 1)"
+    )
+    private int retryAfterSeconds = 1;
+
+    @Option(
+        names = {"--responses"},
+        description = "Response mode: ${COMPLETION-CANDIDATES} (default: CANNED)"
+    )
+    private StandInSettings.ResponseMode responseMode = StandInSettings.ResponseMode.CANNED;
+
+    @Option(
+        names = {"--canned"},
+        description = "JSON object of prompt substring to response, replacing the bundled canned responses"
+    )
+    private File cannedFile;
+
+    @Option(
+        names = {"--seed"},
+        description = "Random seed for latency and error injection (default: 42)"
+    )
+    private long seed = 42;
+
+    public static void main(String[] args) {
+        System.exit(new CommandLine(new LocalLlmServerCommand()).execute(args));
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        if (rateLimitErrorRate < 0 || serverErrorRate < 0 || rateLimitErrorRate + serverErrorRate > 1) {
+            throw new IllegalArgumentException("Error rates must be between 0 and 1 and add up to at most 1");
+        }
+        StandInSettings settings = new StandInSettings();
+        settings.setPort(port);
+        settings.setBasePath(basePath);
+        settings.setLatency(LatencyDistribution.parse(latency));
+        settings.setRateLimitErrorRate(rateLimitErrorRate);
+        settings.setServerErrorRate(serverErrorRate);
+        settings.setRetryAfterSeconds(retryAfterSeconds);
+        settings.setResponseMode(responseMode);
+        settings.setCannedResponses(cannedFile != null
+            ? LocalLlmServer.loadCannedResponses(cannedFile.toPath())
+            : LocalLlmServer.defaultCannedResponses());
+        settings.setSeed(seed);
+
+        LocalLlmServer server = new LocalLlmServer(settings).start();
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            stopped.countDown();
+        }));
+        System.out.println("LLM stand-in listening on " + server.getBaseUrl() + ", run Code Guard with --llm-base-url " + server.getBaseUrl());
+        stopped.await();
+        return 0;
+    }
+}
@@ -0,0 +1,205 @@
+package com.hackathon.codeguard.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runtime options controlling how an analysis run is executed
+ */
+public class AnalysisOptions {
+
+    // Number of files analyzed concurrently
+    private int parallelism = 4;
+    
+    // Deadline for all analysis calls of a single file
+    private long fileTimeoutMillis = 300_000;
+    
+    // Root of the OpenAI-compatible API, e.g. a proxy or the local stand-in server
+    private String llmBaseUrl = "https://api.openai.com/v1/";
+    
+    // Timeouts of the shared HTTP client
+    private long connectTimeoutSeconds = 10;
+    private long readTimeoutSeconds = 60;
+    
+    // Request all dimensions of a file in a single prompt
+    private boolean fused = false;
+    
+    // Analyze small files together, several per prompt, up to this many tokens of code per prompt
+    private boolean packSmallFiles = false;
+    private int packTokens = 2000;
+    
+    // LLM response cache settings
+    private boolean cacheEnabled = true;
+    private String cacheDirectory = ".codeguard-cache";
+    private long cacheTtlHours = 168;
+    private long cacheMaxSizeMb = 256;
+    
+    // Account rate limits used until the API reports its own
+    private int requestsPerMinute = 500;
+    private int tokensPerMinute = 30_000;
+    
+    // Files estimated above this many tokens are analyzed in chunks
+    private long maxChunkTokens = 3_500;
+    
+    // Reuse results of unchanged files recorded in the manifest
+    private boolean incremental = false;
+    private String manifestPath = ".codeguard-manifest.json";
+    
+    // Git-scoped runs: report only issues on changed lines, send only changed hunks of known files
+    private boolean changedLinesOnly = false;
+    private boolean diffHunks = false;
+    
+    // Stream completions and stop generation once the required JSON fields are parsed
+    private boolean streaming = false;
+    
+    // Send a strict JSON schema as response_format for answers that are JSON objects
+    private boolean structuredOutput = false;
+    
+    // Submit all requests as an offline batch, resumable through the state file
+    private boolean batch = false;
+    private String batchStatePath = ".codeguard-batch.json";
+    private long batchMaxWaitMinutes = 60;
+    
+    // Strip licence banners and redundant whitespace from prompts, optionally import blocks too
+    private boolean minimizeInput = true;
+    private boolean elideImports = false;
+    
+    // Source slice sent to each dimension, keyed by the dimension's JSON key; absent dimensions get the full code
+    private Map<String, InputSlice> dimensionInputs = new LinkedHashMap<>(Map.of(
+        "singleResponsibility", InputSlice.SIGNATURES,
+        "ktModules", InputSlice.SIGNATURES));
+    
+    // Reuse the analysis of a file for its copies; near copies differ in at most this many SimHash bits (0: exact only).
+    // Near copies may differ in code the model never sees, so reusing them is opt-in and never done in quality gate modes
+    private boolean deduplicate = true;
+    private int nearDuplicateDistance = 0;
+    
+    // Model prices in USD per million tokens, used to estimate the cost of a run
+    private double promptPricePerMillion = 30.0;
+    private double completionPricePerMillion = 60.0;
+    
+    // Analyze the files with the highest local risk score first; always on in quality gate modes
+    private boolean riskFirst = false;
+    
+    // Score threshold of the quality gate; when set, the run stops as soon as the gate is decided
+    private Double gateThreshold;
+    
+    // Keep analyzing after the gate is decided so the reports cover every file
+    private boolean finishInBackground = false;
+    
+    // Ceiling on the tokens and estimated dollars spent on LLM calls per run; 0 means no limit
+    private long tokenBudget = 0;
+    private double costBudgetUsd = 0;
+
+    // Constructors
+    public AnalysisOptions() {}
+
+    // Getters and Setters
+    public int getParallelism() { return parallelism; }
+    public void setParallelism(int parallelism) { this.parallelism = parallelism; }
+    
+    public long getFileTimeoutMillis() { return fileTimeoutMillis; }
+    public void setFileTimeoutMillis(long fileTimeoutMillis) { this.fileTimeoutMillis = fileTimeoutMillis; }
+    
+    public String getLlmBaseUrl() { return llmBaseUrl; }
+    public void setLlmBaseUrl(String llmBaseUrl) { this.llmBaseUrl = llmBaseUrl; }
+    
+    public long getConnectTimeoutSeconds() { return connectTimeoutSeconds; }
+    public void setConnectTimeoutSeconds(long connectTimeoutSeconds) { this.connectTimeoutSeconds = connectTimeoutSeconds; }
+    
+    public long getReadTimeoutSeconds() { return readTimeoutSeconds; }
+    public void setReadTimeoutSeconds(long readTimeoutSeconds) { this.readTimeoutSeconds = readTimeoutSeconds; }
+    
+    public boolean isFused() { return fused; }
+    public void setFused(boolean fused) { this.fused = fused; }
+    
+    public boolean isPackSmallFiles() { return packSmallFiles; }
+    public void setPackSmallFiles(boolean packSmallFiles) { this.packSmallFiles = packSmallFiles; }
+    
+    public int getPackTokens() { return packTokens; }
+    public void setPackTokens(int packTokens) { this.packTokens = packTokens; }
+    
+    public boolean isCacheEnabled() { return cacheEnabled; }
+    public void setCacheEnabled(boolean cacheEnabled) { this.cacheEnabled = cacheEnabled; }
+    
+    public String getCacheDirectory() { return cacheDirectory; }
+    public void setCacheDirectory(String cacheDirectory) { this.cacheDirectory = cacheDirectory; }
+    
+    public long getCacheTtlHours() { return cacheTtlHours; }
+    public void setCacheTtlHours(long cacheTtlHours) { this.cacheTtlHours = cacheTtlHours; }
+    
+    public long getCacheMaxSizeMb() { return cacheMaxSizeMb; }
+    public void setCacheMaxSizeMb(long cacheMaxSizeMb) { this.cacheMaxSizeMb = cacheMaxSizeMb; }
+    
+    public int getRequestsPerMinute() { return requestsPerMinute; }
+    public void setRequestsPerMinute(int requestsPerMinute) { this.requestsPerMinute = requestsPerMinute; }
+    
+    public int getTokensPerMinute() { return tokensPerMinute; }
+    public void setTokensPerMinute(int tokensPerMinute) { this.tokensPerMinute = tokensPerMinute; }
+    
+    public long getMaxChunkTokens() { return maxChunkTokens; }
+    public void setMaxChunkTokens(long maxChunkTokens) { this.maxChunkTokens = maxChunkTokens; }
+    
+    public boolean isIncremental() { return incremental; }
+    public void setIncremental(boolean incremental) { this.incremental = incremental; }
+    
+    public String getManifestPath() { return manifestPath; }
+    public void setManifestPath(String manifestPath) { this.manifestPath = manifestPath; }
+    
+    public boolean isChangedLinesOnly() { return changedLinesOnly; }
+    public void setChangedLinesOnly(boolean changedLinesOnly) { this.changedLinesOnly = changedLinesOnly; }
+    
+    public boolean isDiffHunks() { return diffHunks; }
+    public void setDiffHunks(boolean diffHunks) { this.diffHunks = diffHunks; }
+    
+    public boolean isStreaming() { return streaming; }
+    public void setStreaming(boolean streaming) { this.streaming = streaming; }
+    
+    public boolean isStructuredOutput() { return structuredOutput; }
+    public void setStructuredOutput(boolean structuredOutput) { this.structuredOutput = structuredOutput; }
+    
+    public boolean isBatch() { return batch; }
+    public void setBatch(boolean batch) { this.batch = batch; }
+    
+    public String getBatchStatePath() { return batchStatePath; }
+    public void setBatchStatePath(String batchStatePath) { this.batchStatePath = batchStatePath; }
+    
+    public long getBatchMaxWaitMinutes() { return batchMaxWaitMinutes; }
+    public void setBatchMaxWaitMinutes(long batchMaxWaitMinutes) { this.batchMaxWaitMinutes = batchMaxWaitMinutes; }
+    
+    public boolean isMinimizeInput() { return minimizeInput; }
+    public void setMinimizeInput(boolean minimizeInput) { this.minimizeInput = minimizeInput; }
+    
+    public boolean isElideImports() { return elideImports; }
+    public void setElideImports(boolean elideImports) { this.elideImports = elideImports; }
+    
+    public Map<String, InputSlice> getDimensionInputs() { return dimensionInputs; }
+    public void setDimensionInputs(Map<String, InputSlice> dimensionInputs) { this.dimensionInputs = dimensionInputs; }
+    
+    public boolean isDeduplicate() { return deduplicate; }
+    public void setDeduplicate(boolean deduplicate) { this.deduplicate = deduplicate; }
+    
+    public int getNearDuplicateDistance() { return nearDuplicateDistance; }
+    public void setNearDuplicateDistance(int nearDuplicateDistance) { this.nearDuplicateDistance = nearDuplicateDistance; }
+    
+    public double getPromptPricePerMillion() { return promptPricePerMillion; }
+    public void setPromptPricePerMillion(double promptPricePerMillion) { this.promptPricePerMillion = promptPricePerMillion; }
+    
+    public double getCompletionPricePerMillion() { return completionPricePerMillion; }
+    public void setCompletionPricePerMillion(double completionPricePerMillion) { this.completionPricePerMillion = completionPricePerMillion; }
+    
+    public long getTokenBudget() { return tokenBudget; }
+    public void setTokenBudget(long tokenBudget) { this.tokenBudget = tokenBudget; }
+    
+    public double getCostBudgetUsd() { return costBudgetUsd; }
+    public void setCostBudgetUsd(double costBudgetUsd) { this.costBudgetUsd = costBudgetUsd; }
+    
+    public boolean isRiskFirst() { return riskFirst; }
+    public void setRiskFirst(boolean riskFirst) { this.riskFirst = riskFirst; }
+    
+    public Double getGateThreshold() { return gateThreshold; }
+    public void setGateThreshold(Double gateThreshold) { this.gateThreshold = gateThreshold; }
+    
+    public boolean isFinishInBackground() { return finishInBackground; }
+    public void setFinishInBackground(boolean finishInBackground) { this.finishInBackground = finishInBackground; }
+}
@@ -20,6 +20,24 @@ public class AnalysisResult {
     
     @JsonProperty("timestamp")
     private String timestamp;
+    
+    @JsonProperty("failedFiles")
+    private Map<String, String> failedFiles;
+    
+    // Files with scores from the LLM, and files that only have local results because the run budget was spent
+    @JsonProperty("coveredFiles")
+    private List<String> coveredFiles;
+    
+    @JsonProperty("skippedFiles")
+    private List<String> skippedFiles;
+    
+    // LLM usage of the analysis; KT documentation calls made afterwards are only in llm-usage.json
+    @JsonProperty("usage")
+    private UsageReport usage;
+    
+    // Quality gate decision in gate modes; the files it left unanalyzed are not in fileResults
+    @JsonProperty("gate")
+    private GateDecision gate;
 
     // Constructors
     public AnalysisResult() {}
@@ -65,6 +83,46 @@ public class AnalysisResult {
         this.timestamp = timestamp;
     }
 
+    public Map<String, String> getFailedFiles() {
+        return failedFiles;
+    }
+
+    public void setFailedFiles(Map<String, String> failedFiles) {
+        this.failedFiles = failedFiles;
+    }
+
+    public List<String> getCoveredFiles() {
+        return coveredFiles;
+    }
+
+    public void setCoveredFiles(List<String> coveredFiles) {
+        this.coveredFiles = coveredFiles;
+    }
+
+    public List<String> getSkippedFiles() {
+        return skippedFiles;
+    }
+
+    public void setSkippedFiles(List<String> skippedFiles) {
+        this.skippedFiles = skippedFiles;
+    }
+
+    public UsageReport getUsage() {
+        return usage;
+    }
+
+    public void setUsage(UsageReport usage) {
+        this.usage = usage;
+    }
+
+    public GateDecision getGate() {
+        return gate;
+    }
+
+    public void setGate(GateDecision gate) {
+        this.gate = gate;
+    }
+
     /**
      * Inner class representing analysis summary
      */
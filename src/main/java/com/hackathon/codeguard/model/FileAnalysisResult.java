@@ -90,6 +90,21 @@ public class FileAnalysisResult {
     @JsonProperty("ktModules")
     private String ktModules;
 
+    // True when the result was produced locally because the LLM endpoint was unavailable
+    @JsonProperty("degraded")
+    private boolean degraded;
+
+    // True when the run's LLM budget was spent before this file, so it only has local results
+    @JsonProperty("budgetSkipped")
+    private boolean budgetSkipped;
+
+    // Set when this file copies another one whose analysis was reused for it
+    @JsonProperty("duplicateOf")
+    private String duplicateOf;
+    
+    @JsonProperty("exactDuplicate")
+    private boolean exactDuplicate;
+
     // Constructors
     public FileAnalysisResult() {}
 
@@ -202,6 +217,18 @@ public class FileAnalysisResult {
     
     public String getKtModules() { return ktModules; }
     public void setKtModules(String ktModules) { this.ktModules = ktModules; }
+    
+    public boolean isDegraded() { return degraded; }
+    public void setDegraded(boolean degraded) { this.degraded = degraded; }
+    
+    public boolean isBudgetSkipped() { return budgetSkipped; }
+    public void setBudgetSkipped(boolean budgetSkipped) { this.budgetSkipped = budgetSkipped; }
+    
+    public String getDuplicateOf() { return duplicateOf; }
+    public void setDuplicateOf(String duplicateOf) { this.duplicateOf = duplicateOf; }
+    
+    public boolean isExactDuplicate() { return exactDuplicate; }
+    public void setExactDuplicate(boolean exactDuplicate) { this.exactDuplicate = exactDuplicate; }
 
     /**
      * Quality indicator enum for color coding
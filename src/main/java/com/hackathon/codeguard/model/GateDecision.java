@@ -0,0 +1,77 @@
+package com.hackathon.codeguard.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of the quality gate, decided as soon as the remaining files can no longer change it
+ */
+public class GateDecision {
+
+    @JsonProperty("passed")
+    private boolean passed;
+
+    @JsonProperty("threshold")
+    private double threshold;
+
+    // True when files were still outstanding at the time of the decision
+    @JsonProperty("early")
+    private boolean early;
+
+    @JsonProperty("filesCompleted")
+    private int filesCompleted;
+
+    @JsonProperty("totalFiles")
+    private int totalFiles;
+
+    // Range the overall score could still reach when the gate was decided
+    @JsonProperty("lowestPossibleScore")
+    private double lowestPossibleScore;
+
+    @JsonProperty("highestPossibleScore")
+    private double highestPossibleScore;
+
+    // Files left unanalyzed because the gate was decided before them
+    @JsonProperty("skippedFiles")
+    private List<String> skippedFiles = new ArrayList<>();
+
+    // Constructors
+    public GateDecision() {}
+
+    public GateDecision(boolean passed, double threshold, int filesCompleted, int totalFiles,
+                        double lowestPossibleScore, double highestPossibleScore) {
+        this.passed = passed;
+        this.threshold = threshold;
+        this.early = filesCompleted < totalFiles;
+        this.filesCompleted = filesCompleted;
+        this.totalFiles = totalFiles;
+        this.lowestPossibleScore = lowestPossibleScore;
+        this.highestPossibleScore = highestPossibleScore;
+    }
+
+    // Getters and Setters
+    public boolean isPassed() { return passed; }
+    public void setPassed(boolean passed) { this.passed = passed; }
+
+    public double getThreshold() { return threshold; }
+    public void setThreshold(double threshold) { this.threshold = threshold; }
+
+    public boolean isEarly() { return early; }
+    public void setEarly(boolean early) { this.early = early; }
+
+    public int getFilesCompleted() { return filesCompleted; }
+    public void setFilesCompleted(int filesCompleted) { this.filesCompleted = filesCompleted; }
+
+    public int getTotalFiles() { return totalFiles; }
+    public void setTotalFiles(int totalFiles) { this.totalFiles = totalFiles; }
+
+    public double getLowestPossibleScore() { return lowestPossibleScore; }
+    public void setLowestPossibleScore(double lowestPossibleScore) { this.lowestPossibleScore = lowestPossibleScore; }
+
+    public double getHighestPossibleScore() { return highestPossibleScore; }
+    public void setHighestPossibleScore(double highestPossibleScore) { this.highestPossibleScore = highestPossibleScore; }
+
+    public List<String> getSkippedFiles() { return skippedFiles; }
+    public void setSkippedFiles(List<String> skippedFiles) { this.skippedFiles = skippedFiles; }
+}
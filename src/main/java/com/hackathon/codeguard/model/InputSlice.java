@@ -0,0 +1,20 @@
+package com.hackathon.codeguard.model;
+
+/**
+ * How much of a file's source an analysis dimension is given in its prompt
+ */
+public enum InputSlice {
+    FULL("the complete code"),
+    SIGNATURES("imports, type declarations and member signatures; method bodies are omitted"),
+    IMPORTS("import statements only");
+
+    private final String description;
+
+    InputSlice(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,197 @@
+package com.hackathon.codeguard.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tokens, cost, latency, retries and cache use of the LLM calls of a run, in total and per file
+ */
+public class UsageReport {
+
+    @JsonProperty("totals")
+    private UsageTotals totals;
+
+    // Wall-clock latency of live calls by analysis dimension
+    @JsonProperty("latencyByDimension")
+    private Map<String, LatencySummary> latencyByDimension;
+
+    // Files ordered by estimated cost, most expensive first
+    @JsonProperty("files")
+    private List<FileUsage> files;
+
+    @JsonProperty("promptPricePerMillion")
+    private double promptPricePerMillion;
+
+    @JsonProperty("completionPricePerMillion")
+    private double completionPricePerMillion;
+
+    // Constructors
+    public UsageReport() {}
+
+    // Getters and Setters
+    public UsageTotals getTotals() { return totals; }
+    public void setTotals(UsageTotals totals) { this.totals = totals; }
+
+    public Map<String, LatencySummary> getLatencyByDimension() { return latencyByDimension; }
+    public void setLatencyByDimension(Map<String, LatencySummary> latencyByDimension) { this.latencyByDimension = latencyByDimension; }
+
+    public List<FileUsage> getFiles() { return files; }
+    public void setFiles(List<FileUsage> files) { this.files = files; }
+
+    public double getPromptPricePerMillion() { return promptPricePerMillion; }
+    public void setPromptPricePerMillion(double promptPricePerMillion) { this.promptPricePerMillion = promptPricePerMillion; }
+
+    public double getCompletionPricePerMillion() { return completionPricePerMillion; }
+    public void setCompletionPricePerMillion(double completionPricePerMillion) { this.completionPricePerMillion = completionPricePerMillion; }
+
+    /**
+     * Counters of a run or of one file
+     */
+    public static class UsageTotals {
+        // Live calls that returned a response
+        @JsonProperty("calls")
+        private long calls;
+
+        @JsonProperty("failedCalls")
+        private long failedCalls;
+
+        // Requests answered from a batch job
+        @JsonProperty("batchCalls")
+        private long batchCalls;
+
+        @JsonProperty("promptTokens")
+        private long promptTokens;
+
+        @JsonProperty("completionTokens")
+        private long completionTokens;
+
+        // Calls whose tokens were estimated because the response reported no usage, e.g. streamed calls
+        @JsonProperty("estimatedTokenCalls")
+        private long estimatedTokenCalls;
+
+        @JsonProperty("retries")
+        private long retries;
+
+        @JsonProperty("cacheHits")
+        private long cacheHits;
+
+        @JsonProperty("cacheMisses")
+        private long cacheMisses;
+
+        // Sum of the wall-clock latency of all calls
+        @JsonProperty("latencyMillis")
+        private long latencyMillis;
+
+        @JsonProperty("estimatedCostUsd")
+        private double estimatedCostUsd;
+
+        // Constructors
+        public UsageTotals() {}
+
+        // Getters and Setters
+        public long getCalls() { return calls; }
+        public void setCalls(long calls) { this.calls = calls; }
+
+        public long getFailedCalls() { return failedCalls; }
+        public void setFailedCalls(long failedCalls) { this.failedCalls = failedCalls; }
+
+        public long getBatchCalls() { return batchCalls; }
+        public void setBatchCalls(long batchCalls) { this.batchCalls = batchCalls; }
+
+        public long getPromptTokens() { return promptTokens; }
+        public void setPromptTokens(long promptTokens) { this.promptTokens = promptTokens; }
+
+        public long getCompletionTokens() { return completionTokens; }
+        public void setCompletionTokens(long completionTokens) { this.completionTokens = completionTokens; }
+
+        public long getEstimatedTokenCalls() { return estimatedTokenCalls; }
+        public void setEstimatedTokenCalls(long estimatedTokenCalls) { this.estimatedTokenCalls = estimatedTokenCalls; }
+
+        public long getRetries() { return retries; }
+        public void setRetries(long retries) { this.retries = retries; }
+
+        public long getCacheHits() { return cacheHits; }
+        public void setCacheHits(long cacheHits) { this.cacheHits = cacheHits; }
+
+        public long getCacheMisses() { return cacheMisses; }
+        public void setCacheMisses(long cacheMisses) { this.cacheMisses = cacheMisses; }
+
+        public long getLatencyMillis() { return latencyMillis; }
+        public void setLatencyMillis(long latencyMillis) { this.latencyMillis = latencyMillis; }
+
+        public double getEstimatedCostUsd() { return estimatedCostUsd; }
+        public void setEstimatedCostUsd(double estimatedCostUsd) { this.estimatedCostUsd = estimatedCostUsd; }
+    }
+
+    /**
+     * Usage of the calls made for one file
+     */
+    public static class FileUsage {
+        @JsonProperty("filePath")
+        private String filePath;
+
+        @JsonProperty("totals")
+        private UsageTotals totals;
+
+        // Constructors
+        public FileUsage() {}
+
+        public FileUsage(String filePath, UsageTotals totals) {
+            this.filePath = filePath;
+            this.totals = totals;
+        }
+
+        // Getters and Setters
+        public String getFilePath() { return filePath; }
+        public void setFilePath(String filePath) { this.filePath = filePath; }
+
+        public UsageTotals getTotals() { return totals; }
+        public void setTotals(UsageTotals totals) { this.totals = totals; }
+    }
+
+    /**
+     * Latency distribution of the calls of one dimension, in milliseconds
+     */
+    public static class LatencySummary {
+        @JsonProperty("calls")
+        private long calls;
+
+        @JsonProperty("mean")
+        private double mean;
+
+        @JsonProperty("p50")
+        private long p50;
+
+        @JsonProperty("p90")
+        private long p90;
+
+        @JsonProperty("p99")
+        private long p99;
+
+        @JsonProperty("max")
+        private long max;
+
+        // Constructors
+        public LatencySummary() {}
+
+        // Getters and Setters
+        public long getCalls() { return calls; }
+        public void setCalls(long calls) { this.calls = calls; }
+
+        public double getMean() { return mean; }
+        public void setMean(double mean) { this.mean = mean; }
+
+        public long getP50() { return p50; }
+        public void setP50(long p50) { this.p50 = p50; }
+
+        public long getP90() { return p90; }
+        public void setP90(long p90) { this.p90 = p90; }
+
+        public long getP99() { return p99; }
+        public void setP99(long p99) { this.p99 = p99; }
+
+        public long getMax() { return max; }
+        public void setMax(long max) { this.max = max; }
+    }
+}
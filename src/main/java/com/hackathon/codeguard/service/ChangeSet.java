@@ -0,0 +1,190 @@
+package com.hackathon.codeguard.service;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Files changed since a git reference, with the diff hunks of each file
+ */
+public class ChangeSet {
+
+    private final String baseRef;
+    private final String baseCommit;
+    private final Map<Path, FileChange> changes = new LinkedHashMap<>();
+
+    public ChangeSet(String baseRef, String baseCommit) {
+        this.baseRef = baseRef;
+        this.baseCommit = baseCommit;
+    }
+
+    void addFile(Path file, String baseBlobId, List<Hunk> hunks) {
+        changes.put(normalize(file), new FileChange(baseBlobId, hunks));
+    }
+
+    void addNewFile(Path file) {
+        changes.put(normalize(file), new FileChange(null, null));
+    }
+
+    public String getBaseRef() { return baseRef; }
+    public String getBaseCommit() { return baseCommit; }
+
+    public Set<Path> getFiles() {
+        return Collections.unmodifiableSet(changes.keySet());
+    }
+
+    public boolean contains(Path file) {
+        return changes.containsKey(normalize(file));
+    }
+
+    /**
+     * Git blob id of the file at the base commit, or null if the file is new
+     */
+    public String getBaseBlobId(Path file) {
+        FileChange change = changes.get(normalize(file));
+        return change != null ? change.baseBlobId : null;
+    }
+
+    /**
+     * Diff hunks of a modified file, or an empty list for new and unchanged files
+     */
+    public List<Hunk> getHunks(Path file) {
+        FileChange change = changes.get(normalize(file));
+        return change != null && change.hunks != null ? change.hunks : List.of();
+    }
+
+    /**
+     * Changed line ranges of the file in its current version, empty if the file did not change
+     */
+    public List<LineRange> getChangedLines(Path file) {
+        FileChange change = changes.get(normalize(file));
+        if (change == null) {
+            return List.of();
+        }
+        if (change.hunks == null) {
+            return List.of(LineRange.wholeFile());
+        }
+        List<LineRange> ranges = new ArrayList<>(change.hunks.size());
+        for (Hunk hunk : change.hunks) {
+            ranges.add(hunk.newRange());
+        }
+        return ranges;
+    }
+
+    public boolean isChangedLine(Path file, int line) {
+        return getChangedLines(file).stream().anyMatch(range -> range.contains(line));
+    }
+
+    private static Path normalize(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+
+    private static final class FileChange {
+        final String baseBlobId;
+        final List<Hunk> hunks; // null for files that are new
+
+        FileChange(String baseBlobId, List<Hunk> hunks) {
+            this.baseBlobId = baseBlobId;
+            this.hunks = hunks;
+        }
+    }
+
+    /**
+     * One hunk of a zero-context unified diff: old lines replaced by new lines
+     */
+    public static final class Hunk {
+        private final int oldStart;
+        private final int oldCount;
+        private final int newStart;
+        private final int newCount;
+
+        public Hunk(int oldStart, int oldCount, int newStart, int newCount) {
+            this.oldStart = oldStart;
+            this.oldCount = oldCount;
+            this.newStart = newStart;
+            this.newCount = newCount;
+        }
+
+        public int getOldStart() { return oldStart; }
+        public int getOldCount() { return oldCount; }
+        public int getNewStart() { return newStart; }
+        public int getNewCount() { return newCount; }
+
+        /**
+         * Lines of the new version touched by the hunk; a pure deletion touches the lines on either side
+         */
+        public LineRange newRange() {
+            return newCount == 0
+                ? new LineRange(Math.max(1, newStart), newStart + 1)
+                : new LineRange(newStart, newStart + newCount - 1);
+        }
+
+        /**
+         * Maps a line of the old version to the new version, or returns null if the hunks replaced or removed it
+         */
+        public static Integer mapOldLine(List<Hunk> hunks, int oldLine) {
+            int offset = 0;
+            for (Hunk hunk : hunks) {
+                if (hunk.oldCount > 0 && oldLine >= hunk.oldStart && oldLine < hunk.oldStart + hunk.oldCount) {
+                    return null;
+                }
+                // Insertions follow old line oldStart; replacements cover [oldStart, oldStart + oldCount)
+                int lastOldLineBefore = hunk.oldCount == 0 ? hunk.oldStart : hunk.oldStart + hunk.oldCount - 1;
+                if (lastOldLineBefore < oldLine) {
+                    offset += hunk.newCount - hunk.oldCount;
+                }
+            }
+            return oldLine + offset;
+        }
+    }
+
+    /**
+     * Inclusive range of 1-based line numbers
+     */
+    public static final class LineRange {
+        private final int start;
+        private final int end;
+
+        public LineRange(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * The whole file, used for files that are new
+         */
+        public static LineRange wholeFile() {
+            return new LineRange(1, Integer.MAX_VALUE);
+        }
+
+        public int getStart() { return start; }
+        public int getEnd() { return end; }
+
+        public boolean contains(int line) {
+            return line >= start && line <= end;
+        }
+
+        public int length() {
+            return end - start + 1;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof LineRange range && range.start == start && range.end == end;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * start + end;
+        }
+
+        @Override
+        public String toString() {
+            return start + "-" + end;
+        }
+    }
+}
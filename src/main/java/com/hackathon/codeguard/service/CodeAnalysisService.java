@@ -1,17 +1,49 @@
 package com.hackathon.codeguard.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hackathon.codeguard.cli.CodeGuardCLI.AnalysisMode;
+import com.hackathon.codeguard.model.AnalysisOptions;
 import com.hackathon.codeguard.model.AnalysisResult;
 import com.hackathon.codeguard.model.FileAnalysisResult;
+import com.hackathon.codeguard.service.batch.BatchCoordinator;
+import com.hackathon.codeguard.service.batch.BatchPendingException;
+import com.hackathon.codeguard.service.batch.BatchRequestCollector;
+import com.hackathon.codeguard.service.batch.BatchState;
+import com.hackathon.codeguard.service.cache.AnalysisManifest;
 import com.hackathon.codeguard.service.openai.OpenAIAnalysisService;
+import com.hackathon.codeguard.service.source.DuplicateDetector;
+import com.hackathon.codeguard.service.source.DuplicateDetector.Duplicate;
+import com.hackathon.codeguard.service.source.LocalMetricsAnalyzer;
+import com.hackathon.codeguard.service.usage.BudgetManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * Main service for coordinating code analysis using OpenAI APIs
@@ -19,46 +51,204 @@ import java.util.ArrayList;
 public class CodeAnalysisService {
     
     private static final Logger logger = LoggerFactory.getLogger(CodeAnalysisService.class);
+    private static final Duration BATCH_POLL_INTERVAL = Duration.ofSeconds(30);
+    // Commits older than this do not count towards a file's churn
+    private static final int CHURN_DAYS = 180;
+    // A file counts as small for packing when its code takes at most this share of a pack
+    private static final int SMALL_FILE_SHARE = 4;
     
     private final OpenAIAnalysisService openAIService;
     private final FileProcessingService fileService;
+    private final AnalysisOptions options;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<FileCompletionListener> completionListeners = new CopyOnWriteArrayList<>();
 
     public CodeAnalysisService() {
-        this.openAIService = new OpenAIAnalysisService();
-        this.fileService = new FileProcessingService();
+        this(new AnalysisOptions());
+    }
+
+    public CodeAnalysisService(AnalysisOptions options) {
+        this(options, new OpenAIAnalysisService(options), new FileProcessingService());
+    }
+
+    CodeAnalysisService(AnalysisOptions options, OpenAIAnalysisService openAIService, FileProcessingService fileService) {
+        this.options = options;
+        this.openAIService = openAIService;
+        this.fileService = fileService;
+    }
+
+    public OpenAIAnalysisService getOpenAIService() {
+        return openAIService;
     }
 
     /**
-     * Analyzes multiple code files and returns comprehensive results
+     * Registers a listener told about every file of later runs as soon as it is done
+     */
+    public void addCompletionListener(FileCompletionListener listener) {
+        completionListeners.add(listener);
+    }
+
+    /**
+     * Analyzes multiple code files concurrently and returns comprehensive results.
+     * File results keep the order of the input list regardless of completion order.
      */
     public AnalysisResult analyzeFiles(List<Path> filePaths, AnalysisMode mode, boolean ktEnabled) throws Exception {
-        logger.info("Starting analysis of {} files in {} mode", filePaths.size(), mode);
+        return analyzeFiles(filePaths, mode, ktEnabled, null);
+    }
+
+    /**
+     * Same as {@link #analyzeFiles(List, AnalysisMode, boolean)} for files changed since a git reference.
+     * The change set drives the changed-lines issue filter and diff-hunk prompts when those options are on.
+     * In batch mode this throws {@link BatchPendingException} while the submitted batch is still running.
+     */
+    public AnalysisResult analyzeFiles(List<Path> filePaths, AnalysisMode mode, boolean ktEnabled,
+                                       ChangeSet changeSet) throws Exception {
+        int parallelism = Math.max(1, Math.min(options.getParallelism(), filePaths.size()));
+        logger.info("Starting analysis of {} files in {} mode (parallelism {})", filePaths.size(), mode, parallelism);
         
         List<FileAnalysisResult> fileResults = new ArrayList<>();
-        double totalScore = 0.0;
-
-        for (Path filePath : filePaths) {
-            try {
-                logger.debug("Analyzing file: {}", filePath);
-                
-                // Read file content
-                String fileContent = fileService.readFileContent(filePath);
-                
-                // Analyze with OpenAI
-                FileAnalysisResult result = openAIService.analyzeCodeFile(filePath, fileContent, mode, ktEnabled);
-                fileResults.add(result);
-                totalScore += result.getFinalScore();
-                
-            } catch (Exception e) {
-                logger.warn("Error analyzing file {}: {}", filePath, e.getMessage());
+        Map<String, String> failedFiles = new LinkedHashMap<>();
+        AnalysisManifest manifest = options.isIncremental() ? AnalysisManifest.load(Paths.get(options.getManifestPath())) : null;
+        AtomicInteger reused = new AtomicInteger();
+        
+        // Copies of another file in the run are not analyzed; they take over that file's result
+        Map<Path, Duplicate> duplicates = options.isDeduplicate() ? findDuplicates(filePaths, mode) : Map.of();
+        List<Path> toAnalyze = filePaths.stream()
+            .filter(path -> !duplicates.containsKey(path))
+            .collect(Collectors.toCollection(ArrayList::new));
+        
+        // With a budget, files are sent until it is spent, by default in order of expected value per token
+        BudgetManager budget = createBudget();
+        Map<Path, BudgetManager.Estimate> estimates = budget != null ? estimateCosts(toAnalyze, ktEnabled) : Map.of();
+        if (budget != null) {
+            logger.info("Run budget is {}; {} files estimated at ~{} tokens in total", budget, toAnalyze.size(),
+                estimates.values().stream().mapToLong(BudgetManager.Estimate::totalTokens).sum());
+        }
+        if (options.isRiskFirst() || mode.isQualityGate()) {
+            // A failing gate shows up sooner when the riskiest files go first
+            prioritizeByRisk(toAnalyze, manifest);
+        } else if (budget != null) {
+            budget.prioritize(toAnalyze, estimates);
+        }
+        
+        // The batch is forgotten only once the analysis below has used its responses
+        BatchCoordinator batch = options.isBatch()
+            ? prepareBatchResponses(toAnalyze, mode, ktEnabled, manifest, changeSet, budget, estimates) : null;
+        // Packing is left out where the per-file request shape matters: batches, budgets and diff-hunk prompts
+        Map<Path, FilePack> packs = options.isPackSmallFiles() && !options.isBatch() && budget == null
+            && !(changeSet != null && options.isDiffHunks())
+            ? planPacks(toAnalyze, mode, ktEnabled, manifest) : Map.of();
+        
+        ExecutorService executor = createFileExecutor(parallelism);
+        Map<Path, Future<FileAnalysisResult>> futures = new ConcurrentHashMap<>();
+        // In gate modes the gate is decided as soon as the outstanding files can no longer change it
+        AtomicBoolean gateStop = new AtomicBoolean();
+        List<FileCompletionListener> listeners = new ArrayList<>(completionListeners);
+        QualityGateEvaluator gate = null;
+        if (options.getGateThreshold() != null) {
+            gate = new QualityGateEvaluator(options.getGateThreshold(), filePaths.size(), decision -> {
+                logger.info("Quality gate {} after {} of {} files (final score between {} and {}, threshold {})",
+                    decision.isPassed() ? "passed" : "failed", decision.getFilesCompleted(), decision.getTotalFiles(),
+                    String.format("%.1f", decision.getLowestPossibleScore()),
+                    String.format("%.1f", decision.getHighestPossibleScore()), decision.getThreshold());
+                completionListeners.forEach(listener -> listener.onGateDecided(decision));
+                if (decision.isEarly() && !options.isFinishInBackground()) {
+                    gateStop.set(true);
+                }
+            });
+            listeners.add(gate);
+        }
+        List<String> gateSkipped = new ArrayList<>();
+        try {
+            Map<Path, List<Path>> copies = new HashMap<>();
+            duplicates.forEach((copy, duplicate) ->
+                copies.computeIfAbsent(duplicate.representative(), key -> new ArrayList<>()).add(copy));
+            Map<Path, FileAnalysisResult> copyResults = new ConcurrentHashMap<>();
+            
+            for (Path filePath : toAnalyze) {
+                futures.put(filePath, executor.submit(() -> {
+                    if (gateStop.get()) {
+                        throw new CancellationException("Quality gate already decided");
+                    }
+                    List<Path> fileCopies = copies.getOrDefault(filePath, List.of());
+                    FileAnalysisResult result;
+                    try {
+                        result = analyzeFile(filePath, mode, ktEnabled, manifest, reused, changeSet, budget, estimates, packs);
+                    } catch (Exception e) {
+                        if (!gateStop.get()) {
+                            notifyFailed(listeners, filePath, e);
+                            fileCopies.forEach(copy -> notifyFailed(listeners, copy, e));
+                            cancelOnGateStop(gateStop, futures, filePath);
+                        }
+                        throw e;
+                    }
+                    if (gateStop.get()) {
+                        // Cancelled while finishing; the gate was decided without this file
+                        throw new CancellationException("Quality gate already decided");
+                    }
+                    notifyCompleted(listeners, result);
+                    // Copies are done as soon as their representative is
+                    for (Path copy : fileCopies) {
+                        FileAnalysisResult copyResult = resultForDuplicate(copy, duplicates.get(copy), result);
+                        copyResults.put(copy, copyResult);
+                        notifyCompleted(listeners, copyResult);
+                    }
+                    cancelOnGateStop(gateStop, futures, filePath);
+                    return result;
+                }));
             }
+            
+            // Join in input order so results are deterministic
+            for (Path filePath : filePaths) {
+                Duplicate duplicate = duplicates.get(filePath);
+                try {
+                    if (duplicate == null) {
+                        fileResults.add(futures.get(filePath).get());
+                    } else {
+                        futures.get(duplicate.representative()).get();
+                        fileResults.add(copyResults.get(filePath));
+                    }
+                } catch (CancellationException e) {
+                    gateSkipped.add(filePath.toString());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof CancellationException) {
+                        gateSkipped.add(filePath.toString());
+                        continue;
+                    }
+                    logger.warn("Error analyzing file {}: {}", filePath, cause.getMessage());
+                    failedFiles.put(filePath.toString(), String.valueOf(cause.getMessage()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Exception("Analysis interrupted", e);
+        } finally {
+            executor.shutdownNow();
         }
 
-        // Calculate overall metrics
-        double overallScore = fileResults.isEmpty() ? 0.0 : totalScore / fileResults.size();
+        if (manifest != null) {
+            logger.info("Incremental run: reused {} unchanged files, analyzed {}", reused.get(), toAnalyze.size() - reused.get());
+            saveManifest(manifest);
+        }
+        if (batch != null) {
+            batch.clearState();
+        }
+
+        if (changeSet != null && options.isChangedLinesOnly()) {
+            restrictIssuesToChangedLines(fileResults, changeSet);
+        }
+
+        // Calculate overall metrics over reused and freshly analyzed files alike; files skipped for the budget have no real scores
+        List<FileAnalysisResult> scoredResults = fileResults.stream()
+            .filter(file -> !file.isBudgetSkipped())
+            .collect(Collectors.toList());
+        double totalScore = scoredResults.stream().mapToDouble(FileAnalysisResult::getFinalScore).sum();
+        double overallScore = scoredResults.isEmpty() ? 0.0 : totalScore / scoredResults.size();
         
         // Create summary
-        AnalysisResult.AnalysisSummary summary = createSummary(fileResults, overallScore);
+        AnalysisResult.AnalysisSummary summary = createSummary(scoredResults, overallScore);
+        summary.setTotalFiles(fileResults.size());
         
         // Create final result
         AnalysisResult result = new AnalysisResult(
@@ -67,11 +257,439 @@ public class CodeAnalysisService {
             summary,
             LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
         );
+        result.setFailedFiles(failedFiles);
+        result.setCoveredFiles(scoredResults.stream().map(FileAnalysisResult::getFilepath).collect(Collectors.toList()));
+        result.setSkippedFiles(fileResults.stream()
+            .filter(FileAnalysisResult::isBudgetSkipped)
+            .map(FileAnalysisResult::getFilepath)
+            .collect(Collectors.toList()));
+        if (!result.getSkippedFiles().isEmpty()) {
+            logger.warn("The run budget of {} covered {} files; {} files only have local results",
+                budget, scoredResults.size(), result.getSkippedFiles().size());
+        }
+        if (gate != null && gate.getDecision() != null) {
+            result.setGate(gate.getDecision());
+            result.getGate().setSkippedFiles(gateSkipped);
+            if (!gateSkipped.isEmpty()) {
+                logger.info("Stopped early: {} files were not analyzed because the quality gate was already decided",
+                    gateSkipped.size());
+            }
+        }
+        if (openAIService.getUsageTracker() != null) {
+            result.setUsage(openAIService.getUsageTracker().report());
+        }
+
+        logger.info("Analysis complete. Overall score: {} ({} files failed)", overallScore, failedFiles.size());
+        if (openAIService.getResponseCache() != null) {
+            logger.info("{}", openAIService.getResponseCache());
+        }
+        return result;
+    }
+
+    /**
+     * Maps every file that copies an earlier file of the list to that file. Unreadable files are left out,
+     * so their analysis reports the read error. A gate decides on every file's own findings, so gate modes
+     * only reuse exact copies.
+     */
+    private Map<Path, Duplicate> findDuplicates(List<Path> filePaths, AnalysisMode mode) {
+        int distance = mode.isQualityGate() ? 0 : options.getNearDuplicateDistance();
+        if (distance != options.getNearDuplicateDistance()) {
+            logger.info("Near-duplicate reuse is off in {} mode, only exact copies reuse an analysis", mode);
+        }
+        DuplicateDetector detector = new DuplicateDetector(distance);
+        for (Path filePath : filePaths) {
+            try {
+                detector.add(filePath, fileService.readFileContent(filePath));
+            } catch (IOException e) {
+                logger.debug("Could not read {} for duplicate detection: {}", filePath, e.getMessage());
+            }
+        }
+        Map<Path, Duplicate> duplicates = detector.getDuplicates();
+        if (!duplicates.isEmpty()) {
+            long exact = duplicates.values().stream().filter(Duplicate::exact).count();
+            logger.info("Reusing analyses for {} duplicate files ({} exact, {} near copies)",
+                duplicates.size(), exact, duplicates.size() - exact);
+        }
+        return duplicates;
+    }
+
+    /**
+     * Copies the representative's result for a duplicate. For near copies, issue lines are moved to the
+     * matching line of the copy, or cleared when it has none, and local metrics are recomputed.
+     */
+    private FileAnalysisResult resultForDuplicate(Path filePath, Duplicate duplicate, FileAnalysisResult original) {
+        FileAnalysisResult result = objectMapper.convertValue(original, FileAnalysisResult.class);
+        result.setFilename(filePath.getFileName().toString());
+        result.setFilepath(filePath.toString());
+        result.setDuplicateOf(duplicate.representative().toString());
+        result.setExactDuplicate(duplicate.exact());
+        if (duplicate.exact()) {
+            return result;
+        }
+        try {
+            String originalContent = fileService.readFileContent(duplicate.representative());
+            String content = fileService.readFileContent(filePath);
+            if (result.getIssues() != null) {
+                for (FileAnalysisResult.CodeIssue issue : result.getIssues()) {
+                    issue.setLineNumber(DuplicateDetector.correspondingLine(originalContent, content, issue.getLineNumber()));
+                }
+            }
+            if (LocalMetricsAnalyzer.supports(fileService.determineProgrammingLanguage(filePath))) {
+                result.setMetrics(new LocalMetricsAnalyzer().analyze(content));
+            }
+        } catch (IOException e) {
+            logger.debug("Could not adapt the result of {} for {}: {}", duplicate.representative(), filePath, e.getMessage());
+        }
+        return result;
+    }
+
+    private void notifyCompleted(List<FileCompletionListener> listeners, FileAnalysisResult result) {
+        for (FileCompletionListener listener : listeners) {
+            listener.onFileCompleted(result);
+        }
+    }
+
+    private void notifyFailed(List<FileCompletionListener> listeners, Path filePath, Throwable cause) {
+        for (FileCompletionListener listener : listeners) {
+            listener.onFileFailed(filePath, cause);
+        }
+    }
+
+    /**
+     * Once the gate is decided, cancels the outstanding files, interrupting those in flight. The file
+     * whose completion decided the gate is left alone so its own result is kept.
+     */
+    private void cancelOnGateStop(AtomicBoolean gateStop, Map<Path, Future<FileAnalysisResult>> futures, Path current) {
+        if (!gateStop.get()) {
+            return;
+        }
+        futures.forEach((path, future) -> {
+            if (!path.equals(current)) {
+                future.cancel(true);
+            }
+        });
+    }
+
+    /**
+     * Orders the files by local risk score, riskiest first. Ties keep the given order.
+     */
+    private void prioritizeByRisk(List<Path> filePaths, AnalysisManifest manifest) {
+        if (filePaths.isEmpty()) {
+            return;
+        }
+        Map<Path, Integer> commitCounts;
+        try {
+            commitCounts = new GitChangeSetService().commitCounts(filePaths.get(0).toAbsolutePath().getParent(), CHURN_DAYS);
+        } catch (IOException e) {
+            logger.debug("No git history for churn, ranking risk without it: {}", e.getMessage());
+            commitCounts = Map.of();
+        }
+        Path manifestPath = Paths.get(options.getManifestPath());
+        AnalysisManifest previous = manifest != null ? manifest
+            : Files.exists(manifestPath) ? AnalysisManifest.load(manifestPath) : null;
+        RiskScorer scorer = new RiskScorer(commitCounts, previous);
+
+        Map<Path, Double> risk = new HashMap<>();
+        for (Path filePath : filePaths) {
+            try {
+                risk.put(filePath, scorer.score(filePath, fileService.readFileContent(filePath)));
+            } catch (IOException e) {
+                risk.put(filePath, 0.0);
+            }
+        }
+        filePaths.sort(Comparator.comparingDouble((Path filePath) -> risk.get(filePath)).reversed());
+        logger.info("Analyzing the riskiest files first, starting with {} (risk {})",
+            filePaths.get(0).getFileName(), String.format("%.0f", risk.get(filePaths.get(0))));
+    }
+
+    /**
+     * The budget of the run, or null when the options set no limit
+     */
+    private BudgetManager createBudget() {
+        if (options.getTokenBudget() <= 0 && options.getCostBudgetUsd() <= 0) {
+            return null;
+        }
+        return new BudgetManager(options.getTokenBudget(), options.getCostBudgetUsd(),
+            options.getPromptPricePerMillion(), options.getCompletionPricePerMillion(), openAIService.getUsageTracker());
+    }
 
-        logger.info("Analysis complete. Overall score: {}", overallScore);
+    private Map<Path, BudgetManager.Estimate> estimateCosts(List<Path> filePaths, boolean ktEnabled) {
+        Map<Path, BudgetManager.Estimate> estimates = new HashMap<>();
+        for (Path filePath : filePaths) {
+            try {
+                estimates.put(filePath, openAIService.estimateCost(filePath, fileService.readFileContent(filePath), ktEnabled));
+            } catch (IOException e) {
+                logger.debug("Could not read {} to estimate its cost: {}", filePath, e.getMessage());
+            }
+        }
+        return estimates;
+    }
+
+    private FileAnalysisResult analyzeFile(Path filePath, AnalysisMode mode, boolean ktEnabled,
+                                           AnalysisManifest manifest, AtomicInteger reused, ChangeSet changeSet,
+                                           BudgetManager budget, Map<Path, BudgetManager.Estimate> estimates,
+                                           Map<Path, FilePack> packs) throws Exception {
+        logger.debug("Analyzing file: {}", filePath);
+        
+        // Read file content
+        String fileContent = fileService.readFileContent(filePath);
+        
+        if (manifest == null) {
+            // Analyze with OpenAI
+            return withinBudget(filePath, fileContent, budget, estimates,
+                () -> analyzeWholeFile(filePath, fileContent, mode, ktEnabled, packs));
+        }
+        
+        AnalysisManifest.Entry entry = manifestEntry(fileContent, mode, ktEnabled);
+        FileAnalysisResult previous = manifest.lookup(filePath, entry);
+        if (previous != null) {
+            logger.debug("Reusing previous analysis of unchanged file {}", filePath);
+            reused.incrementAndGet();
+            return previous;
+        }
+        
+        FileAnalysisResult result = withinBudget(filePath, fileContent, budget, estimates,
+            () -> analyzeChangedFile(filePath, fileContent, mode, ktEnabled, manifest, entry, changeSet, packs));
+        if (!result.isDegraded() && !result.isBudgetSkipped() && !openAIService.isCollectingBatch()) {
+            // Placeholder results are never reused, so the file is analyzed again next run
+            manifest.record(filePath, entry.withResult(result));
+        }
         return result;
     }
 
+    /**
+     * Runs the analysis if the file's estimated cost fits in the budget, otherwise returns a local-only result
+     */
+    private FileAnalysisResult withinBudget(Path filePath, String fileContent, BudgetManager budget,
+                                            Map<Path, BudgetManager.Estimate> estimates,
+                                            Callable<FileAnalysisResult> analysis) throws Exception {
+        if (budget == null) {
+            return analysis.call();
+        }
+        BudgetManager.Estimate estimate = estimates.get(filePath);
+        if (estimate == null) {
+            // Assume the most expensive analysis for a file that could not be estimated up front
+            estimate = openAIService.estimateCost(filePath, fileContent, true);
+        }
+        if (!budget.tryReserve(filePath, estimate)) {
+            logger.info("Skipping {}: ~{} more tokens would exceed the run budget of {}",
+                filePath, estimate.totalTokens(), budget);
+            FileAnalysisResult skipped = openAIService.localOnlyResult(filePath, fileContent,
+                "Not analyzed: the run's LLM budget was spent, neutral score assigned");
+            skipped.setDegraded(false);
+            skipped.setBudgetSkipped(true);
+            return skipped;
+        }
+        try {
+            return analysis.call();
+        } finally {
+            // While a batch is collected nothing is spent, so reservations are kept as the batch's budget
+            if (!openAIService.isCollectingBatch()) {
+                budget.release(filePath);
+            }
+        }
+    }
+
+    /**
+     * Sends only the changed hunks when the base version of the file was analyzed before, otherwise the whole file
+     */
+    private FileAnalysisResult analyzeChangedFile(Path filePath, String fileContent, AnalysisMode mode, boolean ktEnabled,
+                                                  AnalysisManifest manifest, AnalysisManifest.Entry entry,
+                                                  ChangeSet changeSet, Map<Path, FilePack> packs) throws Exception {
+        FileAnalysisResult result = null;
+        if (changeSet != null && options.isDiffHunks()) {
+            // Only the changed hunks are sent when the base version of the file was analyzed before
+            FileAnalysisResult base = manifest.lookupVersion(filePath, entry, changeSet.getBaseBlobId(filePath));
+            if (base != null) {
+                result = openAIService.analyzeChangedRegions(filePath, fileContent, mode, base, changeSet.getHunks(filePath));
+            }
+        }
+        if (result == null) {
+            result = analyzeWholeFile(filePath, fileContent, mode, ktEnabled, packs);
+        }
+        return result;
+    }
+
+    /**
+     * Takes the file's result from its pack when the packed answer had a usable entry for it, otherwise analyzes it alone
+     */
+    private FileAnalysisResult analyzeWholeFile(Path filePath, String fileContent, AnalysisMode mode, boolean ktEnabled,
+                                                Map<Path, FilePack> packs) throws Exception {
+        FilePack pack = packs.get(filePath);
+        FileAnalysisResult packed = pack != null ? pack.resultFor(filePath, mode, ktEnabled) : null;
+        return packed != null ? packed : openAIService.analyzeCodeFile(filePath, fileContent, mode, ktEnabled);
+    }
+
+    private AnalysisManifest.Entry manifestEntry(String fileContent, AnalysisMode mode, boolean ktEnabled) {
+        return new AnalysisManifest.Entry(AnalysisManifest.contentHash(fileContent),
+            openAIService.getPromptVersion(), openAIService.getModel(), mode + (ktEnabled ? "+kt" : ""));
+    }
+
+    /**
+     * Groups consecutive small files into packs of at most the pack token limit, without two files of the
+     * same name in a pack since entries are checked by file name. Files the manifest can reuse stay out,
+     * and a file left alone in its pack is analyzed as usual.
+     */
+    private Map<Path, FilePack> planPacks(List<Path> filePaths, AnalysisMode mode, boolean ktEnabled,
+                                          AnalysisManifest manifest) {
+        long smallFileTokens = Math.max(1, options.getPackTokens() / SMALL_FILE_SHARE);
+        int maxFiles = openAIService.maxFilesPerPack(ktEnabled);
+        Map<Path, FilePack> packs = new HashMap<>();
+        Map<Path, String> pack = new LinkedHashMap<>();
+        Set<String> names = new HashSet<>();
+        long packTokens = 0;
+        for (Path filePath : filePaths) {
+            String content;
+            try {
+                content = fileService.readFileContent(filePath);
+            } catch (IOException e) {
+                continue;
+            }
+            if (manifest != null && manifest.lookup(filePath, manifestEntry(content, mode, ktEnabled)) != null) {
+                continue;
+            }
+            long tokens = openAIService.packedTokens(filePath, content);
+            if (tokens > smallFileTokens) {
+                continue;
+            }
+            String name = filePath.getFileName().toString();
+            if (packTokens + tokens > options.getPackTokens() || pack.size() >= maxFiles || names.contains(name)) {
+                addPack(packs, pack);
+                pack = new LinkedHashMap<>();
+                names.clear();
+                packTokens = 0;
+            }
+            pack.put(filePath, content);
+            names.add(name);
+            packTokens += tokens;
+        }
+        addPack(packs, pack);
+        if (!packs.isEmpty()) {
+            logger.info("Packing {} small files into {} requests", packs.size(), new HashSet<>(packs.values()).size());
+        }
+        return packs;
+    }
+
+    private void addPack(Map<Path, FilePack> packs, Map<Path, String> contents) {
+        if (contents.size() < 2) {
+            return;
+        }
+        FilePack pack = new FilePack(contents);
+        contents.keySet().forEach(filePath -> packs.put(filePath, pack));
+    }
+
+    /**
+     * Small files analyzed in one request, sent by whichever of them is analyzed first while the others wait for it
+     */
+    private final class FilePack {
+        private final Map<Path, String> contents;
+        private Map<Path, FileAnalysisResult> results;
+
+        FilePack(Map<Path, String> contents) {
+            this.contents = contents;
+        }
+
+        synchronized FileAnalysisResult resultFor(Path filePath, AnalysisMode mode, boolean ktEnabled) throws InterruptedException {
+            if (results == null) {
+                try {
+                    results = openAIService.analyzePackedFiles(contents, mode, ktEnabled);
+                } catch (Exception e) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedException("Packed analysis interrupted");
+                    }
+                    logger.warn("Packed analysis of {} files failed, analyzing them separately: {}", contents.size(), e.getMessage());
+                    results = Map.of();
+                }
+            }
+            return results.get(filePath);
+        }
+    }
+
+    /**
+     * Makes the joined responses of a batch available to the analysis. Without a pending batch, every
+     * request the files need is collected by a dry analysis pass and submitted first. Returns the
+     * coordinator of the joined batch, or null when nothing was submitted.
+     */
+    private BatchCoordinator prepareBatchResponses(List<Path> filePaths, AnalysisMode mode, boolean ktEnabled,
+                                       AnalysisManifest manifest, ChangeSet changeSet, BudgetManager budget,
+                                       Map<Path, BudgetManager.Estimate> estimates) throws Exception {
+        BatchCoordinator coordinator = new BatchCoordinator(openAIService.getBatchClient(),
+            Paths.get(options.getBatchStatePath()), BATCH_POLL_INTERVAL,
+            Duration.ofMinutes(options.getBatchMaxWaitMinutes()));
+        BatchState state = coordinator.loadState();
+        if (state != null) {
+            logger.info("Resuming batch {} submitted at {}", state.getBatchId(), state.getSubmittedAt());
+        } else {
+            BatchRequestCollector requests = collectBatchRequests(filePaths, mode, ktEnabled, manifest, changeSet, budget, estimates);
+            if (budget != null) {
+                // The batch is paid for on submission; the live pass answers exactly the files it covers
+                budget.freeze();
+            }
+            if (requests.isEmpty()) {
+                logger.info("Every request is cached or reused, nothing to submit as a batch");
+                return null;
+            }
+            state = coordinator.submit(requests);
+        }
+        openAIService.useBatchResponses(coordinator.awaitResponses(state));
+        return coordinator;
+    }
+
+    private BatchRequestCollector collectBatchRequests(List<Path> filePaths, AnalysisMode mode, boolean ktEnabled,
+                                                       AnalysisManifest manifest, ChangeSet changeSet,
+                                                       BudgetManager budget, Map<Path, BudgetManager.Estimate> estimates) {
+        BatchRequestCollector requests;
+        openAIService.startBatchCollection();
+        try {
+            // No request is sent, so the files are walked sequentially and their placeholder results dropped
+            for (Path filePath : filePaths) {
+                try {
+                    analyzeFile(filePath, mode, ktEnabled, manifest, new AtomicInteger(), changeSet, budget, estimates, Map.of());
+                } catch (Exception e) {
+                    logger.warn("Could not collect batch requests for {}: {}", filePath, e.getMessage());
+                }
+            }
+        } finally {
+            requests = openAIService.finishBatchCollection();
+        }
+        logger.info("Collected {} requests for a batch from {} files", requests.size(), filePaths.size());
+        return requests;
+    }
+
+    private void restrictIssuesToChangedLines(List<FileAnalysisResult> fileResults, ChangeSet changeSet) {
+        int dropped = 0;
+        for (FileAnalysisResult result : fileResults) {
+            if (result.getIssues() == null) {
+                continue;
+            }
+            Path file = Paths.get(result.getFilepath());
+            List<FileAnalysisResult.CodeIssue> kept = result.getIssues().stream()
+                .filter(issue -> issue.getLineNumber() == null || changeSet.isChangedLine(file, issue.getLineNumber()))
+                .collect(Collectors.toList());
+            dropped += result.getIssues().size() - kept.size();
+            result.setIssues(kept);
+        }
+        logger.info("Dropped {} issues outside the lines changed since {}", dropped, changeSet.getBaseRef());
+    }
+
+    private void saveManifest(AnalysisManifest manifest) {
+        manifest.pruneMissing();
+        try {
+            manifest.save();
+        } catch (IOException e) {
+            logger.warn("Could not save analysis manifest {}: {}", options.getManifestPath(), e.getMessage());
+        }
+    }
+
+    private ExecutorService createFileExecutor(int parallelism) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "code-guard-file-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     private AnalysisResult.AnalysisSummary createSummary(List<FileAnalysisResult> fileResults, double overallScore) {
         AnalysisResult.AnalysisSummary summary = new AnalysisResult.AnalysisSummary();
         
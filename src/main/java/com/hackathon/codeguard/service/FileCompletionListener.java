@@ -0,0 +1,22 @@
+package com.hackathon.codeguard.service;
+
+import com.hackathon.codeguard.model.FileAnalysisResult;
+import com.hackathon.codeguard.model.GateDecision;
+
+import java.nio.file.Path;
+
+/**
+ * Told about each file as soon as it is done, in completion order. Called from the analysis worker
+ * threads, so implementations must be thread-safe.
+ */
+public interface FileCompletionListener {
+
+    void onFileCompleted(FileAnalysisResult result);
+
+    default void onFileFailed(Path file, Throwable cause) {}
+
+    /**
+     * Called once when the quality gate is decided, possibly before every file is done
+     */
+    default void onGateDecided(GateDecision decision) {}
+}
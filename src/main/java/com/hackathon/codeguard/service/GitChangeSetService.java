@@ -0,0 +1,143 @@
+package com.hackathon.codeguard.service;
+
+import com.hackathon.codeguard.service.ChangeSet.Hunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Service for reading change sets from the local git repository
+ */
+public class GitChangeSetService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitChangeSetService.class);
+
+    // "@@ -12,3 +14,5 @@" with the counts optional
+    private static final Pattern HUNK_HEADER = Pattern.compile("^@@ -(\\d+)(?:,(\\d+))? \\+(\\d+)(?:,(\\d+))? @@");
+
+    /**
+     * Collects the files changed between the merge base of the reference and HEAD and the working tree,
+     * including uncommitted and untracked files
+     */
+    public ChangeSet changesSince(Path directory, String ref) throws IOException {
+        Path root = Path.of(git(directory, "rev-parse", "--show-toplevel").trim());
+        String baseCommit = git(root, "merge-base", ref, "HEAD").trim();
+        logger.info("Collecting changes since {} (merge base {})", ref, baseCommit);
+
+        ChangeSet changeSet = new ChangeSet(ref, baseCommit);
+        parseDiff(git(root, "-c", "core.quotePath=false", "diff", "--unified=0", "--full-index", "--no-color", "--no-ext-diff",
+            "--diff-filter=ACMR", baseCommit), root, changeSet);
+
+        String untracked = git(root, "-c", "core.quotePath=false", "ls-files", "--others", "--exclude-standard");
+        for (String line : untracked.split("\n")) {
+            if (!line.isBlank()) {
+                changeSet.addNewFile(root.resolve(line));
+            }
+        }
+        logger.info("{} files changed since {}", changeSet.getFiles().size(), ref);
+        return changeSet;
+    }
+
+    /**
+     * Counts the commits of the last days that touched each file, keyed by absolute path
+     */
+    public Map<Path, Integer> commitCounts(Path directory, int days) throws IOException {
+        Path root = Path.of(git(directory, "rev-parse", "--show-toplevel").trim());
+        String log = git(root, "-c", "core.quotePath=false", "log", "--since=" + days + ".days", "--format=", "--name-only");
+        Map<Path, Integer> counts = new HashMap<>();
+        for (String line : log.split("\n")) {
+            if (!line.isBlank()) {
+                counts.merge(root.resolve(line).toAbsolutePath().normalize(), 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Reads base blob ids, target file names and hunks from a zero-context unified diff
+     */
+    static void parseDiff(String diff, Path root, ChangeSet changeSet) {
+        Path currentFile = null;
+        String baseBlobId = null;
+        List<Hunk> hunks = new ArrayList<>();
+
+        for (String line : diff.split("\n")) {
+            if (line.startsWith("diff --git ")) {
+                addFile(changeSet, currentFile, baseBlobId, hunks);
+                currentFile = null;
+                baseBlobId = null;
+                hunks = new ArrayList<>();
+            } else if (line.startsWith("index ") && line.contains("..")) {
+                baseBlobId = line.substring(6, line.indexOf(".."));
+            } else if (line.startsWith("+++ ")) {
+                String target = line.substring(4);
+                currentFile = target.startsWith("b/") ? root.resolve(target.substring(2)) : null;
+            } else if (currentFile != null && line.startsWith("@@")) {
+                Matcher matcher = HUNK_HEADER.matcher(line);
+                if (matcher.find()) {
+                    hunks.add(new Hunk(
+                        Integer.parseInt(matcher.group(1)), count(matcher.group(2)),
+                        Integer.parseInt(matcher.group(3)), count(matcher.group(4))));
+                }
+            }
+        }
+        addFile(changeSet, currentFile, baseBlobId, hunks);
+    }
+
+    private static void addFile(ChangeSet changeSet, Path file, String baseBlobId, List<Hunk> hunks) {
+        if (file == null) {
+            return;
+        }
+        if (baseBlobId == null || baseBlobId.chars().allMatch(c -> c == '0')) {
+            changeSet.addNewFile(file);
+        } else {
+            changeSet.addFile(file, baseBlobId, hunks);
+        }
+    }
+
+    private static int count(String value) {
+        return value != null ? Integer.parseInt(value) : 1;
+    }
+
+    private String git(Path directory, String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.add("-C");
+        command.add(directory.toString());
+        command.addAll(List.of(args));
+
+        Process process = new ProcessBuilder(command).start();
+        CompletableFuture<String> stderr = CompletableFuture.supplyAsync(() -> readFully(process.getErrorStream()));
+        String stdout = readFully(process.getInputStream());
+        try {
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new IOException("git " + String.join(" ", args) + " failed: " + stderr.join().trim());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroy();
+            throw new IOException("Interrupted while running git", e);
+        }
+        return stdout;
+    }
+
+    private static String readFully(InputStream stream) {
+        try (stream) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+}
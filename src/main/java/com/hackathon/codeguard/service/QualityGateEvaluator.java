@@ -0,0 +1,68 @@
+package com.hackathon.codeguard.service;
+
+import com.hackathon.codeguard.model.FileAnalysisResult;
+import com.hackathon.codeguard.model.GateDecision;
+
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Decides the quality gate while files complete. The overall score is the mean final score of the
+ * analyzed files, so with sum S over k scored files and r files outstanding it ends between S/(k+r),
+ * if every outstanding file scores 0, and (S+100r)/(k+r), if every one scores 100. Files that fail or
+ * are skipped for the budget leave the mean and can only move it inside that range. The gate is
+ * decided once the whole range lies on one side of the threshold.
+ */
+public class QualityGateEvaluator implements FileCompletionListener {
+
+    private final double threshold;
+    private final int totalFiles;
+    private final Consumer<GateDecision> onDecided;
+    private int finished;
+    private int scored;
+    private double scoreSum;
+    private GateDecision decision;
+
+    public QualityGateEvaluator(double threshold, int totalFiles, Consumer<GateDecision> onDecided) {
+        this.threshold = threshold;
+        this.totalFiles = totalFiles;
+        this.onDecided = onDecided;
+    }
+
+    @Override
+    public synchronized void onFileCompleted(FileAnalysisResult result) {
+        finished++;
+        if (!result.isBudgetSkipped()) {
+            scored++;
+            scoreSum += result.getFinalScore();
+        }
+        evaluate();
+    }
+
+    @Override
+    public synchronized void onFileFailed(Path file, Throwable cause) {
+        finished++;
+        evaluate();
+    }
+
+    /**
+     * The decision, or null while the outstanding files could still change it
+     */
+    public synchronized GateDecision getDecision() {
+        return decision;
+    }
+
+    private void evaluate() {
+        if (decision != null) {
+            return;
+        }
+        int remaining = Math.max(0, totalFiles - finished);
+        int count = scored + remaining;
+        double lowest = count == 0 ? 0.0 : scoreSum / count;
+        double highest = count == 0 ? 0.0 : (scoreSum + 100.0 * remaining) / count;
+        if (lowest >= threshold || highest < threshold) {
+            decision = new GateDecision(lowest >= threshold, threshold, finished, totalFiles, lowest, highest);
+            onDecided.accept(decision);
+        }
+    }
+}
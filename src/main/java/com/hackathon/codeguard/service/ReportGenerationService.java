@@ -2,7 +2,9 @@ package com.hackathon.codeguard.service;
 
 import com.hackathon.codeguard.model.AnalysisResult;
 import com.hackathon.codeguard.model.FileAnalysisResult;
+import com.hackathon.codeguard.model.GateDecision;
 import com.hackathon.codeguard.model.ReportType;
+import com.hackathon.codeguard.model.UsageReport;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hackathon.codeguard.service.openai.OpenAIAnalysisService;
 import org.slf4j.Logger;
@@ -18,6 +20,7 @@ import java.util.Map;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.stream.Collectors;
 import java.util.Map;
 
 /**
@@ -27,6 +30,9 @@ public class ReportGenerationService {
     
     private static final Logger logger = LoggerFactory.getLogger(ReportGenerationService.class);
     
+    // Files listed in the usage section of the technical report
+    private static final int MAX_USAGE_FILES = 10;
+
     private final ObjectMapper objectMapper;
 
     public ReportGenerationService() {
@@ -56,6 +62,31 @@ public class ReportGenerationService {
         }
     }
 
+    /**
+     * Writes the LLM usage of the run to llm-usage.json next to the reports
+     */
+    public void generateUsageReport(UsageReport usage, String outputDir) throws IOException {
+        Path outputPath = Paths.get(outputDir);
+        Files.createDirectories(outputPath);
+        Path usageFile = outputPath.resolve("llm-usage.json");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(usageFile.toFile(), usage);
+        UsageReport.UsageTotals totals = usage.getTotals();
+        logger.info("LLM usage report generated: {} ({} calls, {} prompt and {} completion tokens, ~${})", usageFile,
+            totals.getCalls(), totals.getPromptTokens(), totals.getCompletionTokens(),
+            String.format("%.2f", totals.getEstimatedCostUsd()));
+    }
+
+    /**
+     * Writes the quality gate decision to quality-gate.json, as soon as it is made
+     */
+    public void generateGateReport(GateDecision decision, String outputDir) throws IOException {
+        Path outputPath = Paths.get(outputDir);
+        Files.createDirectories(outputPath);
+        Path gateFile = outputPath.resolve("quality-gate.json");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(gateFile.toFile(), decision);
+        logger.info("Quality gate decision written: {}", gateFile);
+    }
+
     private void generateJsonReport(AnalysisResult result, Path outputPath) throws IOException {
         Path jsonFile = outputPath.resolve("analysis-report.json");
         objectMapper.writerWithDefaultPrettyPrinter().writeValue(jsonFile.toFile(), result);
@@ -240,7 +271,7 @@ public class ReportGenerationService {
                     <td><span class="%s">%s</span></td>
                 </tr>
                 """,
-                file.getFilename(),
+                escapeHtml(file.getFilename()) + (file.isDegraded() ? " (degraded)" : file.isBudgetSkipped() ? " (skipped)" : ""),
                 file.getCodeQuality(),
                 escapeHtml(file.getCodeQualityReason() != null ? file.getCodeQualityReason() : "No detailed reasoning available"),
                 file.getSolid(),
@@ -428,6 +459,46 @@ public class ReportGenerationService {
             html.append("</ul>");
         }
 
+        // Files that could not be analyzed
+        if (result.getFailedFiles() != null && !result.getFailedFiles().isEmpty()) {
+            html.append("<h2>Files Not Analyzed</h2><ul>");
+            for (Map.Entry<String, String> failure : result.getFailedFiles().entrySet()) {
+                html.append("<li>").append(escapeHtml(failure.getKey()))
+                    .append(": ").append(escapeHtml(failure.getValue())).append("</li>");
+            }
+            html.append("</ul>");
+        }
+
+        // Files the run budget did not cover
+        if (result.getSkippedFiles() != null && !result.getSkippedFiles().isEmpty()) {
+            html.append("<h2>Files Skipped by Budget</h2>");
+            html.append(String.format("<p>The run's LLM budget covered %d files. These files only have local metrics "
+                + "and are not part of the overall score.</p><ul>", result.getCoveredFiles().size()));
+            for (String skipped : result.getSkippedFiles()) {
+                html.append("<li>").append(escapeHtml(skipped)).append("</li>");
+            }
+            html.append("</ul>");
+        }
+
+        // Copies whose analysis was taken over from another file
+        List<FileAnalysisResult> duplicates = result.getFileResults().stream()
+            .filter(file -> file.getDuplicateOf() != null)
+            .collect(Collectors.toList());
+        if (!duplicates.isEmpty()) {
+            html.append("<h2>Duplicate Files</h2>");
+            html.append("<p>These files copy another analyzed file, whose results were reused for them.</p><ul>");
+            for (FileAnalysisResult duplicate : duplicates) {
+                html.append("<li>").append(escapeHtml(duplicate.getFilepath()))
+                    .append(duplicate.isExactDuplicate() ? " is an exact copy of " : " is a near copy of ")
+                    .append(escapeHtml(duplicate.getDuplicateOf())).append("</li>");
+            }
+            html.append("</ul>");
+        }
+
+        if (result.getUsage() != null) {
+            appendUsageSection(html, result.getUsage());
+        }
+
         // Footer
         html.append(String.format("""
             <div class="timestamp">
@@ -443,6 +514,60 @@ public class ReportGenerationService {
         return html.toString();
     }
 
+    /**
+     * Where the run's LLM time and money went: totals, latency per dimension and the most expensive files
+     */
+    private void appendUsageSection(StringBuilder html, UsageReport usage) {
+        UsageReport.UsageTotals totals = usage.getTotals();
+        if (totals.getCalls() + totals.getFailedCalls() + totals.getBatchCalls() + totals.getCacheHits() == 0) {
+            return;
+        }
+        html.append("<h2>LLM Usage</h2>");
+        html.append(String.format("""
+            <div class="summary">
+                <div class="metric-card"><div class="metric-value">%d</div><div class="metric-label">API Calls</div></div>
+                <div class="metric-card"><div class="metric-value">%,d</div><div class="metric-label">Prompt Tokens</div></div>
+                <div class="metric-card"><div class="metric-value">%,d</div><div class="metric-label">Completion Tokens</div></div>
+                <div class="metric-card"><div class="metric-value">$%.2f</div><div class="metric-label">Estimated Cost</div></div>
+            </div>
+            """, totals.getCalls() + totals.getBatchCalls(), totals.getPromptTokens(), totals.getCompletionTokens(),
+            totals.getEstimatedCostUsd()));
+        html.append(String.format("<p>%d retries, %d failed calls, %d cache hits and %d cache misses.",
+            totals.getRetries(), totals.getFailedCalls(), totals.getCacheHits(), totals.getCacheMisses()));
+        if (totals.getEstimatedTokenCalls() > 0) {
+            html.append(String.format(" Tokens of %d calls that reported no usage are estimated.", totals.getEstimatedTokenCalls()));
+        }
+        html.append("</p>");
+
+        if (!usage.getLatencyByDimension().isEmpty()) {
+            html.append("<h3>Latency by Dimension (ms)</h3><table class=\"files-table\"><thead><tr>")
+                .append("<th>Dimension</th><th>Calls</th><th>Mean</th><th>p50</th><th>p90</th><th>p99</th><th>Max</th>")
+                .append("</tr></thead><tbody>");
+            usage.getLatencyByDimension().entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().getP90(), a.getValue().getP90()))
+                .forEach(entry -> html.append(String.format(
+                    "<tr><td>%s</td><td>%d</td><td>%.0f</td><td>%d</td><td>%d</td><td>%d</td><td>%d</td></tr>",
+                    escapeHtml(entry.getKey()), entry.getValue().getCalls(), entry.getValue().getMean(),
+                    entry.getValue().getP50(), entry.getValue().getP90(), entry.getValue().getP99(), entry.getValue().getMax())));
+            html.append("</tbody></table>");
+        }
+
+        if (!usage.getFiles().isEmpty()) {
+            html.append("<h3>Most Expensive Files</h3><table class=\"files-table\"><thead><tr>")
+                .append("<th>File</th><th>Calls</th><th>Prompt Tokens</th><th>Completion Tokens</th><th>Retries</th>")
+                .append("<th>Latency (ms)</th><th>Estimated Cost</th></tr></thead><tbody>");
+            for (UsageReport.FileUsage file : usage.getFiles().subList(0, Math.min(MAX_USAGE_FILES, usage.getFiles().size()))) {
+                UsageReport.UsageTotals fileTotals = file.getTotals();
+                html.append(String.format(
+                    "<tr><td>%s</td><td>%d</td><td>%,d</td><td>%,d</td><td>%d</td><td>%,d</td><td>$%.4f</td></tr>",
+                    escapeHtml(file.getFilePath()), fileTotals.getCalls() + fileTotals.getBatchCalls(),
+                    fileTotals.getPromptTokens(), fileTotals.getCompletionTokens(), fileTotals.getRetries(),
+                    fileTotals.getLatencyMillis(), fileTotals.getEstimatedCostUsd()));
+            }
+            html.append("</tbody></table>");
+        }
+    }
+
     private String buildNonTechnicalHtmlReport(AnalysisResult result) {
         StringBuilder html = new StringBuilder();
         
@@ -573,11 +698,11 @@ public class ReportGenerationService {
     /**
      * Generates KT (Knowledge Transfer) documentation for new joiners in HTML format.
      * Each section is generated as a separate file and linked from index.html in the kt folder.
+     * Summaries are requested through the service that ran the analysis, sharing its client, cache and limits.
      */
-    public void generateKTDocumentation(AnalysisResult result, String outputDir) throws IOException {
+    public void generateKTDocumentation(AnalysisResult result, String outputDir, OpenAIAnalysisService openAIService) throws IOException {
         Path ktDir = Paths.get(outputDir, "kt");
         Files.createDirectories(ktDir);
-        OpenAIAnalysisService openAIService = new OpenAIAnalysisService();
         // Merge and summarize KT data for each section
         String mergedPurpose = result.getFileResults().stream()
             .map(FileAnalysisResult::getKtPurpose)
@@ -0,0 +1,90 @@
+package com.hackathon.codeguard.service;
+
+import com.hackathon.codeguard.model.FileAnalysisResult;
+import com.hackathon.codeguard.service.cache.AnalysisManifest;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cheap local estimate of how likely a file is to fail the quality gate, from 0 to 100, used to
+ * analyze the riskiest files first. It combines the file's size, how often it changed recently,
+ * patterns that security reviews usually flag and, when known, its previous score.
+ */
+public class RiskScorer {
+
+    private static final double SIZE_WEIGHT = 0.2;
+    private static final double CHURN_WEIGHT = 0.2;
+    private static final double SECURITY_WEIGHT = 0.35;
+    private static final double PREVIOUS_SCORE_WEIGHT = 0.25;
+
+    // Files of this many lines, with this many recent commits or security findings, count as maximally risky
+    private static final int MAX_RISK_LINES = 2_000;
+    private static final int MAX_RISK_COMMITS = 50;
+    private static final int MAX_RISK_FINDINGS = 5;
+
+    private static final List<Pattern> SECURITY_PATTERNS = List.of(
+        // Dynamic code and command execution
+        Pattern.compile("\\beval\\s*\\(|\\bexec\\s*\\(|Runtime\\.getRuntime\\(\\)\\.exec|new ProcessBuilder|os\\.system\\s*\\(|shell\\s*=\\s*True"),
+        // Queries assembled from strings
+        Pattern.compile("(?i)\"\\s*(select|insert|update|delete)\\b[^\"]*\"\\s*\\+|f\"\\s*(select|insert|update|delete)\\b"),
+        // Credentials in source
+        Pattern.compile("(?i)(password|passwd|secret|api[_-]?key|token)\\s*[:=]\\s*[\"'][^\"']{4,}[\"']"),
+        // Weak hashing and randomness
+        Pattern.compile("(?i)\\b(md5|sha1)\\b|new Random\\(|Math\\.random\\("),
+        // Unsafe deserialization and markup injection
+        Pattern.compile("ObjectInputStream|pickle\\.loads?|yaml\\.load\\(|\\.innerHTML\\s*=|dangerouslySetInnerHTML"),
+        // Disabled certificate checks and plain HTTP
+        Pattern.compile("(?i)verify\\s*=\\s*False|TrustAllCerts|ALLOW_ALL_HOSTNAME_VERIFIER|\"http://(?!localhost|127\\.0\\.0\\.1)"));
+
+    private final Map<Path, Integer> commitCounts;
+    private final AnalysisManifest previousResults;
+
+    /**
+     * @param commitCounts recent commits per absolute file path; empty when git history is unavailable
+     * @param previousResults manifest of an earlier run, or null
+     */
+    public RiskScorer(Map<Path, Integer> commitCounts, AnalysisManifest previousResults) {
+        this.commitCounts = commitCounts;
+        this.previousResults = previousResults;
+    }
+
+    public double score(Path file, String content) {
+        long lines = content.lines().filter(line -> !line.isBlank()).count();
+        double size = scaled(lines, MAX_RISK_LINES);
+        double churn = scaled(commitCounts.getOrDefault(file.toAbsolutePath().normalize(), 0), MAX_RISK_COMMITS);
+        double security = Math.min(1.0, (double) securityFindings(content) / MAX_RISK_FINDINGS);
+
+        // Files without history count as average
+        double previous = 0.5;
+        FileAnalysisResult last = previousResults != null ? previousResults.previousResult(file) : null;
+        if (last != null && !last.isDegraded() && !last.isBudgetSkipped()) {
+            previous = Math.max(0, Math.min(1, (100 - last.getFinalScore()) / 100));
+        }
+        return 100 * (SIZE_WEIGHT * size + CHURN_WEIGHT * churn + SECURITY_WEIGHT * security + PREVIOUS_SCORE_WEIGHT * previous);
+    }
+
+    /**
+     * Number of matches of the security patterns
+     */
+    static int securityFindings(String content) {
+        int findings = 0;
+        for (Pattern pattern : SECURITY_PATTERNS) {
+            Matcher matcher = pattern.matcher(content);
+            while (matcher.find()) {
+                findings++;
+            }
+        }
+        return findings;
+    }
+
+    /**
+     * Logarithmic scale from 0 for nothing to 1 at the maximum
+     */
+    private static double scaled(long value, long max) {
+        return Math.min(1.0, Math.log1p(value) / Math.log1p(max));
+    }
+}
@@ -0,0 +1,90 @@
+package com.hackathon.codeguard.service.batch;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+
+/**
+ * Minimal client for the files and batches endpoints, which the OpenAI client library does not cover
+ */
+public class BatchApiClient {
+
+    private static final MediaType JSON = MediaType.get("application/json");
+    private static final MediaType JSONL = MediaType.get("application/jsonl");
+    private static final String COMPLETION_WINDOW = "24h";
+
+    private final OkHttpClient httpClient;
+    private final HttpUrl baseUrl;
+    private final String apiKey;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * @param baseUrl API root including the version, e.g. https://api.openai.com/v1/
+     */
+    public BatchApiClient(OkHttpClient httpClient, String baseUrl, String apiKey) {
+        this.httpClient = httpClient;
+        this.baseUrl = HttpUrl.get(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/");
+        this.apiKey = apiKey;
+    }
+
+    /**
+     * Uploads batch input JSONL and returns the file id
+     */
+    public String uploadBatchInput(byte[] jsonl) throws IOException {
+        RequestBody body = new MultipartBody.Builder()
+            .setType(MultipartBody.FORM)
+            .addFormDataPart("purpose", "batch")
+            .addFormDataPart("file", "code-guard-batch.jsonl", RequestBody.create(JSONL, jsonl))
+            .build();
+        JsonNode file = objectMapper.readTree(execute(request("files").post(body)));
+        return file.path("id").asText();
+    }
+
+    public BatchStatus createBatch(String inputFileId) throws IOException {
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("input_file_id", inputFileId);
+        payload.put("endpoint", BatchRequestCollector.COMPLETIONS_ENDPOINT);
+        payload.put("completion_window", COMPLETION_WINDOW);
+        RequestBody body = RequestBody.create(JSON, objectMapper.writeValueAsBytes(payload));
+        return objectMapper.readValue(execute(request("batches").post(body)), BatchStatus.class);
+    }
+
+    public BatchStatus retrieveBatch(String batchId) throws IOException {
+        return objectMapper.readValue(execute(request("batches/" + batchId).get()), BatchStatus.class);
+    }
+
+    public String downloadFile(String fileId) throws IOException {
+        return execute(request("files/" + fileId + "/content").get());
+    }
+
+    private Request.Builder request(String path) {
+        return new Request.Builder()
+            .url(baseUrl.resolve(path))
+            .header("Authorization", "Bearer " + apiKey);
+    }
+
+    private String execute(Request.Builder builder) throws IOException {
+        Request request = builder.build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            String content = body != null ? body.string() : "";
+            if (!response.isSuccessful()) {
+                throw new IOException(request.method() + " " + request.url().encodedPath()
+                    + " failed with HTTP " + response.code() + ": " + content);
+            }
+            return content;
+        }
+    }
+}
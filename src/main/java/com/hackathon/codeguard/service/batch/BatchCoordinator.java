@@ -0,0 +1,129 @@
+package com.hackathon.codeguard.service.batch;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Submits collected requests as a batch, polls it and joins the responses back by custom id.
+ * The submitted batch is recorded in a state file until the analysis that uses its responses is done,
+ * so a run that stops waiting, or fails before it has used the paid responses, can be resumed by a later one.
+ */
+public class BatchCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchCoordinator.class);
+
+    private final BatchApiClient client;
+    private final Path statePath;
+    private final Duration pollInterval;
+    private final Duration maxWait;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    public BatchCoordinator(BatchApiClient client, Path statePath, Duration pollInterval, Duration maxWait) {
+        this.client = client;
+        this.statePath = statePath;
+        this.pollInterval = pollInterval;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Returns the batch left by a previous run, or null if there is none
+     */
+    public BatchState loadState() throws IOException {
+        if (!Files.exists(statePath)) {
+            return null;
+        }
+        return objectMapper.readValue(statePath.toFile(), BatchState.class);
+    }
+
+    /**
+     * Writes the requests next to the state file, uploads them and creates the batch
+     */
+    public BatchState submit(BatchRequestCollector requests) throws IOException {
+        byte[] jsonl = requests.toJsonl();
+        Files.write(requestsPath(), jsonl);
+        String inputFileId = client.uploadBatchInput(jsonl);
+        BatchStatus batch = client.createBatch(inputFileId);
+        BatchState state = new BatchState(batch.getId(), inputFileId, requests.size(),
+            LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(statePath.toFile(), state);
+        logger.info("Submitted {} requests as batch {}", requests.size(), batch.getId());
+        return state;
+    }
+
+    /**
+     * Polls the batch until it ends or the wait limit passes, then returns the response content by custom id.
+     * Requests that failed inside the batch are absent from the map. The state is kept until
+     * {@link #clearState()} is called, so the responses can be downloaded again until they are used.
+     */
+    public Map<String, String> awaitResponses(BatchState state)
+            throws IOException, InterruptedException, BatchPendingException {
+        long deadline = System.nanoTime() + maxWait.toNanos();
+        BatchStatus status = client.retrieveBatch(state.getBatchId());
+        while (!status.isTerminal()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new BatchPendingException(status);
+            }
+            logger.info("Waiting for {}", status);
+            Thread.sleep(Math.min(pollInterval.toMillis(), Math.max(1, remaining / 1_000_000)));
+            status = client.retrieveBatch(state.getBatchId());
+        }
+
+        if (status.getOutputFileId() == null) {
+            // Nothing to join; forget the batch so the next run submits a new one
+            clearState();
+            throw new IOException("Batch " + status.getId() + " ended as " + status.getStatus() + " without output");
+        }
+        Map<String, String> responses = parseOutput(client.downloadFile(status.getOutputFileId()));
+        logger.info("Joined {} of {} batch responses from {}", responses.size(), state.getRequestCount(), status);
+        return responses;
+    }
+
+    /**
+     * Extracts the completion content of each successful line of a batch output file
+     */
+    static Map<String, String> parseOutput(String jsonl) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, String> responses = new HashMap<>();
+        for (String line : jsonl.split("\n")) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonNode node = mapper.readTree(line);
+            JsonNode response = node.path("response");
+            if (response.path("status_code").asInt() != 200) {
+                continue;
+            }
+            JsonNode content = response.path("body").path("choices").path(0).path("message").path("content");
+            if (content.isTextual() && !content.asText().isBlank()) {
+                responses.put(node.path("custom_id").asText(), content.asText());
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * Forgets the batch, so the next run submits a new one
+     */
+    public void clearState() throws IOException {
+        Files.deleteIfExists(statePath);
+        Files.deleteIfExists(requestsPath());
+    }
+
+    private Path requestsPath() {
+        return statePath.resolveSibling(statePath.getFileName() + ".requests.jsonl");
+    }
+}
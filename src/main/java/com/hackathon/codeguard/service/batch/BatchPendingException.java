@@ -0,0 +1,18 @@
+package com.hackathon.codeguard.service.batch;
+
+/**
+ * Thrown when a submitted batch has not finished within the wait limit; rerunning resumes it
+ */
+public class BatchPendingException extends Exception {
+
+    private final BatchStatus status;
+
+    public BatchPendingException(BatchStatus status) {
+        super("Batch " + status.getId() + " has not finished yet: " + status);
+        this.status = status;
+    }
+
+    public BatchStatus getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,50 @@
+package com.hackathon.codeguard.service.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.theokanning.openai.service.OpenAiService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Collects chat completion requests for a batch, keyed by custom id, and renders them as batch input JSONL.
+ * Identical prompts share a custom id, so each is sent once.
+ */
+public class BatchRequestCollector {
+
+    static final String COMPLETIONS_ENDPOINT = "/v1/chat/completions";
+
+    // Same naming and null handling as the synchronous client
+    private final ObjectMapper objectMapper = OpenAiService.defaultObjectMapper();
+    private final Map<String, Object> requests = new ConcurrentSkipListMap<>();
+
+    public void add(String customId, Object request) {
+        requests.putIfAbsent(customId, request);
+    }
+
+    public int size() {
+        return requests.size();
+    }
+
+    public boolean isEmpty() {
+        return requests.isEmpty();
+    }
+
+    /**
+     * One line per request: {"custom_id", "method", "url", "body"}
+     */
+    public byte[] toJsonl() {
+        StringBuilder jsonl = new StringBuilder();
+        requests.forEach((customId, request) -> {
+            ObjectNode line = objectMapper.createObjectNode();
+            line.put("custom_id", customId);
+            line.put("method", "POST");
+            line.put("url", COMPLETIONS_ENDPOINT);
+            line.set("body", objectMapper.valueToTree(request));
+            jsonl.append(line).append('\n');
+        });
+        return jsonl.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,46 @@
+package com.hackathon.codeguard.service.batch;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A submitted batch that has not been joined yet, persisted so a later run can resume it
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BatchState {
+
+    @JsonProperty("batchId")
+    private String batchId;
+
+    @JsonProperty("inputFileId")
+    private String inputFileId;
+
+    @JsonProperty("requestCount")
+    private int requestCount;
+
+    @JsonProperty("submittedAt")
+    private String submittedAt;
+
+    // Constructors
+    public BatchState() {}
+
+    public BatchState(String batchId, String inputFileId, int requestCount, String submittedAt) {
+        this.batchId = batchId;
+        this.inputFileId = inputFileId;
+        this.requestCount = requestCount;
+        this.submittedAt = submittedAt;
+    }
+
+    // Getters and Setters
+    public String getBatchId() { return batchId; }
+    public void setBatchId(String batchId) { this.batchId = batchId; }
+
+    public String getInputFileId() { return inputFileId; }
+    public void setInputFileId(String inputFileId) { this.inputFileId = inputFileId; }
+
+    public int getRequestCount() { return requestCount; }
+    public void setRequestCount(int requestCount) { this.requestCount = requestCount; }
+
+    public String getSubmittedAt() { return submittedAt; }
+    public void setSubmittedAt(String submittedAt) { this.submittedAt = submittedAt; }
+}
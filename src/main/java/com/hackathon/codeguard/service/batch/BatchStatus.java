@@ -0,0 +1,90 @@
+package com.hackathon.codeguard.service.batch;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * State of a batch as reported by the batches endpoint
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BatchStatus {
+
+    @JsonProperty("id")
+    private String id;
+
+    // validating, in_progress, finalizing, completed, failed, expired, cancelling or cancelled
+    @JsonProperty("status")
+    private String status;
+
+    @JsonProperty("output_file_id")
+    private String outputFileId;
+
+    @JsonProperty("error_file_id")
+    private String errorFileId;
+
+    @JsonProperty("request_counts")
+    private RequestCounts requestCounts;
+
+    // Constructors
+    public BatchStatus() {}
+
+    public BatchStatus(String id, String status) {
+        this.id = id;
+        this.status = status;
+    }
+
+    /**
+     * True once the batch will not make further progress
+     */
+    public boolean isTerminal() {
+        return "completed".equals(status) || "failed".equals(status)
+            || "expired".equals(status) || "cancelled".equals(status);
+    }
+
+    @Override
+    public String toString() {
+        String counts = requestCounts != null
+            ? String.format(" (%d/%d completed, %d failed)", requestCounts.completed, requestCounts.total, requestCounts.failed)
+            : "";
+        return "batch " + id + " " + status + counts;
+    }
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public String getOutputFileId() { return outputFileId; }
+    public void setOutputFileId(String outputFileId) { this.outputFileId = outputFileId; }
+
+    public String getErrorFileId() { return errorFileId; }
+    public void setErrorFileId(String errorFileId) { this.errorFileId = errorFileId; }
+
+    public RequestCounts getRequestCounts() { return requestCounts; }
+    public void setRequestCounts(RequestCounts requestCounts) { this.requestCounts = requestCounts; }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class RequestCounts {
+
+        @JsonProperty("total")
+        private int total;
+
+        @JsonProperty("completed")
+        private int completed;
+
+        @JsonProperty("failed")
+        private int failed;
+
+        // Getters and Setters
+        public int getTotal() { return total; }
+        public void setTotal(int total) { this.total = total; }
+
+        public int getCompleted() { return completed; }
+        public void setCompleted(int completed) { this.completed = completed; }
+
+        public int getFailed() { return failed; }
+        public void setFailed(int failed) { this.failed = failed; }
+    }
+}
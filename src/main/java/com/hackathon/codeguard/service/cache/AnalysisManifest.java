@@ -0,0 +1,199 @@
+package com.hackathon.codeguard.service.cache;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hackathon.codeguard.model.FileAnalysisResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the last analysis of each file together with what produced it: the content hash,
+ * prompt version, model and run settings. A file whose entry still matches is reused as-is.
+ */
+public class AnalysisManifest {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisManifest.class);
+
+    private final Path location;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private AnalysisManifest(Path location) {
+        this.location = location;
+    }
+
+    /**
+     * Loads the manifest at the location, starting empty if it is missing or unreadable
+     */
+    public static AnalysisManifest load(Path location) {
+        AnalysisManifest manifest = new AnalysisManifest(location);
+        if (Files.exists(location)) {
+            try {
+                Map<String, Entry> stored = manifest.objectMapper.readValue(location.toFile(),
+                    new TypeReference<Map<String, Entry>>() {});
+                manifest.entries.putAll(stored);
+                logger.info("Loaded analysis manifest with {} files from {}", stored.size(), location);
+            } catch (IOException e) {
+                logger.warn("Ignoring unreadable analysis manifest {}: {}", location, e.getMessage());
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Hashes content the way git hashes blobs, so it can be compared with the blob ids in a git diff
+     */
+    public static String contentHash(String content) {
+        try {
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(("blob " + bytes.length + '\u0000').getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(digest.digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    /**
+     * Returns the stored result if it was produced from the same content and settings, otherwise null
+     */
+    public FileAnalysisResult lookup(Path file, Entry expected) {
+        Entry entry = entries.get(keyOf(file));
+        if (entry == null || !entry.matches(expected)) {
+            return null;
+        }
+        return entry.getResult();
+    }
+
+    /**
+     * Returns the stored result if it was produced with the same settings from the given content hash,
+     * e.g. the blob of the file at a base commit, otherwise null
+     */
+    public FileAnalysisResult lookupVersion(Path file, Entry expected, String contentHash) {
+        if (contentHash == null) {
+            return null;
+        }
+        Entry version = new Entry(contentHash, expected.promptVersion, expected.model, expected.settings);
+        return lookup(file, version);
+    }
+
+    /**
+     * Returns the last stored result for the file whatever it was produced from, or null
+     */
+    public FileAnalysisResult previousResult(Path file) {
+        Entry entry = entries.get(keyOf(file));
+        return entry != null ? entry.getResult() : null;
+    }
+
+    public void record(Path file, Entry entry) {
+        entries.put(keyOf(file), entry);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Drops entries for files that no longer exist
+     */
+    public void pruneMissing() {
+        entries.keySet().removeIf(path -> !Files.exists(Path.of(path)));
+    }
+
+    /**
+     * Writes the manifest to a temp file and atomically moves it into place
+     */
+    public void save() throws IOException {
+        Path parent = location.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, location.getFileName().toString(), ".tmp");
+        try {
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(temp.toFile(), new TreeMap<>(entries));
+            Files.move(temp, location, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String keyOf(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * What a stored result was produced from, plus the result itself
+     */
+    public static class Entry {
+
+        @JsonProperty("contentHash")
+        private String contentHash;
+
+        @JsonProperty("promptVersion")
+        private String promptVersion;
+
+        @JsonProperty("model")
+        private String model;
+
+        // Analysis mode and KT flag, both of which change the result
+        @JsonProperty("settings")
+        private String settings;
+
+        @JsonProperty("result")
+        private FileAnalysisResult result;
+
+        // Constructors
+        public Entry() {}
+
+        public Entry(String contentHash, String promptVersion, String model, String settings) {
+            this.contentHash = contentHash;
+            this.promptVersion = promptVersion;
+            this.model = model;
+            this.settings = settings;
+        }
+
+        public Entry withResult(FileAnalysisResult result) {
+            Entry entry = new Entry(contentHash, promptVersion, model, settings);
+            entry.result = result;
+            return entry;
+        }
+
+        boolean matches(Entry other) {
+            return result != null
+                && Objects.equals(contentHash, other.contentHash)
+                && Objects.equals(promptVersion, other.promptVersion)
+                && Objects.equals(model, other.model)
+                && Objects.equals(settings, other.settings);
+        }
+
+        // Getters and Setters
+        public String getContentHash() { return contentHash; }
+        public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
+        public String getPromptVersion() { return promptVersion; }
+        public void setPromptVersion(String promptVersion) { this.promptVersion = promptVersion; }
+
+        public String getModel() { return model; }
+        public void setModel(String model) { this.model = model; }
+
+        public String getSettings() { return settings; }
+        public void setSettings(String settings) { this.settings = settings; }
+
+        public FileAnalysisResult getResult() { return result; }
+        public void setResult(FileAnalysisResult result) { this.result = result; }
+    }
+}
@@ -0,0 +1,374 @@
+package com.hackathon.codeguard.service.cache;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Two-tier cache for model responses keyed by a hash of the request.
+ * An in-memory LRU tier bounded by size sits over an on-disk tier whose entries
+ * are written atomically, so a crash never leaves a partial entry behind.
+ * Disk entries expire a fixed time after they were written; the file modification
+ * time records the last read and only orders eviction.
+ * Concurrent requests for the same key share a single load.
+ */
+public class LlmResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmResponseCache.class);
+
+    private static final String ENTRY_SUFFIX = ".json";
+
+    private final Path directory;
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+    private final Duration ttl;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Access-ordered map gives LRU iteration order
+    private final LinkedHashMap<String, String> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryBytes;
+
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong diskBytes = new AtomicLong();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong sharedLoads = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public LlmResponseCache(Path directory, long maxMemoryBytes, long maxDiskBytes, Duration ttl) throws IOException {
+        this.directory = directory;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        this.ttl = ttl;
+        Files.createDirectories(directory);
+        diskBytes.set(currentDiskUsage());
+    }
+
+    /**
+     * Builds the content-addressed key for a request from the contents of its messages, in order
+     */
+    public static String key(String model, double temperature, int maxTokens, String... messages) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((model + '\u0000' + temperature + '\u0000' + maxTokens + '\u0000').getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < messages.length; i++) {
+                if (i > 0) {
+                    digest.update((byte) 0);
+                }
+                digest.update(messages[i].getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Returns the cached response for the key, or runs the loader once and caches its result.
+     * Failed loads are not cached.
+     */
+    public String getOrCompute(String key, Callable<String> loader) throws Exception {
+        return getOrCompute(key, loader, value -> true);
+    }
+
+    /**
+     * Same as {@link #getOrCompute(String, Callable)}, but a loaded response is only cached when it is usable,
+     * and a cached one that is not, such as a truncated answer kept by an earlier version, is dropped and loaded again
+     */
+    public String getOrCompute(String key, Callable<String> loader, Predicate<String> usable) throws Exception {
+        String cached = getFromMemory(key);
+        if (cached != null) {
+            if (usable.test(cached)) {
+                memoryHits.incrementAndGet();
+                return cached;
+            }
+            evict(key);
+        }
+
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            sharedLoads.incrementAndGet();
+            return await(existing);
+        }
+
+        try {
+            String value = readFromDisk(key);
+            if (value != null && !usable.test(value)) {
+                evict(key);
+                value = null;
+            }
+            if (value != null) {
+                diskHits.incrementAndGet();
+                putInMemory(key, value);
+            } else {
+                misses.incrementAndGet();
+                value = loader.call();
+                if (usable.test(value)) {
+                    writeToDisk(key, value);
+                    putInMemory(key, value);
+                } else {
+                    logger.debug("Not caching unusable response for {}", key);
+                }
+            }
+            pending.complete(value);
+            return value;
+        } catch (Exception e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, pending);
+        }
+    }
+
+    /**
+     * Drops the entry for the key from both tiers
+     */
+    private void evict(String key) {
+        synchronized (this) {
+            String removed = memory.remove(key);
+            if (removed != null) {
+                memoryBytes -= sizeOf(removed);
+            }
+        }
+        removeFromDisk(entryPath(key));
+    }
+
+    private void removeFromDisk(Path entry) {
+        long size = sizeOnDisk(entry);
+        if (Files.exists(entry)) {
+            deleteEntry(entry);
+            diskBytes.addAndGet(-size);
+        }
+    }
+
+    private String await(CompletableFuture<String> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private synchronized String getFromMemory(String key) {
+        return memory.get(key);
+    }
+
+    private synchronized void putInMemory(String key, String value) {
+        String previous = memory.put(key, value);
+        if (previous != null) {
+            memoryBytes -= sizeOf(previous);
+        }
+        memoryBytes += sizeOf(value);
+
+        Iterator<Map.Entry<String, String>> eldest = memory.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            memoryBytes -= sizeOf(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    private static long sizeOf(String value) {
+        return (long) value.length() * Character.BYTES;
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key + ENTRY_SUFFIX);
+    }
+
+    private String readFromDisk(String key) {
+        Path entry = entryPath(key);
+        if (!Files.exists(entry)) {
+            return null;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(entry.toFile());
+            long createdAt = node.get("createdAt").asLong();
+            if (System.currentTimeMillis() - createdAt > ttl.toMillis()) {
+                // Left in place: the reload replaces it, and eviction drops it if the reload fails
+                return null;
+            }
+            // The modification time records the last read, so disk eviction is least-recently-used
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return node.get("response").asText();
+        } catch (Exception e) {
+            logger.warn("Discarding unreadable cache entry {}: {}", entry.getFileName(), e.getMessage());
+            removeFromDisk(entry);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, String value) {
+        Path entry = entryPath(key);
+        Path temp = null;
+        try {
+            ObjectNode node = objectMapper.createObjectNode();
+            node.put("createdAt", System.currentTimeMillis());
+            node.put("response", value);
+            byte[] bytes = objectMapper.writeValueAsBytes(node);
+
+            // Write to a temp file, flush it to the device, then atomically move it into place
+            temp = Files.createTempFile(directory, key, ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 OutputStream out = Channels.newOutputStream(channel)) {
+                out.write(bytes);
+                out.flush();
+                channel.force(true);
+            }
+            // An expired entry is replaced in place, so only the difference in size is new usage
+            long replaced = sizeOnDisk(entry);
+            Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            temp = null;
+
+            if (diskBytes.addAndGet(bytes.length - replaced) > maxDiskBytes) {
+                evictFromDisk();
+            }
+        } catch (IOException e) {
+            logger.warn("Could not write cache entry {}: {}", entry.getFileName(), e.getMessage());
+        } finally {
+            if (temp != null) {
+                deleteEntry(temp);
+            }
+        }
+    }
+
+    /**
+     * Removes expired entries, then the least recently used ones until usage is below 90% of the limit
+     */
+    private synchronized void evictFromDisk() {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> entries = files
+                .filter(path -> path.getFileName().toString().endsWith(ENTRY_SUFFIX))
+                .sorted(Comparator.comparingLong(LlmResponseCache::lastModified))
+                .collect(Collectors.toList());
+
+            long expiredBefore = System.currentTimeMillis() - ttl.toMillis();
+            List<Path> live = new ArrayList<>(entries.size());
+            long usage = 0;
+            for (Path entry : entries) {
+                if (createdAt(entry) < expiredBefore) {
+                    deleteEntry(entry);
+                } else {
+                    live.add(entry);
+                    usage += sizeOnDisk(entry);
+                }
+            }
+            long target = maxDiskBytes * 9 / 10;
+            for (Path entry : live) {
+                if (usage <= target) {
+                    break;
+                }
+                usage -= sizeOnDisk(entry);
+                deleteEntry(entry);
+            }
+            diskBytes.set(usage);
+        } catch (IOException e) {
+            logger.warn("Could not evict cache entries: {}", e.getMessage());
+        }
+    }
+
+    private long currentDiskUsage() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(ENTRY_SUFFIX))
+                .mapToLong(LlmResponseCache::sizeOnDisk)
+                .sum();
+        }
+    }
+
+    /**
+     * Write time stored in the entry; it is the first field, so the response is not read. Unreadable entries count as expired.
+     */
+    private long createdAt(Path entry) {
+        try (JsonParser parser = objectMapper.getFactory().createParser(entry.toFile())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return 0L;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("createdAt".equals(field)) {
+                    return parser.getLongValue();
+                }
+                parser.skipChildren();
+            }
+            return 0L;
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private static long sizeOnDisk(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private static void deleteEntry(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.debug("Could not delete cache file {}: {}", path, e.getMessage());
+        }
+    }
+
+    // Statistics
+    public long getMemoryHits() { return memoryHits.get(); }
+    public long getDiskHits() { return diskHits.get(); }
+    public long getSharedLoads() { return sharedLoads.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getDiskBytes() { return diskBytes.get(); }
+    public long getHits() { return memoryHits.get() + diskHits.get() + sharedLoads.get(); }
+
+    @Override
+    public String toString() {
+        return String.format("LlmResponseCache{hits=%d (memory=%d, disk=%d, shared=%d), misses=%d}",
+            getHits(), getMemoryHits(), getDiskHits(), getSharedLoads(), getMisses());
+    }
+}
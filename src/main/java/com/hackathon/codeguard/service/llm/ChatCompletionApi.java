@@ -0,0 +1,32 @@
+package com.hackathon.codeguard.service.llm;
+
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatCompletionResult;
+import io.reactivex.Single;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.http.Body;
+import retrofit2.http.POST;
+import retrofit2.http.Streaming;
+
+/**
+ * The chat completion endpoints, relative to the configured API root so a path prefix such as
+ * https://openrouter.ai/api/v1/ is kept. Structured requests have their own methods, so the request
+ * converter serializes their response_format.
+ */
+interface ChatCompletionApi {
+
+    @POST("chat/completions")
+    Single<ChatCompletionResult> createChatCompletion(@Body ChatCompletionRequest request);
+
+    @Streaming
+    @POST("chat/completions")
+    Call<ResponseBody> createChatCompletionStream(@Body ChatCompletionRequest request);
+
+    @POST("chat/completions")
+    Single<ChatCompletionResult> createStructuredChatCompletion(@Body StructuredChatCompletionRequest request);
+
+    @Streaming
+    @POST("chat/completions")
+    Call<ResponseBody> createStructuredChatCompletionStream(@Body StructuredChatCompletionRequest request);
+}
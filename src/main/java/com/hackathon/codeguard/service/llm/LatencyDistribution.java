@@ -0,0 +1,63 @@
+package com.hackathon.codeguard.service.llm;
+
+import java.util.Random;
+
+/**
+ * Response latency of the stand-in server, parsed from a spec such as
+ * "fixed:200", "uniform:100-400", "normal:300,50" or "lognormal:300,0.5" (median and sigma)
+ */
+public final class LatencyDistribution {
+
+    private enum Kind { FIXED, UNIFORM, NORMAL, LOGNORMAL }
+
+    private final Kind kind;
+    private final double first;
+    private final double second;
+    private final String spec;
+
+    private LatencyDistribution(Kind kind, double first, double second, String spec) {
+        this.kind = kind;
+        this.first = first;
+        this.second = second;
+        this.spec = spec;
+    }
+
+    public static LatencyDistribution none() {
+        return parse("fixed:0");
+    }
+
+    public static LatencyDistribution parse(String spec) {
+        int colon = spec.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Latency must look like fixed:200, uniform:100-400, normal:300,50 or lognormal:300,0.5");
+        }
+        String name = spec.substring(0, colon).trim().toUpperCase();
+        String[] values = spec.substring(colon + 1).split("[-,]");
+        try {
+            Kind kind = Kind.valueOf(name);
+            double first = Double.parseDouble(values[0].trim());
+            double second = kind == Kind.FIXED ? 0 : Double.parseDouble(values[1].trim());
+            if (first < 0 || second < 0 || (kind == Kind.UNIFORM && second < first)) {
+                throw new IllegalArgumentException("Invalid latency range in " + spec);
+            }
+            return new LatencyDistribution(kind, first, second, spec);
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid latency values in " + spec, e);
+        }
+    }
+
+    public long sampleMillis(Random random) {
+        double millis = switch (kind) {
+            case FIXED -> first;
+            case UNIFORM -> first + random.nextDouble() * (second - first);
+            case NORMAL -> first + random.nextGaussian() * second;
+            case LOGNORMAL -> first * Math.exp(random.nextGaussian() * second);
+        };
+        return Math.max(0, Math.round(millis));
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,21 @@
+package com.hackathon.codeguard.service.llm;
+
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import io.reactivex.Flowable;
+
+/**
+ * Chat completion provider used by the analysis. HTTP errors surface as
+ * {@link com.theokanning.openai.OpenAiHttpException} so retries are classified the same for every provider.
+ */
+public interface LlmClient {
+
+    /**
+     * Returns the content of the first choice, which is null if the response has none, and the reported usage
+     */
+    LlmCompletion complete(ChatCompletionRequest request);
+
+    /**
+     * Streams the content deltas of the first choice; cancelling the subscription aborts generation
+     */
+    Flowable<String> stream(ChatCompletionRequest request);
+}
@@ -0,0 +1,8 @@
+package com.hackathon.codeguard.service.llm;
+
+import com.theokanning.openai.Usage;
+
+/**
+ * Content of the first choice of a completion, with the token usage the provider reported or null if it reported none
+ */
+public record LlmCompletion(String content, Usage usage) {}
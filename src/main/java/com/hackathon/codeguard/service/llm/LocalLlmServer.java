@@ -0,0 +1,387 @@
+package com.hackathon.codeguard.service.llm;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Local server speaking the OpenAI chat completions, files and batches protocols, for benchmarking and
+ * load-testing the pipeline offline. Latency, 429 and 5xx responses are injected as configured, and
+ * completions are canned or echo the prompt.
+ */
+public class LocalLlmServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalLlmServer.class);
+    private static final String DEFAULT_CANNED_RESPONSES = "/llm-stand-in/canned-responses.json";
+
+    private final StandInSettings settings;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Random random;
+
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final Map<String, ObjectNode> batches = new ConcurrentHashMap<>();
+    private final AtomicInteger ids = new AtomicInteger();
+
+    private final AtomicLong completions = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong serverErrors = new AtomicLong();
+    private final AtomicLong abortedStreams = new AtomicLong();
+
+    public LocalLlmServer(StandInSettings settings) throws IOException {
+        this.settings = settings;
+        this.random = new Random(settings.getSeed());
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", settings.getPort()), 0);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "llm-stand-in-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        String root = apiRoot();
+        server.createContext(root + "chat/completions", exchange -> handle(exchange, this::handleCompletion));
+        server.createContext(root + "files", exchange -> handle(exchange, this::handleFiles));
+        server.createContext(root + "batches", exchange -> handle(exchange, this::handleBatches));
+    }
+
+    public LocalLlmServer start() {
+        server.start();
+        logger.info("LLM stand-in listening on {} (latency {}, 429 rate {}, 5xx rate {}, {} responses)",
+            getBaseUrl(), settings.getLatency(), settings.getRateLimitErrorRate(), settings.getServerErrorRate(),
+            settings.getResponseMode().name().toLowerCase());
+        return this;
+    }
+
+    /**
+     * Base URL to configure clients with, e.g. http://127.0.0.1:8089/v1/
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + apiRoot();
+    }
+
+    /**
+     * The configured base path with a leading and a trailing slash
+     */
+    private String apiRoot() {
+        String path = settings.getBasePath().replaceAll("^/+|/+$", "");
+        return path.isEmpty() ? "/" : "/" + path + "/";
+    }
+
+    public long getCompletionCount() { return completions.get(); }
+    public long getRateLimitedCount() { return rateLimited.get(); }
+    public long getServerErrorCount() { return serverErrors.get(); }
+    public long getAbortedStreamCount() { return abortedStreams.get(); }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        logger.info("LLM stand-in stopped: {} completions, {} injected 429s, {} injected 5xx, {} streams aborted by the client",
+            completions.get(), rateLimited.get(), serverErrors.get(), abortedStreams.get());
+    }
+
+    /**
+     * Reads canned responses from a JSON object of prompt substring to response
+     */
+    public static Map<String, String> loadCannedResponses(Path file) throws IOException {
+        return new ObjectMapper().readValue(file.toFile(), new TypeReference<LinkedHashMap<String, String>>() {});
+    }
+
+    /**
+     * Canned responses shaped like the answers the analysis prompts ask for
+     */
+    public static Map<String, String> defaultCannedResponses() throws IOException {
+        try (InputStream in = LocalLlmServer.class.getResourceAsStream(DEFAULT_CANNED_RESPONSES)) {
+            if (in == null) {
+                throw new IOException("Missing resource " + DEFAULT_CANNED_RESPONSES);
+            }
+            return new ObjectMapper().readValue(in, new TypeReference<LinkedHashMap<String, String>>() {});
+        }
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws Exception;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) {
+        try (exchange) {
+            handler.handle(exchange);
+        } catch (Exception e) {
+            logger.debug("Stand-in request {} failed: {}", exchange.getRequestURI(), e.getMessage());
+        }
+    }
+
+    private void handleCompletion(HttpExchange exchange) throws Exception {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        Thread.sleep(sampleLatency());
+
+        double roll = nextDouble();
+        if (roll < settings.getRateLimitErrorRate()) {
+            rateLimited.incrementAndGet();
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(settings.getRetryAfterSeconds()));
+            sendError(exchange, 429, "rate_limit_exceeded", "Rate limit reached (injected by the stand-in)");
+            return;
+        }
+        if (roll < settings.getRateLimitErrorRate() + settings.getServerErrorRate()) {
+            serverErrors.incrementAndGet();
+            int status = roll < settings.getRateLimitErrorRate() + settings.getServerErrorRate() / 2 ? 500 : 503;
+            sendError(exchange, status, "server_error", "Server error (injected by the stand-in)");
+            return;
+        }
+
+        completions.incrementAndGet();
+        String prompt = promptOf(request);
+        String content = respondTo(prompt);
+        String model = request.path("model").asText("stand-in");
+        if (request.path("stream").asBoolean()) {
+            stream(exchange, model, content);
+        } else {
+            sendJson(exchange, 200, completion(model, prompt, content));
+        }
+    }
+
+    private void stream(HttpExchange exchange, String model, String content) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        String id = "chatcmpl-stand-in-" + ids.incrementAndGet();
+        OutputStream out = exchange.getResponseBody();
+        try {
+            for (int start = 0; start < content.length(); start += settings.getStreamChunkSize()) {
+                String delta = content.substring(start, Math.min(content.length(), start + settings.getStreamChunkSize()));
+                writeEvent(out, chunk(id, model, delta, null).toString());
+            }
+            writeEvent(out, chunk(id, model, null, "stop").toString());
+            writeEvent(out, "[DONE]");
+        } catch (IOException e) {
+            // The client stopped reading once it had what it needed
+            abortedStreams.incrementAndGet();
+        }
+    }
+
+    private void handleFiles(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if ("POST".equals(exchange.getRequestMethod())) {
+            byte[] content = filePart(exchange);
+            String id = "file-stand-in-" + ids.incrementAndGet();
+            files.put(id, content);
+            ObjectNode file = objectMapper.createObjectNode();
+            file.put("id", id);
+            file.put("object", "file");
+            file.put("bytes", content.length);
+            file.put("purpose", "batch");
+            sendJson(exchange, 200, file);
+            return;
+        }
+        // files/{id}/content below the API root
+        String[] segments = path.substring(apiRoot().length()).split("/");
+        byte[] content = segments.length == 3 && "content".equals(segments[2]) ? files.get(segments[1]) : null;
+        if (content == null) {
+            sendError(exchange, 404, "not_found", "No such file: " + path);
+            return;
+        }
+        exchange.sendResponseHeaders(200, content.length);
+        exchange.getResponseBody().write(content);
+    }
+
+    private void handleBatches(HttpExchange exchange) throws IOException {
+        if ("POST".equals(exchange.getRequestMethod())) {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            byte[] input = files.get(request.path("input_file_id").asText());
+            if (input == null) {
+                sendError(exchange, 400, "invalid_request_error", "Unknown input_file_id");
+                return;
+            }
+            sendJson(exchange, 200, runBatch(request.path("input_file_id").asText(), input));
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        ObjectNode batch = batches.get(path.substring(path.lastIndexOf('/') + 1));
+        if (batch == null) {
+            sendError(exchange, 404, "not_found", "No such batch: " + path);
+            return;
+        }
+        sendJson(exchange, 200, batch);
+    }
+
+    /**
+     * Answers every line of a batch right away, without injected latency or errors
+     */
+    private ObjectNode runBatch(String inputFileId, byte[] input) throws IOException {
+        StringBuilder output = new StringBuilder();
+        int total = 0;
+        for (String line : new String(input, StandardCharsets.UTF_8).split("\n")) {
+            if (line.isBlank()) {
+                continue;
+            }
+            total++;
+            JsonNode request = objectMapper.readTree(line);
+            JsonNode body = request.path("body");
+            String prompt = promptOf(body);
+            ObjectNode result = objectMapper.createObjectNode();
+            result.put("id", "batch-req-" + ids.incrementAndGet());
+            result.put("custom_id", request.path("custom_id").asText());
+            ObjectNode response = result.putObject("response");
+            response.put("status_code", 200);
+            response.set("body", completion(body.path("model").asText("stand-in"), prompt, respondTo(prompt)));
+            result.putNull("error");
+            output.append(result).append('\n');
+        }
+        String outputFileId = "file-stand-in-" + ids.incrementAndGet();
+        files.put(outputFileId, output.toString().getBytes(StandardCharsets.UTF_8));
+
+        ObjectNode batch = objectMapper.createObjectNode();
+        batch.put("id", "batch_stand_in_" + ids.incrementAndGet());
+        batch.put("object", "batch");
+        batch.put("endpoint", "/v1/chat/completions");
+        batch.put("input_file_id", inputFileId);
+        batch.put("status", "completed");
+        batch.put("output_file_id", outputFileId);
+        ObjectNode counts = batch.putObject("request_counts");
+        counts.put("total", total);
+        counts.put("completed", total);
+        counts.put("failed", 0);
+        batches.put(batch.get("id").asText(), batch);
+        return batch;
+    }
+
+    private String respondTo(String prompt) {
+        if (settings.getResponseMode() == StandInSettings.ResponseMode.ECHO) {
+            return prompt;
+        }
+        for (Map.Entry<String, String> canned : settings.getCannedResponses().entrySet()) {
+            if (prompt.contains(canned.getKey())) {
+                return canned.getValue();
+            }
+        }
+        return "No canned response matches this prompt.";
+    }
+
+    private String promptOf(JsonNode request) {
+        StringBuilder prompt = new StringBuilder();
+        for (JsonNode message : request.path("messages")) {
+            if (prompt.length() > 0) {
+                prompt.append("\n");
+            }
+            prompt.append(message.path("content").asText());
+        }
+        return prompt.toString();
+    }
+
+    private ObjectNode completion(String model, String prompt, String content) {
+        ObjectNode completion = objectMapper.createObjectNode();
+        completion.put("id", "chatcmpl-stand-in-" + ids.incrementAndGet());
+        completion.put("object", "chat.completion");
+        completion.put("created", System.currentTimeMillis() / 1000);
+        completion.put("model", model);
+        ObjectNode choice = completion.putArray("choices").addObject();
+        choice.put("index", 0);
+        ObjectNode message = choice.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", content);
+        choice.put("finish_reason", "stop");
+        ObjectNode usage = completion.putObject("usage");
+        // Roughly four characters per token, like the client-side estimate
+        usage.put("prompt_tokens", prompt.length() / 4);
+        usage.put("completion_tokens", content.length() / 4);
+        usage.put("total_tokens", (prompt.length() + content.length()) / 4);
+        return completion;
+    }
+
+    private ObjectNode chunk(String id, String model, String delta, String finishReason) {
+        ObjectNode chunk = objectMapper.createObjectNode();
+        chunk.put("id", id);
+        chunk.put("object", "chat.completion.chunk");
+        chunk.put("created", System.currentTimeMillis() / 1000);
+        chunk.put("model", model);
+        ArrayNode choices = chunk.putArray("choices");
+        ObjectNode choice = choices.addObject();
+        choice.put("index", 0);
+        ObjectNode message = choice.putObject("delta");
+        if (delta != null) {
+            message.put("content", delta);
+        }
+        choice.put("finish_reason", finishReason);
+        return chunk;
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void sendError(HttpExchange exchange, int status, String code, String message) throws IOException {
+        ObjectNode error = objectMapper.createObjectNode();
+        ObjectNode details = error.putObject("error");
+        details.put("message", message);
+        details.put("type", code);
+        details.put("code", code);
+        sendJson(exchange, status, error);
+    }
+
+    private void sendJson(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * Content of the "file" part of a multipart upload
+     */
+    private static byte[] filePart(HttpExchange exchange) throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        int boundaryAt = contentType != null ? contentType.indexOf("boundary=") : -1;
+        if (boundaryAt < 0) {
+            return body.getBytes(StandardCharsets.UTF_8);
+        }
+        String boundary = "--" + contentType.substring(boundaryAt + "boundary=".length()).replace("\"", "");
+        for (String part : body.split(Pattern.quote(boundary))) {
+            int headersEnd = part.indexOf("\r\n\r\n");
+            if (headersEnd >= 0 && part.substring(0, headersEnd).contains("name=\"file\"")) {
+                String content = part.substring(headersEnd + 4);
+                if (content.endsWith("\r\n")) {
+                    content = content.substring(0, content.length() - 2);
+                }
+                return content.getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        throw new IOException("Upload has no file part");
+    }
+
+    private long sampleLatency() {
+        synchronized (random) {
+            return settings.getLatency().sampleMillis(random);
+        }
+    }
+
+    private double nextDouble() {
+        synchronized (random) {
+            return random.nextDouble();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.hackathon.codeguard.service.llm;
+
+import com.theokanning.openai.completion.chat.ChatCompletionChoice;
+import com.theokanning.openai.completion.chat.ChatCompletionChunk;
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatCompletionResult;
+import com.theokanning.openai.service.OpenAiService;
+import io.reactivex.Flowable;
+import okhttp3.OkHttpClient;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Retrofit;
+
+import java.util.List;
+
+/**
+ * Client for any server speaking the OpenAI chat completions protocol: OpenAI itself,
+ * a proxy, or the local stand-in server
+ */
+public class OpenAiCompatibleClient implements LlmClient {
+
+    public static final String OPENAI_BASE_URL = "https://api.openai.com/v1/";
+
+    private final ChatCompletionApi api;
+
+    /**
+     * @param baseUrl API root including the version and any path prefix, e.g. http://localhost:8089/v1/
+     */
+    public OpenAiCompatibleClient(OkHttpClient httpClient, String baseUrl) {
+        // Same converters and call adapters as the default client, pointed at another base URL
+        Retrofit retrofit = OpenAiService.defaultRetrofit(httpClient, OpenAiService.defaultObjectMapper())
+            .newBuilder()
+            .baseUrl(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/")
+            .build();
+        this.api = retrofit.create(ChatCompletionApi.class);
+    }
+
+    @Override
+    public LlmCompletion complete(ChatCompletionRequest request) {
+        ChatCompletionResult completion = OpenAiService.execute(request instanceof StructuredChatCompletionRequest structured
+            ? api.createStructuredChatCompletion(structured)
+            : api.createChatCompletion(request));
+        return new LlmCompletion(firstContent(completion.getChoices()), completion.getUsage());
+    }
+
+    @Override
+    public Flowable<String> stream(ChatCompletionRequest request) {
+        request.setStream(true);
+        Call<ResponseBody> call = request instanceof StructuredChatCompletionRequest structured
+            ? api.createStructuredChatCompletionStream(structured)
+            : api.createChatCompletionStream(request);
+        return OpenAiService.stream(call, ChatCompletionChunk.class)
+            .filter(chunk -> firstContent(chunk.getChoices()) != null)
+            .map(chunk -> firstContent(chunk.getChoices()));
+    }
+
+    private static String firstContent(List<ChatCompletionChoice> choices) {
+        if (choices == null || choices.isEmpty() || choices.get(0).getMessage() == null) {
+            return null;
+        }
+        return choices.get(0).getMessage().getContent();
+    }
+}
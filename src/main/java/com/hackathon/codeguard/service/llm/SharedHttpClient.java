@@ -0,0 +1,85 @@
+package com.hackathon.codeguard.service.llm;
+
+import com.hackathon.codeguard.model.AnalysisOptions;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide HTTP client for LLM calls. Every service derives its client from this one with
+ * {@link OkHttpClient#newBuilder()}, which shares the connection pool and dispatcher, so TLS sessions
+ * and HTTP/2 connections are reused across services instead of each opening its own.
+ */
+public final class SharedHttpClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedHttpClient.class);
+
+    // The client library's default pool drops idle connections after one second; keep them across gaps between calls
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    // Keeps idle HTTP/2 connections from being dropped by intermediaries
+    private static final Duration PING_INTERVAL = Duration.ofSeconds(30);
+
+    private static OkHttpClient client;
+
+    private SharedHttpClient() {}
+
+    /**
+     * Returns the shared client, creating it on first use from the options' timeouts and the number
+     * of requests the run may have in flight; later calls return the same client
+     */
+    public static synchronized OkHttpClient get(AnalysisOptions options, int maxConcurrentRequests) {
+        if (client == null) {
+            int concurrency = Math.max(1, maxConcurrentRequests);
+            // Streaming calls are asynchronous and limited by the dispatcher, by default to 5 per host
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(concurrency);
+            dispatcher.setMaxRequestsPerHost(concurrency);
+            client = new OkHttpClient.Builder()
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectionPool(new ConnectionPool(concurrency, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .dispatcher(dispatcher)
+                .connectTimeout(Duration.ofSeconds(options.getConnectTimeoutSeconds()))
+                .readTimeout(Duration.ofSeconds(options.getReadTimeoutSeconds()))
+                .writeTimeout(Duration.ofSeconds(options.getReadTimeoutSeconds()))
+                .pingInterval(PING_INTERVAL)
+                .retryOnConnectionFailure(true)
+                .build();
+            logger.debug("Created shared HTTP client for up to {} concurrent requests", concurrency);
+        }
+        return client;
+    }
+
+    /**
+     * Resolves DNS and completes the TLS handshake with the API host in the background, leaving the
+     * connection in the pool for the first real request. The response itself is ignored.
+     */
+    public static void prewarm(OkHttpClient httpClient, String baseUrl) {
+        HttpUrl url = HttpUrl.get(baseUrl);
+        long started = System.nanoTime();
+        httpClient.newCall(new Request.Builder().url(url).head().build()).enqueue(new Callback() {
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+                logger.debug("Connection to {} pre-warmed in {} ms", url.host(), (System.nanoTime() - started) / 1_000_000);
+            }
+
+            @Override
+            public void onFailure(Call call, IOException e) {
+                logger.debug("Could not pre-warm connection to {}: {}", url.host(), e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,73 @@
+package com.hackathon.codeguard.service.llm;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Behavior of the local stand-in server
+ */
+public class StandInSettings {
+
+    public enum ResponseMode {
+        CANNED, // First canned response whose key occurs in the prompt
+        ECHO    // The prompt itself
+    }
+
+    // 0 picks a free port
+    private int port = 8089;
+
+    // Path of the API root, e.g. /api/v1 to stand in for a server behind a path prefix
+    private String basePath = "/v1";
+
+    private LatencyDistribution latency = LatencyDistribution.none();
+
+    // Share of chat completion calls answered with 429 or a 5xx error instead of a completion
+    private double rateLimitErrorRate = 0.0;
+    private double serverErrorRate = 0.0;
+    private int retryAfterSeconds = 1;
+
+    private ResponseMode responseMode = ResponseMode.CANNED;
+
+    // Prompt substring to response, checked in order; the empty key matches every prompt
+    private Map<String, String> cannedResponses = new LinkedHashMap<>();
+
+    // Characters per streamed chunk
+    private int streamChunkSize = 16;
+
+    // Seed for latency and error injection, so runs are repeatable
+    private long seed = 42;
+
+    // Constructors
+    public StandInSettings() {}
+
+    // Getters and Setters
+    public int getPort() { return port; }
+    public void setPort(int port) { this.port = port; }
+
+    public String getBasePath() { return basePath; }
+    public void setBasePath(String basePath) { this.basePath = basePath; }
+
+    public LatencyDistribution getLatency() { return latency; }
+    public void setLatency(LatencyDistribution latency) { this.latency = latency; }
+
+    public double getRateLimitErrorRate() { return rateLimitErrorRate; }
+    public void setRateLimitErrorRate(double rateLimitErrorRate) { this.rateLimitErrorRate = rateLimitErrorRate; }
+
+    public double getServerErrorRate() { return serverErrorRate; }
+    public void setServerErrorRate(double serverErrorRate) { this.serverErrorRate = serverErrorRate; }
+
+    public int getRetryAfterSeconds() { return retryAfterSeconds; }
+    public void setRetryAfterSeconds(int retryAfterSeconds) { this.retryAfterSeconds = retryAfterSeconds; }
+
+    public ResponseMode getResponseMode() { return responseMode; }
+    public void setResponseMode(ResponseMode responseMode) { this.responseMode = responseMode; }
+
+    public Map<String, String> getCannedResponses() { return cannedResponses; }
+    public void setCannedResponses(Map<String, String> cannedResponses) { this.cannedResponses = cannedResponses; }
+
+    public int getStreamChunkSize() { return streamChunkSize; }
+    public void setStreamChunkSize(int streamChunkSize) { this.streamChunkSize = streamChunkSize; }
+
+    public long getSeed() { return seed; }
+    public void setSeed(long seed) { this.seed = seed; }
+}
@@ -0,0 +1,32 @@
+package com.hackathon.codeguard.service.llm;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+
+import java.util.Map;
+
+/**
+ * Chat completion request with a response_format, which the client library does not model.
+ * Constrains the answer to JSON, optionally to a JSON schema.
+ */
+public class StructuredChatCompletionRequest extends ChatCompletionRequest {
+
+    @JsonProperty("response_format")
+    private Map<String, Object> responseFormat;
+
+    // Constructors
+    public StructuredChatCompletionRequest() {}
+
+    public StructuredChatCompletionRequest(ChatCompletionRequest request, Map<String, Object> responseFormat) {
+        setModel(request.getModel());
+        setMessages(request.getMessages());
+        setTemperature(request.getTemperature());
+        setMaxTokens(request.getMaxTokens());
+        setStream(request.getStream());
+        this.responseFormat = responseFormat;
+    }
+
+    // Getters and Setters
+    public Map<String, Object> getResponseFormat() { return responseFormat; }
+    public void setResponseFormat(Map<String, Object> responseFormat) { this.responseFormat = responseFormat; }
+}
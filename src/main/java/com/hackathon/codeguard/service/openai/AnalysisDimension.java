@@ -0,0 +1,139 @@
+package com.hackathon.codeguard.service.openai;
+
+import com.hackathon.codeguard.model.FileAnalysisResult;
+import com.hackathon.codeguard.model.ScoreWithReason;
+
+/**
+ * The independent aspects analyzed for each file.
+ * The JSON key and schema hint describe the section of the fused response.
+ */
+public enum AnalysisDimension {
+    METRICS("metrics",
+        "object with linesOfCode (integer), cyclomaticComplexity (integer), numberOfMethods (integer), " +
+        "numberOfClasses (integer), commentRatio (float 0-100), codeComplexity (LOW/MEDIUM/HIGH)"),
+    CODE_QUALITY("codeQuality",
+        "overall quality including readability, maintainability and documentation; " + Schemas.SCORE),
+    SINGLE_RESPONSIBILITY("singleResponsibility",
+        "adherence to the Single Responsibility Principle (one reason to change per class/function); " + Schemas.SCORE),
+    DESIGN_PATTERNS("designPatterns",
+        "appropriate and correct use of design patterns and architectural decisions; " + Schemas.SCORE),
+    SECURITY("security",
+        "security vulnerabilities and best practices such as injection flaws and insecure data handling " +
+        "(100 is very secure); " + Schemas.SCORE),
+    BUG_DETECTION("bugDetection",
+        "potential bugs such as null dereferences, bounds errors, infinite loops, resource leaks and race conditions " +
+        "(100 is bug-free); " + Schemas.SCORE),
+    ISSUES("issues",
+        "array of objects with severity (CRITICAL/HIGH/MEDIUM/LOW), type, description (1-2 sentences), " +
+        "lineNumber (integer if applicable) and suggestion (1-2 sentences)"),
+    SUGGESTIONS("suggestions",
+        "array of concise improvement suggestions (1-2 sentences each)"),
+    KT_PURPOSE("ktPurpose",
+        "string describing the file's main purpose, role in the system and key responsibilities in 2-3 sentences"),
+    KT_DESIGN("ktDesign",
+        "string describing the design approach, patterns, class structure and key algorithms in 2-3 sentences"),
+    KT_MODULES("ktModules",
+        "string describing dependencies, interfaces and integration points with other modules in 2-3 sentences");
+
+    private final String jsonKey;
+    private final String schemaHint;
+
+    AnalysisDimension(String jsonKey, String schemaHint) {
+        this.jsonKey = jsonKey;
+        this.schemaHint = schemaHint;
+    }
+
+    public String getJsonKey() { return jsonKey; }
+    public String getSchemaHint() { return schemaHint; }
+
+    public boolean isScore() {
+        return this == CODE_QUALITY || this == SINGLE_RESPONSIBILITY || this == DESIGN_PATTERNS
+            || this == SECURITY || this == BUG_DETECTION;
+    }
+
+    public boolean isKnowledgeTransfer() {
+        return this == KT_PURPOSE || this == KT_DESIGN || this == KT_MODULES;
+    }
+
+    /**
+     * Copies a score with its reasoning into the matching fields of the result
+     */
+    public void applyScore(FileAnalysisResult result, ScoreWithReason score) {
+        switch (this) {
+            case CODE_QUALITY -> {
+                result.setCodeQuality(score.getScore());
+                result.setCodeQualityReason(score.getReason());
+                result.setCodeQualityRecommendations(score.getRecommendations());
+            }
+            case SINGLE_RESPONSIBILITY -> {
+                result.setSolid(score.getScore());
+                result.setSolidReason(score.getReason());
+                result.setSolidRecommendations(score.getRecommendations());
+            }
+            case DESIGN_PATTERNS -> {
+                result.setDesignPatterns(score.getScore());
+                result.setDesignPatternsReason(score.getReason());
+                result.setDesignPatternsRecommendations(score.getRecommendations());
+            }
+            case SECURITY -> {
+                result.setSecurity(score.getScore());
+                result.setSecurityReason(score.getReason());
+                result.setSecurityRecommendations(score.getRecommendations());
+            }
+            case BUG_DETECTION -> {
+                result.setBugDetection(score.getScore());
+                result.setBugDetectionReason(score.getReason());
+                result.setBugDetectionRecommendations(score.getRecommendations());
+            }
+            default -> throw new IllegalStateException(this + " is not a scored dimension");
+        }
+    }
+
+    /**
+     * Reads the score with its reasoning back from the matching fields of the result
+     */
+    public ScoreWithReason scoreOf(FileAnalysisResult result) {
+        return switch (this) {
+            case CODE_QUALITY -> new ScoreWithReason(result.getCodeQuality(), result.getCodeQualityReason(),
+                result.getCodeQualityRecommendations());
+            case SINGLE_RESPONSIBILITY -> new ScoreWithReason(result.getSolid(), result.getSolidReason(),
+                result.getSolidRecommendations());
+            case DESIGN_PATTERNS -> new ScoreWithReason(result.getDesignPatterns(), result.getDesignPatternsReason(),
+                result.getDesignPatternsRecommendations());
+            case SECURITY -> new ScoreWithReason(result.getSecurity(), result.getSecurityReason(),
+                result.getSecurityRecommendations());
+            case BUG_DETECTION -> new ScoreWithReason(result.getBugDetection(), result.getBugDetectionReason(),
+                result.getBugDetectionRecommendations());
+            default -> throw new IllegalStateException(this + " is not a scored dimension");
+        };
+    }
+
+    /**
+     * Reads a KT description back from the matching field of the result
+     */
+    public String knowledgeTransferOf(FileAnalysisResult result) {
+        return switch (this) {
+            case KT_PURPOSE -> result.getKtPurpose();
+            case KT_DESIGN -> result.getKtDesign();
+            case KT_MODULES -> result.getKtModules();
+            default -> throw new IllegalStateException(this + " is not a KT dimension");
+        };
+    }
+
+    /**
+     * Copies a KT description into the matching field of the result
+     */
+    public void applyKnowledgeTransfer(FileAnalysisResult result, String text) {
+        switch (this) {
+            case KT_PURPOSE -> result.setKtPurpose(text);
+            case KT_DESIGN -> result.setKtDesign(text);
+            case KT_MODULES -> result.setKtModules(text);
+            default -> throw new IllegalStateException(this + " is not a KT dimension");
+        }
+    }
+
+    private static final class Schemas {
+        static final String SCORE =
+            "object with score (number 0-100), reason (detailed explanation) and recommendations (array of 2-4 actionable improvements)";
+    }
+}
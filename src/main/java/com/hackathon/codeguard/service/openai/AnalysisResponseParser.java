@@ -0,0 +1,333 @@
+package com.hackathon.codeguard.service.openai;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hackathon.codeguard.model.FileAnalysisResult;
+import com.hackathon.codeguard.model.FileAnalysisResult.CodeIssue;
+import com.hackathon.codeguard.model.ScoreWithReason;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binds JSON responses from the model to analysis results.
+ * Single-dimension responses and the sections of a fused response share the same binders. Scores and
+ * issues are bound token by token from a streaming parser, without building a tree first. Fences and
+ * prose around the JSON are tolerated, see {@link JsonExtractor}.
+ */
+public class AnalysisResponseParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisResponseParser.class);
+
+    private final ObjectMapper objectMapper;
+
+    public AnalysisResponseParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Maps a fused response onto the result, section by section.
+     * Returns the dimensions whose section was missing or malformed.
+     */
+    public Set<AnalysisDimension> applyFusedResponse(String response, FileAnalysisResult result, Set<AnalysisDimension> dimensions) {
+        Set<AnalysisDimension> failed = EnumSet.noneOf(AnalysisDimension.class);
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(jsonOf(response));
+        } catch (Exception e) {
+            logger.warn("Could not parse fused response: {}", e.getMessage());
+            failed.addAll(dimensions);
+            return failed;
+        }
+        if (root == null || !root.isObject()) {
+            failed.addAll(dimensions);
+            return failed;
+        }
+        return applySections(root, result, dimensions);
+    }
+
+    /**
+     * Maps the sections of a fused object, e.g. one file's entry in a packed response, onto the result.
+     * Returns the dimensions whose section was missing or malformed.
+     */
+    public Set<AnalysisDimension> applySections(JsonNode sections, FileAnalysisResult result, Set<AnalysisDimension> dimensions) {
+        Set<AnalysisDimension> failed = EnumSet.noneOf(AnalysisDimension.class);
+        for (AnalysisDimension dimension : dimensions) {
+            JsonNode section = sections.get(dimension.getJsonKey());
+            try {
+                applySection(dimension, section, result);
+            } catch (RuntimeException e) {
+                logger.debug("Malformed fused section {}: {}", dimension.getJsonKey(), e.getMessage());
+                failed.add(dimension);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Reads an answer that must be a JSON object, tolerating fences and prose around it
+     */
+    public JsonNode readObject(String response) throws IOException {
+        JsonNode root = objectMapper.readTree(jsonOf(response));
+        if (root == null || !root.isObject()) {
+            throw new IllegalArgumentException("expected a JSON object");
+        }
+        return root;
+    }
+
+    private void applySection(AnalysisDimension dimension, JsonNode section, FileAnalysisResult result) {
+        if (section == null || section.isNull()) {
+            throw new IllegalArgumentException("section is missing");
+        }
+        if (dimension.isScore()) {
+            dimension.applyScore(result, parseScore(section));
+        } else if (dimension.isKnowledgeTransfer()) {
+            if (!section.isTextual() || section.asText().isBlank()) {
+                throw new IllegalArgumentException("expected non-empty text");
+            }
+            dimension.applyKnowledgeTransfer(result, section.asText());
+        } else {
+            switch (dimension) {
+                case METRICS -> result.setMetrics(parseMetrics(section));
+                case ISSUES -> result.setIssues(parseIssues(section));
+                case SUGGESTIONS -> result.setSuggestions(parseStrings(section));
+                default -> throw new IllegalStateException("Unhandled dimension " + dimension);
+            }
+        }
+    }
+
+    /**
+     * Binds a single-dimension score answer
+     */
+    public ScoreWithReason readScore(String response) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(jsonOf(response))) {
+            return bindScore(parser);
+        }
+    }
+
+    /**
+     * Binds a single-dimension issues answer
+     */
+    public List<CodeIssue> readIssues(String response) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(jsonOf(response))) {
+            return bindIssues(parser);
+        }
+    }
+
+    public List<String> readStrings(String response) throws IOException {
+        return parseStrings(objectMapper.readTree(jsonOf(response)));
+    }
+
+    public Map<String, Object> readMetrics(String response) throws IOException {
+        return parseMetrics(objectMapper.readTree(jsonOf(response)));
+    }
+
+    /**
+     * Binds an object with score, reason and optional recommendations
+     */
+    public ScoreWithReason parseScore(JsonNode node) {
+        try (JsonParser parser = node.traverse(objectMapper)) {
+            return bindScore(parser);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Binds an array of issue objects
+     */
+    public List<CodeIssue> parseIssues(JsonNode node) {
+        if (!node.isArray()) {
+            throw new IllegalArgumentException("expected an array of issues");
+        }
+        try (JsonParser parser = node.traverse(objectMapper)) {
+            return bindIssues(parser);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    private ScoreWithReason bindScore(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("expected an object with score and reason");
+        }
+        Double score = null;
+        String reason = null;
+        List<String> recommendations = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "score" -> {
+                    if (value.isNumeric()) {
+                        score = parser.getDoubleValue();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                case "reason" -> reason = textOf(parser, value);
+                case "recommendations" -> bindStrings(parser, value, recommendations);
+                default -> parser.skipChildren();
+            }
+        }
+        if (score == null || reason == null) {
+            throw new IllegalArgumentException("expected numeric score and reason");
+        }
+        return new ScoreWithReason(score, reason, recommendations);
+    }
+
+    /**
+     * Binds an array of issues, or the first array inside an object such as {"issues": [...]}.
+     * Entries without severity, type, description or suggestion are dropped.
+     */
+    private List<CodeIssue> bindIssues(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_OBJECT) {
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                if (parser.nextToken() == JsonToken.START_ARRAY) {
+                    break;
+                }
+                parser.skipChildren();
+            }
+            token = parser.currentToken();
+        }
+        if (token != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("expected an array of issues");
+        }
+        List<CodeIssue> issues = new ArrayList<>();
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            CodeIssue issue = bindIssue(parser);
+            if (issue.getSeverity() == null || issue.getType() == null
+                || issue.getDescription() == null || issue.getSuggestion() == null) {
+                logger.debug("Dropping incomplete issue: {}", issue.getDescription());
+                continue;
+            }
+            issues.add(issue);
+        }
+        return issues;
+    }
+
+    private CodeIssue bindIssue(JsonParser parser) throws IOException {
+        CodeIssue issue = new CodeIssue();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "severity" -> issue.setSeverity(textOf(parser, value));
+                case "type" -> issue.setType(textOf(parser, value));
+                case "description" -> issue.setDescription(textOf(parser, value));
+                case "suggestion" -> issue.setSuggestion(textOf(parser, value));
+                case "lineNumber" -> issue.setLineNumber(lineNumberOf(parser, value));
+                default -> parser.skipChildren();
+            }
+        }
+        return issue;
+    }
+
+    private void bindStrings(JsonParser parser, JsonToken token, List<String> into) throws IOException {
+        if (token != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        JsonToken element;
+        while ((element = parser.nextToken()) != JsonToken.END_ARRAY && element != null) {
+            String text = textOf(parser, element);
+            if (text != null) {
+                into.add(text);
+            }
+        }
+    }
+
+    /**
+     * The text of a scalar, or null for a JSON null; objects and arrays are skipped and read as empty
+     */
+    private static String textOf(JsonParser parser, JsonToken token) throws IOException {
+        if (token.isScalarValue()) {
+            return token == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+        }
+        parser.skipChildren();
+        return "";
+    }
+
+    private static Integer lineNumberOf(JsonParser parser, JsonToken token) throws IOException {
+        if (token.isNumeric()) {
+            return parser.getValueAsInt();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            String text = parser.getText().trim();
+            return text.matches("\\d+") ? Integer.valueOf(text) : null;
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private static String jsonOf(String response) {
+        String json = JsonExtractor.extract(response);
+        if (json == null) {
+            throw new IllegalArgumentException("no JSON object or array in the response");
+        }
+        return json;
+    }
+
+    /**
+     * Binds an array of strings
+     */
+    public List<String> parseStrings(JsonNode node) {
+        if (!node.isArray()) {
+            throw new IllegalArgumentException("expected an array of strings");
+        }
+        List<String> values = new ArrayList<>();
+        for (JsonNode value : node) {
+            values.add(value.asText());
+        }
+        return values;
+    }
+
+    /**
+     * Binds a metrics object, keeping the standard keys typed and any extra fields as-is
+     */
+    public Map<String, Object> parseMetrics(JsonNode node) {
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("expected a metrics object");
+        }
+        Map<String, Object> metrics = new HashMap<>();
+
+        // Parse specific metrics with proper types
+        metrics.put("linesOfCode", node.has("linesOfCode") ? node.get("linesOfCode").asInt() : 0);
+        metrics.put("cyclomaticComplexity", node.has("cyclomaticComplexity") ? node.get("cyclomaticComplexity").asInt() : 0);
+        metrics.put("numberOfMethods", node.has("numberOfMethods") ? node.get("numberOfMethods").asInt() : 0);
+        metrics.put("numberOfClasses", node.has("numberOfClasses") ? node.get("numberOfClasses").asInt() : 0);
+        metrics.put("commentRatio", node.has("commentRatio") ? node.get("commentRatio").asDouble() : 0.0);
+        metrics.put("codeComplexity", node.has("codeComplexity") ? node.get("codeComplexity").asText() : "UNKNOWN");
+
+        // Add any additional fields that might be present
+        node.fields().forEachRemaining(entry -> {
+            String key = entry.getKey();
+            if (!metrics.containsKey(key)) {
+                JsonNode value = entry.getValue();
+                if (value.isInt()) {
+                    metrics.put(key, value.asInt());
+                } else if (value.isDouble()) {
+                    metrics.put(key, value.asDouble());
+                } else {
+                    metrics.put(key, value.asText());
+                }
+            }
+        });
+
+        return metrics;
+    }
+}
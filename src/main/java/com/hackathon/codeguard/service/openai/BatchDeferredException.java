@@ -0,0 +1,11 @@
+package com.hackathon.codeguard.service.openai;
+
+/**
+ * Thrown instead of calling the API while requests are being collected for a batch
+ */
+class BatchDeferredException extends RuntimeException {
+
+    BatchDeferredException() {
+        super("Request deferred to batch");
+    }
+}
@@ -0,0 +1,104 @@
+package com.hackathon.codeguard.service.openai;
+
+import com.hackathon.codeguard.model.FileAnalysisResult;
+import com.hackathon.codeguard.model.FileAnalysisResult.CodeIssue;
+import com.hackathon.codeguard.model.ScoreWithReason;
+import com.hackathon.codeguard.service.ChangeSet.Hunk;
+import com.hackathon.codeguard.service.source.SourceExcerpt;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Combines the previous result of a file with the analysis of its changed regions.
+ * Previous issues in untouched code are kept with their lines shifted past the hunks;
+ * new issues are kept only where they fall on changed lines. Scores are blended by the
+ * share of changed lines, and a worse security or bug score on the changed code wins outright.
+ */
+final class ChangedRegionMerger {
+
+    private static final int MAX_RECOMMENDATIONS = 6;
+
+    private ChangedRegionMerger() {}
+
+    static FileAnalysisResult merge(FileAnalysisResult previous, FileAnalysisResult regions, SourceExcerpt excerpt,
+                                    List<Hunk> hunks, int fileLineCount) {
+        FileAnalysisResult merged = new FileAnalysisResult(regions.getFilename(), regions.getFilepath());
+        double changedShare = Math.min(1.0, (double) changedLines(hunks) / Math.max(1, fileLineCount));
+
+        for (AnalysisDimension dimension : AnalysisDimension.values()) {
+            if (dimension.isScore()) {
+                dimension.applyScore(merged, mergeScore(dimension, dimension.scoreOf(previous),
+                    dimension.scoreOf(regions), changedShare));
+            } else if (dimension.isKnowledgeTransfer()) {
+                // A local edit rarely changes what a file is for, so the previous KT text stands
+                dimension.applyKnowledgeTransfer(merged, dimension.knowledgeTransferOf(previous));
+            }
+        }
+
+        List<CodeIssue> issues = new ArrayList<>();
+        if (previous.getIssues() != null) {
+            for (CodeIssue issue : previous.getIssues()) {
+                Integer line = issue.getLineNumber() != null ? Hunk.mapOldLine(hunks, issue.getLineNumber()) : null;
+                if (issue.getLineNumber() == null || line != null) {
+                    issues.add(copyWithLine(issue, line));
+                }
+            }
+        }
+        if (regions.getIssues() != null) {
+            for (CodeIssue issue : regions.getIssues()) {
+                Integer line = excerpt.toFileLine(issue.getLineNumber());
+                if (issue.getLineNumber() == null || (line != null && isChanged(hunks, line))) {
+                    issues.add(copyWithLine(issue, line));
+                }
+            }
+        }
+        merged.setIssues(issues);
+
+        Set<String> suggestions = new LinkedHashSet<>();
+        addAll(suggestions, regions.getSuggestions());
+        addAll(suggestions, previous.getSuggestions());
+        merged.setSuggestions(new ArrayList<>(suggestions));
+        merged.setMetrics(previous.getMetrics());
+        return merged;
+    }
+
+    private static ScoreWithReason mergeScore(AnalysisDimension dimension, ScoreWithReason previous,
+                                              ScoreWithReason regions, double changedShare) {
+        double blended = previous.getScore() * (1 - changedShare) + regions.getScore() * changedShare;
+        if (dimension == AnalysisDimension.SECURITY || dimension == AnalysisDimension.BUG_DETECTION) {
+            blended = Math.min(blended, regions.getScore());
+        }
+        String reason = "[changed lines] " + regions.getReason() + " [unchanged code] " + previous.getReason();
+
+        Set<String> recommendations = new LinkedHashSet<>();
+        addAll(recommendations, regions.getRecommendations());
+        addAll(recommendations, previous.getRecommendations());
+        return new ScoreWithReason(blended, reason,
+            new ArrayList<>(recommendations).subList(0, Math.min(MAX_RECOMMENDATIONS, recommendations.size())));
+    }
+
+    private static int changedLines(List<Hunk> hunks) {
+        int changed = 0;
+        for (Hunk hunk : hunks) {
+            changed += Math.max(hunk.getOldCount(), hunk.getNewCount());
+        }
+        return changed;
+    }
+
+    private static boolean isChanged(List<Hunk> hunks, int line) {
+        return hunks.stream().anyMatch(hunk -> hunk.newRange().contains(line));
+    }
+
+    private static CodeIssue copyWithLine(CodeIssue issue, Integer line) {
+        return new CodeIssue(issue.getSeverity(), issue.getType(), issue.getDescription(), line, issue.getSuggestion());
+    }
+
+    private static void addAll(Set<String> target, List<String> values) {
+        if (values != null) {
+            target.addAll(values);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.hackathon.codeguard.service.openai;
+
+import com.hackathon.codeguard.model.FileAnalysisResult;
+import com.hackathon.codeguard.model.FileAnalysisResult.CodeIssue;
+import com.hackathon.codeguard.model.ScoreWithReason;
+import com.hackathon.codeguard.service.source.CodeChunk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reduces the per-chunk results of a large file into a single file result.
+ * Scores are weighted by chunk size, except security and bug detection where the
+ * weakest chunk decides, since one vulnerable method makes the whole file vulnerable.
+ * Issue line numbers are remapped from chunk-relative to file lines.
+ */
+final class ChunkResultMerger {
+
+    private static final int MAX_RECOMMENDATIONS = 6;
+    private static final List<String> COMPLEXITY_LEVELS = List.of("LOW", "MEDIUM", "HIGH");
+
+    private ChunkResultMerger() {}
+
+    static void merge(FileAnalysisResult target, List<CodeChunk> chunks, List<FileAnalysisResult> chunkResults,
+                      Set<AnalysisDimension> dimensions) {
+        for (AnalysisDimension dimension : dimensions) {
+            if (dimension.isScore()) {
+                dimension.applyScore(target, mergeScores(dimension, chunks, chunkResults));
+            } else if (dimension.isKnowledgeTransfer()) {
+                dimension.applyKnowledgeTransfer(target, mergeTexts(dimension, chunks, chunkResults));
+            }
+        }
+        target.setIssues(mergeIssues(chunks, chunkResults));
+        target.setSuggestions(mergeSuggestions(chunkResults));
+        if (dimensions.contains(AnalysisDimension.METRICS)) {
+            target.setMetrics(mergeMetrics(chunkResults));
+        }
+    }
+
+    private static ScoreWithReason mergeScores(AnalysisDimension dimension, List<CodeChunk> chunks,
+                                               List<FileAnalysisResult> chunkResults) {
+        boolean weakestWins = dimension == AnalysisDimension.SECURITY || dimension == AnalysisDimension.BUG_DETECTION;
+        double weightedSum = 0.0;
+        double totalWeight = 0.0;
+        double minimum = Double.MAX_VALUE;
+        List<String> reasons = new ArrayList<>();
+        Set<String> recommendations = new LinkedHashSet<>();
+
+        for (int i = 0; i < chunks.size(); i++) {
+            CodeChunk chunk = chunks.get(i);
+            ScoreWithReason score = dimension.scoreOf(chunkResults.get(i));
+            double weight = Math.max(1, TokenEstimator.estimate(chunk.getContent()));
+            weightedSum += score.getScore() * weight;
+            totalWeight += weight;
+            minimum = Math.min(minimum, score.getScore());
+            if (score.getReason() != null) {
+                reasons.add(lineRange(chunk) + " " + score.getReason());
+            }
+            if (score.getRecommendations() != null) {
+                recommendations.addAll(score.getRecommendations());
+            }
+        }
+
+        double merged = weakestWins ? minimum : weightedSum / totalWeight;
+        return new ScoreWithReason(merged, String.join(" ", reasons),
+            new ArrayList<>(recommendations).subList(0, Math.min(MAX_RECOMMENDATIONS, recommendations.size())));
+    }
+
+    private static String mergeTexts(AnalysisDimension dimension, List<CodeChunk> chunks,
+                                     List<FileAnalysisResult> chunkResults) {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            String text = dimension.knowledgeTransferOf(chunkResults.get(i));
+            if (text != null && !text.isBlank()) {
+                texts.add(lineRange(chunks.get(i)) + " " + text);
+            }
+        }
+        return String.join(" ", texts);
+    }
+
+    private static List<CodeIssue> mergeIssues(List<CodeChunk> chunks, List<FileAnalysisResult> chunkResults) {
+        List<CodeIssue> issues = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            List<CodeIssue> chunkIssues = chunkResults.get(i).getIssues();
+            if (chunkIssues == null) {
+                continue;
+            }
+            for (CodeIssue issue : chunkIssues) {
+                issues.add(new CodeIssue(issue.getSeverity(), issue.getType(), issue.getDescription(),
+                    chunks.get(i).toFileLine(issue.getLineNumber()), issue.getSuggestion()));
+            }
+        }
+        return issues;
+    }
+
+    private static List<String> mergeSuggestions(List<FileAnalysisResult> chunkResults) {
+        Set<String> suggestions = new LinkedHashSet<>();
+        for (FileAnalysisResult chunkResult : chunkResults) {
+            if (chunkResult.getSuggestions() != null) {
+                suggestions.addAll(chunkResult.getSuggestions());
+            }
+        }
+        return new ArrayList<>(suggestions);
+    }
+
+    /**
+     * Counts add up across chunks; the comment ratio is weighted by lines and the complexity level is the highest seen
+     */
+    private static Map<String, Object> mergeMetrics(List<FileAnalysisResult> chunkResults) {
+        int linesOfCode = 0, cyclomaticComplexity = 0, numberOfMethods = 0, numberOfClasses = 0;
+        double commentLines = 0.0;
+        int complexityLevel = -1;
+
+        for (FileAnalysisResult chunkResult : chunkResults) {
+            Map<String, Object> metrics = chunkResult.getMetrics();
+            if (metrics == null) {
+                continue;
+            }
+            int lines = intMetric(metrics, "linesOfCode");
+            linesOfCode += lines;
+            cyclomaticComplexity += intMetric(metrics, "cyclomaticComplexity");
+            numberOfMethods += intMetric(metrics, "numberOfMethods");
+            numberOfClasses += intMetric(metrics, "numberOfClasses");
+            if (metrics.get("commentRatio") instanceof Number ratio) {
+                commentLines += ratio.doubleValue() * lines;
+            }
+            complexityLevel = Math.max(complexityLevel,
+                COMPLEXITY_LEVELS.indexOf(String.valueOf(metrics.get("codeComplexity")).toUpperCase()));
+        }
+
+        Map<String, Object> merged = new HashMap<>();
+        merged.put("linesOfCode", linesOfCode);
+        merged.put("cyclomaticComplexity", cyclomaticComplexity);
+        merged.put("numberOfMethods", numberOfMethods);
+        merged.put("numberOfClasses", numberOfClasses);
+        merged.put("commentRatio", linesOfCode > 0 ? commentLines / linesOfCode : 0.0);
+        merged.put("codeComplexity", complexityLevel >= 0 ? COMPLEXITY_LEVELS.get(complexityLevel) : "UNKNOWN");
+        return merged;
+    }
+
+    private static int intMetric(Map<String, Object> metrics, String key) {
+        return metrics.get(key) instanceof Number value ? value.intValue() : 0;
+    }
+
+    private static String lineRange(CodeChunk chunk) {
+        return "[lines " + chunk.getStartLine() + "-" + chunk.getEndLine() + "]";
+    }
+}
@@ -0,0 +1,83 @@
+package com.hackathon.codeguard.service.openai;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stops calling an unhealthy endpoint. After enough consecutive endpoint failures the
+ * circuit opens and calls fail fast; once the open period passes a single trial call
+ * is let through and its outcome closes or reopens the circuit.
+ */
+public class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtMillis;
+    private long trialStartedAtMillis;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Returns true if a call may be made now
+     */
+    public synchronized boolean allowRequest() {
+        long now = System.currentTimeMillis();
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now - openedAtMillis < openMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialStartedAtMillis = now;
+                logger.info("Circuit half-open, sending a trial request");
+                return true;
+            default:
+                // Allow a new trial if the previous one never reported back
+                if (now - trialStartedAtMillis >= openMillis) {
+                    trialStartedAtMillis = now;
+                    return true;
+                }
+                return false;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            logger.info("Circuit closed, endpoint is healthy again");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAtMillis = System.currentTimeMillis();
+            logger.warn("Circuit opened after {} consecutive failures, failing fast for {} ms", consecutiveFailures, openMillis);
+        }
+    }
+
+    /**
+     * True while calls are being rejected
+     */
+    public synchronized boolean isOpen() {
+        return state == State.OPEN && System.currentTimeMillis() - openedAtMillis < openMillis;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
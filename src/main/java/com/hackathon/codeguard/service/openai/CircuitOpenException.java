@@ -0,0 +1,11 @@
+package com.hackathon.codeguard.service.openai;
+
+/**
+ * Thrown instead of calling the API while the circuit breaker is open
+ */
+public class CircuitOpenException extends Exception {
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,98 @@
+package com.hackathon.codeguard.service.openai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Scope for the concurrent dimension calls of a single file.
+ * All forked tasks share one deadline and none of them outlive the scope:
+ * closing it cancels whatever is still running. Scopes of the same file pass
+ * the same deadline, so the file's phases share one time budget.
+ */
+final class DimensionTaskScope implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final long deadlineNanos;
+    private final List<Future<?>> forked = new ArrayList<>();
+
+    DimensionTaskScope(ExecutorService executor, long deadlineNanos) {
+        this.executor = executor;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * The {@link System#nanoTime()} deadline that lies the given number of milliseconds from now
+     */
+    static long deadlineAfter(long timeoutMillis) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * Starts a task inside this scope
+     */
+    <T> Future<T> fork(Callable<T> task) {
+        Future<T> future = executor.submit(task);
+        forked.add(future);
+        return future;
+    }
+
+    /**
+     * Waits until every forked task is done or the deadline passes
+     */
+    void join() throws InterruptedException {
+        for (Future<?> future : forked) {
+            long remaining = deadlineNanos - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            try {
+                future.get(remaining, TimeUnit.NANOSECONDS);
+            } catch (ExecutionException | CancellationException e) {
+                // Failures are resolved per task through resultOrElse
+            } catch (TimeoutException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Number of forked tasks that have not completed
+     */
+    int unfinishedCount() {
+        return (int) forked.stream().filter(future -> !future.isDone()).count();
+    }
+
+    /**
+     * Returns the task result, or the fallback if it failed, was cancelled or missed the deadline
+     */
+    <T> T resultOrElse(Future<T> future, Supplier<T> fallback) {
+        if (!future.isDone() || future.isCancelled()) {
+            return fallback.get();
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            return fallback.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fallback.get();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Future<?> future : forked) {
+            if (!future.isDone()) {
+                future.cancel(true);
+            }
+        }
+    }
+}
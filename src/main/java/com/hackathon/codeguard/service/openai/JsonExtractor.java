@@ -0,0 +1,73 @@
+package com.hackathon.codeguard.service.openai;
+
+/**
+ * Finds the JSON value in a model answer that wraps it in a Markdown fence or surrounds it with prose.
+ * The content of the first fence is searched if there is one, the whole answer otherwise; the value is
+ * the first balanced object or array in it, with brackets inside strings ignored.
+ */
+final class JsonExtractor {
+
+    private static final String FENCE = "```";
+
+    private JsonExtractor() {}
+
+    /**
+     * The JSON text, the rest of the answer from the first '{' or '[' when the value is cut off,
+     * or null when there is no '{' or '[' at all
+     */
+    static String extract(String answer) {
+        if (answer == null) {
+            return null;
+        }
+        int from = 0;
+        int to = answer.length();
+        int fence = answer.indexOf(FENCE);
+        if (fence >= 0) {
+            // Skip the info string such as "json" up to the end of the fence line
+            int contentStart = answer.indexOf('\n', fence);
+            int fenceEnd = contentStart >= 0 ? answer.indexOf(FENCE, contentStart) : -1;
+            if (fenceEnd >= 0) {
+                from = contentStart;
+                to = fenceEnd;
+            }
+        }
+        int start = firstOpening(answer, from, to);
+        if (start < 0) {
+            return null;
+        }
+        int end = matchingClose(answer, start, to);
+        return answer.substring(start, end >= 0 ? end + 1 : to);
+    }
+
+    private static int firstOpening(String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == '{' || c == '[') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int matchingClose(String text, int start, int to) {
+        int depth = 0;
+        boolean inString = false;
+        for (int i = start; i < to; i++) {
+            char c = text.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if ((c == '}' || c == ']') && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,25 +1,68 @@
 package com.hackathon.codeguard.service.openai;
 
 import com.hackathon.codeguard.cli.CodeGuardCLI.AnalysisMode;
+import com.hackathon.codeguard.model.AnalysisOptions;
 import com.hackathon.codeguard.model.FileAnalysisResult;
 import com.hackathon.codeguard.model.FileAnalysisResult.CodeIssue;
+import com.hackathon.codeguard.model.InputSlice;
 import com.hackathon.codeguard.model.ScoreWithReason;
+import com.hackathon.codeguard.service.ChangeSet.Hunk;
+import com.hackathon.codeguard.service.ChangeSet.LineRange;
 import com.hackathon.codeguard.service.FileProcessingService;
+import com.hackathon.codeguard.service.batch.BatchApiClient;
+import com.hackathon.codeguard.service.batch.BatchRequestCollector;
+import com.hackathon.codeguard.service.cache.LlmResponseCache;
+import com.hackathon.codeguard.service.llm.LlmClient;
+import com.hackathon.codeguard.service.llm.LlmCompletion;
+import com.hackathon.codeguard.service.llm.OpenAiCompatibleClient;
+import com.hackathon.codeguard.service.llm.SharedHttpClient;
+import com.hackathon.codeguard.service.llm.StructuredChatCompletionRequest;
+import com.hackathon.codeguard.service.openai.PromptAssembler.Prompt;
+import com.hackathon.codeguard.service.source.ChangedRegionExtractor;
+import com.hackathon.codeguard.service.source.CodeChunk;
+import com.hackathon.codeguard.service.source.CodeChunker;
+import com.hackathon.codeguard.service.source.LocalMetricsAnalyzer;
+import com.hackathon.codeguard.service.source.PromptMinimizer;
+import com.hackathon.codeguard.service.source.SourceExcerpt;
+import com.hackathon.codeguard.service.source.SourceSlicer;
+import com.hackathon.codeguard.service.usage.BudgetManager;
+import com.hackathon.codeguard.service.usage.UsageTracker;
+import com.theokanning.openai.OpenAiHttpException;
+import com.theokanning.openai.Usage;
 import com.theokanning.openai.completion.chat.ChatCompletionRequest;
 import com.theokanning.openai.completion.chat.ChatMessage;
-import com.theokanning.openai.completion.chat.ChatMessageRole;
-import com.theokanning.openai.service.OpenAiService;
+import okhttp3.HttpUrl;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.JsonNode;
+import okhttp3.OkHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Service for analyzing code using OpenAI APIs
@@ -28,27 +71,210 @@ public class OpenAIAnalysisService {
     
     private static final Logger logger = LoggerFactory.getLogger(OpenAIAnalysisService.class);
     
-    private final OpenAiService openAiService;
+    private final LlmClient llmClient;
     private final FileProcessingService fileService;
     private final ObjectMapper objectMapper;
+    private final AnalysisResponseParser responseParser;
+    private final AnalysisOptions options;
+    private final ExecutorService dimensionExecutor;
+    private final LlmResponseCache responseCache;
+    private final RateLimitScheduler rateLimiter;
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_OPEN_MS);
+    private final CodeChunker chunker;
+    private final LocalMetricsAnalyzer metricsAnalyzer = new LocalMetricsAnalyzer();
+    private final ChangedRegionExtractor regionExtractor = new ChangedRegionExtractor();
+    private final PromptMinimizer minimizer;
+    private final SourceSlicer slicer = new SourceSlicer();
+    private final BatchApiClient batchClient;
+    private final UsageTracker usage;
+    
+    // Batch mode: requests are either collected for submission or answered from a joined batch
+    private volatile BatchRequestCollector batchCollector;
+    private volatile Map<String, String> batchResponses;
     
     // OpenAI Configuration
     private static final String MODEL = "gpt-4";
+    private static final String PROMPT_VERSION = "2"; // Bump when prompts or local analysis change
     private static final int MAX_TOKENS = 2000;
+    private static final int FUSED_MAX_TOKENS = 4000; // Room for every section in one response
     private static final double TEMPERATURE = 0.1; // Low temperature for consistent results
-    private static final int MAX_RETRIES = 3;
-    private static final long RETRY_DELAY_MS = 1000; // 1 second
+    private static final int MAX_ATTEMPTS = 6; // Upper bound across all retry policies
+    private static final int CIRCUIT_FAILURE_THRESHOLD = 5;
+    private static final long CIRCUIT_OPEN_MS = 30_000;
+    private static final long CACHE_MEMORY_BYTES = 64L * 1024 * 1024;
+    private static final Set<String> SCORE_FIELDS = Set.of("score", "reason", "recommendations");
+    private static final int DIMENSION_CALLS_PER_FILE = 11; // metrics, 5 scores, issues, suggestions, 3 KT
+    // Typical sizes of a task and of one dimension's answer, for cost estimates before a file is sent
+    private static final long ESTIMATED_TASK_TOKENS = 120;
+    private static final long ESTIMATED_COMPLETION_TOKENS = 250;
+    // Answers in a pack are kept short, so a file takes about this much of the pack's answer per dimension
+    private static final long PACKED_SECTION_TOKENS = 100;
+    private static final long SYSTEM_TOKENS = TokenEstimator.estimate(PromptAssembler.SYSTEM_INSTRUCTIONS);
+    private static final Pattern SCORE_VALUE = Pattern.compile("(?:\"score\"\\s*:\\s*\"?|^\\s*)(\\d+(?:\\.\\d+)?)");
+    private static final String SCORE_FORMAT =
+        "Return as JSON with keys:\n" +
+        "- 'score' (number 0-100)\n" +
+        "- 'reason' (detailed explanation for the score)\n" +
+        "- 'recommendations' (array of 2-4 specific actionable improvements)\n";
 
     public OpenAIAnalysisService() {
-        // Initialize OpenAI service with API key from environment variable
+        this(new AnalysisOptions());
+    }
+
+    public OpenAIAnalysisService(AnalysisOptions options) {
+        this(options, new RateLimitScheduler(options.getRequestsPerMinute(), options.getTokensPerMinute()));
+    }
+
+    private OpenAIAnalysisService(AnalysisOptions options, RateLimitScheduler rateLimiter) {
+        this(options, rateLimiter, createHttpClient(options, resolveApiKey(options), rateLimiter));
+    }
+
+    private OpenAIAnalysisService(AnalysisOptions options, RateLimitScheduler rateLimiter, OkHttpClient httpClient) {
+        this(options, rateLimiter, new OpenAiCompatibleClient(httpClient, options.getLlmBaseUrl()),
+            new BatchApiClient(httpClient, options.getLlmBaseUrl(), resolveApiKey(options)));
+    }
+
+    /**
+     * Uses the given provider instead of an HTTP client built from the options
+     */
+    OpenAIAnalysisService(AnalysisOptions options, RateLimitScheduler rateLimiter, LlmClient llmClient,
+                          BatchApiClient batchClient) {
+        this.rateLimiter = rateLimiter;
+        this.llmClient = llmClient;
+        this.batchClient = batchClient;
+        this.fileService = new FileProcessingService();
+        this.objectMapper = new ObjectMapper();
+        this.responseParser = new AnalysisResponseParser(objectMapper);
+        this.options = options;
+        this.dimensionExecutor = createDimensionExecutor(Math.max(1, options.getParallelism()) * DIMENSION_CALLS_PER_FILE);
+        this.responseCache = options.isCacheEnabled() ? createResponseCache(options) : null;
+        this.chunker = new CodeChunker(options.getMaxChunkTokens());
+        this.minimizer = new PromptMinimizer(options.isElideImports());
+        this.usage = new UsageTracker(options.getPromptPricePerMillion(), options.getCompletionPricePerMillion());
+    }
+
+    private static LlmResponseCache createResponseCache(AnalysisOptions options) {
+        try {
+            return new LlmResponseCache(
+                Paths.get(options.getCacheDirectory()),
+                CACHE_MEMORY_BYTES,
+                options.getCacheMaxSizeMb() * 1024 * 1024,
+                Duration.ofHours(options.getCacheTtlHours()));
+        } catch (Exception e) {
+            logger.warn("LLM response cache disabled, could not open {}: {}", options.getCacheDirectory(), e.getMessage());
+            return null;
+        }
+    }
+
+    public String getModel() {
+        return MODEL;
+    }
+
+    /**
+     * Identifies the prompts in use, so stored results from other prompts are not reused
+     */
+    public String getPromptVersion() {
+        String version = PROMPT_VERSION;
+        if (options.isMinimizeInput()) {
+            version += options.isElideImports() ? "-min-noimports" : "-min";
+        }
+        Map<String, InputSlice> slices = new TreeMap<>(options.getDimensionInputs());
+        slices.values().removeIf(slice -> slice == InputSlice.FULL);
+        if (!slices.isEmpty()) {
+            version += "-slices" + slices;
+        }
+        return options.isFused() ? version + "-fused" : version;
+    }
+
+    public BatchApiClient getBatchClient() {
+        return batchClient;
+    }
+
+    /**
+     * Starts recording requests for a batch instead of sending them. Analyses run while collecting
+     * produce placeholder results that must be discarded.
+     */
+    public void startBatchCollection() {
+        batchCollector = new BatchRequestCollector();
+    }
+
+    /**
+     * Stops recording and returns the requests collected since {@link #startBatchCollection()}
+     */
+    public BatchRequestCollector finishBatchCollection() {
+        BatchRequestCollector collected = batchCollector;
+        batchCollector = null;
+        return collected;
+    }
+
+    public boolean isCollectingBatch() {
+        return batchCollector != null;
+    }
+
+    /**
+     * Answers requests from joined batch responses, keyed by custom id; requests missing from the batch are sent live
+     */
+    public void useBatchResponses(Map<String, String> responses) {
+        this.batchResponses = responses;
+    }
+
+    /**
+     * Tokens, cost, latency and retries of the calls made by this service
+     */
+    public UsageTracker getUsageTracker() {
+        return usage;
+    }
+
+    /**
+     * Returns the response cache, or null when caching is disabled
+     */
+    public LlmResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * The key comes from OPENAI_API_KEY; it is only mandatory for the OpenAI API itself, since local
+     * OpenAI-compatible servers usually ignore it
+     */
+    private static String resolveApiKey(AnalysisOptions options) {
         String apiKey = System.getenv("OPENAI_API_KEY");
-        if (apiKey == null || apiKey.trim().isEmpty()) {
+        if (apiKey != null && !apiKey.trim().isEmpty()) {
+            return apiKey;
+        }
+        if (HttpUrl.get(OpenAiCompatibleClient.OPENAI_BASE_URL).host().equals(HttpUrl.get(options.getLlmBaseUrl()).host())) {
             throw new IllegalStateException("OPENAI_API_KEY environment variable is not set");
         }
-        
-        this.openAiService = new OpenAiService(apiKey, Duration.ofSeconds(60));
-        this.fileService = new FileProcessingService();
-        this.objectMapper = new ObjectMapper();
+        return "unused";
+    }
+
+    /**
+     * Starts connecting to the API in the background, so the handshake overlaps with finding the files to analyze
+     */
+    public static void prewarmConnection(AnalysisOptions options) {
+        SharedHttpClient.prewarm(sharedHttpClient(options), options.getLlmBaseUrl());
+    }
+
+    private static OkHttpClient sharedHttpClient(AnalysisOptions options) {
+        return SharedHttpClient.get(options, Math.max(1, options.getParallelism()) * DIMENSION_CALLS_PER_FILE);
+    }
+
+    private static OkHttpClient createHttpClient(AnalysisOptions options, String apiKey, RateLimitScheduler rateLimiter) {
+        return sharedHttpClient(options)
+            .newBuilder()
+            .addInterceptor(chain -> chain.proceed(chain.request().newBuilder()
+                .header("Authorization", "Bearer " + apiKey)
+                .build()))
+            .addInterceptor(new RateLimitHeaderInterceptor(rateLimiter))
+            .build();
+    }
+
+    private static ExecutorService createDimensionExecutor(int poolSize) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "code-guard-dimension-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     /**
@@ -65,65 +291,42 @@ public class OpenAIAnalysisService {
 
             // Determine programming language
             String language = fileService.determineProgrammingLanguage(filePath);
+            logger.info("Analyzing file: {} ({} language)", filePath.getFileName(), language);
             
-            // Extract basic file metrics first
-            Map<String, Object> fileMetrics = extractMetrics(fileContent, language);
-            result.setMetrics(fileMetrics);
-            
-            // Log file information
-            logger.info("Analyzing file: {} ({} lines, {} language)", 
-                filePath.getFileName(), 
-                fileMetrics.getOrDefault("linesOfCode", "unknown"),
-                language);
-            
-            // Analyze different aspects with individual exception handling
-            ScoreWithReason codeQualityResult = analyzeCodeQuality(fileContent, language);
-            result.setCodeQuality(codeQualityResult.getScore());
-            result.setCodeQualityReason(codeQualityResult.getReason());
-            result.setCodeQualityRecommendations(codeQualityResult.getRecommendations());
-            
-            ScoreWithReason srpResult = analyzeSingleResponsibilityPrinciple(fileContent, language);
-            result.setSolid(srpResult.getScore());
-            result.setSolidReason(srpResult.getReason());
-            result.setSolidRecommendations(srpResult.getRecommendations());
-            
-            ScoreWithReason designPatternsResult = analyzeDesignPatterns(fileContent, language);
-            result.setDesignPatterns(designPatternsResult.getScore());
-            result.setDesignPatternsReason(designPatternsResult.getReason());
-            result.setDesignPatternsRecommendations(designPatternsResult.getRecommendations());
-            
-            ScoreWithReason securityResult = analyzeSecurity(fileContent, language);
-            result.setSecurity(securityResult.getScore());
-            result.setSecurityReason(securityResult.getReason());
-            result.setSecurityRecommendations(securityResult.getRecommendations());
+            if (circuitBreaker.isOpen()) {
+                logger.warn("OpenAI endpoint unhealthy, producing degraded local result for {}", filePath.getFileName());
+                return degradedResult(filePath, fileContent);
+            }
             
-            ScoreWithReason bugDetectionResult = analyzeBugDetection(fileContent, language);
-            result.setBugDetection(bugDetectionResult.getScore());
-            result.setBugDetectionReason(bugDetectionResult.getReason());
-            result.setBugDetectionRecommendations(bugDetectionResult.getRecommendations());
+            Set<AnalysisDimension> dimensions = dimensionsFor(ktEnabled);
+            if (LocalMetricsAnalyzer.supports(language)) {
+                // Metrics are computed locally for the whole file, so no request is spent on them
+                result.setMetrics(metricsAnalyzer.analyze(fileContent));
+                dimensions.remove(AnalysisDimension.METRICS);
+            }
+            // Prompts see the minimized code; local metrics above were taken from the file as written
+            SourceExcerpt minimized = options.isMinimizeInput() ? minimize(filePath, fileContent, language) : null;
+            String promptCode = minimized != null ? minimized.getText() : fileContent;
+            List<CodeChunk> chunks = chunker.chunk(promptCode);
+            // One deadline for every request of the file, whatever phase it belongs to
+            long deadline = DimensionTaskScope.deadlineAfter(options.getFileTimeoutMillis());
+            if (chunks.size() > 1) {
+                analyzeChunks(result, chunks, language, filePath, mode, dimensions, deadline);
+            } else {
+                analyzeWhole(result, promptCode, language, filePath, mode, dimensions, deadline);
+            }
+            if (minimized != null) {
+                remapIssueLines(result, minimized);
+            }
             
             // Calculate final score
             result.calculateFinalScore();
-            
-            // Get issues and suggestions (these have their own exception handling)
-            result.setIssues(identifyIssues(fileContent, language));
-            result.setSuggestions(generateSuggestions(fileContent, language, mode));
-            
-            // Generate KT (Knowledge Transfer) data if enabled
             if (ktEnabled) {
-                try {
-                    result.setKtPurpose(generateKTPurpose(fileContent, language, filePath));
-                    result.setKtDesign(generateKTDesign(fileContent, language, filePath));
-                    result.setKtModules(generateKTModules(fileContent, language, filePath));
-                    logger.debug("KT data generated for {}", filePath.getFileName());
-                } catch (Exception e) {
-                    logger.warn("Failed to generate KT data for {}: {}", filePath.getFileName(), e.getMessage());
-                    result.setKtPurpose("Unable to generate KT purpose due to API error");
-                    result.setKtDesign("Unable to generate KT design due to API error");
-                    result.setKtModules("Unable to generate KT modules due to API error");
-                }
+                logger.debug("KT data generated for {}", filePath.getFileName());
             }
             
+            Map<String, Object> fileMetrics = result.getMetrics();
+            
             // Log analysis completion with metrics
             logger.info("Analysis completed for {}: Final Score = {}, Lines = {}, Functions = {}, CC = {}", 
                 filePath.getFileName(),
@@ -134,6 +337,10 @@ public class OpenAIAnalysisService {
             
             return result;
             
+        } catch (InterruptedException e) {
+            // Cancelled, for example once the quality gate is decided; there is no result to report
+            Thread.currentThread().interrupt();
+            throw e;
         } catch (Exception e) {
             logger.error("Critical error analyzing file {}: {}", filePath.getFileName(), e.getMessage());
             
@@ -156,15 +363,9 @@ public class OpenAIAnalysisService {
             fallbackResult.setBugDetectionReason("Analysis failed due to API error: " + e.getMessage());
             
             // Set basic metrics
-            Map<String, Object> basicMetrics = new HashMap<>();
-            basicMetrics.put("linesOfCode", fileContent.split("\n").length);
-            basicMetrics.put("cyclomaticComplexity", 1);
-            basicMetrics.put("numberOfMethods", 0);
-            basicMetrics.put("numberOfClasses", 0);
-            basicMetrics.put("commentRatio", 0.0);
-            basicMetrics.put("codeComplexity", "UNKNOWN");
-            fallbackResult.setMetrics(basicMetrics);
+            fallbackResult.setMetrics(localMetrics(filePath, fileContent));
             
+            fallbackResult.setDegraded(true);
             fallbackResult.calculateFinalScore();
             fallbackResult.setIssues(new ArrayList<>());
             fallbackResult.setSuggestions(new ArrayList<>());
@@ -173,460 +374,852 @@ public class OpenAIAnalysisService {
         }
     }
 
-    private ScoreWithReason analyzeCodeQuality(String code, String language) throws Exception {
-        String prompt = String.format(
-            "Analyze the following %s code for overall quality including readability, maintainability, " +
-            "and documentation. Provide a score from 0-100 where 100 is excellent quality.\\n\\n" +
-            "Code:\\n%s\\n\\n" +
-            "Return as JSON with keys:\\n" +
-            "- 'score' (number 0-100)\\n" +
-            "- 'reason' (detailed explanation for the score)\\n" +
-            "- 'recommendations' (array of 2-4 specific actionable improvements)\\n",
-            language, code
+    private SourceExcerpt minimize(Path filePath, String fileContent, String language) {
+        SourceExcerpt minimized = minimizer.minimize(fileContent, language);
+        logger.debug("Minimized {} from ~{} to ~{} tokens", filePath.getFileName(),
+            TokenEstimator.estimate(fileContent), TokenEstimator.estimate(minimized.getText()));
+        return minimized;
+    }
+
+    /**
+     * Maps issue line numbers reported against the minimized code back to the original file
+     */
+    private static void remapIssueLines(FileAnalysisResult result, SourceExcerpt minimized) {
+        if (result.getIssues() == null) {
+            return;
+        }
+        List<CodeIssue> issues = new ArrayList<>(result.getIssues().size());
+        for (CodeIssue issue : result.getIssues()) {
+            issues.add(new CodeIssue(issue.getSeverity(), issue.getType(), issue.getDescription(),
+                minimized.toFileLine(issue.getLineNumber()), issue.getSuggestion()));
+        }
+        result.setIssues(issues);
+    }
+
+    /**
+     * Analyzes only the changed regions of a file, with bounded context, and merges the findings into the
+     * result previously produced for the base version. Returns null when the endpoint is unhealthy or the
+     * excerpt would not be meaningfully smaller than the file, so the caller analyzes the whole file instead.
+     */
+    public FileAnalysisResult analyzeChangedRegions(Path filePath, String fileContent, AnalysisMode mode,
+                                                    FileAnalysisResult previous, List<Hunk> hunks) throws InterruptedException {
+        if (hunks.isEmpty() || circuitBreaker.isOpen()) {
+            return null;
+        }
+        List<LineRange> changedRanges = new ArrayList<>(hunks.size());
+        for (Hunk hunk : hunks) {
+            changedRanges.add(hunk.newRange());
+        }
+        SourceExcerpt excerpt = regionExtractor.extract(fileContent, changedRanges);
+        long excerptTokens = TokenEstimator.estimate(excerpt.getText());
+        long fileTokens = TokenEstimator.estimate(fileContent);
+        if (excerptTokens * 2 > fileTokens) {
+            logger.debug("Changed regions of {} cover most of the file, analyzing it whole", filePath.getFileName());
+            return null;
+        }
+
+        String language = fileService.determineProgrammingLanguage(filePath);
+        logger.info("Analyzing {} changed regions of {} (~{} of ~{} tokens)",
+            hunks.size(), filePath.getFileName(), excerptTokens, fileTokens);
+
+        FileAnalysisResult regions = new FileAnalysisResult(filePath.getFileName().toString(), filePath.toString());
+        Set<AnalysisDimension> dimensions = dimensionsFor(false);
+        dimensions.remove(AnalysisDimension.METRICS);
+        String regionLanguage = String.format("%s (changed regions of a larger file, omitted code is marked '%s')",
+            language, ChangedRegionExtractor.OMITTED_MARKER);
+        analyzeWhole(regions, excerpt.getText(), regionLanguage, filePath, mode, dimensions,
+            DimensionTaskScope.deadlineAfter(options.getFileTimeoutMillis()));
+
+        FileAnalysisResult merged = ChangedRegionMerger.merge(previous, regions, excerpt, hunks,
+            fileContent.split("\n", -1).length);
+        merged.setDegraded(regions.isDegraded());
+        if (LocalMetricsAnalyzer.supports(language)) {
+            merged.setMetrics(metricsAnalyzer.analyze(fileContent));
+        }
+        merged.calculateFinalScore();
+        return merged;
+    }
+
+    /**
+     * Local-only result used while the OpenAI endpoint is unavailable
+     */
+    private FileAnalysisResult degradedResult(Path filePath, String fileContent) {
+        return localOnlyResult(filePath, fileContent, "Not analyzed: OpenAI endpoint was unavailable, neutral score assigned");
+    }
+
+    /**
+     * Result with local metrics, neutral scores and the reason as every score's explanation, made without any request
+     */
+    public FileAnalysisResult localOnlyResult(Path filePath, String fileContent, String reason) {
+        FileAnalysisResult result = new FileAnalysisResult(filePath.getFileName().toString(), filePath.toString());
+        for (AnalysisDimension dimension : AnalysisDimension.values()) {
+            if (dimension.isScore()) {
+                dimension.applyScore(result, new ScoreWithReason(50.0, reason, new ArrayList<>()));
+            }
+        }
+        result.setMetrics(localMetrics(filePath, fileContent));
+        result.setIssues(new ArrayList<>());
+        result.setSuggestions(new ArrayList<>());
+        result.setDegraded(true);
+        result.calculateFinalScore();
+        return result;
+    }
+
+    /**
+     * Estimates the tokens {@link #analyzeCodeFile} would spend on the file: every request carries the
+     * (minimized) code of its unit, and each answer is assumed to take a typical length
+     */
+    public BudgetManager.Estimate estimateCost(Path filePath, String fileContent, boolean ktEnabled) {
+        String language = fileService.determineProgrammingLanguage(filePath);
+        Set<AnalysisDimension> dimensions = dimensionsFor(ktEnabled);
+        if (LocalMetricsAnalyzer.supports(language)) {
+            dimensions.remove(AnalysisDimension.METRICS);
+        }
+        String promptCode = options.isMinimizeInput() ? minimizer.minimize(fileContent, language).getText() : fileContent;
+        long codeTokens = TokenEstimator.estimate(promptCode);
+        long units = Math.max(1, (codeTokens + options.getMaxChunkTokens() - 1) / options.getMaxChunkTokens());
+        long requestsPerUnit = options.isFused() ? 1 : dimensions.size();
+        long completionPerRequest = options.isFused()
+            ? (long) dimensions.size() * ESTIMATED_COMPLETION_TOKENS : ESTIMATED_COMPLETION_TOKENS;
+        long promptTokens = requestsPerUnit * (codeTokens + units * (SYSTEM_TOKENS + ESTIMATED_TASK_TOKENS));
+        return new BudgetManager.Estimate(promptTokens, requestsPerUnit * units * completionPerRequest);
+    }
+
+    /**
+     * Estimated tokens of the file's code as it would appear in a packed request
+     */
+    public long packedTokens(Path filePath, String fileContent) {
+        String language = fileService.determineProgrammingLanguage(filePath);
+        String promptCode = options.isMinimizeInput() ? minimizer.minimize(fileContent, language).getText() : fileContent;
+        return TokenEstimator.estimate(promptCode);
+    }
+
+    /**
+     * How many files fit in one packed request before their answers would outgrow its completion limit
+     */
+    public int maxFilesPerPack(boolean ktEnabled) {
+        return (int) Math.max(1, FUSED_MAX_TOKENS / (dimensionsFor(ktEnabled).size() * PACKED_SECTION_TOKENS));
+    }
+
+    /**
+     * Analyzes several small files in one request, each between delimiters under a short id, and splits the
+     * answer back into one result per file. Files whose entry is missing, names another file or has a
+     * malformed section are left out of the returned map, so the caller analyzes them on their own.
+     */
+    public Map<Path, FileAnalysisResult> analyzePackedFiles(Map<Path, String> files, AnalysisMode mode,
+                                                            boolean ktEnabled) throws Exception {
+        if (circuitBreaker.isOpen()) {
+            return Map.of();
+        }
+        Set<AnalysisDimension> dimensions = dimensionsFor(ktEnabled);
+        Map<String, Path> ids = new LinkedHashMap<>();
+        Map<Path, SourceExcerpt> minimizedFiles = new HashMap<>();
+        List<PromptAssembler.PackedFile> packed = new ArrayList<>(files.size());
+        boolean localMetricsForAll = true;
+        for (Map.Entry<Path, String> file : files.entrySet()) {
+            Path filePath = file.getKey();
+            String language = fileService.determineProgrammingLanguage(filePath);
+            localMetricsForAll &= LocalMetricsAnalyzer.supports(language);
+            SourceExcerpt minimized = options.isMinimizeInput() ? minimize(filePath, file.getValue(), language) : null;
+            if (minimized != null) {
+                minimizedFiles.put(filePath, minimized);
+            }
+            String id = "F" + (ids.size() + 1);
+            ids.put(id, filePath);
+            packed.add(new PromptAssembler.PackedFile(id, language, filePath.getFileName().toString(),
+                minimized != null ? minimized.getText() : file.getValue()));
+        }
+        if (localMetricsForAll) {
+            dimensions.remove(AnalysisDimension.METRICS);
+        }
+
+        StringBuilder schema = new StringBuilder("- 'file': the file name from the file's header\n");
+        for (AnalysisDimension dimension : dimensions) {
+            schema.append("- '").append(dimension.getJsonKey()).append("': ")
+                .append(dimension.getSchemaHint()).append("\n");
+        }
+        String task = String.format(
+            "Analyze each of the %d files above on its own for code quality, SOLID principles, design patterns, " +
+            "security and bugs. %s Keep reasons and suggestions brief. Line numbers count from the first line of " +
+            "each file's code.\n\n" +
+            "Return one JSON object keyed by file id (%s). The value for each file id is an object with exactly these keys:\n%s",
+            files.size(), modeContext(mode), String.join(", ", ids.keySet()), schema
         );
-        
+        Prompt prompt = PromptAssembler.codePrompt(PromptAssembler.packSegment(packed), task);
+        logger.info("Analyzing {} small files in one packed request (~{} tokens)", files.size(), prompt.estimatedTokens());
+
+        String response = usage.attribute(null, "packed", () ->
+            getResponseFromOpenAI(prompt, FUSED_MAX_TOKENS, ids.keySet(), ResponseFormats.packed(ids.keySet(), dimensions),
+                candidate -> hasFields(candidate, ids.keySet())));
+        JsonNode root;
         try {
-            return getScoreWithReasonFromOpenAI(prompt);
+            root = responseParser.readObject(response);
         } catch (Exception e) {
-            logger.warn("Failed to analyze code quality for {} code: {}", language, e.getMessage());
-            return new ScoreWithReason(50.0, "Unable to analyze code quality due to API error: " + e.getMessage());
+            logger.warn("Could not parse packed response: {}", e.getMessage());
+            return Map.of();
+        }
+
+        Map<Path, FileAnalysisResult> results = new HashMap<>();
+        for (Map.Entry<String, Path> id : ids.entrySet()) {
+            Path filePath = id.getValue();
+            String fileName = filePath.getFileName().toString();
+            JsonNode entry = root.get(id.getKey());
+            if (entry == null || !entry.isObject() || !fileName.equals(entry.path("file").asText())) {
+                logger.info("Packed response has no entry of its own for {}, analyzing it separately", fileName);
+                continue;
+            }
+            FileAnalysisResult result = new FileAnalysisResult(fileName, filePath.toString());
+            Set<AnalysisDimension> failed = responseParser.applySections(entry, result, dimensions);
+            if (!failed.isEmpty()) {
+                logger.info("Packed entry for {} lacked {}, analyzing it separately", fileName, failed);
+                continue;
+            }
+            if (LocalMetricsAnalyzer.supports(fileService.determineProgrammingLanguage(filePath))) {
+                result.setMetrics(metricsAnalyzer.analyze(files.get(filePath)));
+            }
+            SourceExcerpt minimized = minimizedFiles.get(filePath);
+            if (minimized != null) {
+                remapIssueLines(result, minimized);
+            }
+            result.calculateFinalScore();
+            results.put(filePath, result);
         }
+        return results;
     }
 
-    private ScoreWithReason analyzeSingleResponsibilityPrinciple(String code, String language) throws Exception {
-        String prompt = String.format(
-            "Evaluate how well the following %s code follows the Single Responsibility Principle (SRP). " +
-            "The SRP states that a class should have only one reason to change, meaning it should have only one job or responsibility. " +
-            "Analyze if classes/functions are focused on a single responsibility or if they are doing too many things. " +
-            "Return a score from 0-100 where 100 means excellent adherence to SRP.\\n\\n" +
-            "Code:\\n%s\\n\\n" +
-            "Return as JSON with keys:\\n" +
-            "- 'score' (number 0-100)\\n" +
-            "- 'reason' (detailed explanation for the score)\\n" +
-            "- 'recommendations' (array of 2-4 specific actionable improvements)\\n",
-            language, code
-        );
+    private Set<AnalysisDimension> dimensionsFor(boolean ktEnabled) {
+        Set<AnalysisDimension> dimensions = EnumSet.allOf(AnalysisDimension.class);
+        if (!ktEnabled) {
+            dimensions.removeIf(AnalysisDimension::isKnowledgeTransfer);
+        }
+        return dimensions;
+    }
+
+    /**
+     * Analyzes code in a single unit: one fused request when enabled, then separate requests for whatever remains
+     */
+    private void analyzeWhole(FileAnalysisResult result, String code, String language, Path filePath,
+                              AnalysisMode mode, Set<AnalysisDimension> dimensions, long deadline) throws InterruptedException {
+        AnalysisUnit unit = new AnalysisUnit(result, code, language, dimensions);
+        if (options.isFused()) {
+            // One request for every dimension; only malformed sections are requested again
+            unit.pending = analyzeFused(unit, filePath, mode);
+            if (!unit.pending.isEmpty()) {
+                logger.info("Fused response for {} lacked {}, requesting them individually",
+                    filePath.getFileName(), unit.pending);
+            }
+        }
+        analyzeDimensions(List.of(unit), filePath, mode, deadline);
+    }
+
+    /**
+     * Analyzes a large file chunk by chunk, all chunks concurrently, and merges the results into the file result
+     */
+    private void analyzeChunks(FileAnalysisResult result, List<CodeChunk> chunks, String language, Path filePath,
+                               AnalysisMode mode, Set<AnalysisDimension> dimensions, long deadline) throws InterruptedException {
+        logger.info("{} exceeds {} tokens, analyzing it as {} chunks",
+            filePath.getFileName(), options.getMaxChunkTokens(), chunks.size());
+        
+        List<AnalysisUnit> units = new ArrayList<>(chunks.size());
+        for (CodeChunk chunk : chunks) {
+            // The model sees an excerpt, so line numbers it reports are relative to the chunk
+            String chunkLanguage = String.format("%s (excerpt %d of %d from a larger file)",
+                language, chunk.getIndex() + 1, chunks.size());
+            units.add(new AnalysisUnit(new FileAnalysisResult(result.getFilename(), result.getFilepath()),
+                chunk.getContent(), chunkLanguage, EnumSet.copyOf(dimensions)));
+        }
+        
+        if (options.isFused()) {
+            List<Future<Set<AnalysisDimension>>> futures = new ArrayList<>(units.size());
+            try (DimensionTaskScope scope = new DimensionTaskScope(dimensionExecutor, deadline)) {
+                for (AnalysisUnit unit : units) {
+                    futures.add(scope.fork(() -> analyzeFused(unit, filePath, mode)));
+                }
+                scope.join();
+                for (int i = 0; i < units.size(); i++) {
+                    AnalysisUnit unit = units.get(i);
+                    unit.pending = scope.resultOrElse(futures.get(i), () -> unit.pending);
+                }
+            }
+        }
+        analyzeDimensions(units, filePath, mode, deadline);
         
+        List<FileAnalysisResult> chunkResults = new ArrayList<>(units.size());
+        for (AnalysisUnit unit : units) {
+            chunkResults.add(unit.result);
+        }
+        ChunkResultMerger.merge(result, chunks, chunkResults, dimensions);
+        if (chunkResults.stream().anyMatch(FileAnalysisResult::isDegraded)) {
+            result.setDegraded(true);
+        }
+    }
+
+    /**
+     * Runs the pending dimensions of every unit concurrently against the per-file deadline and applies them to the unit results
+     */
+    private void analyzeDimensions(List<AnalysisUnit> units, Path filePath, AnalysisMode mode, long deadline) throws InterruptedException {
+        List<Map<AnalysisDimension, Future<Consumer<FileAnalysisResult>>>> futuresPerUnit = new ArrayList<>(units.size());
+        try (DimensionTaskScope scope = new DimensionTaskScope(dimensionExecutor, deadline)) {
+            for (AnalysisUnit unit : units) {
+                Map<AnalysisDimension, Future<Consumer<FileAnalysisResult>>> futures = new EnumMap<>(AnalysisDimension.class);
+                for (AnalysisDimension dimension : unit.pending) {
+                    futures.put(dimension, scope.fork(() -> usage.attribute(filePath.toString(), dimension.getJsonKey(),
+                        () -> analyzeDimension(dimension, unit, filePath, mode))));
+                }
+                futuresPerUnit.add(futures);
+            }
+            
+            scope.join();
+            int timedOut = scope.unfinishedCount();
+            if (timedOut > 0) {
+                logger.warn("{} analysis calls for {} missed the {} ms deadline, using fallbacks",
+                    timedOut, filePath.getFileName(), options.getFileTimeoutMillis());
+            }
+            
+            // Apply on the calling thread, in dimension order
+            for (int i = 0; i < units.size(); i++) {
+                AnalysisUnit unit = units.get(i);
+                futuresPerUnit.get(i).forEach((dimension, future) ->
+                    scope.resultOrElse(future, () -> fallback(dimension, unit.code, "within the per-file deadline")).accept(unit.result));
+            }
+        }
+    }
+
+    /**
+     * Requests one dimension of a unit. A failed request, after retries, or an unreadable answer yields the
+     * dimension's fallback, which marks the result degraded.
+     */
+    private Consumer<FileAnalysisResult> analyzeDimension(AnalysisDimension dimension, AnalysisUnit unit,
+                                                          Path filePath, AnalysisMode mode) {
         try {
-            return getScoreWithReasonFromOpenAI(prompt);
+            return requestDimension(dimension, unit, filePath, mode);
         } catch (Exception e) {
-            logger.warn("Failed to analyze SRP for {} code: {}", language, e.getMessage());
-            return new ScoreWithReason(50.0, "Unable to analyze Single Responsibility Principle due to API error: " + e.getMessage());
+            warnUnlessDeferred(e, "Failed to analyze {} for {}: {}", dimension.getJsonKey(), filePath.getFileName(), e.getMessage());
+            return fallback(dimension, unit.code, "due to API error: " + e.getMessage());
         }
     }
 
-    private ScoreWithReason analyzeDesignPatterns(String code, String language) throws Exception {
-        String prompt = String.format(
-            "Analyze the following %s code for proper use of design patterns and architectural decisions. " +
-            "Consider if appropriate patterns are used and if they're implemented correctly. " +
-            "Return a score from 0-100.\\n\\n" +
-            "Code:\\n%s\\n\\n" +
-            "Return as JSON with keys:\\n" +
-            "- 'score' (number 0-100)\\n" +
-            "- 'reason' (detailed explanation for the score)\\n" +
-            "- 'recommendations' (array of 2-4 specific actionable improvements)\\n",
-            language, code
+    private Consumer<FileAnalysisResult> requestDimension(AnalysisDimension dimension, AnalysisUnit unit,
+                                                          Path filePath, AnalysisMode mode) throws Exception {
+        ChatMessage code = codeSegment(unit, inputSliceFor(dimension), filePath);
+        return switch (dimension) {
+            case METRICS -> {
+                Map<String, Object> metrics = extractMetrics(code, unit.code);
+                yield result -> result.setMetrics(metrics);
+            }
+            case CODE_QUALITY -> scoreApplier(dimension, analyzeCodeQuality(code));
+            case SINGLE_RESPONSIBILITY -> scoreApplier(dimension, analyzeSingleResponsibilityPrinciple(code));
+            case DESIGN_PATTERNS -> scoreApplier(dimension, analyzeDesignPatterns(code));
+            case SECURITY -> scoreApplier(dimension, analyzeSecurity(code));
+            case BUG_DETECTION -> scoreApplier(dimension, analyzeBugDetection(code));
+            case ISSUES -> {
+                List<CodeIssue> issues = identifyIssues(code);
+                yield result -> result.setIssues(issues);
+            }
+            case SUGGESTIONS -> {
+                List<String> suggestions = generateSuggestions(code, mode);
+                yield result -> result.setSuggestions(suggestions);
+            }
+            case KT_PURPOSE -> ktApplier(dimension, generateKTPurpose(code));
+            case KT_DESIGN -> ktApplier(dimension, generateKTDesign(code));
+            case KT_MODULES -> ktApplier(dimension, generateKTModules(code));
+        };
+    }
+
+    /**
+     * Issues and metrics report line numbers and counts, so only score and KT dimensions get a slice
+     */
+    private InputSlice inputSliceFor(AnalysisDimension dimension) {
+        if (!dimension.isScore() && !dimension.isKnowledgeTransfer()) {
+            return InputSlice.FULL;
+        }
+        return options.getDimensionInputs().getOrDefault(dimension.getJsonKey(), InputSlice.FULL);
+    }
+
+    /**
+     * The unit's code segment for the slice, built on first use and shared by every request that needs it
+     */
+    private ChatMessage codeSegment(AnalysisUnit unit, InputSlice slice, Path filePath) {
+        return unit.segments.computeIfAbsent(slice, key -> {
+            String fileName = filePath.getFileName().toString();
+            if (key == InputSlice.FULL) {
+                return PromptAssembler.codeSegment(unit.language, fileName, unit.code);
+            }
+            String sliced = slicer.slice(unit.code, fileService.determineProgrammingLanguage(filePath), key);
+            return PromptAssembler.codeSegment(String.format("%s (%s)", unit.language, key.getDescription()), fileName, sliced);
+        });
+    }
+
+    private Consumer<FileAnalysisResult> scoreApplier(AnalysisDimension dimension, ScoreWithReason score) {
+        return result -> dimension.applyScore(result, score);
+    }
+
+    private Consumer<FileAnalysisResult> ktApplier(AnalysisDimension dimension, String text) {
+        return result -> dimension.applyKnowledgeTransfer(result, text);
+    }
+
+    /**
+     * Placeholder for a dimension that has no answer. The result is marked degraded, so the manifest does not
+     * keep it and the next run analyzes the file again.
+     */
+    private Consumer<FileAnalysisResult> fallback(AnalysisDimension dimension, String code, String cause) {
+        Consumer<FileAnalysisResult> placeholder;
+        if (dimension.isScore()) {
+            placeholder = scoreApplier(dimension,
+                new ScoreWithReason(50.0, "Unable to analyze " + dimension.getJsonKey() + " " + cause));
+        } else if (dimension.isKnowledgeTransfer()) {
+            placeholder = ktApplier(dimension, "Unable to generate " + dimension.getJsonKey() + " " + cause);
+        } else {
+            placeholder = switch (dimension) {
+                case METRICS -> result -> result.setMetrics(basicMetrics(code));
+                case ISSUES -> result -> result.setIssues(new ArrayList<>());
+                default -> result -> result.setSuggestions(new ArrayList<>());
+            };
+        }
+        return placeholder.andThen(result -> result.setDegraded(true));
+    }
+
+    /**
+     * Requests every dimension in a single prompt. Returns the dimensions that still need analysis.
+     */
+    private Set<AnalysisDimension> analyzeFused(AnalysisUnit unit, Path filePath, AnalysisMode mode) {
+        Set<AnalysisDimension> dimensions = unit.pending;
+        StringBuilder schema = new StringBuilder();
+        for (AnalysisDimension dimension : dimensions) {
+            schema.append("- '").append(dimension.getJsonKey()).append("': ")
+                .append(dimension.getSchemaHint()).append("\n");
+        }
+        String task = String.format(
+            "Analyze the code above for code quality, SOLID principles, design patterns, security and bugs. %s\n\n" +
+            "Return a single JSON object with exactly these keys and nothing else:\n%s",
+            modeContext(mode), schema
         );
+        Prompt prompt = PromptAssembler.codePrompt(codeSegment(unit, InputSlice.FULL, filePath), task);
         
         try {
-            return getScoreWithReasonFromOpenAI(prompt);
+            Set<String> sections = new HashSet<>();
+            dimensions.forEach(dimension -> sections.add(dimension.getJsonKey()));
+            String response = usage.attribute(filePath.toString(), "fused",
+                () -> getResponseFromOpenAI(prompt, FUSED_MAX_TOKENS, sections, ResponseFormats.fused(dimensions),
+                    candidate -> hasFields(candidate, sections)));
+            return responseParser.applyFusedResponse(response, unit.result, dimensions);
+        } catch (BatchDeferredException e) {
+            // The fused request is in the batch; falling back would collect every dimension again
+            return EnumSet.noneOf(AnalysisDimension.class);
         } catch (Exception e) {
-            logger.warn("Failed to analyze design patterns for {} code: {}", language, e.getMessage());
-            return new ScoreWithReason(50.0, "Unable to analyze design patterns due to API error: " + e.getMessage());
+            logger.warn("Fused analysis failed for {}: {}", filePath.getFileName(), e.getMessage());
+            return dimensions;
         }
     }
 
-    private ScoreWithReason analyzeSecurity(String code, String language) throws Exception {
-        String prompt = String.format(
-            "Analyze the following %s code for security vulnerabilities and best practices. " +
+    private ScoreWithReason analyzeCodeQuality(ChatMessage code) throws Exception {
+        String task =
+            "Analyze the code above for overall quality including readability, maintainability, " +
+            "and documentation. Provide a score from 0-100 where 100 is excellent quality.\n\n" +
+            SCORE_FORMAT;
+        
+        return getScoreWithReasonFromOpenAI(PromptAssembler.codePrompt(code, task));
+    }
+
+    private ScoreWithReason analyzeSingleResponsibilityPrinciple(ChatMessage code) throws Exception {
+        String task =
+            "Evaluate how well the code above follows the Single Responsibility Principle (SRP). " +
+            "The SRP states that a class should have only one reason to change, meaning it should have only one job or responsibility. " +
+            "Analyze if classes/functions are focused on a single responsibility or if they are doing too many things. " +
+            "Return a score from 0-100 where 100 means excellent adherence to SRP.\n\n" +
+            SCORE_FORMAT;
+        
+        return getScoreWithReasonFromOpenAI(PromptAssembler.codePrompt(code, task));
+    }
+
+    private ScoreWithReason analyzeDesignPatterns(ChatMessage code) throws Exception {
+        String task =
+            "Analyze the code above for proper use of design patterns and architectural decisions. " +
+            "Consider if appropriate patterns are used and if they're implemented correctly. " +
+            "Return a score from 0-100.\n\n" +
+            SCORE_FORMAT;
+        
+        return getScoreWithReasonFromOpenAI(PromptAssembler.codePrompt(code, task));
+    }
+
+    private ScoreWithReason analyzeSecurity(ChatMessage code) throws Exception {
+        String task =
+            "Analyze the code above for security vulnerabilities and best practices. " +
             "Look for common security issues like injection flaws, insecure data handling, etc. " +
-            "Return a score from 0-100 where 100 is very secure.\\n\\n" +
-            "Code:\\n%s\\n\\n" +
-            "Return as JSON with keys:\\n" +
-            "- 'score' (number 0-100)\\n" +
-            "- 'reason' (detailed explanation for the score)\\n" +
-            "- 'recommendations' (array of 2-4 specific actionable improvements)\\n",
-            language, code
-        );
+            "Return a score from 0-100 where 100 is very secure.\n\n" +
+            SCORE_FORMAT;
         
-        try {
-            return getScoreWithReasonFromOpenAI(prompt);
-        } catch (Exception e) {
-            logger.warn("Failed to analyze security for {} code: {}", language, e.getMessage());
-            return new ScoreWithReason(50.0, "Unable to analyze security due to API error: " + e.getMessage());
-        }
+        return getScoreWithReasonFromOpenAI(PromptAssembler.codePrompt(code, task));
     }
 
-    private ScoreWithReason analyzeBugDetection(String code, String language) throws Exception {
-        String prompt = String.format(
-            "Analyze the following %s code for potential bugs, logical errors, and runtime issues. " +
+    private ScoreWithReason analyzeBugDetection(ChatMessage code) throws Exception {
+        String task =
+            "Analyze the code above for potential bugs, logical errors, and runtime issues. " +
             "Look for common programming mistakes such as: null pointer exceptions, array bounds errors, " +
             "infinite loops, incorrect logic conditions, resource leaks, race conditions, and other potential bugs. " +
-            "Return a score from 0-100 where 100 means bug-free code and 0 means many potential bugs.\\n\\n" +
-            "Code:\\n%s\\n\\n" +
-            "Return as JSON with keys:\\n" +
-            "- 'score' (number 0-100)\\n" +
-            "- 'reason' (detailed explanation for the score)\\n" +
-            "- 'recommendations' (array of 2-4 specific actionable improvements)\\n",
-            language, code
-        );
+            "Return a score from 0-100 where 100 means bug-free code and 0 means many potential bugs.\n\n" +
+            SCORE_FORMAT;
         
-        try {
-            return getScoreWithReasonFromOpenAI(prompt);
-        } catch (Exception e) {
-            logger.warn("Failed to analyze bugs for {} code: {}", language, e.getMessage());
-            return new ScoreWithReason(50.0, "Unable to analyze bugs due to API error: " + e.getMessage());
-        }
+        return getScoreWithReasonFromOpenAI(PromptAssembler.codePrompt(code, task));
     }
 
-    private List<CodeIssue> identifyIssues(String code, String language) throws Exception {
-        String prompt = String.format(
-            "Identify specific issues in the following %s code. For each issue, provide:\\n" +
-            "- Severity (CRITICAL, HIGH, MEDIUM, LOW)\\n" +
-            "- Type (e.g., Security, Performance, Maintainability)\\n" +
-            "- Description (concise, 1-2 sentences)\\n" +
-            "- Line number (if applicable)\\n" +
-            "- Suggestion for fix (concise, 1-2 sentences)\\n\\n" +
-            "Code:\\n%s\\n\\n" +
-            "Return as JSON array with objects containing: severity, type, description, lineNumber, suggestion",
-            language, code
-        );
+    private List<CodeIssue> identifyIssues(ChatMessage code) throws Exception {
+        String task =
+            "Identify specific issues in the code above. For each issue, provide:\n" +
+            "- Severity (CRITICAL, HIGH, MEDIUM, LOW)\n" +
+            "- Type (e.g., Security, Performance, Maintainability)\n" +
+            "- Description (concise, 1-2 sentences)\n" +
+            "- Line number (if applicable)\n" +
+            "- Suggestion for fix (concise, 1-2 sentences)\n\n" +
+            "Return as JSON array with objects containing: severity, type, description, lineNumber, suggestion";
         
-        try {
-            String response = getResponseFromOpenAI(prompt);
-            return parseIssuesFromResponse(response);
-        } catch (Exception e) {
-            logger.warn("Failed to identify issues for {} code: {}", language, e.getMessage());
-            return new ArrayList<>(); // Return empty list if identification fails
-        }
+        String response = getResponseFromOpenAI(PromptAssembler.codePrompt(code, task),
+            candidate -> accepted(() -> responseParser.readIssues(candidate)));
+        return parseIssuesFromResponse(response);
     }
 
-    private List<String> generateSuggestions(String code, String language, AnalysisMode mode) throws Exception {
-        String modeContext = switch (mode) {
+    private String modeContext(AnalysisMode mode) {
+        return switch (mode) {
             case QA_AUTOMATION -> "Focus on testability and quality assurance aspects.";
             case DEVOPS_TESTING -> "Focus on deployment readiness and operational concerns.";
             case DEVELOPER_REVIEW -> "Focus on code review and improvement suggestions.";
             default -> "Provide general improvement suggestions.";
         };
-        
-        String prompt = String.format(
-            "Provide specific suggestions to improve the following %s code. %s\\n\\n" +
-            "Code:\\n%s\\n\\n" +
+    }
+
+    private List<String> generateSuggestions(ChatMessage code, AnalysisMode mode) throws Exception {
+        String task = String.format(
+            "Provide specific suggestions to improve the code above. %s\n\n" +
             "Return suggestions as a JSON array of strings. Keep each suggestion concise (maximum 1-2 sentences).",
-            language, modeContext, code
+            modeContext(mode)
         );
         
+        String response = getResponseFromOpenAI(PromptAssembler.codePrompt(code, task),
+            candidate -> accepted(() -> responseParser.readStrings(candidate)));
+        return parseSuggestionsFromResponse(response);
+    }
+
+    private Map<String, Object> extractMetrics(ChatMessage code, String rawCode) throws Exception {
+        String task =
+            "Extract detailed code metrics from the code above. Analyze and provide:\n" +
+            "- linesOfCode: Total number of lines (integer)\n" +
+            "- cyclomaticComplexity: Estimate cyclomatic complexity (integer)\n" +
+            "- numberOfMethods: Count of methods/functions (integer)\n" +
+            "- numberOfClasses: Count of classes/interfaces (integer)\n" +
+            "- commentRatio: Percentage of commented lines (float 0-100)\n" +
+            "- codeComplexity: Overall complexity level (LOW/MEDIUM/HIGH)\n\n" +
+            "Return as JSON object with exact key names above. Ensure numeric values are numbers, not strings.";
+        
+        String response = getResponseFromOpenAI(PromptAssembler.codePrompt(code, task), MAX_TOKENS, Set.of(),
+            ResponseFormats.metrics(), candidate -> accepted(() -> responseParser.readMetrics(candidate)));
+        return parseMetricsFromResponse(response);
+    }
+
+    /**
+     * Metrics computed without the model: exact for supported languages, line counts otherwise
+     */
+    private Map<String, Object> localMetrics(Path filePath, String code) {
+        if (LocalMetricsAnalyzer.supports(fileService.determineProgrammingLanguage(filePath))) {
+            return metricsAnalyzer.analyze(code);
+        }
+        return basicMetrics(code);
+    }
+
+    private Map<String, Object> basicMetrics(String code) {
+        Map<String, Object> fallbackMetrics = new HashMap<>();
+        fallbackMetrics.put("linesOfCode", code.split("\n").length);
+        fallbackMetrics.put("cyclomaticComplexity", 1);
+        fallbackMetrics.put("numberOfMethods", 0);
+        fallbackMetrics.put("numberOfClasses", 0);
+        fallbackMetrics.put("commentRatio", 0.0);
+        fallbackMetrics.put("codeComplexity", "UNKNOWN");
+        return fallbackMetrics;
+    }
+
+    private ScoreWithReason getScoreWithReasonFromOpenAI(Prompt prompt) throws Exception {
+        String response = getResponseFromOpenAI(prompt, MAX_TOKENS, SCORE_FIELDS, ResponseFormats.score(),
+            candidate -> accepted(() -> responseParser.readScore(candidate)) || SCORE_VALUE.matcher(candidate).find());
         try {
-            String response = getResponseFromOpenAI(prompt);
-            return parseSuggestionsFromResponse(response);
+            return responseParser.readScore(response);
         } catch (Exception e) {
-            logger.warn("Failed to generate suggestions for {} code: {}", language, e.getMessage());
-            return new ArrayList<>(); // Return empty list if generation fails
+            logger.warn("Could not parse score and reason from response: {}", response);
+            // Fall back to a score field in malformed JSON, or a number the answer starts with
+            Matcher score = SCORE_VALUE.matcher(response);
+            if (score.find()) {
+                return new ScoreWithReason(Double.parseDouble(score.group(1)), "Unable to parse detailed reasoning from response");
+            }
+            logger.warn("Could not parse any score from response: {}", response);
+            throw e;
         }
     }
 
-    private Map<String, Object> extractMetrics(String code, String language) throws Exception {
-        String prompt = String.format(
-            "Extract detailed code metrics from the following %s code. Analyze and provide:\\n" +
-            "- linesOfCode: Total number of lines (integer)\\n" +
-            "- cyclomaticComplexity: Estimate cyclomatic complexity (integer)\\n" +
-            "- numberOfMethods: Count of methods/functions (integer)\\n" +
-            "- numberOfClasses: Count of classes/interfaces (integer)\\n" +
-            "- commentRatio: Percentage of commented lines (float 0-100)\\n" +
-            "- codeComplexity: Overall complexity level (LOW/MEDIUM/HIGH)\\n\\n" +
-            "Code:\\n%s\\n\\n" +
-            "Return as JSON object with exact key names above. Ensure numeric values are numbers, not strings.",
-            language, code
-        );
-        
+    private String getResponseFromOpenAI(Prompt prompt, Predicate<String> usable) throws Exception {
+        return getResponseFromOpenAI(prompt, MAX_TOKENS, Set.of(), null, usable);
+    }
+
+    /**
+     * Requests a prose answer, which is never streamed: it has no JSON end to stop at
+     */
+    private String getTextFromOpenAI(Prompt prompt) throws Exception {
+        return getResponseFromOpenAI(prompt, MAX_TOKENS, null, null, response -> true);
+    }
+
+    /**
+     * Whether the parser accepts a response; only accepted responses are cached
+     */
+    private static boolean accepted(Callable<?> parse) {
         try {
-            String response = getResponseFromOpenAI(prompt);
-            return parseMetricsFromResponse(response);
+            parse.call();
+            return true;
         } catch (Exception e) {
-            logger.warn("Failed to extract metrics for {} code: {}", language, e.getMessage());
-            // Return basic fallback metrics
-            Map<String, Object> fallbackMetrics = new HashMap<>();
-            fallbackMetrics.put("linesOfCode", code.split("\n").length);
-            fallbackMetrics.put("cyclomaticComplexity", 1);
-            fallbackMetrics.put("numberOfMethods", 0);
-            fallbackMetrics.put("numberOfClasses", 0);
-            fallbackMetrics.put("commentRatio", 0.0);
-            fallbackMetrics.put("codeComplexity", "UNKNOWN");
-            return fallbackMetrics;
+            return false;
         }
     }
 
-    private ScoreWithReason getScoreWithReasonFromOpenAI(String prompt) throws Exception {
-        String response = getResponseFromOpenAI(prompt);
+    private boolean hasFields(String response, Set<String> fields) {
         try {
-            JsonNode jsonNode = objectMapper.readTree(response);
-            double score = jsonNode.get("score").asDouble();
-            String reason = jsonNode.get("reason").asText();
-            
-            // Parse recommendations if available
-            List<String> recommendations = new ArrayList<>();
-            JsonNode recommendationsNode = jsonNode.get("recommendations");
-            if (recommendationsNode != null && recommendationsNode.isArray()) {
-                for (JsonNode rec : recommendationsNode) {
-                    recommendations.add(rec.asText());
-                }
-            }
-            
-            return new ScoreWithReason(score, reason, recommendations);
+            JsonNode root = responseParser.readObject(response);
+            return fields.stream().allMatch(root::has);
         } catch (Exception e) {
-            logger.warn("Could not parse score and reason from response: {}", response);
-            // Try to extract just a number as fallback
-            try {
-                String cleanResponse = response.trim().replaceAll("[^0-9.]", "");
-                double score = Double.parseDouble(cleanResponse);
-                return new ScoreWithReason(score, "Unable to parse detailed reasoning from response");
-            } catch (NumberFormatException ne) {
-                logger.warn("Could not parse any score from response: {}", response);
-                return new ScoreWithReason(50.0, "Unable to analyze - using default score");
-            }
+            return false;
         }
     }
 
-    private String getResponseFromOpenAI(String prompt) throws Exception {
-        return executeWithRetry(() -> {
-            ChatMessage message = new ChatMessage(ChatMessageRole.USER.value(), prompt);
-            
-            ChatCompletionRequest request = ChatCompletionRequest.builder()
-                .model(MODEL)
-                .messages(List.of(message))
-                .maxTokens(MAX_TOKENS)
-                .temperature(TEMPERATURE)
-                .build();
-            
-            var completion = openAiService.createChatCompletion(request);
-            
-            if (completion.getChoices() != null && !completion.getChoices().isEmpty()) {
-                String response = completion.getChoices().get(0).getMessage().getContent();
-                if (response == null || response.trim().isEmpty()) {
-                    throw new RuntimeException("Received empty response from OpenAI");
+    /**
+     * When streaming, generation stops as soon as every required top-level field has been parsed;
+     * with no required fields it stops once the JSON value is complete, and null required fields
+     * mark a prose answer that is requested without streaming. The response format, if any, is
+     * sent when structured output is on. Only responses the usable check accepts are cached.
+     */
+    private String getResponseFromOpenAI(Prompt prompt, int maxTokens, Set<String> requiredFields,
+                                         Map<String, Object> responseFormat, Predicate<String> usable) throws Exception {
+        // The cache key doubles as the batch custom id
+        String key = prompt.cacheKey(MODEL, TEMPERATURE, maxTokens);
+        if (responseCache == null) {
+            return requestCompletion(key, prompt, maxTokens, requiredFields, responseFormat);
+        }
+        AtomicBoolean requested = new AtomicBoolean();
+        String response = responseCache.getOrCompute(key, () -> {
+            requested.set(true);
+            return requestCompletion(key, prompt, maxTokens, requiredFields, responseFormat);
+        }, usable);
+        if (requested.get()) {
+            usage.recordCacheMiss();
+        } else {
+            usage.recordCacheHit();
+        }
+        return response;
+    }
+
+    private String requestCompletion(String key, Prompt prompt, int maxTokens, Set<String> requiredFields,
+                                     Map<String, Object> responseFormat) throws Exception {
+        ChatCompletionRequest plain = ChatCompletionRequest.builder()
+            .model(MODEL)
+            .messages(prompt.messages())
+            .maxTokens(maxTokens)
+            .temperature(TEMPERATURE)
+            .build();
+        ChatCompletionRequest request = options.isStructuredOutput() && responseFormat != null
+            ? new StructuredChatCompletionRequest(plain, responseFormat)
+            : plain;
+        
+        BatchRequestCollector collector = batchCollector;
+        if (collector != null) {
+            collector.add(key, request);
+            throw new BatchDeferredException();
+        }
+        Map<String, String> batched = batchResponses;
+        if (batched != null && batched.containsKey(key)) {
+            String response = batched.get(key);
+            usage.recordBatchCall(prompt.estimatedTokens(), TokenEstimator.estimate(response));
+            return response;
+        }
+        
+        // OpenAI counts max_tokens against the token-per-minute limit up front
+        long estimatedTokens = prompt.estimatedTokens() + maxTokens;
+        long started = System.nanoTime();
+        LlmCompletion completion;
+        try {
+            completion = executeWithRetry(estimatedTokens, () -> {
+                if (options.isStreaming() && requiredFields != null) {
+                    return new LlmCompletion(streamCompletion(request, requiredFields), null);
+                }
+                LlmCompletion response = llmClient.complete(request);
+                if (response.content() == null || response.content().trim().isEmpty()) {
+                    throw new RetryPolicy.EmptyResponseException("Received empty response from OpenAI");
                 }
                 return response;
+            });
+        } catch (Exception e) {
+            usage.recordFailedCall(System.nanoTime() - started);
+            throw e;
+        }
+        
+        Usage reported = completion.usage();
+        if (reported != null) {
+            usage.recordCall(System.nanoTime() - started, reported.getPromptTokens(), reported.getCompletionTokens(), false);
+        } else {
+            // Streamed responses carry no usage
+            usage.recordCall(System.nanoTime() - started, prompt.estimatedTokens(),
+                TokenEstimator.estimate(completion.content()), true);
+        }
+        return completion.content();
+    }
+    
+    /**
+     * Streams the completion into an incremental JSON scanner and cancels the stream,
+     * which closes the connection, once the scanner has what the caller needs
+     */
+    private String streamCompletion(ChatCompletionRequest request, Set<String> requiredFields) {
+        long started = System.nanoTime();
+        StreamingJsonScanner scanner = new StreamingJsonScanner(objectMapper, requiredFields, (field, value) -> {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Field '{}' available after {} ms", field, (System.nanoTime() - started) / 1_000_000);
             }
-            
-            throw new RuntimeException("No response choices received from OpenAI");
         });
+        llmClient.stream(request)
+            .doOnNext(scanner::accept)
+            .takeWhile(delta -> !scanner.isSatisfied())
+            .ignoreElements()
+            .blockingAwait();
+        
+        String response = scanner.result();
+        if (response == null || response.trim().isEmpty()) {
+            throw new RetryPolicy.EmptyResponseException("Received empty response from OpenAI");
+        }
+        return response;
     }
     
-    private String executeWithRetry(java.util.function.Supplier<String> operation) throws Exception {
-        Exception lastException = null;
-        
-        for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
+    private LlmCompletion executeWithRetry(long estimatedTokens, Supplier<LlmCompletion> operation) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            if (!circuitBreaker.allowRequest()) {
+                throw new CircuitOpenException("OpenAI endpoint is unhealthy, skipping call while the circuit is open");
+            }
             try {
-                return operation.get();
+                rateLimiter.acquire(estimatedTokens);
+                LlmCompletion response = operation.get();
+                circuitBreaker.recordSuccess();
+                return response;
                 
-            } catch (com.theokanning.openai.OpenAiHttpException e) {
-                lastException = e;
-                logger.warn("OpenAI HTTP error on attempt {}/{}: {} - {}", attempt, MAX_RETRIES, e.statusCode, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new Exception("Interrupted while waiting for rate limit capacity", e);
                 
-                if (e.statusCode == 429) { // Rate limit
-                    if (attempt < MAX_RETRIES) {
-                        logger.info("Rate limit hit, retrying in {} ms...", RETRY_DELAY_MS * attempt);
-                        try {
-                            Thread.sleep(RETRY_DELAY_MS * attempt);
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                            throw new Exception("Interrupted during retry delay", ie);
-                        }
-                        continue;
-                    }
-                    throw new Exception("Rate limit exceeded after " + MAX_RETRIES + " attempts. Please try again later.", e);
-                } else if (e.statusCode == 401) {
-                    throw new Exception("Invalid API key. Please check your OPENAI_API_KEY.", e);
-                } else if (e.statusCode == 403) {
-                    throw new Exception("API key lacks required permissions.", e);
-                } else if (e.statusCode >= 500) {
-                    if (attempt < MAX_RETRIES) {
-                        logger.info("Server error, retrying in {} ms...", RETRY_DELAY_MS * attempt);
-                        try {
-                            Thread.sleep(RETRY_DELAY_MS * attempt);
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                            throw new Exception("Interrupted during retry delay", ie);
-                        }
-                        continue;
-                    }
-                    throw new Exception("OpenAI server error after " + MAX_RETRIES + " attempts. Please try again later.", e);
+            } catch (RuntimeException e) {
+                if (RetryPolicy.isCancellation(e)) {
+                    // Says nothing about the endpoint, and the caller no longer wants the answer
+                    Thread.currentThread().interrupt();
+                    throw new Exception("Interrupted while waiting for the OpenAI response", e);
+                }
+                RetryPolicy policy = RetryPolicy.classify(e);
+                if (policy.isEndpointFailure()) {
+                    circuitBreaker.recordFailure();
                 } else {
-                    throw new Exception("OpenAI API error: " + e.getMessage(), e);
+                    // The endpoint answered, so it is reachable
+                    circuitBreaker.recordSuccess();
                 }
+                logger.warn("OpenAI call failed on attempt {}/{} ({}): {}", attempt, policy.getMaxAttempts(), policy, e.getMessage());
                 
-            } catch (RuntimeException e) {
-                lastException = e;
-                logger.warn("Runtime error on attempt {}/{}: {}", attempt, MAX_RETRIES, e.getMessage());
-                if (attempt < MAX_RETRIES) {
-                    try {
-                        Thread.sleep(RETRY_DELAY_MS);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw new Exception("Interrupted during retry delay", ie);
-                    }
-                    continue;
+                if (attempt >= policy.getMaxAttempts() || attempt >= MAX_ATTEMPTS) {
+                    throw new Exception(describeFailure(policy, attempt, e), e);
                 }
-                throw new Exception("API call failed after " + MAX_RETRIES + " attempts: " + e.getMessage(), e);
                 
-            } catch (Exception e) {
-                lastException = e;
-                logger.error("Unexpected error on attempt {}/{}: {}", attempt, MAX_RETRIES, e.getMessage());
-                break; // Don't retry for unexpected errors
+                long delay = policy.backoffMillis(attempt);
+                usage.recordRetry();
+                logger.info("Retrying in {} ms{}", delay,
+                    rateLimiter.remainingPauseMillis() > 0 ? " (server requested " + rateLimiter.remainingPauseMillis() + " ms pause)" : "");
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new Exception("Interrupted during retry delay", ie);
+                }
             }
         }
-        
-        throw new Exception("Failed after " + MAX_RETRIES + " attempts: " + 
-            (lastException != null ? lastException.getMessage() : "Unknown error"), lastException);
     }
 
-    private List<CodeIssue> parseIssuesFromResponse(String response) {
+    private void warnUnlessDeferred(Exception e, String format, Object... args) {
+        if (!(e instanceof BatchDeferredException)) {
+            logger.warn(format, args);
+        }
+    }
+
+    private String describeFailure(RetryPolicy policy, int attempts, RuntimeException e) {
+        return switch (policy) {
+            case AUTHENTICATION -> e instanceof OpenAiHttpException http && http.statusCode == 403
+                ? "API key lacks required permissions."
+                : "Invalid API key. Please check your OPENAI_API_KEY.";
+            case RATE_LIMITED -> "Rate limit exceeded after " + attempts + " attempts. Please try again later.";
+            case SERVER_ERROR -> "OpenAI server error after " + attempts + " attempts. Please try again later.";
+            case CLIENT_ERROR -> "OpenAI API error: " + e.getMessage();
+            default -> "API call failed after " + attempts + " attempts: " + e.getMessage();
+        };
+    }
+
+    private List<CodeIssue> parseIssuesFromResponse(String response) throws Exception {
         try {
-            JsonNode jsonNode = objectMapper.readTree(response);
-            List<CodeIssue> issues = new ArrayList<>();
-            
-            if (jsonNode.isArray()) {
-                for (JsonNode issueNode : jsonNode) {
-                    CodeIssue issue = new CodeIssue(
-                        issueNode.get("severity").asText(),
-                        issueNode.get("type").asText(),
-                        issueNode.get("description").asText(),
-                        issueNode.has("lineNumber") ? issueNode.get("lineNumber").asInt() : null,
-                        issueNode.get("suggestion").asText()
-                    );
-                    issues.add(issue);
-                }
-            }
-            
-            return issues;
+            return responseParser.readIssues(response);
         } catch (Exception e) {
             logger.warn("Could not parse issues from response: {}", response);
-            return new ArrayList<>();
+            throw e;
         }
     }
 
-    private List<String> parseSuggestionsFromResponse(String response) {
+    private List<String> parseSuggestionsFromResponse(String response) throws Exception {
         try {
-            JsonNode jsonNode = objectMapper.readTree(response);
-            List<String> suggestions = new ArrayList<>();
-            
-            if (jsonNode.isArray()) {
-                for (JsonNode suggestion : jsonNode) {
-                    suggestions.add(suggestion.asText());
-                }
-            }
-            
-            return suggestions;
+            return responseParser.readStrings(response);
         } catch (Exception e) {
             logger.warn("Could not parse suggestions from response: {}", response);
-            return new ArrayList<>();
+            throw e;
         }
     }
 
-    private Map<String, Object> parseMetricsFromResponse(String response) {
+    private Map<String, Object> parseMetricsFromResponse(String response) throws Exception {
         try {
-            JsonNode jsonNode = objectMapper.readTree(response);
-            Map<String, Object> metrics = new HashMap<>();
-            
-            // Parse specific metrics with proper types
-            metrics.put("linesOfCode", jsonNode.has("linesOfCode") ? jsonNode.get("linesOfCode").asInt() : 0);
-            metrics.put("cyclomaticComplexity", jsonNode.has("cyclomaticComplexity") ? jsonNode.get("cyclomaticComplexity").asInt() : 0);
-            metrics.put("numberOfMethods", jsonNode.has("numberOfMethods") ? jsonNode.get("numberOfMethods").asInt() : 0);
-            metrics.put("numberOfClasses", jsonNode.has("numberOfClasses") ? jsonNode.get("numberOfClasses").asInt() : 0);
-            metrics.put("commentRatio", jsonNode.has("commentRatio") ? jsonNode.get("commentRatio").asDouble() : 0.0);
-            metrics.put("codeComplexity", jsonNode.has("codeComplexity") ? jsonNode.get("codeComplexity").asText() : "UNKNOWN");
-            
-            // Add any additional fields that might be present
-            jsonNode.fields().forEachRemaining(entry -> {
-                String key = entry.getKey();
-                if (!metrics.containsKey(key)) {
-                    JsonNode value = entry.getValue();
-                    if (value.isInt()) {
-                        metrics.put(key, value.asInt());
-                    } else if (value.isDouble()) {
-                        metrics.put(key, value.asDouble());
-                    } else {
-                        metrics.put(key, value.asText());
-                    }
-                }
-            });
-            
-            return metrics;
+            return responseParser.readMetrics(response);
         } catch (Exception e) {
             logger.warn("Could not parse metrics from response: {}", response);
-            // Return default metrics if parsing fails
-            Map<String, Object> defaultMetrics = new HashMap<>();
-            defaultMetrics.put("linesOfCode", 0);
-            defaultMetrics.put("cyclomaticComplexity", 0);
-            defaultMetrics.put("numberOfMethods", 0);
-            defaultMetrics.put("numberOfClasses", 0);
-            defaultMetrics.put("commentRatio", 0.0);
-            defaultMetrics.put("codeComplexity", "UNKNOWN");
-            return defaultMetrics;
+            throw e;
         }
     }
 
     /**
      * Generates KT purpose information for a code file
      */
-    private String generateKTPurpose(String code, String language, Path filePath) throws Exception {
-        String prompt = String.format(
-            "Analyze the following %s code file (%s) and describe its main purpose and functionality. " +
+    private String generateKTPurpose(ChatMessage code) throws Exception {
+        String task =
+            "Describe the main purpose and functionality of the code file above. " +
             "This will be used for Knowledge Transfer documentation for new team members. " +
-            "Focus on what this file does, its role in the system, and key responsibilities:\\n\\n" +
-            "Code:\\n%s\\n\\n" +
-            "Provide a clear, concise description in 2-3 sentences.",
-            language, filePath.getFileName(), code
-        );
+            "Focus on what this file does, its role in the system, and key responsibilities. " +
+            "Provide a clear, concise description in 2-3 sentences.";
         
-        try {
-            return getResponseFromOpenAI(prompt);
-        } catch (Exception e) {
-            logger.warn("Failed to generate KT purpose for {} code: {}", language, e.getMessage());
-            return "Unable to analyze file purpose due to API error: " + e.getMessage();
-        }
+        return getTextFromOpenAI(PromptAssembler.codePrompt(code, task));
     }
 
     /**
      * Generates KT design information for a code file
      */
-    private String generateKTDesign(String code, String language, Path filePath) throws Exception {
-        String prompt = String.format(
-            "Analyze the following %s code file (%s) and describe its design approach, patterns used, " +
-            "and architectural decisions. This will be used for Knowledge Transfer documentation. " +
-            "Focus on design patterns, class structure, key algorithms, and implementation choices:\\n\\n" +
-            "Code:\\n%s\\n\\n" +
-            "Provide a clear description of the design approach in 2-3 sentences.",
-            language, filePath.getFileName(), code
-        );
+    private String generateKTDesign(ChatMessage code) throws Exception {
+        String task =
+            "Describe the design approach, patterns used, and architectural decisions of the code file above. " +
+            "This will be used for Knowledge Transfer documentation. " +
+            "Focus on design patterns, class structure, key algorithms, and implementation choices. " +
+            "Provide a clear description of the design approach in 2-3 sentences.";
         
-        try {
-            return getResponseFromOpenAI(prompt);
-        } catch (Exception e) {
-            logger.warn("Failed to generate KT design for {} code: {}", language, e.getMessage());
-            return "Unable to analyze file design due to API error: " + e.getMessage();
-        }
+        return getTextFromOpenAI(PromptAssembler.codePrompt(code, task));
     }
 
     /**
      * Generates KT modules information for a code file
      */
-    private String generateKTModules(String code, String language, Path filePath) throws Exception {
-        String prompt = String.format(
-            "Analyze the following %s code file (%s) and describe its relationships with other modules, " +
-            "dependencies, and how it fits into the larger system. This will be used for Knowledge Transfer. " +
-            "Focus on imports, dependencies, interfaces, and integration points:\\n\\n" +
-            "Code:\\n%s\\n\\n" +
-            "Provide a clear description of module relationships in 2-3 sentences.",
-            language, filePath.getFileName(), code
-        );
+    private String generateKTModules(ChatMessage code) throws Exception {
+        String task =
+            "Describe how the code file above relates to other modules, its dependencies, " +
+            "and how it fits into the larger system. This will be used for Knowledge Transfer. " +
+            "Focus on imports, dependencies, interfaces, and integration points. " +
+            "Provide a clear description of module relationships in 2-3 sentences.";
         
-        try {
-            return getResponseFromOpenAI(prompt);
-        } catch (Exception e) {
-            logger.warn("Failed to generate KT modules for {} code: {}", language, e.getMessage());
-            return "Unable to analyze file modules due to API error: " + e.getMessage();
-        }
+        return getTextFromOpenAI(PromptAssembler.codePrompt(code, task));
     }
 
     /**
@@ -635,13 +1228,13 @@ public class OpenAIAnalysisService {
     public String summarizePurpose(String purposeData) throws Exception {
         String prompt = String.format(
             "Summarize the following purpose information for Knowledge Transfer documentation. " +
-            "Keep it concise but comprehensive, suitable for new team members:\\n\\n%s\\n\\n" +
+            "Keep it concise but comprehensive, suitable for new team members:\n\n%s\n\n" +
             "Return a well-structured summary in 2-3 paragraphs.",
             purposeData
         );
         
         try {
-            return getResponseFromOpenAI(prompt);
+            return usage.attribute(null, "ktSummary", () -> getTextFromOpenAI(PromptAssembler.textPrompt(prompt)));
         } catch (Exception e) {
             logger.warn("Failed to summarize purpose data: {}", e.getMessage());
             return "Unable to generate purpose summary due to API error: " + e.getMessage();
@@ -655,13 +1248,13 @@ public class OpenAIAnalysisService {
         String prompt = String.format(
             "Summarize the following design information for Knowledge Transfer documentation. " +
             "Focus on architectural decisions, design patterns, and key implementation choices. " +
-            "Keep it suitable for new team members:\\n\\n%s\\n\\n" +
+            "Keep it suitable for new team members:\n\n%s\n\n" +
             "Return a well-structured summary in 2-3 paragraphs.",
             designData
         );
         
         try {
-            return getResponseFromOpenAI(prompt);
+            return usage.attribute(null, "ktSummary", () -> getTextFromOpenAI(PromptAssembler.textPrompt(prompt)));
         } catch (Exception e) {
             logger.warn("Failed to summarize design data: {}", e.getMessage());
             return "Unable to generate design summary due to API error: " + e.getMessage();
@@ -675,16 +1268,35 @@ public class OpenAIAnalysisService {
         String prompt = String.format(
             "Summarize the following modules information for Knowledge Transfer documentation. " +
             "Focus on module responsibilities, dependencies, and relationships. " +
-            "Keep it suitable for new team members:\\n\\n%s\\n\\n" +
+            "Keep it suitable for new team members:\n\n%s\n\n" +
             "Return a well-structured summary in 2-3 paragraphs.",
             modulesData
         );
         
         try {
-            return getResponseFromOpenAI(prompt);
+            return usage.attribute(null, "ktSummary", () -> getTextFromOpenAI(PromptAssembler.textPrompt(prompt)));
         } catch (Exception e) {
             logger.warn("Failed to summarize modules data: {}", e.getMessage());
             return "Unable to generate modules summary due to API error: " + e.getMessage();
         }
     }
+
+    /**
+     * A piece of code analyzed as a whole: the entire file, or one chunk of a large file
+     */
+    private static final class AnalysisUnit {
+        final FileAnalysisResult result;
+        final String code;
+        final String language;
+        // Code segments by input slice, shared by the requests of every dimension of the unit
+        final Map<InputSlice, ChatMessage> segments = new ConcurrentHashMap<>();
+        Set<AnalysisDimension> pending;
+
+        AnalysisUnit(FileAnalysisResult result, String code, String language, Set<AnalysisDimension> pending) {
+            this.result = result;
+            this.code = code;
+            this.language = language;
+            this.pending = pending;
+        }
+    }
 }
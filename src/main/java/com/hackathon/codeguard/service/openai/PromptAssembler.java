@@ -0,0 +1,92 @@
+package com.hackathon.codeguard.service.openai;
+
+import com.hackathon.codeguard.service.cache.LlmResponseCache;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import com.theokanning.openai.completion.chat.ChatMessageRole;
+
+import java.util.List;
+
+/**
+ * Lays out chat requests so providers can serve their common prefix from the prompt cache. Every request
+ * starts with the same system message. Requests about code continue with a code segment that is built
+ * once per analyzed unit and shared by all of its requests, and only then state their task.
+ */
+final class PromptAssembler {
+
+    static final String SYSTEM_INSTRUCTIONS =
+        "You are Code Guard, an experienced software engineer reviewing source code. " +
+        "Base every answer only on the code and information provided. " +
+        "When a JSON answer is requested, reply with that JSON only, without Markdown fences or commentary. " +
+        "Line numbers refer to the lines of the code as given, starting at 1.";
+
+    private static final ChatMessage SYSTEM_MESSAGE = new ChatMessage(ChatMessageRole.SYSTEM.value(), SYSTEM_INSTRUCTIONS);
+
+    /**
+     * The messages of one request
+     */
+    record Prompt(List<ChatMessage> messages) {
+
+        long estimatedTokens() {
+            long tokens = 0;
+            for (ChatMessage message : messages) {
+                tokens += TokenEstimator.estimate(message.getContent());
+            }
+            return tokens;
+        }
+
+        String cacheKey(String model, double temperature, int maxTokens) {
+            String[] contents = new String[messages.size()];
+            for (int i = 0; i < contents.length; i++) {
+                contents[i] = messages.get(i).getContent();
+            }
+            return LlmResponseCache.key(model, temperature, maxTokens, contents);
+        }
+    }
+
+    /**
+     * One file of a packed request, identified by a short id
+     */
+    record PackedFile(String id, String language, String fileName, String code) {}
+
+    private PromptAssembler() {}
+
+    /**
+     * The user message presenting the code, identical for every request about the same code
+     */
+    static ChatMessage codeSegment(String language, String fileName, String code) {
+        String header = "Language: " + language + "\nFile: " + fileName + "\n\nCode:\n";
+        String content = new StringBuilder(header.length() + code.length()).append(header).append(code).toString();
+        return new ChatMessage(ChatMessageRole.USER.value(), content);
+    }
+
+    /**
+     * The user message presenting several small files, each between a header and a footer naming its id
+     */
+    static ChatMessage packSegment(List<PackedFile> files) {
+        StringBuilder content = new StringBuilder("Files: ").append(files.size()).append('\n');
+        for (PackedFile file : files) {
+            content.append("\n===== FILE ").append(file.id()).append(": ").append(file.fileName())
+                .append(" (").append(file.language()).append(") =====\n")
+                .append(file.code());
+            if (!file.code().endsWith("\n")) {
+                content.append('\n');
+            }
+            content.append("===== END FILE ").append(file.id()).append(" =====\n");
+        }
+        return new ChatMessage(ChatMessageRole.USER.value(), content.toString());
+    }
+
+    /**
+     * A request about the code in the segment
+     */
+    static Prompt codePrompt(ChatMessage codeSegment, String task) {
+        return new Prompt(List.of(SYSTEM_MESSAGE, codeSegment, new ChatMessage(ChatMessageRole.USER.value(), task)));
+    }
+
+    /**
+     * A request that carries all its material in the task itself
+     */
+    static Prompt textPrompt(String task) {
+        return new Prompt(List.of(SYSTEM_MESSAGE, new ChatMessage(ChatMessageRole.USER.value(), task)));
+    }
+}
@@ -0,0 +1,28 @@
+package com.hackathon.codeguard.service.openai;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+
+/**
+ * Feeds the rate limit and Retry-After headers of every OpenAI response into the scheduler
+ */
+class RateLimitHeaderInterceptor implements Interceptor {
+
+    private final RateLimitScheduler scheduler;
+
+    RateLimitHeaderInterceptor(RateLimitScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        scheduler.updateFromHeaders(response::header);
+        if (response.code() == 429 || response.code() == 503) {
+            scheduler.applyRetryAfter(response::header);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,168 @@
+package com.hackathon.codeguard.service.openai;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Paces OpenAI requests to stay just under the account's request-per-minute and
+ * token-per-minute limits instead of reacting to 429 responses after the fact.
+ * Limits start from configuration and follow the x-ratelimit-* response headers.
+ */
+public class RateLimitScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitScheduler.class);
+
+    // Fraction of the reported limits we aim for, leaving headroom for other clients and estimate error
+    private static final double HEADROOM = 0.95;
+
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private final TokenBucket requestBucket;
+    private final TokenBucket tokenBucket;
+    private final AtomicLong pausedUntilMillis = new AtomicLong();
+
+    public RateLimitScheduler(int requestsPerMinute, int tokensPerMinute) {
+        this.requestBucket = new TokenBucket(requestsPerMinute * HEADROOM);
+        this.tokenBucket = new TokenBucket(tokensPerMinute * HEADROOM);
+    }
+
+    /**
+     * Blocks until one request costing the estimated number of tokens may be sent
+     */
+    public void acquire(long estimatedTokens) throws InterruptedException {
+        long waitMillis = Math.max(requestBucket.reserve(1), tokenBucket.reserve(estimatedTokens));
+        waitMillis = Math.max(waitMillis, pausedUntilMillis.get() - System.currentTimeMillis());
+        if (waitMillis > 0) {
+            logger.debug("Rate limiter delaying request of ~{} tokens by {} ms", estimatedTokens, waitMillis);
+            Thread.sleep(waitMillis);
+        }
+    }
+
+    /**
+     * Stops all requests for the given time, e.g. after a 429 with a reset hint
+     */
+    public void pauseFor(long millis) {
+        long until = System.currentTimeMillis() + millis;
+        pausedUntilMillis.accumulateAndGet(until, Math::max);
+    }
+
+    /**
+     * Adjusts the buckets from the rate limit headers of a response
+     */
+    public void updateFromHeaders(Function<String, String> headers) {
+        update(requestBucket, headers.apply("x-ratelimit-limit-requests"),
+            headers.apply("x-ratelimit-remaining-requests"), headers.apply("x-ratelimit-reset-requests"));
+        update(tokenBucket, headers.apply("x-ratelimit-limit-tokens"),
+            headers.apply("x-ratelimit-remaining-tokens"), headers.apply("x-ratelimit-reset-tokens"));
+    }
+
+    private void update(TokenBucket bucket, String limitHeader, String remainingHeader, String resetHeader) {
+        Double limit = parseNumber(limitHeader);
+        if (limit != null) {
+            bucket.setCapacity(limit * HEADROOM);
+        }
+        Double remaining = parseNumber(remainingHeader);
+        if (remaining == null) {
+            return;
+        }
+        // Keep the same headroom below the server's own count
+        double reserve = bucket.getCapacity() * (1 - HEADROOM) / HEADROOM;
+        bucket.limitTo(remaining - reserve);
+        if (remaining <= 0) {
+            long resetMillis = parseDurationMillis(resetHeader);
+            if (resetMillis > 0) {
+                logger.info("Rate limit exhausted, pausing requests for {} ms", resetMillis);
+                pauseFor(resetMillis);
+            }
+        }
+    }
+
+    /**
+     * Honors Retry-After on throttled or unavailable responses.
+     * OpenAI sends retry-after-ms; the standard header may be seconds or an HTTP date.
+     */
+    public void applyRetryAfter(Function<String, String> headers) {
+        long delayMillis = retryAfterMillis(headers.apply("retry-after-ms"), headers.apply("retry-after"));
+        if (delayMillis > 0) {
+            logger.info("Server asked to retry after {} ms", delayMillis);
+            pauseFor(delayMillis);
+        }
+    }
+
+    static long retryAfterMillis(String retryAfterMs, String retryAfter) {
+        Double millis = parseNumber(retryAfterMs);
+        if (millis != null) {
+            return (long) Math.ceil(millis);
+        }
+        Double seconds = parseNumber(retryAfter);
+        if (seconds != null) {
+            return (long) Math.ceil(seconds * 1000);
+        }
+        if (retryAfter != null && !retryAfter.isBlank()) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0L, at.toInstant().toEpochMilli() - System.currentTimeMillis());
+            } catch (DateTimeParseException e) {
+                return 0L;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Milliseconds until requests are allowed again after a pause, or 0
+     */
+    public long remainingPauseMillis() {
+        return Math.max(0L, pausedUntilMillis.get() - System.currentTimeMillis());
+    }
+
+    private static Double parseNumber(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses OpenAI reset durations such as "20ms", "1s" or "6m0s". Returns 0 when absent or invalid.
+     */
+    static long parseDurationMillis(String value) {
+        if (value == null || value.isBlank()) {
+            return 0L;
+        }
+        Matcher matcher = DURATION_PART.matcher(value.trim());
+        double millis = 0;
+        boolean matched = false;
+        while (matcher.find()) {
+            matched = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += switch (matcher.group(2)) {
+                case "h" -> amount * 3_600_000;
+                case "m" -> amount * 60_000;
+                case "s" -> amount * 1_000;
+                default -> amount;
+            };
+        }
+        return matched ? (long) Math.ceil(millis) : 0L;
+    }
+
+    double availableRequests() {
+        return requestBucket.getAvailable();
+    }
+
+    double availableTokens() {
+        return tokenBucket.getAvailable();
+    }
+}
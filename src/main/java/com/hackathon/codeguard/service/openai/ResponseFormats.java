@@ -0,0 +1,139 @@
+package com.hackathon.codeguard.service.openai;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Strict JSON schemas for the provider's structured-output mode, one per kind of JSON answer.
+ * Structured output requires an object at the root, so the answers that are plain arrays
+ * (issues and suggestions on their own) are requested without a schema.
+ */
+final class ResponseFormats {
+
+    private ResponseFormats() {}
+
+    static Map<String, Object> score() {
+        return jsonSchema("score", scoreSchema());
+    }
+
+    static Map<String, Object> metrics() {
+        return jsonSchema("metrics", metricsSchema());
+    }
+
+    /**
+     * An object with one section per dimension, as the fused prompt asks for
+     */
+    static Map<String, Object> fused(Set<AnalysisDimension> dimensions) {
+        return jsonSchema("fused_analysis", object(sections(dimensions)));
+    }
+
+    /**
+     * An object with one entry per file id, each naming its file and holding one section per dimension
+     */
+    static Map<String, Object> packed(Set<String> fileIds, Set<AnalysisDimension> dimensions) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("file", type("string"));
+        entry.putAll(sections(dimensions));
+        Map<String, Object> entries = new LinkedHashMap<>();
+        for (String fileId : fileIds) {
+            entries.put(fileId, object(entry));
+        }
+        return jsonSchema("packed_analysis", object(entries));
+    }
+
+    private static Map<String, Object> sections(Set<AnalysisDimension> dimensions) {
+        Map<String, Object> sections = new LinkedHashMap<>();
+        for (AnalysisDimension dimension : AnalysisDimension.values()) {
+            if (dimensions.contains(dimension)) {
+                sections.put(dimension.getJsonKey(), sectionSchema(dimension));
+            }
+        }
+        return sections;
+    }
+
+    private static Map<String, Object> sectionSchema(AnalysisDimension dimension) {
+        if (dimension.isScore()) {
+            return scoreSchema();
+        }
+        if (dimension.isKnowledgeTransfer()) {
+            return type("string");
+        }
+        return switch (dimension) {
+            case METRICS -> metricsSchema();
+            case ISSUES -> array(issueSchema());
+            case SUGGESTIONS -> array(type("string"));
+            default -> throw new IllegalStateException("Unhandled dimension " + dimension);
+        };
+    }
+
+    private static Map<String, Object> scoreSchema() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("score", type("number"));
+        properties.put("reason", type("string"));
+        properties.put("recommendations", array(type("string")));
+        return object(properties);
+    }
+
+    private static Map<String, Object> metricsSchema() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("linesOfCode", type("integer"));
+        properties.put("cyclomaticComplexity", type("integer"));
+        properties.put("numberOfMethods", type("integer"));
+        properties.put("numberOfClasses", type("integer"));
+        properties.put("commentRatio", type("number"));
+        properties.put("codeComplexity", oneOf("LOW", "MEDIUM", "HIGH"));
+        return object(properties);
+    }
+
+    private static Map<String, Object> issueSchema() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("severity", oneOf("CRITICAL", "HIGH", "MEDIUM", "LOW"));
+        properties.put("type", type("string"));
+        properties.put("description", type("string"));
+        // Strict schemas make every key required; a null line number stands for "not applicable"
+        properties.put("lineNumber", Map.of("type", List.of("integer", "null")));
+        properties.put("suggestion", type("string"));
+        return object(properties);
+    }
+
+    private static Map<String, Object> jsonSchema(String name, Map<String, Object> schema) {
+        Map<String, Object> jsonSchema = new LinkedHashMap<>();
+        jsonSchema.put("name", name);
+        jsonSchema.put("strict", true);
+        jsonSchema.put("schema", schema);
+        Map<String, Object> format = new LinkedHashMap<>();
+        format.put("type", "json_schema");
+        format.put("json_schema", jsonSchema);
+        return format;
+    }
+
+    private static Map<String, Object> object(Map<String, Object> properties) {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "object");
+        schema.put("properties", properties);
+        schema.put("required", new ArrayList<>(properties.keySet()));
+        schema.put("additionalProperties", false);
+        return schema;
+    }
+
+    private static Map<String, Object> array(Map<String, Object> items) {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "array");
+        schema.put("items", items);
+        return schema;
+    }
+
+    private static Map<String, Object> oneOf(String... values) {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "string");
+        schema.put("enum", List.of(values));
+        return schema;
+    }
+
+    private static Map<String, Object> type(String type) {
+        return Map.of("type", type);
+    }
+}
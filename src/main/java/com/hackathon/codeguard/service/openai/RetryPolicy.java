@@ -0,0 +1,99 @@
+package com.hackathon.codeguard.service.openai;
+
+import com.theokanning.openai.OpenAiHttpException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry behavior per class of failure. Delays use capped exponential backoff with full jitter.
+ */
+enum RetryPolicy {
+    RATE_LIMITED(6, 1_000, 60_000, false),
+    SERVER_ERROR(4, 1_000, 30_000, true),
+    TIMEOUT(2, 2_000, 20_000, true),
+    NETWORK(3, 500, 10_000, true),
+    EMPTY_RESPONSE(2, 500, 2_000, false),
+    AUTHENTICATION(1, 0, 0, false),
+    CLIENT_ERROR(1, 0, 0, false),
+    UNKNOWN(1, 0, 0, false);
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final boolean endpointFailure;
+
+    RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, boolean endpointFailure) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.endpointFailure = endpointFailure;
+    }
+
+    int getMaxAttempts() { return maxAttempts; }
+
+    /**
+     * Whether this failure indicates the endpoint itself is unhealthy and should count toward the circuit breaker
+     */
+    boolean isEndpointFailure() { return endpointFailure; }
+
+    /**
+     * Full-jitter delay before the given retry: uniform in [0, min(cap, base * 2^(attempt-1))]
+     */
+    long backoffMillis(int attempt) {
+        if (baseDelayMillis == 0) {
+            return 0L;
+        }
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Classifies an exception thrown by the OpenAI client, looking through wrapping exceptions
+     */
+    static RetryPolicy classify(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OpenAiHttpException http) {
+                if (http.statusCode == 429) return RATE_LIMITED;
+                if (http.statusCode == 401 || http.statusCode == 403) return AUTHENTICATION;
+                if (http.statusCode == 408) return TIMEOUT;
+                if (http.statusCode >= 500) return SERVER_ERROR;
+                return CLIENT_ERROR;
+            }
+            if (cause instanceof EmptyResponseException) return EMPTY_RESPONSE;
+            if (cause instanceof SocketTimeoutException) return TIMEOUT;
+            if (cause instanceof IOException) return NETWORK;
+            if (cause.getCause() == cause) break;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Whether the call failed because its thread was interrupted or cancelled, e.g. by a dimension deadline,
+     * rather than because of the endpoint. Okio reports an interrupt as an InterruptedIOException and clears
+     * the interrupt flag, so the cause chain is checked as well as the flag.
+     */
+    static boolean isCancellation(Throwable error) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException || cause instanceof CancellationException) return true;
+            if (cause instanceof InterruptedIOException && !(cause instanceof SocketTimeoutException)) return true;
+            if (cause.getCause() == cause) break;
+        }
+        return false;
+    }
+
+    /**
+     * Signals that the API answered without usable content
+     */
+    static class EmptyResponseException extends RuntimeException {
+        EmptyResponseException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.hackathon.codeguard.service.openai;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Parses a JSON response incrementally as text deltas arrive from a stream.
+ * Top-level fields become available as soon as their value is complete, which lets the
+ * caller stop generation once every field it needs has been seen.
+ * Only whitespace and a code fence may come before the root value; anything else makes the
+ * response prose, such as "main(String[] args)", which is returned as written. Text after the
+ * root value is ignored.
+ */
+final class StreamingJsonScanner {
+
+    private final ObjectMapper objectMapper;
+    private final Set<String> requiredFields;
+    private final BiConsumer<String, JsonNode> fieldListener;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    private final StringBuilder text = new StringBuilder();
+    private final ByteArrayOutputStream json = new ByteArrayOutputStream();
+    private final Map<String, JsonNode> fields = new LinkedHashMap<>();
+
+    private boolean rootStarted;
+    private boolean prose;
+    private boolean rootComplete;
+    private boolean malformed;
+    private int depth;
+    private long rootEnd;
+    private String currentField;
+    private long valueStart = -1;
+
+    StreamingJsonScanner(ObjectMapper objectMapper, Set<String> requiredFields, BiConsumer<String, JsonNode> fieldListener) {
+        this.objectMapper = objectMapper;
+        this.requiredFields = requiredFields;
+        this.fieldListener = fieldListener;
+        try {
+            this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("Jackson non-blocking parser is not available", e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Consumes the next piece of the response
+     */
+    void accept(String delta) {
+        text.append(delta);
+        if (rootComplete || malformed || prose) {
+            return;
+        }
+        String input = delta;
+        if (!rootStarted) {
+            int start = firstIndexOf(delta, '{', '[');
+            if (start < 0) {
+                prose = !isPreamble(text);
+                return;
+            }
+            if (!isPreamble(text.substring(0, text.length() - delta.length() + start))) {
+                prose = true;
+                return;
+            }
+            input = delta.substring(start);
+            rootStarted = true;
+        }
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        json.write(bytes, 0, bytes.length);
+        try {
+            feeder.feedInput(bytes, 0, bytes.length);
+            JsonToken token;
+            while (!rootComplete && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                handle(token);
+            }
+        } catch (IOException e) {
+            malformed = true;
+        }
+    }
+
+    private void handle(JsonToken token) throws IOException {
+        switch (token) {
+            case START_OBJECT, START_ARRAY -> {
+                if (depth == 1 && currentField != null) {
+                    // The non-blocking parser reports locations just past the bracket it has read
+                    valueStart = parser.currentLocation().getByteOffset() - 1;
+                }
+                depth++;
+            }
+            case END_OBJECT, END_ARRAY -> {
+                depth--;
+                if (depth == 1 && valueStart >= 0) {
+                    byte[] bytes = json.toByteArray();
+                    long end = parser.currentLocation().getByteOffset();
+                    completeField(objectMapper.readTree(bytes, (int) valueStart, (int) (end - valueStart)));
+                } else if (depth == 0) {
+                    rootComplete = true;
+                    rootEnd = parser.currentLocation().getByteOffset();
+                }
+            }
+            case FIELD_NAME -> {
+                if (depth == 1) {
+                    currentField = parser.currentName();
+                }
+            }
+            default -> {
+                if (depth == 1 && currentField != null) {
+                    completeField(scalarValue(token));
+                }
+            }
+        }
+    }
+
+    private JsonNode scalarValue(JsonToken token) throws IOException {
+        JsonNodeFactory nodes = objectMapper.getNodeFactory();
+        return switch (token) {
+            case VALUE_STRING -> nodes.textNode(parser.getText());
+            case VALUE_NUMBER_INT -> nodes.numberNode(parser.getBigIntegerValue());
+            case VALUE_NUMBER_FLOAT -> nodes.numberNode(parser.getDecimalValue());
+            case VALUE_TRUE -> nodes.booleanNode(true);
+            case VALUE_FALSE -> nodes.booleanNode(false);
+            default -> nodes.nullNode();
+        };
+    }
+
+    private void completeField(JsonNode value) {
+        fields.put(currentField, value);
+        valueStart = -1;
+        if (fieldListener != null) {
+            fieldListener.accept(currentField, value);
+        }
+        currentField = null;
+    }
+
+    /**
+     * True once the root value is complete or, when fields are required, once all of them have been parsed
+     */
+    boolean isSatisfied() {
+        return rootComplete || (!requiredFields.isEmpty() && fields.keySet().containsAll(requiredFields));
+    }
+
+    /**
+     * The response to hand to the parsers: the root JSON value when it completed, an object of the
+     * fields parsed so far when generation was stopped early, otherwise the raw text
+     */
+    String result() {
+        if (rootComplete) {
+            return new String(json.toByteArray(), 0, (int) rootEnd, StandardCharsets.UTF_8);
+        }
+        if (!fields.isEmpty() && isSatisfied()) {
+            ObjectNode object = objectMapper.createObjectNode();
+            fields.forEach(object::set);
+            return object.toString();
+        }
+        return text.toString();
+    }
+
+    /**
+     * Whether the text can still precede a JSON root: whitespace, optionally around an opening code fence
+     */
+    private static boolean isPreamble(CharSequence value) {
+        String stripped = value.toString().strip();
+        if ("```".startsWith(stripped)) {
+            // Nothing yet, or a fence that is still arriving
+            return true;
+        }
+        if (stripped.startsWith("```")) {
+            // The fence opener is followed by an optional language tag
+            stripped = stripped.substring(3);
+            return stripped.chars().allMatch(Character::isLetter);
+        }
+        return stripped.isEmpty();
+    }
+
+    private static int firstIndexOf(String value, char first, char second) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == first || c == second) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
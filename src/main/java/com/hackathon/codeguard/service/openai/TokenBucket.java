@@ -0,0 +1,68 @@
+package com.hackathon.codeguard.service.openai;
+
+/**
+ * Token bucket refilled continuously over a one-minute window.
+ * Reservations may drive the balance negative; callers wait until it is repaid,
+ * which keeps waiting requests in arrival order.
+ */
+final class TokenBucket {
+
+    private static final double WINDOW_MILLIS = 60_000.0;
+
+    private double capacity;
+    private double available;
+    private long lastRefillMillis;
+
+    TokenBucket(double capacityPerMinute) {
+        this.capacity = capacityPerMinute;
+        this.available = capacityPerMinute;
+        this.lastRefillMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Reserves the amount and returns how long the caller must wait before using it
+     */
+    synchronized long reserve(double amount) {
+        refill();
+        available -= Math.min(amount, capacity);
+        if (available >= 0) {
+            return 0L;
+        }
+        return (long) Math.ceil(-available * WINDOW_MILLIS / capacity);
+    }
+
+    /**
+     * Adopts a new per-minute limit, keeping the current fill ratio
+     */
+    synchronized void setCapacity(double capacityPerMinute) {
+        if (capacityPerMinute <= 0 || capacityPerMinute == capacity) {
+            return;
+        }
+        refill();
+        available = available * capacityPerMinute / capacity;
+        capacity = capacityPerMinute;
+    }
+
+    /**
+     * Never lets the local balance exceed what the server reports as remaining
+     */
+    synchronized void limitTo(double remaining) {
+        refill();
+        available = Math.min(available, remaining);
+    }
+
+    synchronized double getCapacity() {
+        return capacity;
+    }
+
+    synchronized double getAvailable() {
+        refill();
+        return available;
+    }
+
+    private void refill() {
+        long now = System.currentTimeMillis();
+        available = Math.min(capacity, available + (now - lastRefillMillis) * capacity / WINDOW_MILLIS);
+        lastRefillMillis = now;
+    }
+}
@@ -0,0 +1,22 @@
+package com.hackathon.codeguard.service.openai;
+
+/**
+ * Cheap token count estimate used before a request is sent.
+ * GPT tokenizers average roughly four characters of source code per token.
+ */
+public final class TokenEstimator {
+
+    private static final double CHARS_PER_TOKEN = 4.0;
+
+    private TokenEstimator() {}
+
+    /**
+     * Estimates the number of tokens in the given text
+     */
+    public static long estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return (long) Math.ceil(text.length() / CHARS_PER_TOKEN);
+    }
+}
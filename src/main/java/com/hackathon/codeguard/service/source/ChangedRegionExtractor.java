@@ -0,0 +1,101 @@
+package com.hackathon.codeguard.service.source;
+
+import com.hackathon.codeguard.service.ChangeSet.LineRange;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cuts the changed regions of a file out together with bounded context: the enclosing
+ * member (up to a limit) and the signature of the enclosing top-level declaration.
+ * Omitted stretches are replaced by a single marker line.
+ */
+public class ChangedRegionExtractor {
+
+    public static final String OMITTED_MARKER = "// ...";
+
+    private static final int MIN_CONTEXT_LINES = 2;
+    private static final int MAX_CONTEXT_LINES = 40;
+
+    public SourceExcerpt extract(String content, List<LineRange> changedRanges) {
+        String[] lines = content.split("\n", -1);
+        int lineCount = lines.length;
+        int[] depth = SourceLexer.braceDepthAtLineStart(content);
+        boolean[] included = new boolean[lineCount + 1];
+
+        for (LineRange range : changedRanges) {
+            int start = Math.max(1, Math.min(range.getStart(), lineCount));
+            int end = Math.max(start, Math.min(range.getEnd(), lineCount));
+            int from = Math.max(1, Math.min(memberStart(depth, start), start - MIN_CONTEXT_LINES));
+            int to = Math.min(lineCount, Math.max(memberEnd(depth, end, lineCount), end + MIN_CONTEXT_LINES));
+            for (int line = from; line <= to; line++) {
+                included[line] = true;
+            }
+            int header = declarationHeader(depth, from);
+            if (header > 0) {
+                included[header] = true;
+            }
+        }
+
+        StringBuilder text = new StringBuilder();
+        List<Integer> fileLines = new ArrayList<>();
+        boolean omitting = false;
+        for (int line = 1; line <= lineCount; line++) {
+            if (included[line]) {
+                append(text, lines[line - 1]);
+                fileLines.add(line);
+                omitting = false;
+            } else if (!omitting) {
+                append(text, OMITTED_MARKER);
+                fileLines.add(0);
+                omitting = true;
+            }
+        }
+        return new SourceExcerpt(text.toString(), fileLines.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static void append(StringBuilder text, String line) {
+        if (text.length() > 0) {
+            text.append('\n');
+        }
+        text.append(line);
+    }
+
+    private static int depthOf(int[] depth, int line) {
+        return depth[line - 1];
+    }
+
+    /**
+     * Walks up from the line to the start of the enclosing member, within the context limit
+     */
+    private static int memberStart(int[] depth, int line) {
+        int start = line;
+        while (start > 1 && depthOf(depth, start) > 1 && line - start < MAX_CONTEXT_LINES) {
+            start--;
+        }
+        return start;
+    }
+
+    /**
+     * Walks down from the line to the closing line of the enclosing member, within the context limit
+     */
+    private static int memberEnd(int[] depth, int line, int lineCount) {
+        int end = line;
+        while (end < lineCount && depthOf(depth, end + 1) > 1 && end - line < MAX_CONTEXT_LINES) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * The nearest line above that opens a top-level block, such as a class signature, or 0 if there is none
+     */
+    private static int declarationHeader(int[] depth, int line) {
+        for (int candidate = line - 1; candidate >= 1; candidate--) {
+            if (depthOf(depth, candidate) == 0 && depthOf(depth, candidate + 1) >= 1) {
+                return candidate;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,39 @@
+package com.hackathon.codeguard.service.source;
+
+/**
+ * A contiguous range of lines taken from a source file
+ */
+public final class CodeChunk {
+
+    private final int index;
+    private final int startLine;
+    private final int endLine;
+    private final String content;
+
+    public CodeChunk(int index, int startLine, int endLine, String content) {
+        this.index = index;
+        this.startLine = startLine;
+        this.endLine = endLine;
+        this.content = content;
+    }
+
+    public int getIndex() { return index; }
+    public int getStartLine() { return startLine; }
+    public int getEndLine() { return endLine; }
+    public String getContent() { return content; }
+
+    public int getLineCount() {
+        return endLine - startLine + 1;
+    }
+
+    /**
+     * Maps a 1-based line number within the chunk to the line in the original file
+     */
+    public Integer toFileLine(Integer chunkLine) {
+        if (chunkLine == null) {
+            return null;
+        }
+        int clamped = Math.max(1, Math.min(chunkLine, getLineCount()));
+        return startLine + clamped - 1;
+    }
+}
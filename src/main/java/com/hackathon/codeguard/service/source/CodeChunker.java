@@ -0,0 +1,63 @@
+package com.hackathon.codeguard.service.source;
+
+import com.hackathon.codeguard.service.openai.TokenEstimator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits source files into token-bounded chunks along class and member boundaries.
+ * A boundary is any line that starts at brace depth 0 or 1, i.e. between top-level
+ * declarations or between the members of a class. Members larger than the budget
+ * are split by lines as a last resort.
+ */
+public class CodeChunker {
+
+    private final long maxTokensPerChunk;
+
+    public CodeChunker(long maxTokensPerChunk) {
+        this.maxTokensPerChunk = maxTokensPerChunk;
+    }
+
+    /**
+     * Returns the chunks of the content, or a single chunk if it already fits
+     */
+    public List<CodeChunk> chunk(String content) {
+        String[] lines = content.split("\n", -1);
+        if (TokenEstimator.estimate(content) <= maxTokensPerChunk) {
+            return List.of(new CodeChunk(0, 1, lines.length, content));
+        }
+
+        int[] depthAtLineStart = SourceLexer.braceDepthAtLineStart(content);
+        List<CodeChunk> chunks = new ArrayList<>();
+        int chunkStart = 0;
+        int lastBoundary = -1;
+        long chunkTokens = 0;
+
+        for (int i = 0; i < lines.length; i++) {
+            if (i > chunkStart && depthAtLineStart[i] <= 1) {
+                lastBoundary = i;
+            }
+            long lineTokens = TokenEstimator.estimate(lines[i]) + 1;
+            if (chunkTokens + lineTokens > maxTokensPerChunk && i > chunkStart) {
+                // Prefer cutting at the last member boundary; fall back to cutting here
+                int cut = lastBoundary > chunkStart ? lastBoundary : i;
+                chunks.add(buildChunk(chunks.size(), lines, chunkStart, cut));
+                chunkStart = cut;
+                lastBoundary = -1;
+                chunkTokens = 0;
+                for (int j = cut; j < i; j++) {
+                    chunkTokens += TokenEstimator.estimate(lines[j]) + 1;
+                }
+            }
+            chunkTokens += lineTokens;
+        }
+        chunks.add(buildChunk(chunks.size(), lines, chunkStart, lines.length));
+        return chunks;
+    }
+
+    private CodeChunk buildChunk(int index, String[] lines, int fromInclusive, int toExclusive) {
+        String content = String.join("\n", java.util.Arrays.copyOfRange(lines, fromInclusive, toExclusive));
+        return new CodeChunk(index, fromInclusive + 1, toExclusive, content);
+    }
+}
@@ -0,0 +1,202 @@
+package com.hackathon.codeguard.service.source;
+
+import com.hackathon.codeguard.service.cache.AnalysisManifest;
+import com.hackathon.codeguard.service.source.SourceLexer.Token;
+import com.hackathon.codeguard.service.source.SourceLexer.TokenType;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds files that are copies of an earlier file, so the earlier file's analysis can be reused for them.
+ * Exact copies are found by content hash. Near copies are found by comparing 64-bit SimHash fingerprints
+ * of normalized token shingles: comments are ignored and literals replaced by placeholders, so copies that
+ * differ in formatting, comments or constants still match. Files are only compared with files of the same
+ * extension, and the first file of each group in the order added is its representative.
+ */
+public class DuplicateDetector {
+
+    /**
+     * A file that duplicates the representative, exactly or within the SimHash distance
+     */
+    public record Duplicate(Path representative, boolean exact) {}
+
+    private static final int SHINGLE_SIZE = 3;
+    // Fingerprints of very short files are too coarse to compare
+    private static final int MIN_SHINGLES = 20;
+
+    private final int maxDistance;
+    private final int bandCount;
+    private final Map<String, Path> representativesByHash = new HashMap<>();
+    // Band value to representatives sharing it; two fingerprints within maxDistance share at least one band
+    private final Map<Long, List<Fingerprint>> bandIndex = new HashMap<>();
+    private final Map<Path, Duplicate> duplicates = new LinkedHashMap<>();
+
+    private record Fingerprint(Path file, String extension, long simHash) {}
+
+    /**
+     * @param maxDistance the largest number of differing SimHash bits for a near duplicate; 0 finds exact copies only
+     */
+    public DuplicateDetector(int maxDistance) {
+        if (maxDistance < 0 || maxDistance > 15) {
+            throw new IllegalArgumentException("Near-duplicate distance must be between 0 and 15 bits");
+        }
+        this.maxDistance = maxDistance;
+        this.bandCount = maxDistance + 1;
+    }
+
+    /**
+     * Adds a file and returns what it duplicates, or null if it is the first of its kind
+     */
+    public Duplicate add(Path file, String content) {
+        String extension = extension(file);
+        String hash = extension + ":" + AnalysisManifest.contentHash(content);
+        Path original = representativesByHash.putIfAbsent(hash, file);
+        if (original != null) {
+            return record(file, new Duplicate(original, true));
+        }
+        if (maxDistance == 0) {
+            return null;
+        }
+
+        List<String> shingles = shingles(content);
+        if (shingles.size() < MIN_SHINGLES) {
+            return null;
+        }
+        Fingerprint fingerprint = new Fingerprint(file, extension, simHash(shingles));
+        Fingerprint closest = closest(fingerprint);
+        if (closest != null) {
+            return record(file, new Duplicate(closest.file(), false));
+        }
+        for (int band = 0; band < bandCount; band++) {
+            bandIndex.computeIfAbsent(bandKey(fingerprint.simHash(), band), key -> new ArrayList<>()).add(fingerprint);
+        }
+        return null;
+    }
+
+    /**
+     * Every duplicate found so far, in the order the files were added
+     */
+    public Map<Path, Duplicate> getDuplicates() {
+        return duplicates;
+    }
+
+    private Duplicate record(Path file, Duplicate duplicate) {
+        duplicates.put(file, duplicate);
+        return duplicate;
+    }
+
+    private Fingerprint closest(Fingerprint fingerprint) {
+        Fingerprint closest = null;
+        int closestDistance = Integer.MAX_VALUE;
+        for (int band = 0; band < bandCount; band++) {
+            for (Fingerprint candidate : bandIndex.getOrDefault(bandKey(fingerprint.simHash(), band), List.of())) {
+                int distance = Long.bitCount(candidate.simHash() ^ fingerprint.simHash());
+                if (candidate.extension().equals(fingerprint.extension()) && distance <= maxDistance
+                        && distance < closestDistance) {
+                    closest = candidate;
+                    closestDistance = distance;
+                }
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Splits the fingerprint into equal bands and keys the given band by its index and bits
+     */
+    private long bandKey(long simHash, int band) {
+        int width = Long.SIZE / bandCount;
+        long bits = (simHash >>> (band * width)) & ((1L << width) - 1);
+        return ((long) band << 56) ^ bits;
+    }
+
+    /**
+     * Token trigrams with comments dropped and string and number literals replaced by placeholders
+     */
+    static List<String> shingles(String content) {
+        List<String> tokens = new ArrayList<>();
+        for (Token token : SourceLexer.tokenize(content)) {
+            if (token.getType() == TokenType.STRING) {
+                tokens.add("\"\"");
+            } else if (token.getType() == TokenType.NUMBER) {
+                tokens.add("0");
+            } else if (token.getType() != TokenType.COMMENT) {
+                tokens.add(token.getText());
+            }
+        }
+        List<String> shingles = new ArrayList<>();
+        for (int i = 0; i + SHINGLE_SIZE <= tokens.size(); i++) {
+            shingles.add(String.join(" ", tokens.subList(i, i + SHINGLE_SIZE)));
+        }
+        return shingles;
+    }
+
+    static long simHash(List<String> shingles) {
+        int[] weights = new int[Long.SIZE];
+        for (String shingle : shingles) {
+            long hash = hash64(shingle);
+            for (int bit = 0; bit < Long.SIZE; bit++) {
+                weights[bit] += ((hash >>> bit) & 1) == 1 ? 1 : -1;
+            }
+        }
+        long simHash = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (weights[bit] > 0) {
+                simHash |= 1L << bit;
+            }
+        }
+        return simHash;
+    }
+
+    /**
+     * FNV-1a followed by a 64-bit finalizer, so every bit of the hash depends on the whole shingle
+     */
+    private static long hash64(String text) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot).toLowerCase();
+    }
+
+    /**
+     * Finds the line of the copy that corresponds to a 1-based line of the original: the identical line
+     * nearest to the same position, or null if the copy has no such line
+     */
+    public static Integer correspondingLine(String original, String copy, Integer line) {
+        String[] originalLines = original.split("\n", -1);
+        if (line == null || line < 1 || line > originalLines.length) {
+            return null;
+        }
+        String wanted = originalLines[line - 1].trim();
+        if (wanted.isEmpty()) {
+            return null;
+        }
+        String[] copyLines = copy.split("\n", -1);
+        for (int offset = 0; offset < Math.max(line, copyLines.length); offset++) {
+            for (int candidate : new int[] { line - offset, line + offset }) {
+                if (candidate >= 1 && candidate <= copyLines.length && copyLines[candidate - 1].trim().equals(wanted)) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+}
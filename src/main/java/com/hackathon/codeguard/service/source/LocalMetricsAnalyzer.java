@@ -0,0 +1,211 @@
+package com.hackathon.codeguard.service.source;
+
+import com.hackathon.codeguard.service.source.SourceLexer.Token;
+import com.hackathon.codeguard.service.source.SourceLexer.TokenType;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes file metrics locally from tokens, so they are fast and identical between runs.
+ * Fills the same keys the model was asked for: linesOfCode, cyclomaticComplexity,
+ * numberOfMethods, numberOfClasses, commentRatio and codeComplexity.
+ */
+public class LocalMetricsAnalyzer {
+
+    private static final Set<String> SUPPORTED_LANGUAGES = Set.of("Java", "TypeScript", "JavaScript");
+
+    // Tokens that add a branch to the control flow graph
+    private static final Set<String> DECISION_KEYWORDS = Set.of("if", "for", "while", "case", "catch");
+    private static final Set<String> DECISION_OPERATORS = Set.of("&&", "||", "??");
+
+    private static final Set<String> TYPE_KEYWORDS = Set.of("class", "interface", "enum");
+
+    // Identifiers that can precede "name(" without it being a declaration
+    private static final Set<String> NON_DECLARING_KEYWORDS = Set.of(
+        "if", "for", "while", "switch", "catch", "synchronized", "return", "new", "throw", "else",
+        "case", "yield", "await", "typeof", "instanceof", "in", "of", "do", "try", "assert", "super", "this");
+
+    // Tokens after which a ternary "?" cannot appear (generic wildcards, optional members)
+    private static final Set<String> NON_TERNARY_FOLLOWERS = Set.of(">", ",", ":", ")", "=", ";", "extends", "super");
+
+    public static boolean supports(String language) {
+        return SUPPORTED_LANGUAGES.contains(language);
+    }
+
+    public Map<String, Object> analyze(String code) {
+        List<Token> tokens = SourceLexer.tokenize(code);
+        int linesOfCode = code.split("\n").length;
+
+        int decisions = 0;
+        int methods = 0;
+        int classes = 0;
+        boolean[] commentLines = new boolean[linesOfCode + 2];
+
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            switch (token.getType()) {
+                case COMMENT -> {
+                    for (int line = token.getLine(); line <= Math.min(token.getEndLine(), linesOfCode); line++) {
+                        commentLines[line] = true;
+                    }
+                }
+                case IDENTIFIER -> {
+                    if (DECISION_KEYWORDS.contains(token.getText())) {
+                        decisions++;
+                    }
+                    if (isTypeDeclaration(tokens, i)) {
+                        classes++;
+                    } else if (isMethodDeclaration(tokens, i)) {
+                        methods++;
+                    }
+                }
+                case PUNCTUATION -> {
+                    if (DECISION_OPERATORS.contains(token.getText()) || isTernary(tokens, i)) {
+                        decisions++;
+                    } else if (token.is("=>") && isNamedArrowFunction(tokens, i)) {
+                        methods++;
+                    }
+                }
+                default -> { }
+            }
+        }
+
+        int commented = 0;
+        for (boolean commentLine : commentLines) {
+            if (commentLine) commented++;
+        }
+
+        // Each method contributes a base path of 1; a file without methods still has one path
+        int cyclomaticComplexity = Math.max(1, methods + decisions);
+
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("linesOfCode", linesOfCode);
+        metrics.put("cyclomaticComplexity", cyclomaticComplexity);
+        metrics.put("numberOfMethods", methods);
+        metrics.put("numberOfClasses", classes);
+        metrics.put("commentRatio", Math.round(commented * 1000.0 / linesOfCode) / 10.0);
+        metrics.put("codeComplexity", complexityLevel(cyclomaticComplexity, methods));
+        return metrics;
+    }
+
+    /**
+     * LOW, MEDIUM or HIGH from the average complexity per method
+     */
+    private static String complexityLevel(int cyclomaticComplexity, int methods) {
+        double perMethod = (double) cyclomaticComplexity / Math.max(1, methods);
+        if (perMethod <= 4) return "LOW";
+        if (perMethod <= 8) return "MEDIUM";
+        return "HIGH";
+    }
+
+    private static boolean isTypeDeclaration(List<Token> tokens, int index) {
+        Token token = tokens.get(index);
+        Token previous = at(tokens, index - 1);
+        Token next = at(tokens, index + 1);
+        if (next == null || next.getType() != TokenType.IDENTIFIER || (previous != null && previous.is("."))) {
+            return false;
+        }
+        if (TYPE_KEYWORDS.contains(token.getText())) {
+            return true;
+        }
+        // Java records: "record Name(" or "record Name<"
+        Token afterName = at(tokens, index + 2);
+        return token.is("record") && afterName != null && (afterName.is("(") || afterName.is("<"));
+    }
+
+    /**
+     * A name followed by a parameter list and a body, a throws clause, a return type or (for abstract methods) a semicolon
+     */
+    private static boolean isMethodDeclaration(List<Token> tokens, int index) {
+        Token name = tokens.get(index);
+        Token previous = at(tokens, index - 1);
+        if (name.is("function")) {
+            return true;
+        }
+        if (!isOpen(at(tokens, index + 1)) || NON_DECLARING_KEYWORDS.contains(name.getText())) {
+            return false;
+        }
+        if (previous != null && (previous.is(".") || previous.is("?.") || previous.is("function")
+            || previous.is("record") || NON_DECLARING_KEYWORDS.contains(previous.getText()))) {
+            return false;
+        }
+
+        int close = matchingParen(tokens, index + 1);
+        Token after = at(tokens, close + 1);
+        if (after == null) {
+            return false;
+        }
+        if (after.is("{") || after.is("throws")) {
+            return true;
+        }
+        if (after.is(":")) {
+            // TypeScript return type annotation, which ends at the body
+            for (int i = close + 2; i < tokens.size(); i++) {
+                Token token = tokens.get(i);
+                if (token.is("{")) return true;
+                if (token.is(";") || token.is("=>") || token.is("=") || token.is(",") || token.is(")")) return false;
+            }
+            return false;
+        }
+        // Abstract and interface methods: "Type name(...);"
+        return after.is(";") && previous != null
+            && (previous.getType() == TokenType.IDENTIFIER || previous.is(">") || previous.is("]"));
+    }
+
+    /**
+     * Arrow functions bound to a name, e.g. "const handle = (event) => {" or "map = x =>"
+     */
+    private static boolean isNamedArrowFunction(List<Token> tokens, int arrowIndex) {
+        int start = arrowIndex - 1;
+        Token previous = at(tokens, start);
+        if (previous == null) {
+            return false;
+        }
+        if (previous.is(")")) {
+            start = matchingOpenParen(tokens, start);
+        }
+        Token beforeParams = at(tokens, start - 1);
+        if (beforeParams != null && beforeParams.is("async")) {
+            beforeParams = at(tokens, start - 2);
+        }
+        return beforeParams != null && beforeParams.is("=");
+    }
+
+    private static boolean isTernary(List<Token> tokens, int index) {
+        if (!tokens.get(index).is("?")) {
+            return false;
+        }
+        Token previous = at(tokens, index - 1);
+        Token next = at(tokens, index + 1);
+        return previous != null && !previous.is("<") && next != null && !NON_TERNARY_FOLLOWERS.contains(next.getText());
+    }
+
+    private static int matchingParen(List<Token> tokens, int open) {
+        int depth = 0;
+        for (int i = open; i < tokens.size(); i++) {
+            if (tokens.get(i).is("(")) depth++;
+            else if (tokens.get(i).is(")") && --depth == 0) return i;
+        }
+        return tokens.size();
+    }
+
+    private static int matchingOpenParen(List<Token> tokens, int close) {
+        int depth = 0;
+        for (int i = close; i >= 0; i--) {
+            if (tokens.get(i).is(")")) depth++;
+            else if (tokens.get(i).is("(") && --depth == 0) return i;
+        }
+        return 0;
+    }
+
+    private static boolean isOpen(Token token) {
+        return token != null && token.is("(");
+    }
+
+    private static Token at(List<Token> tokens, int index) {
+        return index >= 0 && index < tokens.size() ? tokens.get(index) : null;
+    }
+}
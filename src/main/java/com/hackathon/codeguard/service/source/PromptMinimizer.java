@@ -0,0 +1,224 @@
+package com.hackathon.codeguard.service.source;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Shrinks source code before it is placed in a prompt: licence banners at the top of the file are
+ * removed, blank lines and trailing whitespace are dropped, indentation is reduced to one space per
+ * level and, optionally, import blocks are replaced by a single marker line. The returned excerpt maps
+ * every remaining line back to its line in the original file.
+ */
+public class PromptMinimizer {
+
+    private static final Pattern LICENCE = Pattern.compile(
+        "(?i)copyright|licen[cs]e|spdx-license-identifier|all rights reserved");
+
+    // Languages whose comments start with '#' rather than '//' and '/*'
+    private static final Set<String> HASH_COMMENT_LANGUAGES = Set.of("Python", "Ruby");
+    // Indentation carries meaning here, so it is kept as written
+    private static final Set<String> INDENTATION_SENSITIVE_LANGUAGES = Set.of("Python", "Unknown");
+
+    private static final Pattern IMPORT_STATEMENT = Pattern.compile("^import\\s.*");
+    private static final Pattern SCRIPT_IMPORT = Pattern.compile("^(import\\b|export\\s.*\\sfrom\\s).*");
+    private static final Pattern PYTHON_IMPORT = Pattern.compile("^(import|from)\\s.*");
+    private static final Pattern C_INCLUDE = Pattern.compile("^#\\s*include\\b.*");
+    private static final Pattern CSHARP_USING = Pattern.compile("^using\\s+(static\\s+)?[\\w.]+(\\s*=\\s*[\\w.<>]+)?\\s*;.*");
+    private static final Pattern PHP_USE = Pattern.compile("^(use|namespace)\\s+[\\w\\\\]+.*;.*");
+    private static final Pattern RUBY_REQUIRE = Pattern.compile("^require(_relative)?\\s.*");
+
+    private static final int TAB_WIDTH = 4;
+
+    private final boolean elideImports;
+
+    public PromptMinimizer(boolean elideImports) {
+        this.elideImports = elideImports;
+    }
+
+    public SourceExcerpt minimize(String content, String language) {
+        String[] lines = content.split("\n", -1);
+        boolean[] dropped = new boolean[lines.length];
+        boolean hashComments = HASH_COMMENT_LANGUAGES.contains(language);
+        if (!"Unknown".equals(language)) {
+            dropLicenceBanners(lines, dropped, hashComments);
+        }
+
+        Pattern importPattern = elideImports ? importPattern(language) : null;
+        String marker = lineCommentPrefix(language);
+        boolean compactIndentation = !INDENTATION_SENSITIVE_LANGUAGES.contains(language);
+        int indentUnit = compactIndentation ? indentUnit(lines, dropped) : 1;
+
+        StringBuilder text = new StringBuilder();
+        List<Integer> fileLines = new ArrayList<>();
+        int line = 0;
+        while (line < lines.length) {
+            String stripped = lines[line].stripTrailing();
+            if (dropped[line] || stripped.isEmpty()) {
+                line++;
+                continue;
+            }
+            if (importPattern != null && importPattern.matcher(stripped).matches()) {
+                int imports = 0;
+                while (line < lines.length && (lines[line].isBlank()
+                        || importPattern.matcher(lines[line].stripTrailing()).matches())) {
+                    if (!lines[line].isBlank()) {
+                        imports++;
+                        line = statementEnd(lines, line);
+                    }
+                    line++;
+                }
+                append(text, String.format("%s %d import%s omitted", marker, imports, imports == 1 ? "" : "s"));
+                fileLines.add(0);
+                continue;
+            }
+            append(text, compactIndentation ? reindent(stripped, indentUnit) : stripped);
+            fileLines.add(line + 1);
+            line++;
+        }
+        return new SourceExcerpt(text.toString(), fileLines.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Marks the comment blocks at the top of the file that mention a licence or copyright. A shebang,
+     * an opening {@code <?php} tag and blank lines before them are kept.
+     */
+    private static void dropLicenceBanners(String[] lines, boolean[] dropped, boolean hashComments) {
+        int line = 0;
+        while (line < lines.length) {
+            String trimmed = lines[line].trim();
+            if (trimmed.isEmpty() || (line == 0 && (trimmed.startsWith("#!") || trimmed.startsWith("<?php")))) {
+                line++;
+                continue;
+            }
+            int end = commentBlockEnd(lines, line, hashComments);
+            if (end < 0) {
+                return;
+            }
+            StringBuilder comment = new StringBuilder();
+            for (int i = line; i <= end; i++) {
+                comment.append(lines[i]).append('\n');
+            }
+            if (!LICENCE.matcher(comment).find()) {
+                return;
+            }
+            for (int i = line; i <= end; i++) {
+                dropped[i] = true;
+            }
+            line = end + 1;
+        }
+    }
+
+    /**
+     * The last line of the comment block starting at the given line, or -1 if the line does not start a comment.
+     * A block comment must end on a line of its own, so no code is removed with it.
+     */
+    private static int commentBlockEnd(String[] lines, int start, boolean hashComments) {
+        String prefix = hashComments ? "#" : "//";
+        String first = lines[start].trim();
+        if (first.startsWith(prefix)) {
+            int end = start;
+            while (end + 1 < lines.length && lines[end + 1].trim().startsWith(prefix)) {
+                end++;
+            }
+            return end;
+        }
+        if (!hashComments && first.startsWith("/*")) {
+            for (int end = start; end < lines.length; end++) {
+                int close = lines[end].indexOf("*/", end == start ? lines[end].indexOf("/*") + 2 : 0);
+                if (close >= 0) {
+                    return lines[end].substring(close + 2).isBlank() ? end : -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    static String lineCommentPrefix(String language) {
+        return HASH_COMMENT_LANGUAGES.contains(language) ? "#" : "//";
+    }
+
+    /**
+     * Pattern matching the first line of an import statement in the language, or null if it has none
+     */
+    static Pattern importPattern(String language) {
+        return switch (language) {
+            case "Java", "Kotlin", "Scala", "Go" -> IMPORT_STATEMENT;
+            case "JavaScript", "TypeScript" -> SCRIPT_IMPORT;
+            case "Python" -> PYTHON_IMPORT;
+            case "C", "C++" -> C_INCLUDE;
+            case "C#" -> CSHARP_USING;
+            case "PHP" -> PHP_USE;
+            case "Ruby" -> RUBY_REQUIRE;
+            default -> null;
+        };
+    }
+
+    /**
+     * The last line of a statement that may span lines through open brackets or a trailing backslash
+     */
+    static int statementEnd(String[] lines, int start) {
+        int open = 0;
+        int line = start;
+        while (true) {
+            for (char c : lines[line].toCharArray()) {
+                if (c == '(' || c == '{') {
+                    open++;
+                } else if (c == ')' || c == '}') {
+                    open--;
+                }
+            }
+            boolean continued = open > 0 || lines[line].stripTrailing().endsWith("\\");
+            if (!continued || line + 1 >= lines.length) {
+                return line;
+            }
+            line++;
+        }
+    }
+
+    /**
+     * The smallest indentation width used in the file, taken as one indentation level. Continuation
+     * lines of block comments are aligned by a single space and do not count.
+     */
+    private static int indentUnit(String[] lines, boolean[] dropped) {
+        int unit = Integer.MAX_VALUE;
+        for (int i = 0; i < lines.length; i++) {
+            int width = indentWidth(lines[i]);
+            if (!dropped[i] && !lines[i].isBlank() && width > 0 && !lines[i].stripLeading().startsWith("*")) {
+                unit = Math.min(unit, width);
+            }
+        }
+        return unit == Integer.MAX_VALUE ? 1 : unit;
+    }
+
+    private static String reindent(String line, int indentUnit) {
+        int width = indentWidth(line);
+        if (width == 0) {
+            return line;
+        }
+        return " ".repeat(Math.max(1, width / indentUnit)) + line.stripLeading();
+    }
+
+    private static int indentWidth(String line) {
+        int width = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == ' ') {
+                width++;
+            } else if (c == '\t') {
+                width += TAB_WIDTH;
+            } else {
+                break;
+            }
+        }
+        return width;
+    }
+
+    private static void append(StringBuilder text, String line) {
+        if (text.length() > 0) {
+            text.append('\n');
+        }
+        text.append(line);
+    }
+}
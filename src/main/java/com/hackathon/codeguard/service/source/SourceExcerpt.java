@@ -0,0 +1,32 @@
+package com.hackathon.codeguard.service.source;
+
+/**
+ * Text derived from a source file together with the file line each of its lines came from
+ */
+public final class SourceExcerpt {
+
+    private final String text;
+    private final int[] fileLines; // 0 for lines that do not come from the file
+
+    public SourceExcerpt(String text, int[] fileLines) {
+        this.text = text;
+        this.fileLines = fileLines;
+    }
+
+    public String getText() { return text; }
+
+    public int getLineCount() {
+        return fileLines.length;
+    }
+
+    /**
+     * Maps a 1-based excerpt line to the file line it came from, or null if there is none
+     */
+    public Integer toFileLine(Integer excerptLine) {
+        if (excerptLine == null || excerptLine < 1 || excerptLine > fileLines.length) {
+            return null;
+        }
+        int fileLine = fileLines[excerptLine - 1];
+        return fileLine > 0 ? fileLine : null;
+    }
+}
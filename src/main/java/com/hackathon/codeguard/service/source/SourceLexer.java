@@ -0,0 +1,149 @@
+package com.hackathon.codeguard.service.source;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal lexer for C-family languages (Java, TypeScript, JavaScript and similar).
+ * It only distinguishes what local analysis needs: comments, string literals,
+ * identifiers, numbers and punctuation, each with the line it starts on.
+ */
+public final class SourceLexer {
+
+    public enum TokenType { IDENTIFIER, NUMBER, STRING, COMMENT, PUNCTUATION }
+
+    /**
+     * A lexical token with its 1-based start and end lines
+     */
+    public static final class Token {
+        private final TokenType type;
+        private final String text;
+        private final int line;
+        private final int endLine;
+
+        Token(TokenType type, String text, int line, int endLine) {
+            this.type = type;
+            this.text = text;
+            this.line = line;
+            this.endLine = endLine;
+        }
+
+        public TokenType getType() { return type; }
+        public String getText() { return text; }
+        public int getLine() { return line; }
+        public int getEndLine() { return endLine; }
+
+        public boolean is(String value) {
+            return text.equals(value);
+        }
+
+        @Override
+        public String toString() {
+            return type + "(" + text + ")@" + line;
+        }
+    }
+
+    // Multi-character operators that matter for analysis
+    private static final String[] OPERATORS = { "&&", "||", "??", "?.", "->", "=>", "::" };
+
+    private SourceLexer() {}
+
+    /**
+     * Splits source code into tokens, skipping whitespace
+     */
+    public static List<Token> tokenize(String source) {
+        List<Token> tokens = new ArrayList<>();
+        int length = source.length();
+        int line = 1;
+        int i = 0;
+
+        while (i < length) {
+            char c = source.charAt(i);
+            int startLine = line;
+            int start = i;
+
+            if (c == '\n') {
+                line++;
+                i++;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '/' && i + 1 < length && source.charAt(i + 1) == '/') {
+                while (i < length && source.charAt(i) != '\n') i++;
+                tokens.add(new Token(TokenType.COMMENT, source.substring(start, i), startLine, startLine));
+            } else if (c == '/' && i + 1 < length && source.charAt(i + 1) == '*') {
+                i += 2;
+                while (i < length && !(source.charAt(i) == '*' && i + 1 < length && source.charAt(i + 1) == '/')) {
+                    if (source.charAt(i) == '\n') line++;
+                    i++;
+                }
+                i = Math.min(length, i + 2);
+                tokens.add(new Token(TokenType.COMMENT, source.substring(start, i), startLine, line));
+            } else if (c == '"' && source.startsWith("\"\"\"", i)) {
+                // Java text block
+                i += 3;
+                while (i < length && !source.startsWith("\"\"\"", i)) {
+                    if (source.charAt(i) == '\\') i++;
+                    else if (source.charAt(i) == '\n') line++;
+                    i++;
+                }
+                i = Math.min(length, i + 3);
+                tokens.add(new Token(TokenType.STRING, source.substring(start, i), startLine, line));
+            } else if (c == '"' || c == '\'' || c == '`') {
+                i++;
+                while (i < length && source.charAt(i) != c) {
+                    char ch = source.charAt(i);
+                    if (ch == '\\') {
+                        i++;
+                    } else if (ch == '\n') {
+                        if (c != '`') break; // Unterminated literal, recover at end of line
+                        line++;
+                    }
+                    i++;
+                }
+                i = Math.min(length, i + 1);
+                tokens.add(new Token(TokenType.STRING, source.substring(start, i), startLine, line));
+            } else if (Character.isJavaIdentifierStart(c)) {
+                while (i < length && Character.isJavaIdentifierPart(source.charAt(i))) i++;
+                tokens.add(new Token(TokenType.IDENTIFIER, source.substring(start, i), startLine, startLine));
+            } else if (Character.isDigit(c)) {
+                while (i < length && (Character.isLetterOrDigit(source.charAt(i)) || source.charAt(i) == '.' || source.charAt(i) == '_')) i++;
+                tokens.add(new Token(TokenType.NUMBER, source.substring(start, i), startLine, startLine));
+            } else {
+                String operator = matchOperator(source, i);
+                i += operator.length();
+                tokens.add(new Token(TokenType.PUNCTUATION, operator, startLine, startLine));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Brace depth at the start of each line (index 0 is line 1), ignoring braces in comments and string literals
+     */
+    public static int[] braceDepthAtLineStart(String source) {
+        int lineCount = source.split("\n", -1).length;
+        int[] depthChangeAtLine = new int[lineCount + 2];
+        for (Token token : tokenize(source)) {
+            if (token.getType() == TokenType.PUNCTUATION) {
+                if (token.is("{")) depthChangeAtLine[token.getLine()]++;
+                else if (token.is("}")) depthChangeAtLine[token.getLine()]--;
+            }
+        }
+        int[] depthAtLineStart = new int[lineCount];
+        int depth = 0;
+        for (int i = 0; i < lineCount; i++) {
+            depthAtLineStart[i] = Math.max(0, depth);
+            depth += depthChangeAtLine[i + 1];
+        }
+        return depthAtLineStart;
+    }
+
+    private static String matchOperator(String source, int index) {
+        for (String operator : OPERATORS) {
+            if (source.startsWith(operator, index)) {
+                return operator;
+            }
+        }
+        return String.valueOf(source.charAt(index));
+    }
+}
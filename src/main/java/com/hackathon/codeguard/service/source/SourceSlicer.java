@@ -0,0 +1,153 @@
+package com.hackathon.codeguard.service.source;
+
+import com.hackathon.codeguard.model.InputSlice;
+import com.hackathon.codeguard.service.source.SourceLexer.Token;
+import com.hackathon.codeguard.service.source.SourceLexer.TokenType;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Cuts the part of a file a single analysis dimension needs out of its source, so prompts that do not
+ * look at method bodies are not sent them. Omitted stretches are replaced by a single marker line.
+ */
+public class SourceSlicer {
+
+    // A block opened after one of these holds declarations rather than statements
+    private static final Pattern TYPE_DECLARATION = Pattern.compile(
+        "\\b(class|interface|enum|record|object|trait|struct|namespace|module)\\b");
+    private static final Pattern PACKAGE_DECLARATION = Pattern.compile("^(package|namespace)\\s.*");
+    // Declarations of languages that delimit blocks by indentation or keywords instead of braces
+    private static final Pattern KEYWORD_DECLARATION = Pattern.compile(
+        "^\\s*(@|(async\\s+)?def\\s|class\\s|module\\s|attr_(reader|writer|accessor)\\s|(include|extend)\\s).*");
+    private static final Set<String> KEYWORD_BLOCK_LANGUAGES = Set.of("Python", "Ruby");
+
+    public String slice(String code, String language, InputSlice slice) {
+        return switch (slice) {
+            case FULL -> code;
+            case SIGNATURES -> signatures(code, language);
+            case IMPORTS -> imports(code, language);
+        };
+    }
+
+    /**
+     * Keeps everything outside method bodies: imports, type declarations, fields and member signatures
+     */
+    private static String signatures(String code, String language) {
+        String[] lines = code.split("\n", -1);
+        boolean[] kept = new boolean[lines.length];
+        if (KEYWORD_BLOCK_LANGUAGES.contains(language)) {
+            for (int i = 0; i < lines.length; i++) {
+                kept[i] = !lines[i].isEmpty() && !Character.isWhitespace(lines[i].charAt(0))
+                    || KEYWORD_DECLARATION.matcher(lines[i]).matches();
+            }
+        } else {
+            int[] bodyDepth = bodyDepthAtLineStart(code, lines);
+            for (int i = 0; i < lines.length; i++) {
+                boolean closesLastBody = lines[i].trim().startsWith("}") && bodyDepth[i + 1] == 0;
+                kept[i] = bodyDepth[i] == 0 || closesLastBody;
+            }
+        }
+        return join(lines, kept, PromptMinimizer.lineCommentPrefix(language) + " ...");
+    }
+
+    /**
+     * Keeps the package declaration and import statements; code without a known import syntax is returned whole
+     */
+    private static String imports(String code, String language) {
+        Pattern importPattern = PromptMinimizer.importPattern(language);
+        if (importPattern == null) {
+            return code;
+        }
+        String[] lines = code.split("\n", -1);
+        boolean[] kept = new boolean[lines.length];
+        boolean anyImport = false;
+        for (int i = 0; i < lines.length; i++) {
+            if (PACKAGE_DECLARATION.matcher(lines[i]).matches()) {
+                kept[i] = true;
+            } else if (importPattern.matcher(lines[i]).matches()) {
+                int end = PromptMinimizer.statementEnd(lines, i);
+                for (int line = i; line <= end; line++) {
+                    kept[line] = true;
+                }
+                anyImport = true;
+                i = end;
+            }
+        }
+        String prefix = PromptMinimizer.lineCommentPrefix(language);
+        String sliced = join(lines, kept, prefix + " ...");
+        return anyImport ? sliced : sliced + "\n" + prefix + " (no imports)";
+    }
+
+    /**
+     * Number of open statement blocks, such as method bodies and initializers, at the start of each line.
+     * Index lines.length holds the count after the last line.
+     */
+    private static int[] bodyDepthAtLineStart(String code, String[] lines) {
+        int[] bodyDepth = new int[lines.length + 1];
+        Deque<Boolean> openBlocks = new ArrayDeque<>(); // true for statement blocks
+        int depth = 0;
+        int line = 0; // next 0-based line whose starting depth is not yet recorded
+        List<Token> tokens = SourceLexer.tokenize(code);
+        for (Token token : tokens) {
+            while (line < token.getLine() && line < lines.length) {
+                bodyDepth[line++] = depth;
+            }
+            if (token.getType() != TokenType.PUNCTUATION) {
+                continue;
+            }
+            if (token.is("{")) {
+                boolean body = depth > 0 || !TYPE_DECLARATION.matcher(blockHeader(lines, token.getLine())).find();
+                openBlocks.push(body);
+                if (body) {
+                    depth++;
+                }
+            } else if (token.is("}") && !openBlocks.isEmpty() && openBlocks.pop()) {
+                depth--;
+            }
+        }
+        while (line <= lines.length) {
+            bodyDepth[line++] = depth;
+        }
+        return bodyDepth;
+    }
+
+    /**
+     * The line that introduces a block opened on the given 1-based line: the line itself, or the
+     * previous non-blank line when the brace stands alone
+     */
+    private static String blockHeader(String[] lines, int line) {
+        int index = line - 1;
+        if (lines[index].trim().startsWith("{")) {
+            while (index > 0 && (index == line - 1 || lines[index].isBlank())) {
+                index--;
+            }
+        }
+        return lines[index];
+    }
+
+    private static String join(String[] lines, boolean[] kept, String marker) {
+        StringBuilder text = new StringBuilder();
+        boolean omitting = false;
+        for (int i = 0; i < lines.length; i++) {
+            if (kept[i] || (lines[i].isBlank() && !omitting)) {
+                append(text, lines[i]);
+                omitting = false;
+            } else if (!omitting && !lines[i].isBlank()) {
+                append(text, marker);
+                omitting = true;
+            }
+        }
+        return text.toString();
+    }
+
+    private static void append(StringBuilder text, String line) {
+        if (text.length() > 0) {
+            text.append('\n');
+        }
+        text.append(line);
+    }
+}
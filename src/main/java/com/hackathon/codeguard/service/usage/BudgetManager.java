@@ -0,0 +1,139 @@
+package com.hackathon.codeguard.service.usage;
+
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Caps the tokens or estimated dollars a run may spend on LLM calls. Before a file is sent, its cost
+ * is estimated and reserved; the reservation is refused when the tokens already spent, the estimates
+ * of files still in flight and the new estimate together exceed the budget. A limit of zero is no limit.
+ */
+public class BudgetManager {
+
+    // Third-party and generated code is rarely worth the budget
+    private static final Pattern LOW_VALUE_PATH = Pattern.compile(
+        "(^|/)(vendor|third[_-]?party|node_modules|bower_components|generated|gen|dist|build|target)/|\\.min\\.|\\.generated\\.");
+    private static final Pattern TEST_PATH = Pattern.compile("(^|/)(test|tests|spec|__tests__)/|(Test|Tests|Spec|_test|\\.test|\\.spec)\\.");
+    private static final double LOW_VALUE_WEIGHT = 0.1;
+    private static final double TEST_WEIGHT = 0.5;
+
+    /**
+     * Expected tokens of the LLM calls for one file
+     */
+    public record Estimate(long promptTokens, long completionTokens) {
+
+        public long totalTokens() {
+            return promptTokens + completionTokens;
+        }
+    }
+
+    private final long maxTokens;
+    private final double maxCostUsd;
+    private final double promptPricePerMillion;
+    private final double completionPricePerMillion;
+    private final UsageTracker usage;
+    private final Map<Path, Estimate> reserved = new HashMap<>();
+    private boolean frozen;
+
+    public BudgetManager(long maxTokens, double maxCostUsd, double promptPricePerMillion,
+                         double completionPricePerMillion, UsageTracker usage) {
+        this.maxTokens = maxTokens;
+        this.maxCostUsd = maxCostUsd;
+        this.promptPricePerMillion = promptPricePerMillion;
+        this.completionPricePerMillion = completionPricePerMillion;
+        this.usage = usage;
+    }
+
+    public boolean isLimited() {
+        return maxTokens > 0 || maxCostUsd > 0;
+    }
+
+    public double costUsd(Estimate estimate) {
+        return (estimate.promptTokens() * promptPricePerMillion + estimate.completionTokens() * completionPricePerMillion) / 1_000_000;
+    }
+
+    /**
+     * Reserves the estimate for the file if it fits in what is left of the budget
+     */
+    public synchronized boolean tryReserve(Path file, Estimate estimate) {
+        if (!isLimited()) {
+            return true;
+        }
+        if (frozen) {
+            return reserved.containsKey(file);
+        }
+        long tokens = usage.spentTokens() + estimate.totalTokens();
+        double cost = usage.spentCostUsd() + costUsd(estimate);
+        for (Estimate inFlight : reserved.values()) {
+            tokens += inFlight.totalTokens();
+            cost += costUsd(inFlight);
+        }
+        if ((maxTokens > 0 && tokens > maxTokens) || (maxCostUsd > 0 && cost > maxCostUsd)) {
+            return false;
+        }
+        reserved.put(file, estimate);
+        return true;
+    }
+
+    /**
+     * Releases the file's reservation once its calls are done and their usage is recorded
+     */
+    public synchronized void release(Path file) {
+        if (!frozen) {
+            reserved.remove(file);
+        }
+    }
+
+    /**
+     * Makes the current reservations final: afterwards exactly the files reserved so far are admitted,
+     * whatever is spent. Used after the dry pass that collects a batch, which is paid for on submission.
+     */
+    public synchronized void freeze() {
+        frozen = true;
+    }
+
+    /**
+     * Orders files by expected value per estimated token, best first, so the budget covers as much
+     * useful code as possible. Ties keep the given order.
+     */
+    public void prioritize(List<Path> files, Map<Path, Estimate> estimates) {
+        Map<Path, Double> density = new HashMap<>();
+        for (Path file : files) {
+            Estimate estimate = estimates.get(file);
+            long tokens = estimate != null ? Math.max(1, estimate.totalTokens()) : 1;
+            density.put(file, expectedValue(file, tokens) / tokens);
+        }
+        files.sort(Comparator.comparingDouble((Path file) -> density.get(file)).reversed());
+    }
+
+    /**
+     * Larger files hold more findings, with diminishing returns; tests, third-party and generated code count less
+     */
+    static double expectedValue(Path file, long tokens) {
+        String path = file.toString().replace('\\', '/');
+        double value = Math.log(2 + tokens);
+        if (LOW_VALUE_PATH.matcher(path.toLowerCase(Locale.ROOT)).find()) {
+            value *= LOW_VALUE_WEIGHT;
+        } else if (TEST_PATH.matcher(path).find()) {
+            value *= TEST_WEIGHT;
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder limits = new StringBuilder();
+        if (maxTokens > 0) {
+            limits.append(maxTokens).append(" tokens");
+        }
+        if (maxCostUsd > 0) {
+            limits.append(limits.length() > 0 ? " and " : "").append(String.format("$%.2f", maxCostUsd));
+        }
+        return limits.length() > 0 ? limits.toString() : "unlimited";
+    }
+}
@@ -0,0 +1,202 @@
+package com.hackathon.codeguard.service.usage;
+
+import com.hackathon.codeguard.model.UsageReport;
+import com.hackathon.codeguard.model.UsageReport.FileUsage;
+import com.hackathon.codeguard.model.UsageReport.LatencySummary;
+import com.hackathon.codeguard.model.UsageReport.UsageTotals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accounts for every LLM call of a run: tokens, estimated cost, wall-clock latency per dimension,
+ * retries and cache hits. Calls are attributed to the file and dimension set with
+ * {@link #attribute(String, String, Callable)} on the calling thread; calls made outside of it count
+ * for the run only.
+ */
+public class UsageTracker {
+
+    private static final String UNATTRIBUTED = "other";
+
+    private record CallSite(String file, String dimension) {}
+
+    private final double promptPricePerMillion;
+    private final double completionPricePerMillion;
+    private final Counters run = new Counters();
+    private final Map<String, Counters> files = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> latencyByDimension = new ConcurrentHashMap<>();
+    private final ThreadLocal<CallSite> callSite = new ThreadLocal<>();
+
+    public UsageTracker(double promptPricePerMillion, double completionPricePerMillion) {
+        this.promptPricePerMillion = promptPricePerMillion;
+        this.completionPricePerMillion = completionPricePerMillion;
+    }
+
+    /**
+     * Runs the work with the calls it makes on this thread attributed to the file and dimension
+     *
+     * @param file the analyzed file, or null for calls that belong to the run as a whole
+     */
+    public <T> T attribute(String file, String dimension, Callable<T> work) throws Exception {
+        CallSite previous = callSite.get();
+        callSite.set(new CallSite(file, dimension));
+        try {
+            return work.call();
+        } finally {
+            if (previous == null) {
+                callSite.remove();
+            } else {
+                callSite.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Records a live call that returned a response
+     *
+     * @param estimated whether the token counts are estimates rather than the provider's reported usage
+     */
+    public void recordCall(long latencyNanos, long promptTokens, long completionTokens, boolean estimated) {
+        long latencyMillis = TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+        CallSite site = currentSite();
+        latencyByDimension.computeIfAbsent(site.dimension(), key -> new LatencyHistogram()).record(latencyMillis);
+        for (Counters counters : countersFor(site)) {
+            counters.calls.increment();
+            counters.promptTokens.add(promptTokens);
+            counters.completionTokens.add(completionTokens);
+            counters.latencyMillis.add(latencyMillis);
+            if (estimated) {
+                counters.estimatedTokenCalls.increment();
+            }
+        }
+    }
+
+    /**
+     * Records a live call that failed after all its attempts
+     */
+    public void recordFailedCall(long latencyNanos) {
+        for (Counters counters : countersFor(currentSite())) {
+            counters.failedCalls.increment();
+            counters.latencyMillis.add(TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        }
+    }
+
+    /**
+     * Records a request answered from a batch job, whose usage is not reported per request
+     */
+    public void recordBatchCall(long promptTokens, long completionTokens) {
+        for (Counters counters : countersFor(currentSite())) {
+            counters.batchCalls.increment();
+            counters.promptTokens.add(promptTokens);
+            counters.completionTokens.add(completionTokens);
+            counters.estimatedTokenCalls.increment();
+        }
+    }
+
+    public void recordRetry() {
+        countersFor(currentSite()).forEach(counters -> counters.retries.increment());
+    }
+
+    public void recordCacheHit() {
+        countersFor(currentSite()).forEach(counters -> counters.cacheHits.increment());
+    }
+
+    public void recordCacheMiss() {
+        countersFor(currentSite()).forEach(counters -> counters.cacheMisses.increment());
+    }
+
+    /**
+     * Prompt and completion tokens of the run so far
+     */
+    public long spentTokens() {
+        return run.promptTokens.sum() + run.completionTokens.sum();
+    }
+
+    public double spentCostUsd() {
+        return costUsd(run.promptTokens.sum(), run.completionTokens.sum());
+    }
+
+    private double costUsd(long promptTokens, long completionTokens) {
+        return (promptTokens * promptPricePerMillion + completionTokens * completionPricePerMillion) / 1_000_000;
+    }
+
+    /**
+     * A snapshot of the usage recorded so far
+     */
+    public UsageReport report() {
+        UsageReport report = new UsageReport();
+        report.setTotals(totals(run));
+        report.setPromptPricePerMillion(promptPricePerMillion);
+        report.setCompletionPricePerMillion(completionPricePerMillion);
+
+        Map<String, LatencySummary> latency = new TreeMap<>();
+        latencyByDimension.forEach((dimension, histogram) -> latency.put(dimension, summarize(histogram)));
+        report.setLatencyByDimension(latency);
+
+        List<FileUsage> fileUsage = new ArrayList<>();
+        files.forEach((file, counters) -> fileUsage.add(new FileUsage(file, totals(counters))));
+        fileUsage.sort(Comparator.comparingDouble((FileUsage usage) -> usage.getTotals().getEstimatedCostUsd()).reversed()
+            .thenComparing(FileUsage::getFilePath));
+        report.setFiles(fileUsage);
+        return report;
+    }
+
+    private CallSite currentSite() {
+        CallSite site = callSite.get();
+        return site != null ? site : new CallSite(null, UNATTRIBUTED);
+    }
+
+    private List<Counters> countersFor(CallSite site) {
+        if (site.file() == null) {
+            return List.of(run);
+        }
+        return List.of(run, files.computeIfAbsent(site.file(), key -> new Counters()));
+    }
+
+    private UsageTotals totals(Counters counters) {
+        UsageTotals totals = new UsageTotals();
+        totals.setCalls(counters.calls.sum());
+        totals.setFailedCalls(counters.failedCalls.sum());
+        totals.setBatchCalls(counters.batchCalls.sum());
+        totals.setPromptTokens(counters.promptTokens.sum());
+        totals.setCompletionTokens(counters.completionTokens.sum());
+        totals.setEstimatedTokenCalls(counters.estimatedTokenCalls.sum());
+        totals.setRetries(counters.retries.sum());
+        totals.setCacheHits(counters.cacheHits.sum());
+        totals.setCacheMisses(counters.cacheMisses.sum());
+        totals.setLatencyMillis(counters.latencyMillis.sum());
+        totals.setEstimatedCostUsd(costUsd(totals.getPromptTokens(), totals.getCompletionTokens()));
+        return totals;
+    }
+
+    private static LatencySummary summarize(LatencyHistogram histogram) {
+        LatencySummary summary = new LatencySummary();
+        summary.setCalls(histogram.getCount());
+        summary.setMean(histogram.getMean());
+        summary.setP50(histogram.percentile(50));
+        summary.setP90(histogram.percentile(90));
+        summary.setP99(histogram.percentile(99));
+        summary.setMax(histogram.getMax());
+        return summary;
+    }
+
+    private static final class Counters {
+        final LongAdder calls = new LongAdder();
+        final LongAdder failedCalls = new LongAdder();
+        final LongAdder batchCalls = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder completionTokens = new LongAdder();
+        final LongAdder estimatedTokenCalls = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder cacheHits = new LongAdder();
+        final LongAdder cacheMisses = new LongAdder();
+        final LongAdder latencyMillis = new LongAdder();
+    }
+}
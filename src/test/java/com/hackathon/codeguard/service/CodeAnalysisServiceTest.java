@@ -0,0 +1,398 @@
+package com.hackathon.codeguard.service;
+
+import com.hackathon.codeguard.cli.CodeGuardCLI.AnalysisMode;
+import com.hackathon.codeguard.model.AnalysisOptions;
+import com.hackathon.codeguard.model.AnalysisResult;
+import com.hackathon.codeguard.model.FileAnalysisResult;
+import com.hackathon.codeguard.model.GateDecision;
+import com.hackathon.codeguard.service.llm.LocalLlmServer;
+import com.hackathon.codeguard.service.llm.StandInSettings;
+import com.hackathon.codeguard.service.openai.OpenAIAnalysisService;
+import com.hackathon.codeguard.service.usage.BudgetManager;
+import com.hackathon.codeguard.service.usage.UsageTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for CodeAnalysisService
+ */
+class CodeAnalysisServiceTest {
+
+    private OpenAIAnalysisService openAIService;
+    private CodeAnalysisService analysisService;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        openAIService = mock(OpenAIAnalysisService.class);
+        AnalysisOptions options = new AnalysisOptions();
+        options.setParallelism(4);
+        analysisService = new CodeAnalysisService(options, openAIService, new FileProcessingService());
+    }
+
+    @Test
+    void testResultsKeepInputOrderUnderConcurrency() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Path file = tempDir.resolve("File" + i + ".java");
+            Files.writeString(file, "class File" + i + " {}");
+            files.add(file);
+        }
+
+        when(openAIService.analyzeCodeFile(any(), anyString(), any(), anyBoolean())).thenAnswer(invocation -> {
+            Path path = invocation.getArgument(0);
+            int index = Integer.parseInt(path.getFileName().toString().replaceAll("\\D", ""));
+            // Later files finish first
+            Thread.sleep((8 - index) * 10L);
+            return scoredResult(path, 60 + index * 5);
+        });
+
+        AnalysisResult result = analysisService.analyzeFiles(files, AnalysisMode.STANDARD, false);
+
+        List<String> names = result.getFileResults().stream()
+            .map(FileAnalysisResult::getFilename)
+            .collect(Collectors.toList());
+        assertEquals(files.stream().map(p -> p.getFileName().toString()).collect(Collectors.toList()), names);
+        assertEquals(8, result.getSummary().getTotalFiles());
+        assertEquals(77.5, result.getOverallScore(), 0.001);
+        assertTrue(result.getFailedFiles().isEmpty());
+    }
+
+    @Test
+    void testFailuresAreCollectedPerFile() throws Exception {
+        Path good = tempDir.resolve("Good.java");
+        Path missing = tempDir.resolve("Missing.java");
+        Files.writeString(good, "class Good {}");
+
+        when(openAIService.analyzeCodeFile(any(), anyString(), any(), anyBoolean()))
+            .thenAnswer(invocation -> scoredResult(invocation.getArgument(0), 90));
+
+        AnalysisResult result = analysisService.analyzeFiles(List.of(good, missing), AnalysisMode.STANDARD, false);
+
+        assertEquals(1, result.getFileResults().size());
+        assertEquals(90.0, result.getOverallScore(), 0.001);
+        assertEquals(1, result.getSummary().getHighQualityFiles());
+        assertTrue(result.getFailedFiles().containsKey(missing.toString()));
+    }
+
+    @Test
+    void testIncrementalRunReusesUnchangedFiles() throws Exception {
+        Path stable = tempDir.resolve("Stable.java");
+        Path edited = tempDir.resolve("Edited.java");
+        Files.writeString(stable, "class Stable {}");
+        Files.writeString(edited, "class Edited {}");
+
+        AnalysisOptions options = new AnalysisOptions();
+        options.setIncremental(true);
+        options.setManifestPath(tempDir.resolve("manifest.json").toString());
+        when(openAIService.getPromptVersion()).thenReturn("1");
+        when(openAIService.getModel()).thenReturn("gpt-4");
+        when(openAIService.analyzeCodeFile(any(), anyString(), any(), anyBoolean()))
+            .thenAnswer(invocation -> scoredResult(invocation.getArgument(0), 80));
+
+        new CodeAnalysisService(options, openAIService, new FileProcessingService())
+            .analyzeFiles(List.of(stable, edited), AnalysisMode.STANDARD, false);
+        Files.writeString(edited, "class Edited { void changed() {} }");
+        AnalysisResult second = new CodeAnalysisService(options, openAIService, new FileProcessingService())
+            .analyzeFiles(List.of(stable, edited), AnalysisMode.STANDARD, false);
+
+        verify(openAIService, times(1)).analyzeCodeFile(eq(stable), anyString(), any(), anyBoolean());
+        verify(openAIService, times(2)).analyzeCodeFile(eq(edited), anyString(), any(), anyBoolean());
+        assertEquals(2, second.getSummary().getTotalFiles());
+        assertEquals(80.0, second.getOverallScore(), 0.001);
+
+        // A different mode invalidates the stored results
+        new CodeAnalysisService(options, openAIService, new FileProcessingService())
+            .analyzeFiles(List.of(stable), AnalysisMode.DEVELOPER_REVIEW, false);
+        verify(openAIService, times(2)).analyzeCodeFile(eq(stable), anyString(), any(), anyBoolean());
+    }
+
+    @Test
+    void testFallbackResultsAreAnalyzedAgainOnTheNextRun() throws Exception {
+        // No canned answer for the issues prompt, so that dimension falls back
+        Map<String, String> canned = LocalLlmServer.defaultCannedResponses();
+        canned.remove("JSON array with objects containing");
+        StandInSettings settings = new StandInSettings();
+        settings.setPort(0);
+        settings.setCannedResponses(canned);
+        Path file = tempDir.resolve("Greeter.java");
+        Files.writeString(file, "class Greeter { String greet() { return \"Hello\"; } }");
+
+        try (LocalLlmServer server = new LocalLlmServer(settings).start()) {
+            AnalysisOptions options = new AnalysisOptions();
+            options.setLlmBaseUrl(server.getBaseUrl());
+            options.setCacheEnabled(false);
+            options.setIncremental(true);
+            options.setManifestPath(tempDir.resolve("manifest.json").toString());
+
+            AnalysisResult first = new CodeAnalysisService(options, new OpenAIAnalysisService(options), new FileProcessingService())
+                .analyzeFiles(List.of(file), AnalysisMode.STANDARD, false);
+            long firstRunCompletions = server.getCompletionCount();
+            AnalysisResult second = new CodeAnalysisService(options, new OpenAIAnalysisService(options), new FileProcessingService())
+                .analyzeFiles(List.of(file), AnalysisMode.STANDARD, false);
+
+            assertTrue(first.getFileResults().get(0).isDegraded());
+            assertEquals(75.0, first.getFileResults().get(0).getSecurity(), 0.001);
+            assertEquals(2 * firstRunCompletions, server.getCompletionCount());
+            assertTrue(second.getFileResults().get(0).isDegraded());
+        }
+    }
+
+    @Test
+    void testDuplicateFilesReuseTheFirstFilesAnalysis() throws Exception {
+        Path original = tempDir.resolve("Original.java");
+        Path copy = tempDir.resolve("Copy.java");
+        Path other = tempDir.resolve("Other.java");
+        Files.writeString(original, "class Dto { String name; }");
+        Files.writeString(copy, "class Dto { String name; }");
+        Files.writeString(other, "class Other { int count; }");
+
+        when(openAIService.analyzeCodeFile(any(), anyString(), any(), anyBoolean()))
+            .thenAnswer(invocation -> scoredResult(invocation.getArgument(0), 70));
+
+        AnalysisResult result = analysisService.analyzeFiles(List.of(original, copy, other), AnalysisMode.STANDARD, false);
+
+        verify(openAIService, never()).analyzeCodeFile(eq(copy), anyString(), any(), anyBoolean());
+        assertEquals(3, result.getFileResults().size());
+        FileAnalysisResult copyResult = result.getFileResults().get(1);
+        assertEquals("Copy.java", copyResult.getFilename());
+        assertEquals(original.toString(), copyResult.getDuplicateOf());
+        assertTrue(copyResult.isExactDuplicate());
+        assertEquals(70.0, copyResult.getFinalScore(), 0.001);
+        assertNull(result.getFileResults().get(2).getDuplicateOf());
+    }
+
+    @Test
+    void testNearCopiesAreAnalyzedUnlessOptedInOutsideGateModes() throws Exception {
+        Path original = tempDir.resolve("Client.java");
+        Path variant = tempDir.resolve("ClientCopy.java");
+        String template = "class Client {\n    int timeout = %d;\n    String url = \"%s\";\n"
+            + "    String fetch(Http http) {\n        return http.get(url, timeout).body().trim();\n    }\n}\n";
+        Files.writeString(original, String.format(template, 30, "https://a.example"));
+        Files.writeString(variant, String.format(template, 1, "http://b.example"));
+        when(openAIService.analyzeCodeFile(any(), anyString(), any(), anyBoolean()))
+            .thenAnswer(invocation -> scoredResult(invocation.getArgument(0), 70));
+
+        // Literals do not change the fingerprint, yet by default the variant is analyzed on its own
+        analysisService.analyzeFiles(List.of(original, variant), AnalysisMode.STANDARD, false);
+        verify(openAIService, times(1)).analyzeCodeFile(eq(variant), anyString(), any(), anyBoolean());
+
+        AnalysisOptions options = new AnalysisOptions();
+        options.setNearDuplicateDistance(3);
+        CodeAnalysisService optedIn = new CodeAnalysisService(options, openAIService, new FileProcessingService());
+        AnalysisResult reused = optedIn.analyzeFiles(List.of(original, variant), AnalysisMode.STANDARD, false);
+        verify(openAIService, times(1)).analyzeCodeFile(eq(variant), anyString(), any(), anyBoolean());
+        assertFalse(reused.getFileResults().get(1).isExactDuplicate());
+
+        options.setManifestPath(tempDir.resolve("none.json").toString());
+        optedIn.analyzeFiles(List.of(original, variant), AnalysisMode.QA_AUTOMATION, false);
+        verify(openAIService, times(2)).analyzeCodeFile(eq(variant), anyString(), any(), anyBoolean());
+    }
+
+    @Test
+    void testBudgetSkipsLowValueFilesOnceSpent() throws Exception {
+        Path core = tempDir.resolve("Core.java");
+        Path vendored = Files.createDirectories(tempDir.resolve("vendor")).resolve("Lib.java");
+        Path small = tempDir.resolve("Small.java");
+        for (Path file : List.of(core, vendored, small)) {
+            Files.writeString(file, "class " + file.getFileName().toString().replace(".java", "") + " {}");
+        }
+
+        AnalysisOptions options = new AnalysisOptions();
+        options.setParallelism(1);
+        options.setTokenBudget(1_000);
+        UsageTracker tracker = new UsageTracker(30, 60);
+        when(openAIService.getUsageTracker()).thenReturn(tracker);
+        when(openAIService.estimateCost(any(), anyString(), anyBoolean())).thenReturn(new BudgetManager.Estimate(300, 100));
+        when(openAIService.analyzeCodeFile(any(), anyString(), any(), anyBoolean())).thenAnswer(invocation -> {
+            tracker.recordCall(0, 300, 100, false);
+            return scoredResult(invocation.getArgument(0), 80);
+        });
+        when(openAIService.localOnlyResult(any(), anyString(), anyString()))
+            .thenAnswer(invocation -> scoredResult(invocation.getArgument(0), 50));
+
+        AnalysisResult result = new CodeAnalysisService(options, openAIService, new FileProcessingService())
+            .analyzeFiles(List.of(core, vendored, small), AnalysisMode.STANDARD, false);
+
+        // Vendored code has the least value per token, so it is the file left out
+        verify(openAIService, never()).analyzeCodeFile(eq(vendored), anyString(), any(), anyBoolean());
+        assertTrue(result.getFileResults().get(1).isBudgetSkipped());
+        assertEquals(List.of(vendored.toString()), result.getSkippedFiles());
+        assertEquals(List.of(core.toString(), small.toString()), result.getCoveredFiles());
+        assertEquals(80.0, result.getOverallScore(), 0.001);
+        assertEquals(3, result.getSummary().getTotalFiles());
+    }
+
+    @Test
+    void testRiskiestFilesGoFirstAndListenersHearOfEachFile() throws Exception {
+        Path plain = tempDir.resolve("Plain.java");
+        Path risky = tempDir.resolve("Risky.java");
+        Files.writeString(plain, "class Plain { int sum(int a, int b) { return a + b; } }");
+        Files.writeString(risky, "class Risky { void run(String cmd) throws Exception { Runtime.getRuntime().exec(cmd); } }");
+
+        AnalysisOptions options = new AnalysisOptions();
+        options.setParallelism(1);
+        options.setManifestPath(tempDir.resolve("none.json").toString());
+        when(openAIService.analyzeCodeFile(any(), anyString(), any(), anyBoolean()))
+            .thenAnswer(invocation -> scoredResult(invocation.getArgument(0), 60));
+        List<String> completed = new CopyOnWriteArrayList<>();
+        CodeAnalysisService service = new CodeAnalysisService(options, openAIService, new FileProcessingService());
+        service.addCompletionListener(result -> completed.add(result.getFilename()));
+
+        AnalysisResult result = service.analyzeFiles(List.of(plain, risky), AnalysisMode.QA_AUTOMATION, false);
+
+        assertEquals(List.of("Risky.java", "Plain.java"), completed);
+        assertEquals("Plain.java", result.getFileResults().get(0).getFilename());
+    }
+
+    @Test
+    void testDecidedGateSkipsRemainingFilesUnlessFinishingInBackground() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Path file = tempDir.resolve("Weak" + i + ".java");
+            Files.writeString(file, "class Weak" + i + " {}");
+            files.add(file);
+        }
+        AnalysisOptions options = new AnalysisOptions();
+        options.setParallelism(1);
+        options.setManifestPath(tempDir.resolve("none.json").toString());
+        options.setGateThreshold(70.0);
+        when(openAIService.analyzeCodeFile(any(), anyString(), any(), anyBoolean()))
+            .thenAnswer(invocation -> scoredResult(invocation.getArgument(0), 10));
+        List<GateDecision> decisions = new CopyOnWriteArrayList<>();
+        CodeAnalysisService service = new CodeAnalysisService(options, openAIService, new FileProcessingService());
+        service.addCompletionListener(new FileCompletionListener() {
+            @Override
+            public void onFileCompleted(FileAnalysisResult result) {}
+
+            @Override
+            public void onGateDecided(GateDecision decision) {
+                decisions.add(decision);
+            }
+        });
+
+        // After two files scoring 10 the mean can reach at most (20 + 200) / 4 = 55
+        AnalysisResult result = service.analyzeFiles(files, AnalysisMode.QA_AUTOMATION, false);
+
+        assertEquals(1, decisions.size());
+        assertFalse(result.getGate().isPassed());
+        assertEquals(2, result.getGate().getFilesCompleted());
+        assertEquals(55.0, result.getGate().getHighestPossibleScore(), 0.001);
+        assertEquals(2, result.getFileResults().size());
+        assertEquals(2, result.getGate().getSkippedFiles().size());
+        assertTrue(result.getFailedFiles().isEmpty());
+        verify(openAIService, times(2)).analyzeCodeFile(any(), anyString(), any(), anyBoolean());
+
+        options.setFinishInBackground(true);
+        AnalysisResult full = service.analyzeFiles(files, AnalysisMode.QA_AUTOMATION, false);
+
+        assertEquals(4, full.getFileResults().size());
+        assertTrue(full.getGate().isEarly());
+        assertTrue(full.getGate().getSkippedFiles().isEmpty());
+    }
+
+    @Test
+    void testFilesCancelledByTheGateAreNeverReportedAsCompleted() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (String name : List.of("Weak0", "Weak1", "Slow0", "Slow1")) {
+            Path file = tempDir.resolve(name + ".java");
+            Files.writeString(file, "class " + name + " {}");
+            files.add(file);
+        }
+        AnalysisOptions options = new AnalysisOptions();
+        options.setParallelism(4);
+        options.setManifestPath(tempDir.resolve("none.json").toString());
+        options.setGateThreshold(70.0);
+        CountDownLatch slowStarted = new CountDownLatch(2);
+        CountDownLatch slowFinished = new CountDownLatch(2);
+        when(openAIService.analyzeCodeFile(any(), anyString(), any(), anyBoolean())).thenAnswer(invocation -> {
+            Path path = invocation.getArgument(0);
+            if (path.getFileName().toString().startsWith("Weak")) {
+                // The gate is decided while both slow files are in flight
+                assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+                return scoredResult(path, 10);
+            }
+            slowStarted.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                // Even an analysis that swallows the interrupt must not count once the gate is decided
+            } finally {
+                slowFinished.countDown();
+            }
+            return scoredResult(path, 0);
+        });
+        List<String> completed = new CopyOnWriteArrayList<>();
+        CodeAnalysisService service = new CodeAnalysisService(options, openAIService, new FileProcessingService());
+        service.addCompletionListener(result -> completed.add(result.getFilename()));
+
+        AnalysisResult result = service.analyzeFiles(files, AnalysisMode.QA_AUTOMATION, false);
+        assertTrue(slowFinished.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+
+        assertFalse(result.getGate().isPassed());
+        assertEquals(List.of("Slow0.java", "Slow1.java"), result.getGate().getSkippedFiles().stream()
+            .map(skipped -> Path.of(skipped).getFileName().toString()).sorted().collect(Collectors.toList()));
+        assertEquals(Set.of("Weak0.java", "Weak1.java"), Set.copyOf(completed));
+        assertEquals(2, completed.size());
+    }
+
+    @Test
+    void testSmallFilesArePackedAndMissingEntriesFallBackToSingleAnalysis() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Path file = tempDir.resolve("Dto" + i + ".java");
+            Files.writeString(file, "class Dto" + i + " { String name; }");
+            files.add(file);
+        }
+        AnalysisOptions options = new AnalysisOptions();
+        options.setParallelism(2);
+        options.setPackSmallFiles(true);
+        when(openAIService.packedTokens(any(), anyString())).thenReturn(10L);
+        when(openAIService.maxFilesPerPack(anyBoolean())).thenReturn(5);
+        // The packed answer only has a usable entry for the first file
+        when(openAIService.analyzePackedFiles(any(), any(), anyBoolean()))
+            .thenAnswer(invocation -> Map.of(files.get(0), scoredResult(files.get(0), 90)));
+        when(openAIService.analyzeCodeFile(any(), anyString(), any(), anyBoolean()))
+            .thenAnswer(invocation -> scoredResult(invocation.getArgument(0), 60));
+        CodeAnalysisService service = new CodeAnalysisService(options, openAIService, new FileProcessingService());
+
+        AnalysisResult result = service.analyzeFiles(files, AnalysisMode.STANDARD, false);
+
+        verify(openAIService, times(1)).analyzePackedFiles(argThat(pack -> pack.keySet().equals(Set.copyOf(files))),
+            any(), anyBoolean());
+        verify(openAIService, never()).analyzeCodeFile(eq(files.get(0)), anyString(), any(), anyBoolean());
+        verify(openAIService, times(2)).analyzeCodeFile(any(), anyString(), any(), anyBoolean());
+        assertEquals(List.of(90.0, 60.0, 60.0), result.getFileResults().stream()
+            .map(FileAnalysisResult::getFinalScore).collect(Collectors.toList()));
+    }
+
+    private FileAnalysisResult scoredResult(Path path, double score) {
+        FileAnalysisResult result = new FileAnalysisResult(path.getFileName().toString(), path.toString());
+        result.setCodeQuality(score);
+        result.setSolid(score);
+        result.setDesignPatterns(score);
+        result.setSecurity(score);
+        result.setBugDetection(score);
+        result.calculateFinalScore();
+        return result;
+    }
+}
@@ -0,0 +1,115 @@
+package com.hackathon.codeguard.service;
+
+import com.hackathon.codeguard.service.ChangeSet.Hunk;
+import com.hackathon.codeguard.service.cache.AnalysisManifest;
+import com.hackathon.codeguard.service.ChangeSet.LineRange;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for GitChangeSetService
+ */
+class GitChangeSetServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testParsesNewSideHunkRanges() {
+        String diff = """
+            diff --git a/src/A.java b/src/A.java
+            index 1111111111111111111111111111111111111111..2222222222222222222222222222222222222222 100644
+            --- a/src/A.java
+            +++ b/src/A.java
+            @@ -3 +3 @@ class A {
+            @@ -10,0 +11,4 @@ class A {
+            @@ -20,2 +24,0 @@ class A {
+            diff --git a/src/New.java b/src/New.java
+            new file mode 100644
+            index 0000000000000000000000000000000000000000..3333333333333333333333333333333333333333
+            --- /dev/null
+            +++ b/src/New.java
+            @@ -0,0 +1,3 @@
+            diff --git a/src/Gone.java b/src/Gone.java
+            index 4444444444444444444444444444444444444444..0000000000000000000000000000000000000000
+            --- a/src/Gone.java
+            +++ /dev/null
+            @@ -1,5 +0,0 @@
+            """;
+        ChangeSet changeSet = new ChangeSet("main", "abc");
+
+        GitChangeSetService.parseDiff(diff, tempDir, changeSet);
+
+        Path file = tempDir.resolve("src/A.java");
+        assertEquals(2, changeSet.getFiles().size());
+        assertEquals("1111111111111111111111111111111111111111", changeSet.getBaseBlobId(file));
+        assertNull(changeSet.getBaseBlobId(tempDir.resolve("src/New.java")));
+        assertTrue(changeSet.isChangedLine(tempDir.resolve("src/New.java"), 2));
+        assertEquals(List.of(new LineRange(3, 3), new LineRange(11, 14), new LineRange(24, 25)),
+            changeSet.getChangedLines(file));
+        assertTrue(changeSet.isChangedLine(file, 12));
+        assertFalse(changeSet.isChangedLine(file, 5));
+
+        // Old lines shift by the hunks before them; replaced lines have no counterpart
+        List<Hunk> hunks = changeSet.getHunks(file);
+        assertEquals(2, Hunk.mapOldLine(hunks, 2));
+        assertNull(Hunk.mapOldLine(hunks, 3));
+        assertEquals(10, Hunk.mapOldLine(hunks, 10));
+        assertEquals(15, Hunk.mapOldLine(hunks, 11));
+        assertNull(Hunk.mapOldLine(hunks, 21));
+        assertEquals(24, Hunk.mapOldLine(hunks, 22));
+    }
+
+    @Test
+    void testCollectsCommittedUncommittedAndUntrackedChanges() throws Exception {
+        Path stable = tempDir.resolve("Stable.java");
+        Path edited = tempDir.resolve("Edited.java");
+        Files.writeString(stable, "class Stable {}\n");
+        String baseContent = "class Edited {\n    int a;\n    int b;\n    int c;\n}\n";
+        Files.writeString(edited, baseContent);
+        git("init", "-q");
+        git("add", ".");
+        git("commit", "-q", "-m", "base");
+        git("tag", "base");
+
+        Files.writeString(edited, "class Edited {\n    int a;\n    long b;\n    int c;\n}\n");
+        git("commit", "-q", "-am", "change b");
+        Files.writeString(edited, "class Edited {\n    int a;\n    long b;\n    int c;\n    int d;\n}\n");
+        Path added = tempDir.resolve("Added.java");
+        Files.writeString(added, "class Added {}\n");
+
+        ChangeSet changeSet = new GitChangeSetService().changesSince(tempDir, "base");
+
+        assertFalse(changeSet.contains(stable));
+        assertTrue(changeSet.contains(edited));
+        assertTrue(changeSet.contains(added));
+        assertTrue(changeSet.isChangedLine(edited, 3));
+        assertTrue(changeSet.isChangedLine(edited, 5));
+        assertFalse(changeSet.isChangedLine(edited, 2));
+        assertTrue(changeSet.isChangedLine(added, 1));
+        // Manifest hashes line up with git blob ids, so base versions can be found in the manifest
+        assertEquals(AnalysisManifest.contentHash(baseContent), changeSet.getBaseBlobId(edited));
+
+        Map<Path, Integer> commitCounts = new GitChangeSetService().commitCounts(tempDir, 30);
+        assertEquals(2, commitCounts.get(edited.toAbsolutePath().normalize()));
+        assertEquals(1, commitCounts.get(stable.toAbsolutePath().normalize()));
+        assertNull(commitCounts.get(added.toAbsolutePath().normalize()));
+    }
+
+    private void git(String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of("git", "-C", tempDir.toString(),
+            "-c", "user.name=Test", "-c", "user.email=test@example.com", "-c", "commit.gpgsign=false"));
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        assertEquals(0, process.waitFor(), "git " + String.join(" ", args));
+    }
+}
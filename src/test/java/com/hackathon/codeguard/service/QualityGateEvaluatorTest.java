@@ -0,0 +1,68 @@
+package com.hackathon.codeguard.service;
+
+import com.hackathon.codeguard.model.FileAnalysisResult;
+import com.hackathon.codeguard.model.GateDecision;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for QualityGateEvaluator
+ */
+class QualityGateEvaluatorTest {
+
+    @Test
+    void testPassesOnceOutstandingFilesCannotPullTheMeanBelowThreshold() {
+        List<GateDecision> decisions = new ArrayList<>();
+        QualityGateEvaluator gate = new QualityGateEvaluator(60, 4, decisions::add);
+
+        gate.onFileCompleted(scored(100));
+        // 100 / 4 = 25 at worst
+        assertNull(gate.getDecision());
+        gate.onFileCompleted(scored(100));
+        assertNull(gate.getDecision());
+        gate.onFileCompleted(scored(100));
+        // 300 / 4 = 75 at worst
+        GateDecision decision = gate.getDecision();
+        assertNotNull(decision);
+        assertTrue(decision.isPassed());
+        assertTrue(decision.isEarly());
+        assertEquals(75.0, decision.getLowestPossibleScore(), 0.001);
+        assertEquals(100.0, decision.getHighestPossibleScore(), 0.001);
+
+        gate.onFileCompleted(scored(0));
+        assertEquals(1, decisions.size());
+    }
+
+    @Test
+    void testFailedAndBudgetSkippedFilesLeaveTheMean() {
+        QualityGateEvaluator gate = new QualityGateEvaluator(70, 3, decision -> {});
+
+        gate.onFileCompleted(scored(80));
+        FileAnalysisResult skipped = scored(0);
+        skipped.setBudgetSkipped(true);
+        gate.onFileCompleted(skipped);
+        assertNull(gate.getDecision());
+        gate.onFileFailed(Paths.get("Broken.java"), new RuntimeException("boom"));
+
+        GateDecision decision = gate.getDecision();
+        assertTrue(decision.isPassed());
+        assertFalse(decision.isEarly());
+        assertEquals(80.0, decision.getLowestPossibleScore(), 0.001);
+    }
+
+    private FileAnalysisResult scored(double score) {
+        FileAnalysisResult result = new FileAnalysisResult("A.java", "A.java");
+        result.setCodeQuality(score);
+        result.setSolid(score);
+        result.setDesignPatterns(score);
+        result.setSecurity(score);
+        result.setBugDetection(score);
+        result.calculateFinalScore();
+        return result;
+    }
+}
@@ -0,0 +1,63 @@
+package com.hackathon.codeguard.service;
+
+import com.hackathon.codeguard.model.FileAnalysisResult;
+import com.hackathon.codeguard.service.cache.AnalysisManifest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RiskScorer
+ */
+class RiskScorerTest {
+
+    private static final String PLAIN = """
+        public class Totals {
+            public int sum(int a, int b) {
+                return a + b;
+            }
+        }
+        """;
+
+    private static final String RISKY = """
+        public class UserDao {
+            private static final String PASSWORD = "hunter22";
+            public ResultSet find(Statement statement, String name) throws Exception {
+                Runtime.getRuntime().exec("cleanup.sh");
+                return statement.executeQuery("SELECT * FROM users WHERE name = '" + name + "'");
+            }
+        }
+        """;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testCountsSecuritySensitivePatterns() {
+        assertEquals(0, RiskScorer.securityFindings(PLAIN));
+        assertEquals(3, RiskScorer.securityFindings(RISKY));
+        assertEquals(1, RiskScorer.securityFindings("digest = hashlib.md5(data)"));
+    }
+
+    @Test
+    void testChurnPreviousScoresAndFindingsRaiseRisk() {
+        Path plain = tempDir.resolve("Totals.java");
+        Path churned = tempDir.resolve("Churned.java");
+        Path failedBefore = tempDir.resolve("FailedBefore.java");
+        AnalysisManifest manifest = AnalysisManifest.load(tempDir.resolve("manifest.json"));
+        FileAnalysisResult previous = new FileAnalysisResult("FailedBefore.java", failedBefore.toString());
+        previous.setFinalScore(20.0);
+        manifest.record(failedBefore, new AnalysisManifest.Entry("hash", "1", "gpt-4", "STANDARD").withResult(previous));
+        RiskScorer scorer = new RiskScorer(Map.of(churned.toAbsolutePath().normalize(), 30), manifest);
+
+        double baseline = scorer.score(plain, PLAIN);
+        assertTrue(scorer.score(churned, PLAIN) > baseline);
+        assertTrue(scorer.score(failedBefore, PLAIN) > baseline);
+        assertTrue(scorer.score(plain, RISKY) > baseline);
+        assertTrue(scorer.score(plain, RISKY) <= 100);
+    }
+}
@@ -0,0 +1,158 @@
+package com.hackathon.codeguard.service.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for BatchCoordinator against a local stand-in for the files and batches endpoints
+ */
+class BatchCoordinatorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger pollsUntilComplete = new AtomicInteger();
+    private HttpServer server;
+    private String uploadedInput;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/files", this::handleFiles);
+        server.createContext("/v1/batches", this::handleBatches);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void testSubmitPollAndJoinByCustomId() throws Exception {
+        pollsUntilComplete.set(2);
+        BatchCoordinator coordinator = coordinator(Duration.ofSeconds(5));
+        BatchRequestCollector requests = new BatchRequestCollector();
+        requests.add("key-a", request("first prompt"));
+        requests.add("key-b", request("second prompt"));
+        requests.add("key-a", request("first prompt"));
+        requests.add("fails", request("third prompt"));
+
+        BatchState state = coordinator.submit(requests);
+        assertEquals("batch_1", state.getBatchId());
+        assertEquals(3, state.getRequestCount());
+        assertNotNull(coordinator.loadState());
+        assertTrue(Files.exists(tempDir.resolve("batch.json.requests.jsonl")));
+        JsonNode firstLine = objectMapper.readTree(uploadedInput.lines().filter(line -> line.contains("key-a")).findFirst().orElseThrow());
+        assertEquals("/v1/chat/completions", firstLine.get("url").asText());
+        assertEquals("first prompt", firstLine.path("body").path("messages").path(0).path("content").asText());
+        assertEquals(200, firstLine.path("body").path("max_tokens").asInt());
+
+        Map<String, String> responses = coordinator.awaitResponses(state);
+
+        assertEquals(Map.of("key-a", "answer to key-a", "key-b", "answer to key-b"), responses);
+        // The state outlives the download until the responses have been used
+        assertEquals(state.getBatchId(), coordinator.loadState().getBatchId());
+        coordinator.clearState();
+        assertNull(coordinator.loadState());
+        assertFalse(Files.exists(tempDir.resolve("batch.json.requests.jsonl")));
+    }
+
+    @Test
+    void testPendingBatchIsResumedByALaterRun() throws Exception {
+        pollsUntilComplete.set(Integer.MAX_VALUE);
+        BatchRequestCollector requests = new BatchRequestCollector();
+        requests.add("key-a", request("first prompt"));
+        BatchState submitted = coordinator(Duration.ZERO).submit(requests);
+
+        BatchPendingException pending = assertThrows(BatchPendingException.class,
+            () -> coordinator(Duration.ZERO).awaitResponses(submitted));
+        assertEquals("in_progress", pending.getStatus().getStatus());
+
+        pollsUntilComplete.set(0);
+        BatchCoordinator resumed = coordinator(Duration.ofSeconds(5));
+        BatchState state = resumed.loadState();
+        assertEquals(submitted.getBatchId(), state.getBatchId());
+        assertEquals(Map.of("key-a", "answer to key-a"), resumed.awaitResponses(state));
+    }
+
+    private BatchCoordinator coordinator(Duration maxWait) {
+        BatchApiClient client = new BatchApiClient(new OkHttpClient(),
+            "http://127.0.0.1:" + server.getAddress().getPort() + "/v1", "test-key");
+        return new BatchCoordinator(client, tempDir.resolve("batch.json"), Duration.ofMillis(10), maxWait);
+    }
+
+    private static ChatCompletionRequest request(String prompt) {
+        return ChatCompletionRequest.builder()
+            .model("gpt-4")
+            .messages(List.of(new ChatMessage("user", prompt)))
+            .maxTokens(200)
+            .build();
+    }
+
+    private void handleFiles(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if ("POST".equals(exchange.getRequestMethod())) {
+            String multipart = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            uploadedInput = multipart.lines()
+                .filter(line -> line.startsWith("{\"custom_id\""))
+                .reduce("", (all, line) -> all + line + "\n");
+            respond(exchange, 200, "{\"id\": \"file-in\", \"purpose\": \"batch\"}");
+        } else if (path.equals("/v1/files/file-out/content")) {
+            StringBuilder output = new StringBuilder();
+            for (String line : uploadedInput.split("\n")) {
+                String customId = objectMapper.readTree(line).get("custom_id").asText();
+                int status = customId.equals("fails") ? 500 : 200;
+                output.append(String.format(
+                    "{\"custom_id\": \"%s\", \"response\": {\"status_code\": %d, \"body\": " +
+                    "{\"choices\": [{\"message\": {\"role\": \"assistant\", \"content\": \"answer to %s\"}}]}}, \"error\": null}\n",
+                    customId, status, customId));
+            }
+            respond(exchange, 200, output.toString());
+        } else {
+            respond(exchange, 404, "{}");
+        }
+    }
+
+    private void handleBatches(HttpExchange exchange) throws IOException {
+        if ("POST".equals(exchange.getRequestMethod())) {
+            JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+            assertEquals("file-in", body.get("input_file_id").asText());
+            respond(exchange, 200, "{\"id\": \"batch_1\", \"status\": \"validating\"}");
+        } else if (pollsUntilComplete.getAndDecrement() > 0) {
+            respond(exchange, 200, "{\"id\": \"batch_1\", \"status\": \"in_progress\"}");
+        } else {
+            respond(exchange, 200, "{\"id\": \"batch_1\", \"status\": \"completed\", \"output_file_id\": \"file-out\"," +
+                " \"request_counts\": {\"total\": 3, \"completed\": 2, \"failed\": 1}}");
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+}
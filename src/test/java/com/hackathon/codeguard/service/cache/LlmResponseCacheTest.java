@@ -0,0 +1,139 @@
+package com.hackathon.codeguard.service.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LlmResponseCache
+ */
+class LlmResponseCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testKeyDependsOnEveryRequestParameter() {
+        String base = LlmResponseCache.key("gpt-4", 0.1, 2000, "prompt");
+        assertEquals(base, LlmResponseCache.key("gpt-4", 0.1, 2000, "prompt"));
+        assertNotEquals(base, LlmResponseCache.key("gpt-4o", 0.1, 2000, "prompt"));
+        assertNotEquals(base, LlmResponseCache.key("gpt-4", 0.2, 2000, "prompt"));
+        assertNotEquals(base, LlmResponseCache.key("gpt-4", 0.1, 4000, "prompt"));
+        assertNotEquals(base, LlmResponseCache.key("gpt-4", 0.1, 2000, "prompt "));
+    }
+
+    @Test
+    void testResponsesArePersistedAcrossInstances() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        LlmResponseCache first = new LlmResponseCache(tempDir, 1024 * 1024, 1024 * 1024, Duration.ofHours(1));
+        assertEquals("answer", first.getOrCompute("k1", () -> { loads.incrementAndGet(); return "answer"; }));
+        assertEquals("answer", first.getOrCompute("k1", () -> { loads.incrementAndGet(); return "other"; }));
+        assertEquals(1, first.getMemoryHits());
+
+        LlmResponseCache second = new LlmResponseCache(tempDir, 1024 * 1024, 1024 * 1024, Duration.ofHours(1));
+        assertEquals("answer", second.getOrCompute("k1", () -> { loads.incrementAndGet(); return "other"; }));
+        assertEquals(1, second.getDiskHits());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testExpiredEntriesAreReloaded() throws Exception {
+        LlmResponseCache writer = new LlmResponseCache(tempDir, 1024, 1024 * 1024, Duration.ofHours(1));
+        writer.getOrCompute("k1", () -> "old");
+
+        LlmResponseCache reader = new LlmResponseCache(tempDir, 1024, 1024 * 1024, Duration.ZERO);
+        Thread.sleep(5);
+        assertEquals("new", reader.getOrCompute("k1", () -> "new"));
+        assertEquals(1, reader.getMisses());
+    }
+
+    @Test
+    void testEvictionExpiresEntriesByWriteTimeEvenWhenRecentlyRead() throws Exception {
+        LlmResponseCache writer = new LlmResponseCache(tempDir, 1024, 1024 * 1024, Duration.ofHours(1));
+        writer.getOrCompute("old", () -> "old answer");
+        Thread.sleep(300);
+        writer.getOrCompute("large", () -> "x".repeat(2000));
+        // Reading the old entry makes it the most recently used one
+        new LlmResponseCache(tempDir, 1024, 1024 * 1024, Duration.ofHours(1)).getOrCompute("old", () -> "reloaded");
+
+        // Evicting the least recently used entry alone would keep the old one, yet it is past the TTL
+        LlmResponseCache shortLived = new LlmResponseCache(tempDir, 1024, 2000, Duration.ofMillis(200));
+        shortLived.getOrCompute("new", () -> "new answer");
+
+        assertFalse(Files.exists(tempDir.resolve("old.json")));
+        assertTrue(Files.exists(tempDir.resolve("new.json")));
+    }
+
+    @Test
+    void testReplacingAnEntryCountsItsSizeOnce() throws Exception {
+        // Nothing fits in memory and nothing outlives its write, so every call rewrites the disk entry
+        LlmResponseCache cache = new LlmResponseCache(tempDir, 1, 1024 * 1024, Duration.ZERO);
+        for (int i = 0; i < 3; i++) {
+            cache.getOrCompute("k1", () -> "answer");
+            Thread.sleep(5);
+        }
+        assertEquals(3, cache.getMisses());
+        assertEquals(Files.size(tempDir.resolve("k1.json")), cache.getDiskBytes());
+    }
+
+    @Test
+    void testFailedLoadsAreNotCached() throws Exception {
+        LlmResponseCache cache = new LlmResponseCache(tempDir, 1024, 1024 * 1024, Duration.ofHours(1));
+        assertThrows(IllegalStateException.class,
+            () -> cache.getOrCompute("k1", () -> { throw new IllegalStateException("boom"); }));
+        assertEquals("ok", cache.getOrCompute("k1", () -> "ok"));
+    }
+
+    @Test
+    void testUnusableResponsesAreNotCached() throws Exception {
+        LlmResponseCache cache = new LlmResponseCache(tempDir, 1024, 1024 * 1024, Duration.ofHours(1));
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals("garbage", cache.getOrCompute("k1", () -> { loads.incrementAndGet(); return "garbage"; },
+            value -> value.startsWith("{")));
+        assertFalse(Files.exists(tempDir.resolve("k1.json")));
+
+        assertEquals("{}", cache.getOrCompute("k1", () -> { loads.incrementAndGet(); return "{}"; },
+            value -> value.startsWith("{")));
+        assertEquals("{}", cache.getOrCompute("k1", () -> { loads.incrementAndGet(); return "other"; },
+            value -> value.startsWith("{")));
+        assertEquals(2, loads.get());
+        assertTrue(Files.exists(tempDir.resolve("k1.json")));
+    }
+
+    @Test
+    void testConcurrentRequestsShareOneLoad() throws Exception {
+        LlmResponseCache cache = new LlmResponseCache(tempDir, 1024 * 1024, 1024 * 1024, Duration.ofHours(1));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future<?>[4];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(() -> cache.getOrCompute("shared", () -> {
+                    loads.incrementAndGet();
+                    release.await(5, TimeUnit.SECONDS);
+                    return "value";
+                }));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<?> future : futures) {
+                assertEquals("value", future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+}
@@ -0,0 +1,144 @@
+package com.hackathon.codeguard.service.llm;
+
+import com.hackathon.codeguard.service.batch.BatchApiClient;
+import com.theokanning.openai.OpenAiHttpException;
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for LocalLlmServer through OpenAiCompatibleClient
+ */
+class LocalLlmServerTest {
+
+    private LocalLlmServer server;
+
+    @AfterEach
+    void stopServer() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void testCannedAndStreamedCompletions() throws Exception {
+        StandInSettings settings = settings();
+        settings.setCannedResponses(Map.of("'score'", "{\"score\": 75}"));
+        LlmClient client = clientFor(settings);
+
+        assertEquals("{\"score\": 75}", client.complete(request("Return 'score' as JSON")).content());
+        assertEquals("No canned response matches this prompt.", client.complete(request("Describe it")).content());
+        String streamed = client.stream(request("Return 'score' as JSON")).toList().blockingGet()
+            .stream().collect(Collectors.joining());
+        assertEquals("{\"score\": 75}", streamed);
+        assertEquals(3, server.getCompletionCount());
+    }
+
+    @Test
+    void testStructuredRequestsUseTheSameEndpoints() throws Exception {
+        StandInSettings settings = settings();
+        settings.setCannedResponses(Map.of("'score'", "{\"score\": 75}"));
+        LlmClient client = clientFor(settings);
+        ChatCompletionRequest structured = new StructuredChatCompletionRequest(
+            request("Return 'score' as JSON"), Map.of("type", "json_object"));
+
+        assertEquals("{\"score\": 75}", client.complete(structured).content());
+        assertEquals("{\"score\": 75}", client.stream(structured).toList().blockingGet()
+            .stream().collect(Collectors.joining()));
+    }
+
+    @Test
+    void testClientsKeepThePathPrefixOfTheBaseUrl() throws Exception {
+        StandInSettings settings = settings();
+        settings.setBasePath("/api/v1");
+        settings.setCannedResponses(Map.of("'score'", "{\"score\": 75}"));
+        LlmClient client = clientFor(settings);
+        ChatCompletionRequest structured = new StructuredChatCompletionRequest(
+            request("Return 'score' as JSON"), Map.of("type", "json_object"));
+
+        assertTrue(server.getBaseUrl().endsWith("/api/v1/"));
+        assertEquals("{\"score\": 75}", client.complete(request("Return 'score' as JSON")).content());
+        assertEquals("{\"score\": 75}", client.stream(request("Return 'score' as JSON")).toList().blockingGet()
+            .stream().collect(Collectors.joining()));
+        assertEquals("{\"score\": 75}", client.complete(structured).content());
+        assertEquals(3, server.getCompletionCount());
+
+        BatchApiClient batchClient = new BatchApiClient(new OkHttpClient(), server.getBaseUrl(), "test-key");
+        String fileId = batchClient.uploadBatchInput("{}\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals("{}\n", batchClient.downloadFile(fileId));
+    }
+
+    @Test
+    void testEchoMode() throws Exception {
+        StandInSettings settings = settings();
+        settings.setResponseMode(StandInSettings.ResponseMode.ECHO);
+
+        assertEquals("hello", clientFor(settings).complete(request("hello")).content());
+    }
+
+    @Test
+    void testInjectedErrorsSurfaceAsHttpExceptions() throws Exception {
+        StandInSettings settings = settings();
+        settings.setRateLimitErrorRate(1.0);
+        LlmClient client = clientFor(settings);
+
+        OpenAiHttpException error = assertThrows(OpenAiHttpException.class, () -> client.complete(request("hi")));
+        assertEquals(429, error.statusCode);
+        assertEquals(1, server.getRateLimitedCount());
+
+        settings.setRateLimitErrorRate(0.0);
+        settings.setServerErrorRate(1.0);
+        error = assertThrows(OpenAiHttpException.class, () -> client.complete(request("hi")));
+        assertTrue(error.statusCode >= 500);
+    }
+
+    @Test
+    void testLatencyDistributions() {
+        Random random = new Random(1);
+        assertEquals(200, LatencyDistribution.parse("fixed:200").sampleMillis(random));
+        for (int i = 0; i < 100; i++) {
+            long uniform = LatencyDistribution.parse("uniform:100-400").sampleMillis(random);
+            assertTrue(uniform >= 100 && uniform <= 400);
+            assertTrue(LatencyDistribution.parse("lognormal:300,0.5").sampleMillis(random) > 0);
+        }
+        assertThrows(IllegalArgumentException.class, () -> LatencyDistribution.parse("uniform:400-100"));
+        assertThrows(IllegalArgumentException.class, () -> LatencyDistribution.parse("gamma:1,2"));
+    }
+
+    @Test
+    void testBundledCannedResponsesCoverEveryPromptShape() throws Exception {
+        Map<String, String> canned = LocalLlmServer.defaultCannedResponses();
+
+        assertTrue(canned.containsKey(""), "a catch-all response keeps KT prompts answered");
+        assertTrue(canned.size() > 1);
+    }
+
+    private StandInSettings settings() {
+        StandInSettings settings = new StandInSettings();
+        settings.setPort(0);
+        settings.setStreamChunkSize(4);
+        return settings;
+    }
+
+    private LlmClient clientFor(StandInSettings settings) throws Exception {
+        server = new LocalLlmServer(settings).start();
+        return new OpenAiCompatibleClient(new OkHttpClient(), server.getBaseUrl());
+    }
+
+    private static ChatCompletionRequest request(String prompt) {
+        return ChatCompletionRequest.builder()
+            .model("gpt-4")
+            .messages(List.of(new ChatMessage("user", prompt)))
+            .build();
+    }
+}
@@ -0,0 +1,41 @@
+package com.hackathon.codeguard.service.llm;
+
+import com.hackathon.codeguard.model.AnalysisOptions;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SharedHttpClient
+ */
+class SharedHttpClientTest {
+
+    @Test
+    void testClientIsSharedAndSizedForConcurrentRequests() {
+        OkHttpClient first = SharedHttpClient.get(new AnalysisOptions(), 44);
+        OkHttpClient second = SharedHttpClient.get(new AnalysisOptions(), 8);
+
+        assertSame(first, second);
+        assertTrue(first.dispatcher().getMaxRequestsPerHost() > 5, "streaming calls must not queue behind OkHttp's default of 5 per host");
+        assertSame(first.connectionPool(), first.newBuilder().build().connectionPool());
+    }
+
+    @Test
+    void testPrewarmLeavesAPooledConnection() throws Exception {
+        StandInSettings settings = new StandInSettings();
+        settings.setPort(0);
+        try (LocalLlmServer server = new LocalLlmServer(settings).start()) {
+            OkHttpClient client = SharedHttpClient.get(new AnalysisOptions(), 44);
+            client.connectionPool().evictAll();
+
+            SharedHttpClient.prewarm(client, server.getBaseUrl());
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (client.connectionPool().idleConnectionCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, client.connectionPool().idleConnectionCount());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.hackathon.codeguard.service.openai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hackathon.codeguard.model.FileAnalysisResult;
+import com.hackathon.codeguard.model.ScoreWithReason;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AnalysisResponseParser
+ */
+class AnalysisResponseParserTest {
+
+    private AnalysisResponseParser parser;
+
+    @BeforeEach
+    void setUp() {
+        parser = new AnalysisResponseParser(new ObjectMapper());
+    }
+
+    @Test
+    void testFusedResponseMapsEverySection() {
+        String response = """
+            {
+              "metrics": {"linesOfCode": 12, "cyclomaticComplexity": 3, "numberOfMethods": 2,
+                          "numberOfClasses": 1, "commentRatio": 10.0, "codeComplexity": "LOW"},
+              "codeQuality": {"score": 80, "reason": "Readable", "recommendations": ["Add docs"]},
+              "singleResponsibility": {"score": 70, "reason": "Mostly focused"},
+              "designPatterns": {"score": 60, "reason": "No patterns"},
+              "security": {"score": 90, "reason": "No inputs"},
+              "bugDetection": {"score": 85, "reason": "Minor risks"},
+              "issues": [{"severity": "LOW", "type": "Style", "description": "Long line",
+                          "lineNumber": 4, "suggestion": "Wrap it"}],
+              "suggestions": ["Extract a method"]
+            }
+            """;
+        FileAnalysisResult result = new FileAnalysisResult("A.java", "A.java");
+        Set<AnalysisDimension> dimensions = EnumSet.allOf(AnalysisDimension.class);
+        dimensions.removeIf(AnalysisDimension::isKnowledgeTransfer);
+
+        Set<AnalysisDimension> failed = parser.applyFusedResponse(response, result, dimensions);
+
+        assertTrue(failed.isEmpty());
+        assertEquals(80.0, result.getCodeQuality());
+        assertEquals("Mostly focused", result.getSolidReason());
+        assertEquals(12, result.getMetrics().get("linesOfCode"));
+        assertEquals(4, result.getIssues().get(0).getLineNumber());
+        assertEquals("Extract a method", result.getSuggestions().get(0));
+    }
+
+    @Test
+    void testMalformedSectionsAreReportedIndividually() {
+        String response = """
+            {
+              "codeQuality": {"score": "high"},
+              "security": {"score": 90, "reason": "No inputs"},
+              "ktPurpose": ""
+            }
+            """;
+        FileAnalysisResult result = new FileAnalysisResult("A.java", "A.java");
+
+        Set<AnalysisDimension> failed = parser.applyFusedResponse(response, result, EnumSet.allOf(AnalysisDimension.class));
+
+        assertFalse(failed.contains(AnalysisDimension.SECURITY));
+        assertTrue(failed.contains(AnalysisDimension.CODE_QUALITY));
+        assertTrue(failed.contains(AnalysisDimension.KT_PURPOSE));
+        assertTrue(failed.contains(AnalysisDimension.ISSUES));
+        assertEquals(90.0, result.getSecurity());
+    }
+
+    @Test
+    void testUnparseableResponseFailsAllSections() {
+        FileAnalysisResult result = new FileAnalysisResult("A.java", "A.java");
+        Set<AnalysisDimension> all = EnumSet.allOf(AnalysisDimension.class);
+
+        assertEquals(all, parser.applyFusedResponse("not json", result, all));
+    }
+
+    @Test
+    void testFencedAndPrefixedAnswersAreBound() throws Exception {
+        String score = """
+            Here is my assessment:
+            ```json
+            {"score": 72.5, "reason": "Uses {braces} in text", "recommendations": ["Split it", null]}
+            ```
+            """;
+        ScoreWithReason parsed = parser.readScore(score);
+
+        assertEquals(72.5, parsed.getScore());
+        assertEquals("Uses {braces} in text", parsed.getReason());
+        assertEquals(List.of("Split it"), parsed.getRecommendations());
+
+        String issues = "Found these: {\"issues\": [{\"severity\": \"HIGH\", \"type\": \"Bug\", \"description\": \"NPE\", " +
+            "\"lineNumber\": \"7\", \"suggestion\": \"Check null\"}, {\"severity\": \"LOW\"}]} Hope this helps.";
+        List<FileAnalysisResult.CodeIssue> parsedIssues = parser.readIssues(issues);
+
+        assertEquals(1, parsedIssues.size());
+        assertEquals(7, parsedIssues.get(0).getLineNumber());
+        assertThrows(IllegalArgumentException.class, () -> parser.readScore("{\"score\": \"high\", \"reason\": \"x\"}"));
+        assertThrows(IllegalArgumentException.class, () -> parser.readScore("I cannot rate this code."));
+    }
+}
@@ -0,0 +1,56 @@
+package com.hackathon.codeguard.service.openai;
+
+import com.hackathon.codeguard.model.FileAnalysisResult;
+import com.hackathon.codeguard.model.FileAnalysisResult.CodeIssue;
+import com.hackathon.codeguard.model.ScoreWithReason;
+import com.hackathon.codeguard.service.ChangeSet.Hunk;
+import com.hackathon.codeguard.service.source.SourceExcerpt;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ChangedRegionMerger
+ */
+class ChangedRegionMergerTest {
+
+    @Test
+    void testMergesRegionFindingsIntoPreviousResult() {
+        FileAnalysisResult previous = result(80.0, 90.0, List.of(
+            new CodeIssue("LOW", "STYLE", "before the change", 10, "fix"),
+            new CodeIssue("HIGH", "BUG", "on a replaced line", 50, "fix"),
+            new CodeIssue("MEDIUM", "BUG", "after the change", 80, "fix")));
+        previous.setKtPurpose("Handles orders");
+        // Old lines 50-51 replaced by new lines 50-54
+        List<Hunk> hunks = List.of(new Hunk(50, 2, 50, 5));
+        // Excerpt lines 1-8 come from file lines 48-55, line 9 is an omission marker
+        SourceExcerpt excerpt = new SourceExcerpt("excerpt", new int[] {48, 49, 50, 51, 52, 53, 54, 55, 0});
+        FileAnalysisResult regions = result(40.0, 30.0, List.of(
+            new CodeIssue("CRITICAL", "SECURITY", "on a changed line", 4, "fix"),
+            new CodeIssue("LOW", "STYLE", "on a context line", 1, "fix")));
+
+        FileAnalysisResult merged = ChangedRegionMerger.merge(previous, regions, excerpt, hunks, 100);
+
+        // 5 of 100 lines changed
+        assertEquals(78.0, merged.getCodeQuality(), 0.001);
+        assertEquals(30.0, merged.getSecurity(), 0.001);
+        assertEquals("Handles orders", merged.getKtPurpose());
+
+        List<Integer> lines = merged.getIssues().stream().map(CodeIssue::getLineNumber).toList();
+        assertEquals(List.of(10, 83, 51), lines);
+    }
+
+    private static FileAnalysisResult result(double quality, double security, List<CodeIssue> issues) {
+        FileAnalysisResult result = new FileAnalysisResult("Orders.java", "/src/Orders.java");
+        for (AnalysisDimension dimension : AnalysisDimension.values()) {
+            if (dimension.isScore()) {
+                dimension.applyScore(result, new ScoreWithReason(quality, "reason", List.of()));
+            }
+        }
+        AnalysisDimension.SECURITY.applyScore(result, new ScoreWithReason(security, "security", List.of()));
+        result.setIssues(issues);
+        return result;
+    }
+}
@@ -0,0 +1,62 @@
+package com.hackathon.codeguard.service.openai;
+
+import com.hackathon.codeguard.model.FileAnalysisResult;
+import com.hackathon.codeguard.model.FileAnalysisResult.CodeIssue;
+import com.hackathon.codeguard.model.ScoreWithReason;
+import com.hackathon.codeguard.service.source.CodeChunk;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ChunkResultMerger
+ */
+class ChunkResultMergerTest {
+
+    @Test
+    void testMergesScoresIssuesAndMetrics() {
+        List<CodeChunk> chunks = List.of(
+            new CodeChunk(0, 1, 10, "x".repeat(300)),
+            new CodeChunk(1, 11, 20, "x".repeat(100)));
+        FileAnalysisResult first = chunkResult(80.0, 90.0, new CodeIssue("HIGH", "BUG", "first", 3, "fix"), 10, 4, "LOW");
+        FileAnalysisResult second = chunkResult(40.0, 30.0, new CodeIssue("LOW", "STYLE", "second", 2, "fix"), 10, 2, "HIGH");
+
+        FileAnalysisResult merged = new FileAnalysisResult("Large.java", "/src/Large.java");
+        ChunkResultMerger.merge(merged, chunks, List.of(first, second),
+            EnumSet.of(AnalysisDimension.METRICS, AnalysisDimension.CODE_QUALITY, AnalysisDimension.SECURITY));
+
+        // Weighted by chunk size for quality, weakest chunk for security
+        assertEquals(70.0, merged.getCodeQuality(), 0.001);
+        assertEquals(30.0, merged.getSecurity(), 0.001);
+        assertTrue(merged.getCodeQualityReason().contains("[lines 11-20]"));
+
+        assertEquals(2, merged.getIssues().size());
+        assertEquals(3, merged.getIssues().get(0).getLineNumber());
+        assertEquals(12, merged.getIssues().get(1).getLineNumber());
+
+        assertEquals(20, merged.getMetrics().get("linesOfCode"));
+        assertEquals(6, merged.getMetrics().get("cyclomaticComplexity"));
+        assertEquals("HIGH", merged.getMetrics().get("codeComplexity"));
+    }
+
+    private static FileAnalysisResult chunkResult(double quality, double security, CodeIssue issue,
+                                                  int lines, int complexity, String level) {
+        FileAnalysisResult result = new FileAnalysisResult("Large.java", "/src/Large.java");
+        AnalysisDimension.CODE_QUALITY.applyScore(result, new ScoreWithReason(quality, "quality", List.of("refactor")));
+        AnalysisDimension.SECURITY.applyScore(result, new ScoreWithReason(security, "security", List.of("validate")));
+        result.setIssues(List.of(issue));
+        result.setSuggestions(List.of("shared suggestion"));
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("linesOfCode", lines);
+        metrics.put("cyclomaticComplexity", complexity);
+        metrics.put("commentRatio", 10.0);
+        metrics.put("codeComplexity", level);
+        result.setMetrics(metrics);
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+package com.hackathon.codeguard.service.openai;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CircuitBreaker and RetryPolicy
+ */
+class CircuitBreakerTest {
+
+    @Test
+    void testOpensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 60_000);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure();
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    void testHalfOpenTrialClosesOrReopens() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50);
+        breaker.recordFailure();
+        assertFalse(breaker.allowRequest());
+
+        Thread.sleep(60);
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(60);
+        assertTrue(breaker.allowRequest());
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testRetryPolicyClassification() {
+        assertEquals(RetryPolicy.TIMEOUT, RetryPolicy.classify(new RuntimeException(new SocketTimeoutException("read timed out"))));
+        assertEquals(RetryPolicy.NETWORK, RetryPolicy.classify(new RuntimeException(new IOException("reset"))));
+        assertEquals(RetryPolicy.EMPTY_RESPONSE, RetryPolicy.classify(new RetryPolicy.EmptyResponseException("empty")));
+        assertEquals(RetryPolicy.UNKNOWN, RetryPolicy.classify(new IllegalStateException("bug")));
+    }
+
+    @Test
+    void testInterruptedCallsAreCancellationsNotTimeouts() {
+        RuntimeException interrupted = new RuntimeException(new InterruptedIOException("interrupted"));
+        assertTrue(RetryPolicy.isCancellation(interrupted));
+        assertNotEquals(RetryPolicy.TIMEOUT, RetryPolicy.classify(interrupted));
+        assertTrue(RetryPolicy.isCancellation(new RuntimeException(new InterruptedException())));
+        assertFalse(RetryPolicy.isCancellation(new RuntimeException(new SocketTimeoutException("read timed out"))));
+        assertFalse(RetryPolicy.isCancellation(new RuntimeException(new IOException("reset"))));
+    }
+
+    @Test
+    void testBackoffIsCappedWithFullJitter() {
+        for (int attempt = 1; attempt <= 10; attempt++) {
+            long delay = RetryPolicy.SERVER_ERROR.backoffMillis(attempt);
+            assertTrue(delay >= 0 && delay <= 30_000);
+        }
+        assertEquals(0, RetryPolicy.AUTHENTICATION.backoffMillis(1));
+    }
+}
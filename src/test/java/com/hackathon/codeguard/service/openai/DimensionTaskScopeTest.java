@@ -0,0 +1,113 @@
+package com.hackathon.codeguard.service.openai;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DimensionTaskScope
+ */
+class DimensionTaskScopeTest {
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testJoinReturnsAtTheDeadline() throws Exception {
+        CountDownLatch never = new CountDownLatch(1);
+        long start = System.nanoTime();
+        try (DimensionTaskScope scope = new DimensionTaskScope(executor, DimensionTaskScope.deadlineAfter(100))) {
+            Future<String> fast = scope.fork(() -> "fast");
+            Future<String> slow = scope.fork(() -> {
+                never.await();
+                return "slow";
+            });
+            scope.join();
+
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsedMillis >= 90 && elapsedMillis < 2_000, "joined after " + elapsedMillis + " ms");
+            assertEquals(1, scope.unfinishedCount());
+            assertEquals("fast", scope.resultOrElse(fast, () -> "fallback"));
+            assertEquals("fallback", scope.resultOrElse(slow, () -> "fallback"));
+        }
+    }
+
+    @Test
+    void testScopesSharingADeadlineShareOneBudget() throws Exception {
+        long deadline = DimensionTaskScope.deadlineAfter(100);
+        try (DimensionTaskScope first = new DimensionTaskScope(executor, deadline)) {
+            first.fork(() -> {
+                Thread.sleep(150);
+                return null;
+            });
+            first.join();
+        }
+        // The second phase starts after the deadline, so it does not wait at all
+        long start = System.nanoTime();
+        try (DimensionTaskScope second = new DimensionTaskScope(executor, deadline)) {
+            Future<String> late = second.fork(() -> {
+                Thread.sleep(150);
+                return "late";
+            });
+            second.join();
+
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+            assertEquals("fallback", second.resultOrElse(late, () -> "fallback"));
+        }
+    }
+
+    @Test
+    void testCloseCancelsUnfinishedTasks() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Future<Void> running;
+        try (DimensionTaskScope scope = new DimensionTaskScope(executor, DimensionTaskScope.deadlineAfter(50))) {
+            running = scope.fork(() -> {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return null;
+            });
+            assertTrue(started.await(1, TimeUnit.SECONDS));
+            scope.join();
+        }
+
+        assertTrue(running.isCancelled());
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testResultOrElseFallsBackForFailedTasks() throws Exception {
+        try (DimensionTaskScope scope = new DimensionTaskScope(executor, DimensionTaskScope.deadlineAfter(1_000))) {
+            Future<Double> failed = scope.fork(() -> {
+                throw new IllegalStateException("API error");
+            });
+            Future<Double> scored = scope.fork(() -> 80.0);
+            scope.join();
+
+            assertEquals(0, scope.unfinishedCount());
+            assertEquals(50.0, scope.resultOrElse(failed, () -> 50.0));
+            assertEquals(80.0, scope.resultOrElse(scored, () -> 50.0));
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.hackathon.codeguard.service.openai;
+
+import com.hackathon.codeguard.cli.CodeGuardCLI.AnalysisMode;
+import com.hackathon.codeguard.model.AnalysisOptions;
+import com.hackathon.codeguard.model.FileAnalysisResult;
+import com.hackathon.codeguard.model.UsageReport;
+import com.hackathon.codeguard.service.llm.LocalLlmServer;
+import com.hackathon.codeguard.service.llm.StandInSettings;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs OpenAIAnalysisService end to end against the local stand-in server
+ */
+class OpenAIAnalysisServiceStandInTest {
+
+    private static final String CODE = """
+        public class Greeter {
+            public String greet(String name) {
+                return "Hello " + name;
+            }
+        }
+        """;
+
+    @TempDir
+    Path cacheDir;
+
+    private LocalLlmServer server;
+    private AnalysisOptions options;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        StandInSettings settings = new StandInSettings();
+        settings.setPort(0);
+        settings.setCannedResponses(LocalLlmServer.defaultCannedResponses());
+        server = new LocalLlmServer(settings).start();
+
+        options = new AnalysisOptions();
+        options.setLlmBaseUrl(server.getBaseUrl());
+        options.setCacheEnabled(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void testSeparateCallsUseCannedResponses() throws Exception {
+        OpenAIAnalysisService service = new OpenAIAnalysisService(options);
+        FileAnalysisResult result = service
+            .analyzeCodeFile(Path.of("Greeter.java"), CODE, AnalysisMode.STANDARD, false);
+
+        assertFalse(result.isDegraded());
+        assertEquals(75.0, result.getCodeQuality());
+        assertEquals(75.0, result.getSecurity());
+        assertEquals(1, result.getIssues().size());
+        assertEquals(1, result.getSuggestions().size());
+        // Metrics are local for Java, so five scores, issues and suggestions
+        assertEquals(7, server.getCompletionCount());
+
+        UsageReport usage = service.getUsageTracker().report();
+        assertEquals(7, usage.getTotals().getCalls());
+        assertEquals(0, usage.getTotals().getEstimatedTokenCalls());
+        assertTrue(usage.getTotals().getPromptTokens() > 0);
+        assertTrue(usage.getTotals().getEstimatedCostUsd() > 0);
+        assertEquals(1, usage.getLatencyByDimension().get("codeQuality").getCalls());
+        assertEquals(1, usage.getFiles().size());
+        assertEquals("Greeter.java", usage.getFiles().get(0).getFilePath());
+        assertEquals(usage.getTotals().getPromptTokens(), usage.getFiles().get(0).getTotals().getPromptTokens());
+    }
+
+    @Test
+    void testFusedStreamingCallUsesOneCompletion() throws Exception {
+        options.setFused(true);
+        options.setStreaming(true);
+
+        OpenAIAnalysisService service = new OpenAIAnalysisService(options);
+        FileAnalysisResult result = service
+            .analyzeCodeFile(Path.of("Greeter.java"), CODE, AnalysisMode.STANDARD, false);
+
+        assertEquals(78.0, result.getCodeQuality());
+        assertEquals(85.0, result.getSecurity());
+        assertEquals(1, server.getCompletionCount());
+        // Streamed responses report no usage, so their tokens are estimated
+        UsageReport usage = service.getUsageTracker().report();
+        assertEquals(1, usage.getLatencyByDimension().get("fused").getCalls());
+        assertEquals(1, usage.getTotals().getEstimatedTokenCalls());
+    }
+
+    @Test
+    void testUnparseableAnswersAreNotCached() throws Exception {
+        options.setFused(true);
+        options.setCacheEnabled(true);
+        options.setCacheDirectory(cacheDir.toString());
+        Map<String, String> canned = LocalLlmServer.defaultCannedResponses();
+        String fused = canned.put("Return a single JSON object with exactly these keys", "Sorry, I cannot help with that.");
+        server.close();
+        StandInSettings settings = new StandInSettings();
+        settings.setPort(0);
+        settings.setCannedResponses(canned);
+        server = new LocalLlmServer(settings).start();
+        options.setLlmBaseUrl(server.getBaseUrl());
+
+        FileAnalysisResult first = new OpenAIAnalysisService(options)
+            .analyzeCodeFile(Path.of("Greeter.java"), CODE, AnalysisMode.STANDARD, false);
+        // The fused answer is unusable, so every dimension falls back to its own canned answer
+        assertEquals(75.0, first.getCodeQuality());
+
+        canned.put("Return a single JSON object with exactly these keys", fused);
+        FileAnalysisResult second = new OpenAIAnalysisService(options)
+            .analyzeCodeFile(Path.of("Greeter.java"), CODE, AnalysisMode.STANDARD, false);
+        assertEquals(78.0, second.getCodeQuality());
+        assertEquals(85.0, second.getSecurity());
+    }
+
+    @Test
+    void testSlowDimensionFallsBackWhileTheOthersKeepTheirAnswers() throws Exception {
+        // Holds back the security prompt and passes every other request on to the stand-in
+        HttpClient client = HttpClient.newHttpClient();
+        HttpServer proxy = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ExecutorService proxyThreads = Executors.newCachedThreadPool();
+        proxy.setExecutor(proxyThreads);
+        proxy.createContext("/v1/chat/completions", exchange -> {
+            try (exchange) {
+                byte[] body = exchange.getRequestBody().readAllBytes();
+                if (new String(body, StandardCharsets.UTF_8).contains("security vulnerabilities")) {
+                    Thread.sleep(5_000);
+                }
+                HttpResponse<byte[]> answer = client.send(HttpRequest.newBuilder(URI.create(server.getBaseUrl() + "chat/completions"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build(), HttpResponse.BodyHandlers.ofByteArray());
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(answer.statusCode(), answer.body().length);
+                exchange.getResponseBody().write(answer.body());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        proxy.start();
+        try {
+            options.setLlmBaseUrl("http://127.0.0.1:" + proxy.getAddress().getPort() + "/v1/");
+            options.setFileTimeoutMillis(1_000);
+
+            FileAnalysisResult result = new OpenAIAnalysisService(options)
+                .analyzeCodeFile(Path.of("Greeter.java"), CODE, AnalysisMode.STANDARD, false);
+
+            assertEquals(50.0, result.getSecurity());
+            assertTrue(result.getSecurityReason().contains("deadline"));
+            assertEquals(75.0, result.getCodeQuality());
+            assertEquals(75.0, result.getBugDetection());
+            assertEquals(1, result.getIssues().size());
+            assertTrue(result.isDegraded());
+        } finally {
+            proxy.stop(0);
+            proxyThreads.shutdownNow();
+        }
+    }
+
+    @Test
+    void testPackedAnswerIsSplitPerFileAndMisattributedEntriesAreLeftOut() throws Exception {
+        String section = "{\"score\": %d, \"reason\": \"Packed\", \"recommendations\": []}";
+        String entry = "{\"file\": \"%s\", \"codeQuality\": " + section + ", \"singleResponsibility\": " + section +
+            ", \"designPatterns\": " + section + ", \"security\": " + section + ", \"bugDetection\": " + section +
+            ", \"issues\": [], \"suggestions\": [\"Add equals\"]}";
+        String packed = "```json\n{\"F1\": " + String.format(entry, "Greeter.java", 90, 90, 90, 90, 90) +
+            ", \"F2\": " + String.format(entry, "Greeter.java", 40, 40, 40, 40, 40) + "}\n```";
+        server.close();
+        StandInSettings settings = new StandInSettings();
+        settings.setPort(0);
+        settings.setCannedResponses(Map.of("keyed by file id", packed));
+        server = new LocalLlmServer(settings).start();
+        options.setLlmBaseUrl(server.getBaseUrl());
+
+        OpenAIAnalysisService service = new OpenAIAnalysisService(options);
+        Map<Path, String> files = new LinkedHashMap<>();
+        files.put(Path.of("Greeter.java"), CODE);
+        files.put(Path.of("User.java"), "public class User { private String name; }\n");
+        Map<Path, FileAnalysisResult> results = service.analyzePackedFiles(files, AnalysisMode.STANDARD, false);
+
+        assertEquals(Set.of(Path.of("Greeter.java")), results.keySet());
+        assertEquals(90.0, results.get(Path.of("Greeter.java")).getSecurity());
+        assertEquals(1, server.getCompletionCount());
+        assertTrue(service.maxFilesPerPack(false) > 1);
+    }
+}
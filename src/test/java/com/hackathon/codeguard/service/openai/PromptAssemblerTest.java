@@ -0,0 +1,39 @@
+package com.hackathon.codeguard.service.openai;
+
+import com.hackathon.codeguard.service.openai.PromptAssembler.Prompt;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PromptAssembler
+ */
+class PromptAssemblerTest {
+
+    @Test
+    void testRequestsAboutTheSameCodeShareTheirPrefix() {
+        ChatMessage segment = PromptAssembler.codeSegment("Java", "Greeter.java", "class Greeter {}");
+        Prompt quality = PromptAssembler.codePrompt(segment, "Rate the quality.");
+        Prompt security = PromptAssembler.codePrompt(segment, "Rate the security.");
+
+        assertEquals(3, quality.messages().size());
+        assertEquals("system", quality.messages().get(0).getRole());
+        assertSame(quality.messages().get(0), security.messages().get(0));
+        assertSame(quality.messages().get(1), security.messages().get(1));
+        assertEquals("Language: Java\nFile: Greeter.java\n\nCode:\nclass Greeter {}", segment.getContent());
+        assertEquals("Rate the security.", security.messages().get(2).getContent());
+    }
+
+    @Test
+    void testCacheKeyAndEstimateCoverEveryMessage() {
+        ChatMessage segment = PromptAssembler.codeSegment("Java", "A.java", "class A {}");
+        Prompt first = PromptAssembler.codePrompt(segment, "Task one");
+
+        assertEquals(first.cacheKey("gpt-4", 0.1, 100), PromptAssembler.codePrompt(segment, "Task one").cacheKey("gpt-4", 0.1, 100));
+        assertNotEquals(first.cacheKey("gpt-4", 0.1, 100), PromptAssembler.codePrompt(segment, "Task two").cacheKey("gpt-4", 0.1, 100));
+        assertNotEquals(first.cacheKey("gpt-4", 0.1, 100), PromptAssembler.textPrompt("Task one").cacheKey("gpt-4", 0.1, 100));
+        assertEquals(TokenEstimator.estimate(PromptAssembler.SYSTEM_INSTRUCTIONS) + TokenEstimator.estimate(segment.getContent())
+            + TokenEstimator.estimate("Task one"), first.estimatedTokens());
+    }
+}
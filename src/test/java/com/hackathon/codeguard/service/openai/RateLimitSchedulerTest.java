@@ -0,0 +1,66 @@
+package com.hackathon.codeguard.service.openai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RateLimitScheduler
+ */
+class RateLimitSchedulerTest {
+
+    @Test
+    void testParseResetDurations() {
+        assertEquals(20, RateLimitScheduler.parseDurationMillis("20ms"));
+        assertEquals(1000, RateLimitScheduler.parseDurationMillis("1s"));
+        assertEquals(360_000, RateLimitScheduler.parseDurationMillis("6m0s"));
+        assertEquals(1500, RateLimitScheduler.parseDurationMillis("1.5s"));
+        assertEquals(0, RateLimitScheduler.parseDurationMillis(null));
+        assertEquals(0, RateLimitScheduler.parseDurationMillis("soon"));
+    }
+
+    @Test
+    void testParseRetryAfter() {
+        assertEquals(250, RateLimitScheduler.retryAfterMillis("250", "1"));
+        assertEquals(2000, RateLimitScheduler.retryAfterMillis(null, "2"));
+        assertEquals(0, RateLimitScheduler.retryAfterMillis(null, "Wed, 21 Oct 2015 07:28:00 GMT"));
+        assertEquals(0, RateLimitScheduler.retryAfterMillis(null, null));
+    }
+
+    @Test
+    void testAcquireWithinCapacityDoesNotWait() throws Exception {
+        RateLimitScheduler scheduler = new RateLimitScheduler(600, 60_000);
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            scheduler.acquire(1000);
+        }
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 500);
+    }
+
+    @Test
+    void testAcquireBeyondCapacityWaitsForRefill() throws Exception {
+        // 6000 tokens per minute at 95% headroom refills about 95 tokens per second
+        RateLimitScheduler scheduler = new RateLimitScheduler(600, 6000);
+        scheduler.acquire(5700);
+        long start = System.nanoTime();
+        scheduler.acquire(50);
+        assertTrue((System.nanoTime() - start) / 1_000_000 >= 300);
+    }
+
+    @Test
+    void testHeadersLowerTheLocalBalance() {
+        RateLimitScheduler scheduler = new RateLimitScheduler(500, 30_000);
+        Map<String, String> headers = Map.of(
+            "x-ratelimit-limit-requests", "100",
+            "x-ratelimit-remaining-requests", "40",
+            "x-ratelimit-limit-tokens", "10000",
+            "x-ratelimit-remaining-tokens", "2000");
+
+        scheduler.updateFromHeaders(headers::get);
+
+        assertTrue(scheduler.availableRequests() <= 40);
+        assertTrue(scheduler.availableTokens() <= 2000);
+    }
+}
@@ -0,0 +1,104 @@
+package com.hackathon.codeguard.service.openai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for StreamingJsonScanner
+ */
+class StreamingJsonScannerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testFieldsAreDeliveredBeforeTheResponseCompletes() throws Exception {
+        List<String> delivered = new ArrayList<>();
+        StreamingJsonScanner scanner = new StreamingJsonScanner(objectMapper,
+            Set.of("score", "reason", "recommendations"), (field, value) -> delivered.add(field));
+
+        feed(scanner, "```json\n{\"score\": 8", "5, \"reason\": \"Cle", "an code\", \"recom");
+        assertEquals(List.of("score", "reason"), delivered);
+        assertFalse(scanner.isSatisfied());
+
+        feed(scanner, "mendations\": [\"Add ", "tests\"], \"extra\": {\"a\": 1");
+        assertEquals(List.of("score", "reason", "recommendations"), delivered);
+        assertTrue(scanner.isSatisfied());
+
+        JsonNode result = objectMapper.readTree(scanner.result());
+        assertEquals(85, result.get("score").asInt());
+        assertEquals("Clean code", result.get("reason").asText());
+        assertEquals("Add tests", result.get("recommendations").get(0).asText());
+        assertFalse(result.has("extra"));
+    }
+
+    @Test
+    void testCompleteRootIsReturnedWithoutTrailingText() throws Exception {
+        StreamingJsonScanner scanner = new StreamingJsonScanner(objectMapper, Set.of(), null);
+
+        feed(scanner, " \n``", "`json\n[{\"severity\": \"HIGH\", ", "\"lineNumber\": 4}]", "\n```\nDone.");
+
+        assertTrue(scanner.isSatisfied());
+        JsonNode result = objectMapper.readTree(scanner.result());
+        assertEquals(4, result.get(0).get("lineNumber").asInt());
+    }
+
+    @Test
+    void testJsonAfterProseIsLeftToTheParsers() throws Exception {
+        StreamingJsonScanner scanner = new StreamingJsonScanner(objectMapper, Set.of(), null);
+
+        feed(scanner, "Here you go: [{\"severity\": \"HIGH\", ", "\"lineNumber\": 4}]", "\nDone.");
+
+        assertFalse(scanner.isSatisfied());
+        assertEquals("Here you go: [{\"severity\": \"HIGH\", \"lineNumber\": 4}]\nDone.", scanner.result());
+        JsonNode extracted = objectMapper.readTree(JsonExtractor.extract(scanner.result()));
+        assertEquals(4, extracted.get(0).get("lineNumber").asInt());
+    }
+
+    @Test
+    void testProseWithBracketsIsNeverCutShort() {
+        StreamingJsonScanner scanner = new StreamingJsonScanner(objectMapper, Set.of(), null);
+
+        feed(scanner, "The entry point is main(String", "[] args), which parses the options.");
+
+        assertFalse(scanner.isSatisfied());
+        assertEquals("The entry point is main(String[] args), which parses the options.", scanner.result());
+    }
+
+    @Test
+    void testNestedSectionsCompleteIndependently() throws Exception {
+        List<String> delivered = new ArrayList<>();
+        StreamingJsonScanner scanner = new StreamingJsonScanner(objectMapper,
+            Set.of("security", "issues"), (field, value) -> delivered.add(field));
+
+        feed(scanner, "{\"security\": {\"score\": 90, \"reason\": \"é\"}, \"issu", "es\": [{\"a\": [1, 2]}]");
+
+        assertEquals(List.of("security", "issues"), delivered);
+        assertTrue(scanner.isSatisfied());
+        JsonNode result = objectMapper.readTree(scanner.result());
+        assertEquals("é", result.get("security").get("reason").asText());
+        assertEquals(2, result.get("issues").get(0).get("a").get(1).asInt());
+    }
+
+    @Test
+    void testPlainTextIsReturnedAsIs() {
+        StreamingJsonScanner scanner = new StreamingJsonScanner(objectMapper, Set.of(), null);
+
+        feed(scanner, "This class ", "parses files.");
+
+        assertFalse(scanner.isSatisfied());
+        assertEquals("This class parses files.", scanner.result());
+    }
+
+    private static void feed(StreamingJsonScanner scanner, String... deltas) {
+        for (String delta : deltas) {
+            scanner.accept(delta);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.hackathon.codeguard.service.source;
+
+import com.hackathon.codeguard.service.ChangeSet.LineRange;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ChangedRegionExtractor
+ */
+class ChangedRegionExtractorTest {
+
+    private final ChangedRegionExtractor extractor = new ChangedRegionExtractor();
+
+    @Test
+    void testKeepsEnclosingMethodAndClassSignature() {
+        StringBuilder code = new StringBuilder("package demo;\n\npublic class Service {\n");
+        for (int i = 0; i < 20; i++) {
+            code.append("\n    public int method").append(i).append("(int value) {\n");
+            code.append("        int doubled = value * 2;\n");
+            code.append("        return doubled + ").append(i).append(";\n");
+            code.append("    }\n");
+        }
+        code.append("}\n");
+        // method10 spans lines 55-58
+        String content = code.toString();
+        String[] lines = content.split("\n", -1);
+        int changed = 57;
+        assertTrue(lines[changed - 1].contains("return doubled + 10"));
+
+        SourceExcerpt excerpt = extractor.extract(content, List.of(new LineRange(changed, changed)));
+
+        String text = excerpt.getText();
+        assertTrue(text.contains("public class Service {"));
+        assertTrue(text.contains("public int method10(int value) {"));
+        assertTrue(text.contains("return doubled + 10"));
+        assertFalse(text.contains("method3("));
+        assertTrue(text.contains(ChangedRegionExtractor.OMITTED_MARKER));
+        assertTrue(text.length() < content.length() / 4);
+
+        // Excerpt lines map back to file lines; markers map to nothing
+        String[] excerptLines = text.split("\n");
+        for (int i = 0; i < excerptLines.length; i++) {
+            Integer fileLine = excerpt.toFileLine(i + 1);
+            if (excerptLines[i].equals(ChangedRegionExtractor.OMITTED_MARKER)) {
+                assertNull(fileLine);
+            } else {
+                assertEquals(lines[fileLine - 1], excerptLines[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.hackathon.codeguard.service.source;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CodeChunker
+ */
+class CodeChunkerTest {
+
+    @Test
+    void testSmallFileIsSingleChunk() {
+        String code = "class Small {\n    void run() {}\n}";
+
+        List<CodeChunk> chunks = new CodeChunker(1000).chunk(code);
+
+        assertEquals(1, chunks.size());
+        assertEquals(code, chunks.get(0).getContent());
+        assertEquals(1, chunks.get(0).getStartLine());
+        assertEquals(3, chunks.get(0).getEndLine());
+    }
+
+    @Test
+    void testSplitsBetweenMethodsAndCoversEveryLine() {
+        String code = largeClass(12);
+        String[] lines = code.split("\n", -1);
+
+        List<CodeChunk> chunks = new CodeChunker(120).chunk(code);
+
+        assertTrue(chunks.size() > 1);
+        int expectedStart = 1;
+        for (CodeChunk chunk : chunks) {
+            assertEquals(expectedStart, chunk.getStartLine());
+            // Chunks never cut a method body in half
+            String firstLine = lines[chunk.getStartLine() - 1];
+            assertTrue(chunk.getStartLine() == 1 || !firstLine.startsWith("        "),
+                "chunk starts inside a method: " + firstLine);
+            expectedStart = chunk.getEndLine() + 1;
+        }
+        assertEquals(lines.length + 1, expectedStart);
+    }
+
+    @Test
+    void testBracesInStringsAndCommentsAreIgnored() {
+        StringBuilder code = new StringBuilder("class Tricky {\n");
+        for (int i = 0; i < 10; i++) {
+            code.append("    String s").append(i).append(" = \"{{{\"; // }\n");
+            code.append("    void m").append(i).append("() {\n");
+            code.append("        /* { */ call(\"}\");\n");
+            code.append("    }\n");
+        }
+        code.append("}");
+
+        List<CodeChunk> chunks = new CodeChunker(60).chunk(code.toString());
+
+        assertTrue(chunks.size() > 1);
+        for (CodeChunk chunk : chunks) {
+            assertFalse(chunk.getContent().startsWith("        "), "chunk starts inside a method");
+        }
+    }
+
+    @Test
+    void testOversizedMethodIsSplitByLines() {
+        StringBuilder code = new StringBuilder("class Huge {\n    void run() {\n");
+        for (int i = 0; i < 200; i++) {
+            code.append("        doSomethingWith(").append(i).append(");\n");
+        }
+        code.append("    }\n}");
+
+        List<CodeChunk> chunks = new CodeChunker(200).chunk(code.toString());
+
+        assertTrue(chunks.size() > 1);
+        for (CodeChunk chunk : chunks) {
+            assertTrue(chunk.getContent().length() / 4 <= 220, "chunk exceeds the token budget");
+        }
+    }
+
+    @Test
+    void testLineRemapping() {
+        CodeChunk chunk = new CodeChunk(1, 41, 80, "");
+
+        assertEquals(41, chunk.toFileLine(1));
+        assertEquals(50, chunk.toFileLine(10));
+        assertEquals(80, chunk.toFileLine(500));
+        assertNull(chunk.toFileLine(null));
+    }
+
+    private static String largeClass(int methods) {
+        StringBuilder code = new StringBuilder("package demo;\n\npublic class Large {\n");
+        for (int i = 0; i < methods; i++) {
+            code.append("\n    public int method").append(i).append("(int value) {\n");
+            code.append("        if (value > ").append(i).append(") {\n");
+            code.append("            return value * ").append(i).append(";\n");
+            code.append("        }\n");
+            code.append("        return value;\n");
+            code.append("    }\n");
+        }
+        code.append("}\n");
+        return code.toString();
+    }
+}
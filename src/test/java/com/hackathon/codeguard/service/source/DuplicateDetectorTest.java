@@ -0,0 +1,97 @@
+package com.hackathon.codeguard.service.source;
+
+import com.hackathon.codeguard.service.source.DuplicateDetector.Duplicate;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DuplicateDetector
+ */
+class DuplicateDetectorTest {
+
+    private static final String ORDER_DTO = """
+        package shop;
+
+        /** Order as returned by the API. */
+        public class OrderDto {
+            private String id;
+            private String customer;
+            private long totalCents;
+            private String currency;
+            private boolean paid;
+
+            public String getId() { return id; }
+            public void setId(String id) { this.id = id; }
+            public String getCustomer() { return customer; }
+            public void setCustomer(String customer) { this.customer = customer; }
+            public long getTotalCents() { return totalCents; }
+            public void setTotalCents(long totalCents) { this.totalCents = totalCents; }
+            public String getCurrency() { return currency; }
+            public void setCurrency(String currency) { this.currency = currency; }
+            public boolean isPaid() { return paid; }
+            public void setPaid(boolean paid) { this.paid = paid; }
+        }
+        """;
+
+    @Test
+    void testExactAndNearCopiesPointToTheFirstFile() {
+        DuplicateDetector detector = new DuplicateDetector(3);
+        String reformatted = ORDER_DTO
+            .replace("/** Order as returned by the API. */", "// Copied from the api module")
+            .replace("    ", "\t")
+            .replace("public boolean isPaid() { return paid; }", "public boolean isPaid() {\n\t\treturn paid;\n\t}");
+
+        assertNull(detector.add(Path.of("api/OrderDto.java"), ORDER_DTO));
+        assertEquals(new Duplicate(Path.of("api/OrderDto.java"), true),
+            detector.add(Path.of("vendor/OrderDto.java"), ORDER_DTO));
+        assertEquals(new Duplicate(Path.of("api/OrderDto.java"), false),
+            detector.add(Path.of("web/OrderDto.java"), reformatted));
+        assertNull(detector.add(Path.of("api/OrderDto.ts"), ORDER_DTO));
+        assertEquals(2, detector.getDuplicates().size());
+    }
+
+    @Test
+    void testDifferentClassesAreNotDuplicates() {
+        DuplicateDetector detector = new DuplicateDetector(3);
+        String service = """
+            package shop;
+
+            public class PaymentService {
+                private final PaymentGateway gateway;
+                private final OrderRepository orders;
+
+                public PaymentService(PaymentGateway gateway, OrderRepository orders) {
+                    this.gateway = gateway;
+                    this.orders = orders;
+                }
+
+                public Receipt charge(String orderId) {
+                    Order order = orders.find(orderId).orElseThrow();
+                    if (order.isPaid()) {
+                        throw new IllegalStateException("Order already paid: " + orderId);
+                    }
+                    Receipt receipt = gateway.charge(order.getTotalCents(), order.getCurrency());
+                    orders.markPaid(orderId, receipt.getId());
+                    return receipt;
+                }
+            }
+            """;
+
+        assertNull(detector.add(Path.of("OrderDto.java"), ORDER_DTO));
+        assertNull(detector.add(Path.of("PaymentService.java"), service));
+        assertNull(new DuplicateDetector(0).add(Path.of("Other.java"), ORDER_DTO));
+    }
+
+    @Test
+    void testCorrespondingLineFollowsMovedCode() {
+        String original = "class A {\n  void run() {\n    helper();\n  }\n}";
+        String copy = "// copy\n\nclass A {\n  void run() {\n    helper();\n  }\n}";
+
+        assertEquals(5, DuplicateDetector.correspondingLine(original, copy, 3));
+        assertNull(DuplicateDetector.correspondingLine(original, "class B {}", 3));
+        assertNull(DuplicateDetector.correspondingLine(original, copy, null));
+    }
+}
@@ -0,0 +1,108 @@
+package com.hackathon.codeguard.service.source;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LocalMetricsAnalyzer
+ */
+class LocalMetricsAnalyzerTest {
+
+    private final LocalMetricsAnalyzer analyzer = new LocalMetricsAnalyzer();
+
+    @Test
+    void testJavaMetrics() {
+        String code = """
+            package demo;
+
+            // Handles orders
+            public class OrderService {
+                private final List<?> items = new ArrayList<>();
+
+                public OrderService() {}
+
+                /* Returns the total */
+                public int total(List<Integer> prices) {
+                    int sum = 0;
+                    for (int price : prices) {
+                        if (price > 0 && price < 1000) {
+                            sum += price;
+                        }
+                    }
+                    return sum > 0 ? sum : 0;
+                }
+
+                abstract String describe();
+
+                interface Listener { void onOrder(String id); }
+            }
+            """;
+
+        Map<String, Object> metrics = analyzer.analyze(code);
+
+        assertEquals(code.split("\n").length, metrics.get("linesOfCode"));
+        assertEquals(2, metrics.get("numberOfClasses"));
+        // Constructor, total, describe and onOrder
+        assertEquals(4, metrics.get("numberOfMethods"));
+        // 4 methods + for + if + && + ternary
+        assertEquals(8, metrics.get("cyclomaticComplexity"));
+        assertEquals("LOW", metrics.get("codeComplexity"));
+        assertTrue((Double) metrics.get("commentRatio") > 0.0);
+    }
+
+    @Test
+    void testTypeScriptMetrics() {
+        String code = """
+            export interface Order { id?: string; }
+
+            export class Cart {
+                constructor(private readonly items: Order[]) {}
+
+                total(): number {
+                    return this.items.length ?? 0;
+                }
+            }
+
+            export function helper(a: number) {
+                return a || 1;
+            }
+
+            const handler = async (event: Event) => {
+                console.log(`clicked { ${event} }`);
+            };
+
+            items.map(item => item.id);
+            """;
+
+        Map<String, Object> metrics = analyzer.analyze(code);
+
+        assertEquals(2, metrics.get("numberOfClasses"));
+        // constructor, total, helper and handler; the inline callback is not counted
+        assertEquals(4, metrics.get("numberOfMethods"));
+        // 4 methods + ?? + ||
+        assertEquals(6, metrics.get("cyclomaticComplexity"));
+        assertEquals(0.0, metrics.get("commentRatio"));
+    }
+
+    @Test
+    void testKeywordsInStringsAndCommentsAreIgnored() {
+        String code = "class A {\n    String s = \"if (x) { while (y) }\"; // for (;;) &&\n}";
+
+        Map<String, Object> metrics = analyzer.analyze(code);
+
+        assertEquals(1, metrics.get("cyclomaticComplexity"));
+        assertEquals(0, metrics.get("numberOfMethods"));
+    }
+
+    @Test
+    void testResultsAreDeterministic() {
+        String code = "class A { int f(int x) { return x > 0 ? 1 : 2; } }";
+
+        assertEquals(analyzer.analyze(code), analyzer.analyze(code));
+        assertTrue(LocalMetricsAnalyzer.supports("TypeScript"));
+        assertFalse(LocalMetricsAnalyzer.supports("Python"));
+    }
+}
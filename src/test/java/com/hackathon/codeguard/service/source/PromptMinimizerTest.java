@@ -0,0 +1,111 @@
+package com.hackathon.codeguard.service.source;
+
+import com.hackathon.codeguard.service.openai.TokenEstimator;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PromptMinimizer
+ */
+class PromptMinimizerTest {
+
+    private static final String JAVA_FILE = String.join("\n",
+        "/*",                                                   // 1
+        " * Copyright 2024 Example Corp.",                      // 2
+        " *",                                                   // 3
+        " * Licensed under the Apache License, Version 2.0.",   // 4
+        " */",                                                  // 5
+        "package demo;",                                        // 6
+        "",                                                     // 7
+        "import java.util.List;",                               // 8
+        "import java.util.Map;",                                // 9
+        "",                                                     // 10
+        "/**",                                                  // 11
+        " * Greets people.",                                    // 12
+        " */",                                                  // 13
+        "public class Greeter {   ",                            // 14
+        "",                                                     // 15
+        "        private final String name;",                  // 16
+        "",                                                     // 17
+        "",                                                     // 18
+        "        public String greet() {",                      // 19
+        "                return \"Hello \" + name;",            // 20
+        "        }",                                            // 21
+        "}",                                                    // 22
+        "");
+
+    @Test
+    void testRemovesLicenceBannerAndWhitespaceKeepingLineMap() {
+        SourceExcerpt excerpt = new PromptMinimizer(false).minimize(JAVA_FILE, "Java");
+
+        String text = excerpt.getText();
+        assertFalse(text.contains("Copyright"));
+        assertTrue(text.startsWith("package demo;"));
+        assertTrue(text.contains("import java.util.List;"));
+        assertTrue(text.contains("\n * Greets people."));
+        assertTrue(text.contains("\npublic class Greeter {\n private final String name;\n public String greet() {\n  return"));
+        assertFalse(text.contains("\n\n"));
+
+        String[] lines = text.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].contains("return \"Hello \"")) {
+                assertEquals(20, excerpt.toFileLine(i + 1));
+            }
+        }
+        assertEquals(6, excerpt.toFileLine(1));
+        assertTrue(TokenEstimator.estimate(text) * 10 < TokenEstimator.estimate(JAVA_FILE) * 7);
+    }
+
+    @Test
+    void testElidesImportBlockWithMarker() {
+        SourceExcerpt excerpt = new PromptMinimizer(true).minimize(JAVA_FILE, "Java");
+
+        String[] lines = excerpt.getText().split("\n");
+        assertEquals("package demo;", lines[0]);
+        assertEquals("// 2 imports omitted", lines[1]);
+        assertNull(excerpt.toFileLine(2));
+        assertEquals(11, excerpt.toFileLine(3));
+    }
+
+    @Test
+    void testElidesMultiLineScriptImports() {
+        String code = String.join("\n",
+            "import {",
+            "  readFile,",
+            "  writeFile",
+            "} from 'fs';",
+            "import path from 'path';",
+            "",
+            "export function load(file: string) {",
+            "  return readFile(path.resolve(file));",
+            "}");
+
+        SourceExcerpt excerpt = new PromptMinimizer(true).minimize(code, "TypeScript");
+
+        String[] lines = excerpt.getText().split("\n");
+        assertEquals("// 2 imports omitted", lines[0]);
+        assertEquals("export function load(file: string) {", lines[1]);
+        assertEquals(7, excerpt.toFileLine(2));
+        assertEquals(" return readFile(path.resolve(file));", lines[2]);
+    }
+
+    @Test
+    void testKeepsOrdinaryHeaderCommentsAndPythonIndentation() {
+        String code = String.join("\n",
+            "#!/usr/bin/env python3",
+            "# Helpers for parsing configuration files",
+            "",
+            "def parse(text):",
+            "    if not text:",
+            "        return {}",
+            "    return dict(line.split('=') for line in text.splitlines())");
+
+        SourceExcerpt excerpt = new PromptMinimizer(false).minimize(code, "Python");
+
+        String text = excerpt.getText();
+        assertTrue(text.contains("# Helpers for parsing configuration files"));
+        assertTrue(text.contains("\n    if not text:\n        return {}"));
+        assertEquals(4, excerpt.toFileLine(3));
+    }
+}
@@ -0,0 +1,83 @@
+package com.hackathon.codeguard.service.source;
+
+import com.hackathon.codeguard.model.InputSlice;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SourceSlicer
+ */
+class SourceSlicerTest {
+
+    private static final String JAVA_CODE = String.join("\n",
+        "package demo;",
+        "import java.util.List;",
+        "import java.util.Map;",
+        "/** Keeps orders. */",
+        "public class OrderStore implements Store {",
+        " private final Map<String, Order> orders;",
+        " public List<Order> open() {",
+        "  if (orders.isEmpty()) {",
+        "   return List.of();",
+        "  }",
+        "  return orders.values().stream().filter(Order::isOpen).toList();",
+        " }",
+        " enum State {",
+        "  OPEN, CLOSED",
+        " }",
+        " private void clear()",
+        " {",
+        "  orders.clear();",
+        " }",
+        "}");
+
+    private final SourceSlicer slicer = new SourceSlicer();
+
+    @Test
+    void testSignaturesOmitMethodBodies() {
+        String sliced = slicer.slice(JAVA_CODE, "Java", InputSlice.SIGNATURES);
+
+        assertEquals(String.join("\n",
+            "package demo;",
+            "import java.util.List;",
+            "import java.util.Map;",
+            "/** Keeps orders. */",
+            "public class OrderStore implements Store {",
+            " private final Map<String, Order> orders;",
+            " public List<Order> open() {",
+            "// ...",
+            " }",
+            " enum State {",
+            "  OPEN, CLOSED",
+            " }",
+            " private void clear()",
+            " {",
+            "// ...",
+            " }",
+            "}"), sliced);
+    }
+
+    @Test
+    void testImportsKeepPackageAndImportStatements() {
+        assertEquals("package demo;\nimport java.util.List;\nimport java.util.Map;\n// ...",
+            slicer.slice(JAVA_CODE, "Java", InputSlice.IMPORTS));
+        assertEquals(JAVA_CODE, slicer.slice(JAVA_CODE, "Java", InputSlice.FULL));
+    }
+
+    @Test
+    void testPythonSignaturesKeepDeclarations() {
+        String code = String.join("\n",
+            "import os",
+            "class Loader:",
+            "    @staticmethod",
+            "    def load(path):",
+            "        with open(path) as f:",
+            "            return f.read()",
+            "def main():",
+            "    print(Loader.load(os.environ['FILE']))");
+
+        assertEquals("import os\nclass Loader:\n    @staticmethod\n    def load(path):\n# ...\ndef main():\n# ...",
+            slicer.slice(code, "Python", InputSlice.SIGNATURES));
+    }
+}
@@ -0,0 +1,46 @@
+package com.hackathon.codeguard.service.usage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LatencyHistogram
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void testPercentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long millis = 1; millis <= 10_000; millis++) {
+            histogram.record(millis);
+        }
+
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(5_000.5, histogram.getMean(), 0.001);
+        assertEquals(10_000, histogram.getMax());
+        assertEquals(5_000, histogram.percentile(50), 5_000 * 0.07);
+        assertEquals(9_000, histogram.percentile(90), 9_000 * 0.07);
+        assertEquals(9_900, histogram.percentile(99), 9_900 * 0.07);
+        assertEquals(10_000, histogram.percentile(100));
+    }
+
+    @Test
+    void testSmallValuesAreExactAndBucketsAreContiguous() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(7);
+        histogram.record(7);
+
+        assertEquals(3, histogram.percentile(33));
+        assertEquals(7, histogram.percentile(50));
+        assertEquals(0, new LatencyHistogram().percentile(99));
+
+        for (long value = 0; value < 100_000; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.highestEquivalentValue(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.highestEquivalentValue(index - 1) < value);
+        }
+        assertTrue(LatencyHistogram.indexOf(Long.MAX_VALUE) > 0);
+    }
+}